@@ -0,0 +1,107 @@
+package kilobyte.benchmarks;
+
+import kilobyte.common.instruction.DecompiledInstruction;
+import kilobyte.common.instruction.Format;
+import kilobyte.common.instruction.Instruction;
+import kilobyte.common.instruction.decomposedrepresentation.DecomposedRepresentation;
+import kilobyte.common.machinecode.Fields;
+import kilobyte.common.machinecode.OperationsKt;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static kilobyte.benchmarks.DecompilerBenchmark.BATCH;
+import static kilobyte.benchmarks.DecompilerBenchmark.cycle;
+
+/**
+ * Splitting words into, and composing words from, their fields.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitFieldBenchmark {
+  // The fields that the simulator and decompiler extract, {upper, lower}
+  static final int NO_OF_FIELDS = 7;
+  static final int[][] FIELDS = {
+        {31, 26}, // opcode
+        {25, 21}, // rs
+        {20, 16}, // rt
+        {15, 11}, // rd
+        {10, 6},  // shamt
+        {15, 0},  // offset/immediate
+        {25, 0},  // target
+  };
+
+  long[] words;
+  // The lengths of the format of each word, i.e. of each decomposition
+  int[][] lengths;
+  int[][] decompositions;
+
+  @Setup
+  public void setUp() {
+    words = cycle(Inputs.words());
+    lengths = new int[BATCH][];
+    decompositions = new int[BATCH][];
+    for (int i = 0; i < BATCH; i++) {
+      Format format = formatOf(words[i]);
+      lengths[i] = format.lengths;
+      decompositions[i] = DecomposedRepresentation.fromNumber(words[i], format.lengths).toIntArray();
+    }
+  }
+
+  private static Format formatOf(long word) {
+    DecompiledInstruction d = Instruction.decompile(word);
+    if (!d.isValid() || d.asInstruction().getFormat() == Format.EXIT) {
+      // Decompose anything else as if it was an R-format instruction
+      return Format.R;
+    }
+    return d.asInstruction().getFormat();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void decomposedRepresentationFromNumber(Blackhole bh) {
+    for (int i = 0; i < BATCH; i++) {
+      bh.consume(DecomposedRepresentation.fromNumber(words[i], lengths[i]));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void decomposedRepresentationFromIntArray(Blackhole bh) {
+    for (int i = 0; i < BATCH; i++) {
+      bh.consume(DecomposedRepresentation.fromIntArray(decompositions[i], lengths[i]));
+    }
+  }
+
+  // Reported per extracted field, not per word
+  @Benchmark
+  @OperationsPerInvocation(BATCH * NO_OF_FIELDS)
+  public void bits(Blackhole bh) {
+    for (long word : words) {
+      for (int[] field : FIELDS) {
+        bh.consume(OperationsKt.bits(word, field[0], field[1]));
+      }
+    }
+  }
+
+  // The same fields through the fixed accessors
+  @Benchmark
+  @OperationsPerInvocation(BATCH * NO_OF_FIELDS)
+  public void fields(Blackhole bh) {
+    for (long machineCode : words) {
+      int word = (int) machineCode;
+      bh.consume(Fields.opcode(word));
+      bh.consume(Fields.rs(word));
+      bh.consume(Fields.rt(word));
+      bh.consume(Fields.rd(word));
+      bh.consume(Fields.shamt(word));
+      bh.consume(Fields.immediate(word));
+      bh.consume(Fields.target(word));
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package kilobyte.benchmarks;
+
+import kilobyte.common.instruction.DecodeCache;
+import kilobyte.common.instruction.Instruction;
+import kilobyte.decompiler.MachineCodeDecoder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assembling, decompiling and parsing numbers. Every invocation goes
+ * through all of the inputs once, so the reported time is per input
+ * (thanks to @OperationsPerInvocation) averaged over the whole mix.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecompilerBenchmark {
+  // Upper bound for @OperationsPerInvocation, the inputs are cycled to fill it
+  static final int BATCH = 512;
+
+  String[] mnemonics;
+  long[] words;
+  String[] numbers;
+  DecodeCache cache = DecodeCache.directMapped(4 * BATCH);
+
+  @Setup
+  public void setUp() {
+    mnemonics = cycle(Inputs.mnemonics());
+    words = cycle(Inputs.words());
+    numbers = cycle(Inputs.numberStrings());
+  }
+
+  static String[] cycle(String[] inputs) {
+    String[] batch = new String[BATCH];
+    for (int i = 0; i < BATCH; i++) {
+      batch[i] = inputs[i % inputs.length];
+    }
+    return batch;
+  }
+
+  static long[] cycle(long[] inputs) {
+    long[] batch = new long[BATCH];
+    for (int i = 0; i < BATCH; i++) {
+      batch[i] = inputs[i % inputs.length];
+    }
+    return batch;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void instructionFromMnemonic(Blackhole bh) {
+    for (String mnemonic : mnemonics) {
+      bh.consume(Instruction.from(mnemonic));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void decompile(Blackhole bh) {
+    for (long word : words) {
+      bh.consume(Instruction.decompile(word));
+    }
+  }
+
+  // There are far fewer distinct inputs than slots, so this is mostly hits
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void decompileCached(Blackhole bh) {
+    for (long word : words) {
+      bh.consume(cache.decompile(word));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void machineCodeDecoderDecode(Blackhole bh) {
+    for (String number : numbers) {
+      bh.consume(MachineCodeDecoder.decode(number));
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package kilobyte.benchmarks;
+
+import kilobyte.common.instruction.Encoder;
+import kilobyte.common.instruction.Instruction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+import static kilobyte.benchmarks.DecompilerBenchmark.BATCH;
+
+/**
+ * Generating a loop body in code, by formatting and parsing mnemonics
+ * versus by writing the words straight away.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncoderBenchmark {
+  // Four instructions per iteration
+  private static final int ITERATIONS = BATCH / 4;
+
+  Encoder encoder = new Encoder(BATCH);
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void mnemonics(Blackhole bh) {
+    for (int i = 0; i < ITERATIONS; i++) {
+      int rt = 8 + i % 8;
+      bh.consume(Instruction.from(format("lw $%d, %d($sp)", rt, 4 * i)));
+      bh.consume(Instruction.from(format("add $%d, $%d, $%d", rt, rt, rt)));
+      bh.consume(Instruction.from(format("sw $%d, %d($sp)", rt, 4 * i)));
+      bh.consume(Instruction.from(format("beq $%d, $zero, %d", rt, -3)));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void encoder(Blackhole bh) {
+    encoder.clear();
+    for (int i = 0; i < ITERATIONS; i++) {
+      int rt = 8 + i % 8;
+      encoder.lw(rt, 4 * i, 29)
+            .add(rt, rt, rt)
+            .sw(rt, 4 * i, 29)
+            .beq(rt, 0, -3);
+    }
+    bh.consume(encoder.get(BATCH - 1));
+  }
+}
@@ -0,0 +1,104 @@
+package kilobyte.benchmarks;
+
+import kilobyte.common.instruction.Example;
+import kilobyte.common.instruction.Instruction;
+import kilobyte.decompiler.MachineCodeDecoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The inputs shared by the benchmarks. They are built from the examples of
+ * every instruction, see {@link Instruction#allExamples()}, and from the
+ * words of sample-program.hex so that the benchmarks see roughly what the
+ * decompiler and the simulator see in practice rather than a single,
+ * easily predicted, value.
+ *
+ * The location of sample-program.hex may be overridden through the
+ * "kilobyte.sampleProgram" system property. The jmh task runs from the
+ * project directory so the default resolves to the bundled file.
+ */
+final class Inputs {
+  private static final String SAMPLE_PROGRAM =
+        System.getProperty("kilobyte.sampleProgram", "sample-program.hex");
+
+  private static final Pattern REGISTER = Pattern.compile("\\$\\w+");
+
+  private Inputs() {
+    // Intentionally left empty
+  }
+
+  static List<String> sampleProgramLines() {
+    try {
+      List<String> lines = new ArrayList<>();
+      for (String line : Files.readAllLines(new File(SAMPLE_PROGRAM).toPath())) {
+        if (!line.trim().isEmpty()) {
+          lines.add(line.trim());
+        }
+      }
+      return lines;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read " + SAMPLE_PROGRAM, e);
+    }
+  }
+
+  /* The machine code of every example followed by the sample program */
+  static long[] words() {
+    List<Long> words = new ArrayList<>();
+    for (Example e : Instruction.allExamples()) {
+      words.add(e.getNumericExample());
+    }
+    for (String line : sampleProgramLines()) {
+      words.add(MachineCodeDecoder.decode(line));
+    }
+    // Words with the highest bit set may have been sign-extended
+    return words.stream().mapToLong(w -> w & 0xffffffffL).toArray();
+  }
+
+  /* The mnemonic of every example that can be assembled */
+  static String[] mnemonics() {
+    List<String> mnemonics = new ArrayList<>();
+    for (Example e : Instruction.allExamples()) {
+      try {
+        Instruction.from(e.getMnemonicExample());
+        mnemonics.add(e.getMnemonicExample());
+      } catch (RuntimeException ignored) {
+        // Some examples are only used to test the decompiler
+      }
+    }
+    return mnemonics.toArray(new String[0]);
+  }
+
+  /**
+   * The sample program as it is written, followed by every word written in
+   * each base that the decoder accepts (the same mix as in
+   * sample-mingled-bases.hex).
+   */
+  static String[] numberStrings() {
+    List<String> strings = new ArrayList<>(sampleProgramLines());
+    for (long word : words()) {
+      strings.add("0x" + Long.toHexString(word));
+      strings.add(Long.toString(word));
+      strings.add("0b" + Long.toBinaryString(word));
+    }
+    return strings.toArray(new String[0]);
+  }
+
+  /* Every register name, in order of appearance, used by the examples */
+  static String[] registerNames() {
+    List<String> names = new ArrayList<>();
+    for (String mnemonic : mnemonics()) {
+      Matcher m = REGISTER.matcher(mnemonic);
+      while (m.find()) {
+        names.add(m.group());
+      }
+    }
+    return names.toArray(new String[0]);
+  }
+}
@@ -0,0 +1,132 @@
+package kilobyte.benchmarks;
+
+import kilobyte.common.hardware.RegisterFile;
+import kilobyte.common.instruction.DecompiledInstruction;
+import kilobyte.common.instruction.Format;
+import kilobyte.common.instruction.Instruction;
+import kilobyte.simulator.Simulator;
+import kilobyte.simulator.hardware.ALUOperation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+import java.util.stream.Collectors;
+
+import static kilobyte.benchmarks.DecompilerBenchmark.BATCH;
+import static kilobyte.benchmarks.DecompilerBenchmark.cycle;
+import static kilobyte.common.machinecode.OperationsKt.funct;
+
+/**
+ * The simulator and the hardware it is built from.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulatorBenchmark {
+  /*
+   * An endless loop that executes every kind of instruction that the
+   * simulator supports, except for the ones that only make sense with
+   * several harts.
+   */
+  static final String[] LOOP = {
+        "addi $t0, $t0, 1",
+        "add $t1, $t0, $t0",
+        "sub $t2, $t1, $t0",
+        "and $t3, $t1, $t2",
+        "or $t4, $t1, $t2",
+        "nor $t5, $t1, $t2",
+        "slt $t6, $t2, $t1",
+        "srl $t7, $t1, 1",
+        "sra $s0, $t1, 1",
+        "ori $s1, $t0, 255",
+        "sw $t0, 0($zero)",
+        "lw $s2, 0($zero)",
+        "beq $zero, $zero, 1",
+        "j 0",
+  };
+
+  Simulator simulator;
+  RegisterFile registerFile;
+  String[] registerNames;
+  // ALU control inputs, the ALUOp lines followed by funct (or -1 when the
+  // ALU operation only depends on the ALUOp lines)
+  boolean[] aluOp1s;
+  boolean[] aluOp0s;
+  int[] functs;
+
+  @Setup
+  public void setUp() {
+    // The simulator logs every step, which is turned off unless debugging
+    LogManager.getLogManager().reset();
+
+    simulator = Simulator.withInstructionsInMemory(LOOP);
+    registerFile = new RegisterFile();
+    registerNames = cycle(Inputs.registerNames());
+
+    Set<String> supported = Simulator.getSupportedInstructions().stream()
+          .map(Instruction::getIname)
+          .collect(Collectors.toSet());
+    List<int[]> aluInputs = new ArrayList<>();
+    for (long word : Inputs.words()) {
+      DecompiledInstruction d = Instruction.decompile(word);
+      if (!d.isValid()) {
+        continue;
+      }
+      Instruction i = d.asInstruction();
+      String iname = i.getIname();
+      if (!supported.contains(iname)) {
+        continue;
+      }
+      // jr and sync never reach the ALU
+      if (i.getFormat() == Format.R && !iname.equals("jr") && !iname.equals("sync")) {
+        aluInputs.add(new int[]{1, 0, funct(i)});
+      } else if (i.getType() == null && i.getFormat() == Format.I) {
+        aluInputs.add(new int[]{0, 0, -1}); // lw, sw, addi
+      }
+    }
+    aluInputs.add(new int[]{0, 1, -1}); // beq
+    aluInputs.add(new int[]{1, 0, -1}); // ori
+
+    aluOp1s = new boolean[BATCH];
+    aluOp0s = new boolean[BATCH];
+    functs = new int[BATCH];
+    for (int i = 0; i < BATCH; i++) {
+      int[] input = aluInputs.get(i % aluInputs.size());
+      aluOp1s[i] = input[0] == 1;
+      aluOp0s[i] = input[1] == 1;
+      functs[i] = input[2];
+    }
+  }
+
+  @Benchmark
+  public boolean executeNextInstruction() {
+    return simulator.executeNextInstruction();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void registerFileGet(Blackhole bh) {
+    for (String name : registerNames) {
+      bh.consume(registerFile.get(name));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void aluOperationFrom(Blackhole bh) {
+    for (int i = 0; i < BATCH; i++) {
+      if (functs[i] < 0) {
+        bh.consume(ALUOperation.from(aluOp1s[i], aluOp0s[i]));
+      } else {
+        bh.consume(ALUOperation.from(aluOp1s[i], aluOp0s[i], functs[i]));
+      }
+    }
+  }
+}
@@ -0,0 +1,197 @@
+package kilobyte.benchmarks;
+
+import kilobyte.simulator.Simulator;
+import kilobyte.simulator.program.Program;
+import kilobyte.simulator.workloads.Workload;
+import org.apache.commons.cli.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.logging.LogManager;
+
+import static java.lang.String.format;
+
+/**
+ * Runs every {@link Workload} to completion, over and over, and reports how
+ * fast the simulator is end-to-end: simulated MIPS (millions of simulated
+ * instructions per second of wall time), wall time per run, allocation
+ * rate and the warm-up curve, i.e. the MIPS of each warm-up run.
+ *
+ * Every run is verified. The results are appended to a file as JSON, one
+ * object per workload and line, so that runs can be compared over time.
+ */
+public class ThroughputHarness {
+  static Options options = new Options()
+        .addOption("h", "help", false, "print this message")
+        .addOption("w", "warmup", true, "number of warm-up runs per workload (default 20)")
+        .addOption("r", "runs", true, "number of measured runs per workload (default 20)")
+        .addOption("o", "output", true, "file to append the results to (default throughput.jsonl)");
+
+  private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  private ThroughputHarness() {
+    // Intentionally left empty
+  }
+
+  public static void main(String[] args) throws IOException {
+    CommandLine line;
+    try {
+      line = new DefaultParser().parse(options, args);
+    } catch (ParseException e) {
+      System.err.println("Parsing the command-line failed. Error: " + e.getMessage());
+      return;
+    }
+    if (line.hasOption("help")) {
+      new HelpFormatter().printHelp("ThroughputHarness [OPTION]...", options);
+      return;
+    }
+
+    int warmupRuns = Integer.parseInt(line.getOptionValue("warmup", "20"));
+    int measuredRuns = Integer.parseInt(line.getOptionValue("runs", "20"));
+    File output = new File(line.getOptionValue("output", "throughput.jsonl"));
+
+    // The simulator logs every step, which is turned off unless debugging
+    LogManager.getLogManager().reset();
+
+    String timestamp = Instant.now().toString();
+    String jvm = System.getProperty("java.vm.name") + " " + System.getProperty("java.version");
+
+    if (output.getParentFile() != null) {
+      output.getParentFile().mkdirs();
+    }
+    try (PrintWriter out = new PrintWriter(new FileWriter(output, true))) {
+      for (Workload w : Workload.values()) {
+        Result r = measure(w, warmupRuns, measuredRuns);
+        System.out.println(r);
+        out.println(r.asJson(timestamp, jvm));
+      }
+    }
+    System.out.println("Results appended to " + output);
+  }
+
+  private static Result measure(Workload w, int warmupRuns, int measuredRuns) {
+    Program p = w.program();
+
+    List<Double> warmup = new ArrayList<>();
+    for (int i = 0; i < warmupRuns; i++) {
+      Run run = run(w, p);
+      warmup.add(run.mips());
+    }
+
+    long instructions = 0;
+    long nanos = 0;
+    long allocated = 0;
+    for (int i = 0; i < measuredRuns; i++) {
+      Run run = run(w, p);
+      instructions += run.instructions;
+      nanos += run.nanos;
+      allocated += run.allocatedBytes;
+    }
+    return new Result(w, measuredRuns, instructions, nanos, allocated, warmup);
+  }
+
+  private static Run run(Workload w, Program p) {
+    // Only the execution is measured, not setting up the simulator
+    Simulator s = Simulator.executingProgram(p);
+    long allocatedBefore = allocatedBytes();
+    long start = System.nanoTime();
+    long instructions = Workload.runToCompletion(s);
+    long nanos = System.nanoTime() - start;
+    long allocated = allocatedBytes() - allocatedBefore;
+    w.verify(s);
+    return new Run(instructions, nanos, allocated);
+  }
+
+  /* Bytes allocated by the current thread so far, or 0 if the JVM can't tell */
+  private static long allocatedBytes() {
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threads)
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0;
+  }
+
+  private static double mips(long instructions, long nanos) {
+    // instructions per microsecond is the same as millions per second
+    return nanos == 0 ? 0 : instructions * 1000.0 / nanos;
+  }
+
+  private static final class Run {
+    final long instructions;
+    final long nanos;
+    final long allocatedBytes;
+
+    Run(long instructions, long nanos, long allocatedBytes) {
+      this.instructions = instructions;
+      this.nanos = nanos;
+      this.allocatedBytes = allocatedBytes;
+    }
+
+    double mips() {
+      return ThroughputHarness.mips(instructions, nanos);
+    }
+  }
+
+  private static final class Result {
+    final Workload workload;
+    final int runs;
+    final long instructions;
+    final long nanos;
+    final long allocatedBytes;
+    final List<Double> warmup;
+
+    Result(Workload workload, int runs, long instructions, long nanos, long allocatedBytes, List<Double> warmup) {
+      this.workload = workload;
+      this.runs = runs;
+      this.instructions = instructions;
+      this.nanos = nanos;
+      this.allocatedBytes = allocatedBytes;
+      this.warmup = warmup;
+    }
+
+    double mips() {
+      return ThroughputHarness.mips(instructions, nanos);
+    }
+
+    double wallTimeMillisPerRun() {
+      return runs == 0 ? 0 : nanos / 1e6 / runs;
+    }
+
+    double allocationRateMBPerSecond() {
+      return nanos == 0 ? 0 : allocatedBytes / 1e6 / (nanos / 1e9);
+    }
+
+    double bytesPerInstruction() {
+      return instructions == 0 ? 0 : (double) allocatedBytes / instructions;
+    }
+
+    String asJson(String timestamp, String jvm) {
+      StringJoiner curve = new StringJoiner(", ", "[", "]");
+      warmup.forEach(mips -> curve.add(format(Locale.ROOT, "%.4f", mips)));
+      // JSON numbers use a decimal point regardless of the default locale
+      return format(Locale.ROOT, "{\"timestamp\": \"%s\", \"jvm\": \"%s\", \"workload\": \"%s\", " +
+                  "\"runs\": %d, \"instructionsPerRun\": %d, \"mips\": %.4f, " +
+                  "\"wallTimeMillisPerRun\": %.4f, \"allocationRateMBPerSecond\": %.2f, " +
+                  "\"bytesPerInstruction\": %.2f, \"warmupMips\": %s}",
+            timestamp, jvm, workload.name(), runs, runs == 0 ? 0 : instructions / runs,
+            mips(), wallTimeMillisPerRun(), allocationRateMBPerSecond(),
+            bytesPerInstruction(), curve);
+    }
+
+    @Override
+    public String toString() {
+      return format("%-16s %10.3f MIPS  %10.3f ms/run  %10.1f MB/s  %8.1f B/instruction",
+            workload.name(), mips(), wallTimeMillisPerRun(),
+            allocationRateMBPerSecond(), bytesPerInstruction());
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package kilobyte.common.instruction;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A bounded, direct-mapped cache of decompiled machine code. Real
+ * programs repeat the same words over and over, think nop, jr $ra and
+ * stack adjustments, so most words are only decompiled once.
+ *
+ * Every word maps to exactly one slot, and a word that maps to an
+ * occupied slot evicts the word held there. Lookups are a hash and a
+ * compare, there is no bookkeeping on a hit. Words are keyed on their 32
+ * bits, so machine code that has been sign-extended to a long and the
+ * same machine code zero-extended share an entry, that of the latter.
+ *
+ * The cache is safe to share between threads. Slots hold immutable
+ * entries, so a racing thread may miss on a word that was just inserted
+ * but never sees the result of another word. The decompiled instructions
+ * are shared by everyone who looks them up, and are immutable too.
+ *
+ * Install a cache through {@link Instruction#setDecodeCache(DecodeCache)}
+ * to have {@link Instruction#decompile(long)}, and with it
+ * {@link DecompiledInstruction#from(long)}, consult it.
+ */
+public final class DecodeCache {
+  private static final class Entry {
+    final int word;
+    final DecompiledInstruction decompiled;
+
+    Entry(int word, DecompiledInstruction decompiled) {
+      this.word = word;
+      this.decompiled = decompiled;
+    }
+  }
+
+  private final Entry[] slots;
+  private final int indexShift;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  private DecodeCache(int capacity) {
+    slots = new Entry[capacity];
+    indexShift = 32 - Integer.numberOfTrailingZeros(capacity);
+  }
+
+  /**
+   * @param capacity the number of slots, a power of two.
+   */
+  public static DecodeCache directMapped(int capacity) {
+    checkArgument(capacity > 1 && Integer.bitCount(capacity) == 1,
+          "Expected the capacity to be a power of two greater than one. Got %s", capacity);
+    return new DecodeCache(capacity);
+  }
+
+  // Fibonacci hashing, spreads words that differ in a few bits only,
+  // such as the registers of otherwise identical instructions, apart.
+  private int indexOf(int word) {
+    return (word * 0x9e3779b9) >>> indexShift;
+  }
+
+  public DecompiledInstruction decompile(long machineCode) {
+    int word = (int) machineCode;
+    int i = indexOf(word);
+    Entry e = slots[i];
+    if (e != null && e.word == word) {
+      hits.increment();
+      return e.decompiled;
+    }
+
+    misses.increment();
+    DecompiledInstruction d = Instruction.decompileUncached(Integer.toUnsignedLong(word));
+    slots[i] = new Entry(word, d);
+    return d;
+  }
+
+  public int getCapacity() {
+    return slots.length;
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /* Empties the cache and zeroes the counters */
+  public void clear() {
+    for (int i = 0; i < slots.length; i++) {
+      slots[i] = null;
+    }
+    hits.reset();
+    misses.reset();
+  }
+}
@@ -1,5 +1,8 @@
 package kilobyte.common.instruction.decomposedrepresentation;
 
+import kilobyte.common.machinecode.Fields;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.Value;
 
 import java.util.Arrays;
@@ -7,6 +10,8 @@ import java.util.StringJoiner;
 
 @Value
 public class DecomposedRepresentation {
+  // Never handed out, see toIntArray
+  @Getter(AccessLevel.NONE)
   int[] decomposition;
   long numericalRepresentation;
 
@@ -119,9 +124,13 @@ public class DecomposedRepresentation {
                   "Got start: " + start + " numberOfBits: " + numberOfBits);
     }
 
-    String s = asBitPattern(number);
-    String requestedBits = s.substring(start, start + numberOfBits);
-    return Integer.parseInt(requestedBits, 2);
+    if (numberOfBits <= 0) {
+      return 0;
+    }
+    // start counts from the MSB, shifting by the index of the LSB of the
+    // requested bits leaves them at the bottom of the word.
+    int lowerIndex = 32 - start - numberOfBits;
+    return ((int) number >>> lowerIndex) & Fields.mask(numberOfBits);
   }
 
   public static String asBitPattern(long number) {
@@ -155,10 +164,10 @@ public class DecomposedRepresentation {
    *
    * <pre>{@code Arrays.equals(d.toIntArray(), new int[] {0x1c, 8, 1, 9, 0, 2})}</pre>
    *
-   * @return the decomposition as an int array
+   * @return a copy of the decomposition as an int array
    */
   public int[] toIntArray() {
-    return decomposition;
+    return decomposition.clone();
   }
 
   /**
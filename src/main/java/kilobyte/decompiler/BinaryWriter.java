@@ -0,0 +1,65 @@
+package kilobyte.decompiler;
+
+import kilobyte.common.instruction.Format;
+
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes every record in a compact binary form, all numbers big-endian,
+ *
+ * <pre>
+ * u32  word
+ * u8   format, the ordinal of the Format or 0xff for unknown instructions
+ * u8   n, the number of fields in the decomposition
+ * u16  field, n times
+ * u16  length of the mnemonic, followed by as many bytes of it
+ * u8   m, the number of errors
+ * u16  length of the error, followed by as many bytes of it, m times
+ * </pre>
+ *
+ * Every char that is written is meant to become exactly one byte, so the
+ * underlying writer has to encode ISO-8859-1, see {@link OutputFormat#BIN}.
+ */
+final class BinaryWriter extends RecordWriter {
+  static final int UNKNOWN_FORMAT = 0xff;
+
+  BinaryWriter(Writer out) {
+    super(out);
+  }
+
+  @Override
+  void append(int word, Format format, int[] decomposition, String mnemonic, List<String> errors) {
+    u16(word >>> 16);
+    u16(word);
+    u8(format == null ? UNKNOWN_FORMAT : format.ordinal());
+    u8(decomposition.length);
+    for (int field : decomposition) {
+      u16(field);
+    }
+    string(mnemonic);
+    u8(errors.size());
+    for (String error : errors) {
+      string(error);
+    }
+  }
+
+  private void u8(int b) {
+    record.append((char) (b & 0xff));
+  }
+
+  private void u16(int s) {
+    u8(s >>> 8);
+    u8(s);
+  }
+
+  private void string(String s) {
+    int length = Math.min(s.length(), 0xffff);
+    u16(length);
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      // Mnemonics and errors are ASCII, anything else would not fit a byte
+      record.append(c > 0xff ? '?' : c);
+    }
+  }
+}
@@ -1,24 +1,42 @@
 package kilobyte.decompiler;
 
 import com.google.common.collect.Lists;
+import kilobyte.common.instruction.DecodeCache;
 import kilobyte.common.instruction.DecompiledInstruction;
 import kilobyte.common.instruction.Instruction;
 import lombok.Value;
 import org.apache.commons.cli.*;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.*;
 
 @Value
 public class CommandLineDecompiler {
+  static final int DEFAULT_CACHE_SIZE = 4096;
+  // One per core, the output is in the order of the input whatever the number
+  static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+  static final int INPUT_BUFFER_SIZE = 1 << 16;
+  static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
   static Options options = new Options()
         .addOption("h", "help", false, "print this message")
         .addOption("n", "number", true, "disassemble 32-bit word(s) from stdin")
         .addOption("S", "suppress", false, "suppress the table header")
         .addOption(null, "supported", false, "prints all supported instructions")
-        .addOption(null, "examples", false, "prints an example for each supported instructions.");
+        .addOption(null, "examples", false, "prints an example for each supported instructions.")
+        .addOption("c", "cache", true, "the number of decompiled words to cache, a power of two, " +
+              "or 0 to disable the cache. Defaults to " + DEFAULT_CACHE_SIZE)
+        .addOption("t", "threads", true, "the number of threads to decompile files and stdin on. " +
+              "Defaults to the number of processors, " + DEFAULT_THREADS)
+        .addOption("f", "format", true, "the output format, table, csv, tsv, jsonl or bin. " +
+              "Defaults to table")
+        .addOption("b", "binary", false, "read the files as raw 32-bit words rather than as text")
+        .addOption(null, "endian", true, "the byte order of binary files, big or little. Defaults to big")
+        .addOption(null, "offset", true, "the number of bytes to skip at the start of binary files")
+        .addOption(null, "length", true, "the number of bytes to read from binary files. " +
+              "Defaults to the rest of the file");
   static CommandLineParser parser = new DefaultParser();
   static HelpFormatter formatter = new HelpFormatter();
 
@@ -35,8 +53,12 @@ public class CommandLineDecompiler {
     System.out.println("If no argument is given then numbers are read from stdin");
   }
 
-  private static DecompiledInstruction decompile(Long number) {
-    return DecompiledInstruction.from(number);
+  static DecompilerMetrics metrics = DecompilerMetrics.getInstance();
+
+  private static DecompiledInstruction decompile(long number) {
+    DecompiledInstruction d = DecompiledInstruction.from(number);
+    metrics.decompiled(d);
+    return d;
   }
 
   public static List<DecompiledInstruction> decompile(File f) {
@@ -52,7 +74,10 @@ public class CommandLineDecompiler {
   }
 
   private static List<DecompiledInstruction> decompile(List<Long> numbers) {
-    return Lists.transform(numbers, CommandLineDecompiler::decompile);
+    metrics.queued(numbers.size());
+    // Lists.transform is a lazy view that decompiles on every access, copy
+    // it so that every word is decompiled, and counted, exactly once.
+    return new ArrayList<>(Lists.transform(numbers, CommandLineDecompiler::decompile));
   }
 
   public static void main(String[] args) throws IOException {
@@ -79,82 +104,176 @@ public class CommandLineDecompiler {
       return;
     }
 
+    try {
+      int cacheSize = Integer.parseInt(line.getOptionValue("cache", Integer.toString(DEFAULT_CACHE_SIZE)));
+      Instruction.setDecodeCache(cacheSize == 0 ? null : DecodeCache.directMapped(cacheSize));
+    } catch (IllegalArgumentException e) {
+      // NumberFormatException is an IllegalArgumentException
+      printUsage();
+      System.err.println("Invalid cache size. Error: " + e.getMessage());
+      return;
+    }
+
+    int threads;
+    try {
+      threads = Integer.parseInt(line.getOptionValue("threads", Integer.toString(DEFAULT_THREADS)));
+      if (threads < 1) {
+        throw new NumberFormatException("Expected a positive number. Got " + threads);
+      }
+    } catch (NumberFormatException e) {
+      printUsage();
+      System.err.println("Invalid number of threads. Error: " + e.getMessage());
+      return;
+    }
+
+    String[] argv = line.getArgs();
+    boolean binary = line.hasOption("binary");
+    ByteOrder order;
+    long offset;
+    long length;
+    try {
+      order = byteOrder(line.getOptionValue("endian", "big"));
+      offset = Long.parseLong(line.getOptionValue("offset", "0"));
+      length = Long.parseLong(line.getOptionValue("length", "-1"));
+    } catch (IllegalArgumentException e) {
+      printUsage();
+      System.err.println("Invalid binary input options. Error: " + e.getMessage());
+      return;
+    }
+    if (binary && argv.length == 0) {
+      printUsage();
+      System.err.println("Binary input has to be read from files");
+      return;
+    }
+
+    OutputFormat format;
+    try {
+      format = OutputFormat.from(line.getOptionValue("format", "table"));
+    } catch (IllegalArgumentException e) {
+      printUsage();
+      System.err.println("Invalid output format. Error: " + e.getMessage());
+      return;
+    }
+
     boolean printTableHeader = true;
 
     if (line.hasOption("suppress")) {
       printTableHeader = false;
     }
 
-    List<DecompiledInstruction> decompiledInstructions = new ArrayList<>();
-    String[] argv = line.getArgs();
+    // System.out flushes on every line, buffer the table instead. It is
+    // flushed whenever we are about to wait for more input.
+    Writer out = new BufferedWriter(new OutputStreamWriter(System.out, format.getCharset()), OUTPUT_BUFFER_SIZE);
+    RowWriter table = format.open(out);
+    if (printTableHeader) {
+      table.writeHeader();
+    }
+
+    ParallelDecompiler parallel = threads > 1 ? new ParallelDecompiler(threads, format) : null;
 
     if (line.hasOption("n")) {
       // The user has passed integers on the command line
       // TODO: Test what happens when a number has a bad format
       List<String> inputs = Arrays.asList(line.getOptionValues("n"));
-      decompiledInstructions = CommandLineDecompiler.decompile(MachineCodeDecoder.decode(inputs));
+      for (DecompiledInstruction d : CommandLineDecompiler.decompile(MachineCodeDecoder.decode(inputs))) {
+        table.write(d);
+      }
     } else if (argv.length > 0) {
       // Passed a list of files.
       for (String arg : argv) {
         // Decode the contents of each file
         File f = new File(arg);
         if (f.isFile()) {
-          decompiledInstructions.addAll(CommandLineDecompiler.decompile(f));
+          if (binary) {
+            for (IntBuffer words : MachineCodeDecoder.map(f, order, offset, length)) {
+              decompile(words, table, out, parallel);
+            }
+          } else {
+            try (Reader in = new FileReader(f)) {
+              decompile(in, table, out, parallel);
+            }
+          }
         } else {
+          out.flush();
           System.err.println("File not found: \"" + arg + "\"");
         }
       }
     } else if (argv.length == 0) {
       // Decompile from standard in
-      List<Long> numbers = MachineCodeDecoder.decode(new InputStreamReader(System.in));
-      decompiledInstructions = CommandLineDecompiler.decompile(numbers);
+      decompile(new InputStreamReader(System.in), table, out, parallel);
     }
 
-    outputTable(printTableHeader, decompiledInstructions);
+    if (parallel != null) {
+      parallel.close();
+    }
+    out.flush();
   }
 
-  private static void outputTable(boolean printTableHeader, List<DecompiledInstruction> decompiledInstructions) {
-    String formatString = "%-12s  |  %-6s  |  %-16s  |  %-25s  |  %-24s  |  %s";
-    Object[] header = {"Machine Code", "Format", "Decomposition", "Decomposition hexadecimal", "Source", "Errors"};
+  private static void decompile(Reader in, RowWriter table, Writer out, ParallelDecompiler parallel)
+        throws IOException {
+    if (parallel == null) {
+      decompile(in, table, out);
+    } else {
+      parallel.decompile(in, out);
+    }
+  }
 
-    if (printTableHeader) {
-      System.out.println(String.format(formatString, header));
+  private static void decompile(IntBuffer words, RowWriter table, Writer out, ParallelDecompiler parallel)
+        throws IOException {
+    if (parallel == null) {
+      decompile(words, 0, words.limit(), table);
+    } else {
+      parallel.decompile(words, out);
+    }
+  }
+
+  private static ByteOrder byteOrder(String endian) {
+    switch (endian.toLowerCase()) {
+      case "big":
+        return ByteOrder.BIG_ENDIAN;
+      case "little":
+        return ByteOrder.LITTLE_ENDIAN;
+      default:
+        throw new IllegalArgumentException("Expected big or little. Got " + endian);
     }
+  }
 
-    for (DecompiledInstruction d : decompiledInstructions) {
-      if (d.isUnknown()) {
-        System.out.println(d.toString());
-        continue;
-      }
+  /**
+   * Decompiles the numbers in the given input one line at a time, writing
+   * each row as soon as its number has been read. Nothing but the current
+   * line is held on to, so inputs of any size can be decompiled.
+   */
+  static void decompile(Reader in, RowWriter table, Writer out) throws IOException {
+    BufferedReader br = new BufferedReader(in, INPUT_BUFFER_SIZE);
+    for (String line = br.readLine(); line != null; line = br.readLine()) {
+      decompile(line, table);
 
-      String unpretty = d.toString();
-      String[] split = unpretty.split("\\s+");
-      String machineCode = split[0];
-      String format = split[1];
-      int firstOpeningBracket = unpretty.indexOf('[');
-      int firstClosingBracket = unpretty.indexOf(']', firstOpeningBracket);
-      int secondOpeningBracket = unpretty.indexOf('[', firstClosingBracket);
-      int secondClosingBracket = unpretty.indexOf(']', secondOpeningBracket);
-      String decimalDecomp = unpretty.substring(firstOpeningBracket, firstClosingBracket + 1);
-      String hexDecomp = unpretty.substring(secondOpeningBracket, secondClosingBracket + 1);
-
-      List<String> errors = Collections.emptyList();
-      String source;
-
-      if (d.isPartiallyValid()) {
-        errors = d.errors();
-        source = unpretty.substring(secondClosingBracket + 2, unpretty.indexOf("error"));
-      } else {
-        source = unpretty.substring(secondClosingBracket + 2);
+      // Lets the rows of a pipe that is fed slowly through as they come
+      if (!br.ready()) {
+        out.flush();
       }
+    }
+  }
 
-      if (errors.isEmpty()) {
-        System.out.println(String.format(formatString, machineCode, format, decimalDecomp, hexDecomp, source, ""));
-      } else {
-        StringJoiner sj = new StringJoiner("\", \"", "[\"", "\"]");
-        errors.forEach(sj::add);
-        System.out.println(String.format(formatString, machineCode, format, decimalDecomp, hexDecomp, source, " error(s)=" + sj.toString()));
-      }
+  /* Decompiles the number on the given line into a row of the output */
+  static void decompile(String line, RowWriter table) throws IOException {
+    if (line.isEmpty()) {
+      return;
+    }
+
+    metrics.queued(1);
+    table.write(decompile(MachineCodeDecoder.decode(line)));
+  }
+
+  /*
+   * Decompiles the words in [from, to) of the given buffer into rows of the
+   * output. The words are read as they are, without any parsing.
+   */
+  static void decompile(IntBuffer words, int from, int to, RowWriter table) throws IOException {
+    metrics.queued(to - from);
+    for (int i = from; i < to; i++) {
+      // Sign-extended, the same as a number read from text
+      table.write(decompile((long) words.get(i)));
     }
   }
 }
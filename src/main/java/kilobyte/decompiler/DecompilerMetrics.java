@@ -0,0 +1,113 @@
+package kilobyte.decompiler;
+
+import kilobyte.common.instruction.DecodeCache;
+import kilobyte.common.instruction.DecompiledInstruction;
+import kilobyte.common.instruction.Instruction;
+import lombok.extern.java.Log;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide metrics for batch decompiles, registered with the platform
+ * MBean server as {@code kilobyte:type=Decompiler} when first used.
+ */
+@Log
+public final class DecompilerMetrics implements DecompilerMetricsMXBean {
+  private static final DecompilerMetrics INSTANCE = new DecompilerMetrics();
+
+  static {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(
+            INSTANCE, new ObjectName("kilobyte:type=Decompiler"));
+    } catch (JMException e) {
+      log.warning("Could not register the decompiler MBean. Cause: " + e.getMessage());
+    }
+  }
+
+  private final LongAdder wordsDecoded = new LongAdder();
+  private final LongAdder unknownInstructions = new LongAdder();
+  private final LongAdder partiallyValidInstructions = new LongAdder();
+  private final LongAdder queued = new LongAdder();
+
+  // Zero until the first word is queued
+  private volatile long startedAt = 0;
+
+  private DecompilerMetrics() {
+    // Intentionally left empty
+  }
+
+  public static DecompilerMetrics getInstance() {
+    return INSTANCE;
+  }
+
+  void queued(int noOfWords) {
+    if (startedAt == 0) {
+      startedAt = System.nanoTime();
+    }
+    queued.add(noOfWords);
+  }
+
+  void decompiled(DecompiledInstruction d) {
+    queued.decrement();
+    wordsDecoded.increment();
+    if (d.isUnknown()) {
+      unknownInstructions.increment();
+    } else if (d.isPartiallyValid()) {
+      partiallyValidInstructions.increment();
+    }
+  }
+
+  @Override
+  public long getWordsDecoded() {
+    return wordsDecoded.sum();
+  }
+
+  @Override
+  public double getWordsDecodedPerSecond() {
+    long elapsed = System.nanoTime() - startedAt;
+    if (startedAt == 0 || elapsed <= 0) {
+      return 0;
+    }
+    return wordsDecoded.sum() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+  }
+
+  @Override
+  public long getUnknownInstructions() {
+    return unknownInstructions.sum();
+  }
+
+  @Override
+  public long getPartiallyValidInstructions() {
+    return partiallyValidInstructions.sum();
+  }
+
+  @Override
+  public long getQueueDepth() {
+    return queued.sum();
+  }
+
+  @Override
+  public long getDecodeCacheHits() {
+    DecodeCache cache = Instruction.getDecodeCache();
+    return cache == null ? 0 : cache.getHits();
+  }
+
+  @Override
+  public long getDecodeCacheMisses() {
+    DecodeCache cache = Instruction.getDecodeCache();
+    return cache == null ? 0 : cache.getMisses();
+  }
+
+  /* The queue depth is left alone since the queued words are still there */
+  @Override
+  public void reset() {
+    wordsDecoded.reset();
+    unknownInstructions.reset();
+    partiallyValidInstructions.reset();
+    startedAt = queued.sum() > 0 ? System.nanoTime() : 0;
+  }
+}
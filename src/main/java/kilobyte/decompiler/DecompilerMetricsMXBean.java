@@ -0,0 +1,25 @@
+package kilobyte.decompiler;
+
+/**
+ * The management interface of {@link DecompilerMetrics}.
+ */
+public interface DecompilerMetricsMXBean {
+  long getWordsDecoded();
+
+  /* Averaged over the time since the first word was queued or the last reset */
+  double getWordsDecodedPerSecond();
+
+  long getUnknownInstructions();
+
+  long getPartiallyValidInstructions();
+
+  /* Words that have been read but not yet decompiled */
+  long getQueueDepth();
+
+  /* Zero unless a decode cache is installed, see Instruction.setDecodeCache */
+  long getDecodeCacheHits();
+
+  long getDecodeCacheMisses();
+
+  void reset();
+}
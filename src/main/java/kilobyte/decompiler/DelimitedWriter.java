@@ -0,0 +1,106 @@
+package kilobyte.decompiler;
+
+import kilobyte.common.instruction.Format;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes records as lines of comma- or tab-separated values,
+ *
+ * <pre>
+ * word,format,decomposition,mnemonic,errors
+ * 0x014b4820,R,0 10 11 9 0 32,"add $t1, $t2, $t3",
+ * </pre>
+ *
+ * The fields of the decomposition are separated by spaces and the errors
+ * by semicolons. Comma-separated values are quoted when they have to be,
+ * see RFC 4180. Tab-separated values can not be quoted, any tabs and line
+ * breaks in a value are replaced by spaces.
+ */
+final class DelimitedWriter extends RecordWriter {
+  private static final String NEWLINE = System.lineSeparator();
+
+  private final char separator;
+
+  private DelimitedWriter(Writer out, char separator) {
+    super(out);
+    this.separator = separator;
+  }
+
+  static DelimitedWriter csv(Writer out) {
+    return new DelimitedWriter(out, ',');
+  }
+
+  static DelimitedWriter tsv(Writer out) {
+    return new DelimitedWriter(out, '\t');
+  }
+
+  @Override
+  public void writeHeader() throws IOException {
+    record.setLength(0);
+    for (int i = 0; i < FIELDS.length; i++) {
+      if (i > 0) {
+        record.append(separator);
+      }
+      record.append(FIELDS[i]);
+    }
+    record.append(NEWLINE);
+    writeRecord();
+  }
+
+  @Override
+  void append(int word, Format format, int[] decomposition, String mnemonic, List<String> errors) {
+    Hex.appendPadded(record, word).append(separator);
+    if (format != null) {
+      record.append(format.name());
+    }
+    record.append(separator);
+    for (int i = 0; i < decomposition.length; i++) {
+      if (i > 0) {
+        record.append(' ');
+      }
+      record.append(decomposition[i]);
+    }
+    record.append(separator);
+    value(mnemonic);
+    record.append(separator);
+    if (!errors.isEmpty()) {
+      value(String.join("; ", errors));
+    }
+    record.append(NEWLINE);
+  }
+
+  private void value(String s) {
+    int from = 0;
+    int end = s.length();
+    if (separator == '\t') {
+      for (int i = from; i < end; i++) {
+        char c = s.charAt(i);
+        record.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+      }
+      return;
+    }
+
+    boolean quote = false;
+    for (int i = from; i < end && !quote; i++) {
+      char c = s.charAt(i);
+      quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+    }
+    if (!quote) {
+      record.append(s, from, end);
+      return;
+    }
+
+    record.append('"');
+    for (int i = from; i < end; i++) {
+      char c = s.charAt(i);
+      if (c == '"') {
+        record.append('"');
+      }
+      record.append(c);
+    }
+    record.append('"');
+  }
+}
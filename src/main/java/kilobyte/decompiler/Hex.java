@@ -0,0 +1,35 @@
+package kilobyte.decompiler;
+
+/**
+ * Hexadecimal digits looked up in a table, rather than formatted through
+ * {@link String#format(String, Object...)} or
+ * {@link Integer#toHexString(int)}, neither of which is cheap when it is
+ * done for every field of every row.
+ */
+final class Hex {
+  private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+  private Hex() {
+  }
+
+  /* Appends the word as 0x followed by exactly eight digits */
+  static StringBuilder appendPadded(StringBuilder sb, int word) {
+    sb.append('0').append('x');
+    for (int shift = 28; shift >= 0; shift -= 4) {
+      sb.append(DIGITS[(word >>> shift) & 0xf]);
+    }
+    return sb;
+  }
+
+  /* Appends the unsigned value without a prefix or any leading zeroes */
+  static StringBuilder append(StringBuilder sb, int value) {
+    int shift = 28;
+    while (shift > 0 && (value >>> shift) == 0) {
+      shift -= 4;
+    }
+    for (; shift >= 0; shift -= 4) {
+      sb.append(DIGITS[(value >>> shift) & 0xf]);
+    }
+    return sb;
+  }
+}
@@ -0,0 +1,70 @@
+package kilobyte.decompiler;
+
+import kilobyte.common.instruction.Format;
+
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes every record as a JSON object on a line of its own, i.e.
+ *
+ * <pre>
+ * {"word":"0x014b4820","format":"R","decomposition":[0,10,11,9,0,32],"mnemonic":"add $t1, $t2, $t3","errors":[]}
+ * </pre>
+ *
+ * The format of an unknown instruction is null.
+ */
+final class JsonLinesWriter extends RecordWriter {
+  JsonLinesWriter(Writer out) {
+    super(out);
+  }
+
+  @Override
+  void append(int word, Format format, int[] decomposition, String mnemonic, List<String> errors) {
+    record.append("{\"word\":\"");
+    Hex.appendPadded(record, word);
+    record.append("\",\"format\":");
+    if (format == null) {
+      record.append("null");
+    } else {
+      string(format.name());
+    }
+    record.append(",\"decomposition\":[");
+    for (int i = 0; i < decomposition.length; i++) {
+      if (i > 0) {
+        record.append(',');
+      }
+      record.append(decomposition[i]);
+    }
+    record.append("],\"mnemonic\":");
+    string(mnemonic);
+    record.append(",\"errors\":[");
+    for (int i = 0; i < errors.size(); i++) {
+      if (i > 0) {
+        record.append(',');
+      }
+      string(errors.get(i));
+    }
+    // JSON Lines are separated by \n no matter the platform
+    record.append("]}\n");
+  }
+
+  private void string(String s) {
+    record.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        record.append('\\').append(c);
+      } else if (c < 0x20) {
+        record.append("\\u00");
+        if (c < 0x10) {
+          record.append('0');
+        }
+        Hex.append(record, c);
+      } else {
+        record.append(c);
+      }
+    }
+    record.append('"');
+  }
+}
@@ -0,0 +1,63 @@
+package kilobyte.decompiler;
+
+import lombok.Getter;
+
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The formats that the {@link CommandLineDecompiler} writes its output in.
+ * The table is meant to be read by people, the others by programs.
+ */
+enum OutputFormat {
+  TABLE(Charset.defaultCharset()) {
+    @Override
+    RowWriter open(Writer out) {
+      return new TableWriter(out);
+    }
+  },
+  CSV(StandardCharsets.UTF_8) {
+    @Override
+    RowWriter open(Writer out) {
+      return DelimitedWriter.csv(out);
+    }
+  },
+  TSV(StandardCharsets.UTF_8) {
+    @Override
+    RowWriter open(Writer out) {
+      return DelimitedWriter.tsv(out);
+    }
+  },
+  JSONL(StandardCharsets.UTF_8) {
+    @Override
+    RowWriter open(Writer out) {
+      return new JsonLinesWriter(out);
+    }
+  },
+  BIN(StandardCharsets.ISO_8859_1) {
+    @Override
+    RowWriter open(Writer out) {
+      return new BinaryWriter(out);
+    }
+  };
+
+  // What the output has to be encoded in for the format to come out right
+  @Getter
+  private final Charset charset;
+
+  OutputFormat(Charset charset) {
+    this.charset = charset;
+  }
+
+  abstract RowWriter open(Writer out);
+
+  static OutputFormat from(String name) {
+    for (OutputFormat f : values()) {
+      if (f.name().equalsIgnoreCase(name)) {
+        return f;
+      }
+    }
+    throw new IllegalArgumentException("Expected one of table, csv, tsv, jsonl or bin. Got " + name);
+  }
+}
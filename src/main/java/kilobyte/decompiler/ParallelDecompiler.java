@@ -0,0 +1,131 @@
+package kilobyte.decompiler;
+
+import java.io.*;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Decompiles an input on several threads. The input is split into chunks
+ * of whole lines that are decoded, decompiled and formatted on a fork-join
+ * pool, each chunk into an output fragment of its own. The fragments are
+ * written in input order.
+ *
+ * Raw binary input is split into chunks of words in the same manner.
+ *
+ * At most two chunks per thread are in flight at any time. Once that many
+ * have been handed to the pool, reading waits for the oldest one to
+ * finish and writes it out, so memory use is bounded no matter the size
+ * of the input.
+ */
+final class ParallelDecompiler implements AutoCloseable {
+  static final int LINES_PER_CHUNK = 4096;
+
+  private final ForkJoinPool pool;
+  private final int maxChunksInFlight;
+  private final OutputFormat format;
+
+  ParallelDecompiler(int threads) {
+    this(threads, OutputFormat.TABLE);
+  }
+
+  ParallelDecompiler(int threads, OutputFormat format) {
+    checkArgument(threads > 0, "Expected a positive number of threads. Got %s", threads);
+    pool = new ForkJoinPool(threads);
+    maxChunksInFlight = 2 * threads;
+    this.format = format;
+  }
+
+  void decompile(Reader in, Writer out) throws IOException {
+    BufferedReader br = new BufferedReader(in, CommandLineDecompiler.INPUT_BUFFER_SIZE);
+    ArrayDeque<ForkJoinTask<String>> inFlight = new ArrayDeque<>();
+
+    for (String[] chunk = readChunk(br); chunk.length > 0; chunk = readChunk(br)) {
+      if (inFlight.size() == maxChunksInFlight) {
+        out.write(inFlight.removeFirst().join());
+      }
+      String[] lines = chunk;
+      inFlight.addLast(pool.submit(() -> decompile(lines)));
+
+      if (!br.ready()) {
+        // Nothing to read right away, write what is done in the meantime
+        while (!inFlight.isEmpty() && inFlight.peekFirst().isDone()) {
+          out.write(inFlight.removeFirst().join());
+        }
+        out.flush();
+      }
+    }
+
+    while (!inFlight.isEmpty()) {
+      out.write(inFlight.removeFirst().join());
+    }
+  }
+
+  /* The same as for text, but every chunk is a slice of the buffer */
+  void decompile(IntBuffer words, Writer out) throws IOException {
+    ArrayDeque<ForkJoinTask<String>> inFlight = new ArrayDeque<>();
+
+    for (int from = 0; from < words.limit(); from += LINES_PER_CHUNK) {
+      if (inFlight.size() == maxChunksInFlight) {
+        out.write(inFlight.removeFirst().join());
+      }
+      int start = from;
+      int end = Math.min(from + LINES_PER_CHUNK, words.limit());
+      inFlight.addLast(pool.submit(() -> decompile(words, start, end)));
+    }
+
+    while (!inFlight.isEmpty()) {
+      out.write(inFlight.removeFirst().join());
+    }
+  }
+
+  private static String[] readChunk(BufferedReader br) throws IOException {
+    String[] chunk = new String[LINES_PER_CHUNK];
+    int n = 0;
+    while (n < LINES_PER_CHUNK) {
+      String line = br.readLine();
+      if (line == null) {
+        break;
+      }
+      chunk[n++] = line;
+      if (!br.ready()) {
+        // Do not hold on to the lines of a slow pipe
+        break;
+      }
+    }
+    return n == LINES_PER_CHUNK ? chunk : Arrays.copyOf(chunk, n);
+  }
+
+  private String decompile(String[] lines) {
+    StringWriter fragment = new StringWriter();
+    RowWriter rows = format.open(fragment);
+    try {
+      for (String line : lines) {
+        CommandLineDecompiler.decompile(line, rows);
+      }
+    } catch (IOException e) {
+      // Never thrown by a StringWriter
+      throw new UncheckedIOException(e);
+    }
+    return fragment.toString();
+  }
+
+  private String decompile(IntBuffer words, int from, int to) {
+    StringWriter fragment = new StringWriter();
+    try {
+      CommandLineDecompiler.decompile(words, from, to, format.open(fragment));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return fragment.toString();
+  }
+
+  @Override
+  public void close() {
+    pool.shutdown();
+  }
+}
@@ -0,0 +1,76 @@
+package kilobyte.decompiler;
+
+import kilobyte.common.instruction.DecompiledInstruction;
+import kilobyte.common.instruction.Format;
+import kilobyte.common.instruction.Instruction;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The base of the machine-readable output formats. Every decompiled
+ * instruction becomes a record of the fields
+ *
+ * <pre>
+ * word, format, decomposition, mnemonic, errors
+ * </pre>
+ *
+ * Unknown instructions have neither a format, a decomposition nor a
+ * mnemonic, their single error describes the word instead.
+ *
+ * A record is put together in a buffer that is reused from one record to
+ * the next and written to the underlying writer in one go.
+ */
+abstract class RecordWriter implements RowWriter {
+  static final String[] FIELDS = {"word", "format", "decomposition", "mnemonic", "errors"};
+  private static final int[] NO_FIELDS = new int[0];
+
+  private final Writer out;
+  final StringBuilder record = new StringBuilder(128);
+  private char[] chars = new char[128];
+
+  RecordWriter(Writer out) {
+    this.out = out;
+  }
+
+  @Override
+  public void writeHeader() throws IOException {
+  }
+
+  @Override
+  public void write(DecompiledInstruction d) throws IOException {
+    record.setLength(0);
+    if (d.isUnknown()) {
+      long word = ((DecompiledInstruction.UnknownInstruction) d).getMachineCode();
+      append((int) word, null, NO_FIELDS, "", Collections.singletonList(d.toString()));
+    } else {
+      Instruction i = d instanceof DecompiledInstruction.Valid
+            ? ((DecompiledInstruction.Valid) d).getInstruction()
+            : ((DecompiledInstruction.PartiallyValid) d).getInstruction();
+      append((int) i.getNumericRepresentation(),
+            i.getFormat(),
+            i.getDecomposed().toIntArray(),
+            i.getMnemonicRepresentation(),
+            d.errors());
+    }
+    writeRecord();
+  }
+
+  /**
+   * Appends a record to {@link #record}.
+   *
+   * @param format null for unknown instructions.
+   */
+  abstract void append(int word, Format format, int[] decomposition, String mnemonic, List<String> errors);
+
+  void writeRecord() throws IOException {
+    int n = record.length();
+    if (chars.length < n) {
+      chars = new char[Math.max(n, 2 * chars.length)];
+    }
+    record.getChars(0, n, chars, 0);
+    out.write(chars, 0, n);
+  }
+}
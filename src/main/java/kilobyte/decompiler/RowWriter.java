@@ -0,0 +1,16 @@
+package kilobyte.decompiler;
+
+import kilobyte.common.instruction.DecompiledInstruction;
+
+import java.io.IOException;
+
+/**
+ * Writes decompiled instructions, one row at a time, in one of the
+ * {@link OutputFormat}s of the {@link CommandLineDecompiler}.
+ */
+interface RowWriter {
+  /* Formats without a header write nothing */
+  void writeHeader() throws IOException;
+
+  void write(DecompiledInstruction d) throws IOException;
+}
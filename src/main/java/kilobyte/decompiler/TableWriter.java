@@ -0,0 +1,137 @@
+package kilobyte.decompiler;
+
+import kilobyte.common.instruction.DecompiledInstruction;
+import kilobyte.common.instruction.Instruction;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes decompiled instructions as rows of the table that the
+ * {@link CommandLineDecompiler} outputs, i.e.
+ *
+ * <pre>
+ * Machine Code  |  Format  |  Decomposition     |  ...
+ * 0x014b4820    |  R       |  [0 10 11 9 0 32]  |  ...
+ * </pre>
+ *
+ * Every row is written straight to the underlying writer, the columns are
+ * taken from the instruction itself rather than from its string form.
+ */
+final class TableWriter implements RowWriter {
+  private static final String SEPARATOR = "  |  ";
+  private static final String NEWLINE = System.lineSeparator();
+
+  // The minimum width of every column but the last one
+  private static final int[] WIDTHS = {12, 6, 16, 25, 24};
+  private static final String[] HEADER = {
+        "Machine Code", "Format", "Decomposition", "Decomposition hexadecimal", "Source", "Errors"};
+
+  private final Writer out;
+
+  // Every row is put together here and then written in one go
+  private final StringBuilder row = new StringBuilder(160);
+  private char[] chars = new char[160];
+
+  TableWriter(Writer out) {
+    this.out = out;
+  }
+
+  @Override
+  public void writeHeader() throws IOException {
+    row.setLength(0);
+    for (int i = 0; i < WIDTHS.length; i++) {
+      int start = row.length();
+      row.append(HEADER[i]);
+      pad(WIDTHS[i], start);
+    }
+    row.append(HEADER[HEADER.length - 1]).append(NEWLINE);
+    writeRow();
+  }
+
+  @Override
+  public void write(DecompiledInstruction d) throws IOException {
+    row.setLength(0);
+    if (d.isUnknown()) {
+      row.append(d.toString()).append(NEWLINE);
+      writeRow();
+      return;
+    }
+
+    Instruction i = d instanceof DecompiledInstruction.Valid
+          ? ((DecompiledInstruction.Valid) d).getInstruction()
+          : ((DecompiledInstruction.PartiallyValid) d).getInstruction();
+    int[] fields = i.getDecomposed().toIntArray();
+
+    int start = row.length();
+    Hex.appendPadded(row, (int) i.getNumericRepresentation());
+    pad(WIDTHS[0], start);
+
+    start = row.length();
+    row.append(i.getFormat().name());
+    pad(WIDTHS[1], start);
+
+    // [0 10 11 9 0 32]
+    start = row.length();
+    row.append('[');
+    for (int f = 0; f < fields.length; f++) {
+      if (f > 0) {
+        row.append(' ');
+      }
+      row.append(fields[f]);
+    }
+    row.append(']');
+    pad(WIDTHS[2], start);
+
+    // [0 0xa 0xb 9 0 0x20], only fields above 9 are prefixed
+    start = row.length();
+    row.append('[');
+    for (int f = 0; f < fields.length; f++) {
+      if (f > 0) {
+        row.append(' ');
+      }
+      if (fields[f] > 9) {
+        row.append("0x");
+      }
+      Hex.append(row, fields[f]);
+    }
+    row.append(']');
+    pad(WIDTHS[3], start);
+
+    start = row.length();
+    row.append(i.getMnemonicRepresentation());
+    pad(WIDTHS[4], start);
+
+    List<String> errors = d.errors();
+    if (!errors.isEmpty()) {
+      row.append(" error(s)=[\"");
+      for (int e = 0; e < errors.size(); e++) {
+        if (e > 0) {
+          row.append("\", \"");
+        }
+        row.append(errors.get(e));
+      }
+      row.append("\"]");
+    }
+    row.append(NEWLINE);
+    writeRow();
+  }
+
+  // Pads the column that starts at the given index and ends the row
+  private void pad(int width, int start) {
+    for (int n = row.length() - start; n < width; n++) {
+      row.append(' ');
+    }
+    row.append(SEPARATOR);
+  }
+
+  private void writeRow() throws IOException {
+    int n = row.length();
+    if (chars.length < n) {
+      chars = new char[Math.max(n, 2 * chars.length)];
+    }
+    row.getChars(0, n, chars, 0);
+    out.write(chars, 0, n);
+  }
+}
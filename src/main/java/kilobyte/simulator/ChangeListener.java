@@ -0,0 +1,10 @@
+package kilobyte.simulator;
+
+/**
+ * Is told about the changes to a simulator, in batches, see
+ * {@link Simulator#publishChanges()}.
+ */
+@FunctionalInterface
+public interface ChangeListener {
+  void changed(Changes changes);
+}
@@ -0,0 +1,27 @@
+package kilobyte.simulator;
+
+import lombok.Value;
+
+import java.util.BitSet;
+
+/**
+ * What has changed in a simulator since its changes were last drained,
+ * see {@link Simulator#publishChanges()}.
+ */
+@Value
+public class Changes {
+  // Bit i is set if register i has changed
+  int registers;
+
+  // The indices of the words of the data memory that have changed, i.e.
+  // their byte addresses divided by four
+  BitSet words;
+
+  public boolean hasRegisterChanged(int index) {
+    return (registers & (1 << index)) != 0;
+  }
+
+  public boolean isEmpty() {
+    return registers == 0 && words.isEmpty();
+  }
+}
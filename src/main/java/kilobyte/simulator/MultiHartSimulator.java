@@ -0,0 +1,137 @@
+package kilobyte.simulator;
+
+import com.google.common.collect.ImmutableList;
+import kilobyte.simulator.hardware.DataMemory;
+import kilobyte.simulator.hardware.InstructionMemory;
+import kilobyte.simulator.program.Program;
+import lombok.Value;
+import lombok.extern.java.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Executes a single program on several harts (hardware threads). Every
+ * hart is a {@link Simulator} of its own, with its own program counter,
+ * register file and control, but all harts fetch from the same instruction
+ * memory and load from and store to the same {@link DataMemory}.
+ *
+ * Hart i starts out with i in $a0 so that a program can tell the harts
+ * apart. The harts synchronize through ll/sc, which are lock-free, see
+ * {@link DataMemory#loadLinked(int)}.
+ *
+ * There are two modes of execution,
+ * <ul>
+ *   <li>{@link #runRoundRobin(int)} steps all harts on the calling thread
+ *   in order of their hart ids, a fixed number of instructions at a time.
+ *   The interleaving is determined by the program alone, so runs are
+ *   reproducible.</li>
+ *   <li>{@link #runInParallel()} gives each hart a thread of its own.</li>
+ * </ul>
+ */
+@Value
+@Log
+public class MultiHartSimulator implements AutoCloseable {
+  ImmutableList<Simulator> harts;
+  InstructionMemory instructionMemory = InstructionMemory.init();
+  DataMemory dataMemory = new DataMemory();
+
+  private MultiHartSimulator(Program p, int noOfHarts) {
+    checkArgument(noOfHarts > 0, "Expected at least one hart. Got %s", noOfHarts);
+    Simulator.loadText(p, instructionMemory);
+    Simulator.loadSegments(p, dataMemory);
+
+    ImmutableList.Builder<Simulator> builder = ImmutableList.builder();
+    for (int hartId = 0; hartId < noOfHarts; hartId++) {
+      Simulator hart = Simulator.hart(hartId, instructionMemory, dataMemory);
+      hart.setRegisterValue("$a0", hartId);
+      hart.getProgramCounter().setTo(p.getEntryPoint());
+      builder.add(hart);
+    }
+    harts = builder.build();
+  }
+
+  public static MultiHartSimulator executingProgram(Program p, int noOfHarts) {
+    return new MultiHartSimulator(p, noOfHarts);
+  }
+
+  /* Closes every hart, see Simulator#close() */
+  @Override
+  public void close() {
+    harts.forEach(Simulator::close);
+  }
+
+  public Simulator getHart(int hartId) {
+    return harts.get(hartId);
+  }
+
+  public int getNoOfHarts() {
+    return harts.size();
+  }
+
+  /**
+   * Lets each hart, in turn, execute {@code quantum} instructions until
+   * every hart has encountered an exit instruction.
+   *
+   * @return the total number of executed instructions.
+   */
+  public long runRoundRobin(int quantum) {
+    checkArgument(quantum > 0, "Expected a positive quantum. Got %s", quantum);
+    boolean[] hasExited = new boolean[harts.size()];
+    int running = harts.size();
+    long executed = 0;
+
+    while (running > 0) {
+      for (int hartId = 0; hartId < harts.size(); hartId++) {
+        for (int n = 0; n < quantum && !hasExited[hartId]; n++) {
+          hasExited[hartId] = harts.get(hartId).executeNextInstruction();
+          executed++;
+          if (hasExited[hartId]) {
+            running--;
+          }
+        }
+      }
+    }
+    return executed;
+  }
+
+  public long runRoundRobin() {
+    return runRoundRobin(1);
+  }
+
+  /**
+   * Runs every hart on a thread of its own and waits for all of them to
+   * encounter an exit instruction. If a hart fails the remaining harts are
+   * interrupted and the failure is rethrown.
+   */
+  public void runInParallel() throws InterruptedException, ExecutionException {
+    ExecutorService executor = Executors.newFixedThreadPool(harts.size());
+    try {
+      List<Future<?>> running = new ArrayList<>();
+      for (Simulator hart : harts) {
+        running.add(executor.submit(() -> runUntilExit(hart)));
+      }
+      for (Future<?> f : running) {
+        f.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void runUntilExit(Simulator hart) {
+    log.info(format("Hart %d started on %s", hart.getHartId(), Thread.currentThread().getName()));
+    while (!Thread.currentThread().isInterrupted()) {
+      if (hart.executeNextInstruction()) {
+        return;
+      }
+    }
+  }
+}
@@ -7,28 +7,39 @@ import kilobyte.common.hardware.RegisterFile;
 import kilobyte.common.instruction.Format;
 import kilobyte.common.instruction.Instruction;
 import kilobyte.common.instruction.Type;
-import kilobyte.common.machinecode.OperationsKt;
+import kilobyte.common.machinecode.Fields;
 import kilobyte.simulator.hardware.*;
+import kilobyte.simulator.metrics.InstructionClass;
+import kilobyte.simulator.metrics.SimulatorMetrics;
 import kilobyte.simulator.program.Program;
+import kilobyte.simulator.program.Segment;
 import lombok.Getter;
-import lombok.NoArgsConstructor;
 import lombok.Value;
 import lombok.experimental.NonFinal;
 import lombok.extern.java.Log;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
 import static kilobyte.common.instruction.Instruction.*;
-import static kilobyte.common.machinecode.OperationsKt.funct;
-import static kilobyte.common.machinecode.OperationsKt.offset;
 
 @Value
 @Log
-@NoArgsConstructor
-public class Simulator {
+public class Simulator implements AutoCloseable {
+  /*
+   * Identifies this simulator when it is one of several harts sharing a
+   * data memory, see MultiHartSimulator. A stand-alone simulator is hart 0.
+   */
+  @Getter
+  int hartId;
+
   @Getter
   ProgramCounter programCounter = new ProgramCounter();
 
@@ -39,10 +50,23 @@ public class Simulator {
 
   @Getter
   @NonFinal
-  InstructionMemory instructionMemory = InstructionMemory.init();
+  InstructionMemory instructionMemory;
 
   @Getter
-  DataMemory dataMemory = new DataMemory();
+  DataMemory dataMemory;
+
+  @Getter
+  SimulatorMetrics metrics = SimulatorMetrics.create();
+
+  List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
+  // The reservation established by the last ll instruction, if any.
+  @NonFinal
+  boolean holdingReservation = false;
+  @NonFinal
+  int reservedAddress;
+  @NonFinal
+  long reservation;
 
   @Getter
   static ImmutableSet<Instruction> supportedInstructions = ImmutableSet.of(
@@ -61,19 +85,82 @@ public class Simulator {
         SRA,
         J,
         JR,
-        NOP
+        NOP,
+        LL,
+        SC,
+        SYNC
   );
 
+  public Simulator() {
+    this(0, InstructionMemory.init(), new DataMemory());
+  }
+
+  private Simulator(int hartId, InstructionMemory instructionMemory, DataMemory dataMemory) {
+    this.hartId = hartId;
+    this.instructionMemory = instructionMemory;
+    this.dataMemory = dataMemory;
+  }
+
+  /* Unregisters the metrics of this simulator from JMX, if they were registered, it may still be run */
+  @Override
+  public void close() {
+    metrics.unregister();
+  }
+
+  /**
+   * Creates a simulator that fetches from, and loads and stores to, the
+   * supplied memories. Used to let several harts execute over the same
+   * memories.
+   */
+  static Simulator hart(int hartId, InstructionMemory instructionMemory, DataMemory dataMemory) {
+    return new Simulator(hartId, instructionMemory, dataMemory);
+  }
+
   public static Simulator executingProgram(File f) throws IOException {
     return executingProgram(Program.from(f));
   }
 
   public static Simulator executingProgram(Program p) {
-    Simulator s = new Simulator();
-    s.instructionMemory.addAll(p.getInstructions());
+    Simulator s = new Simulator(0, instructionMemoryFor(p), new DataMemory());
+    s.load(p);
     return s;
   }
 
+  /* The default instruction memory, or one that is large enough to hold all of the instructions */
+  private static InstructionMemory instructionMemoryFor(Program p) {
+    long needed = 4L * p.getInstructions().size();
+    return needed <= 1000 ? InstructionMemory.init() : InstructionMemory.init(Math.toIntExact(needed));
+  }
+
+  private void load(Program p) {
+    loadText(p, instructionMemory);
+    loadSegments(p, dataMemory);
+    programCounter.setTo(p.getEntryPoint());
+  }
+
+  /* Copies the instructions of the program, as machine code if it has any, into the instruction memory */
+  static void loadText(Program p, InstructionMemory instructionMemory) {
+    Optional<IntBuffer> words = p.getWords();
+    if (words.isPresent()) {
+      instructionMemory.addWords(p.getTextAddress(), words.get());
+      // The exit that follows machine code
+      instructionMemory.addAll(p.getInstructions().subList(words.get().remaining(), p.getInstructions().size()));
+    } else {
+      instructionMemory.addAll(p.getTextAddress(), p.getInstructions());
+    }
+  }
+
+  /* Copies the data segments of the program into the data memory */
+  static void loadSegments(Program p, DataMemory dataMemory) {
+    for (Segment segment : p.getData()) {
+      ByteBuffer contents = segment.getContents();
+      int initialised = contents.remaining();
+      dataMemory.writeBytes(segment.getAddress(), contents);
+      dataMemory.writeBytes(segment.getAddress() + initialised,
+            ByteBuffer.allocate(segment.getSize() - initialised));
+    }
+  }
+
   public static Simulator withInstructionsInMemory(String... instructions) {
     return executingProgram(Program.from(instructions));
   }
@@ -105,6 +192,7 @@ public class Simulator {
     programCounter.stepForward();
     // Instruction 31:26 - AluController
     control.updateOperationType(i.getOpcode());
+    metrics.instructionExecuted(InstructionClass.of(i));
 
     switch(i.getFormat()) {
       case I:
@@ -127,10 +215,10 @@ public class Simulator {
   }
 
   private void executeFormatJ(Instruction i) {
-    int jump = OperationsKt.target(i.getNumericRepresentation());
+    int jump = Fields.target((int) i.getNumericRepresentation());
     int currentPC = programCounter.getAddressPointer()-4;
 
-    currentPC = OperationsKt.bits(currentPC,31,28);
+    currentPC = Fields.bits(currentPC,31,28);
     jump = jump << 2;
     jump |= currentPC;
     log.info(format("Jumping from %d to %d", programCounter.getAddressPointer(), jump));
@@ -177,7 +265,7 @@ public class Simulator {
 
   private void executeFormatI(Instruction i) {
     int r1Value, r2Value;
-    int ret15to0 = offset(i);
+    int ret15to0 = Fields.immediate((int) i.getNumericRepresentation());
     int signExtend = SignExtender.extend(ret15to0);
     /* 2. Two registers, $t1 and $t2 , are read from the register file. */
       // Instruction 25:21 read register 1 (rs)
@@ -222,20 +310,54 @@ public class Simulator {
       int targetAddress = signExtend << 2;
       log.info(format("Branching relatively from: address=%d by=%d. The 16-bit immediate is %d", currentAddress, targetAddress, signExtend));
       programCounter.setRelativeToCurrentAddress(targetAddress - 4);
+      metrics.branchTaken();
+    }
+    // ll and sc are not part of the textbook datapath, they share the
+    // address computation with lw and sw but access memory on their own.
+    if (i.getOpcode() == LL.getOpcode()) {
+      loadLinked(result, r2);
+      return;
+    }
+    if (i.getOpcode() == SC.getOpcode()) {
+      storeConditional(result, r2);
+      return;
     }
+
     //MUX between Data Memory -> Registers
     if (control.getMemtoReg()) {
       r2.setValue(dataMemory.readWordFrom(result));
+      metrics.memoryRead();
     }
     // MUX ALU -> Data Memory AND if Memory
     else if (control.getMemWrite() && control.getAluSrc()) {
       log.info(format("Writing %s=%d to address=%d", r2, r2.getValue(), result));
       dataMemory.writeWordTo(result, r2.getValue());
+      metrics.memoryWrite();
     } else if (control.getAluSrc()) {
       r2.setValue(result);
     }
   }
 
+  private void loadLinked(int address, Register rt) {
+    reservation = dataMemory.loadLinked(address);
+    reservedAddress = address;
+    holdingReservation = true;
+    rt.setValue(DataMemory.wordIn(reservation));
+    metrics.memoryRead();
+  }
+
+  private void storeConditional(int address, Register rt) {
+    boolean stored = holdingReservation
+          && reservedAddress == address
+          && dataMemory.storeConditional(address, reservation, rt.getValue());
+    log.info(format("sc to address=%d by hart=%d %s", address, hartId, stored ? "succeeded" : "failed"));
+    holdingReservation = false;
+    rt.setValue(stored ? 1 : 0);
+    if (stored) {
+      metrics.memoryWrite();
+    }
+  }
+
   private void executeFormatR(Instruction i) {
     checkArgument(i.getFormat() == Format.R);
     // Instruction 25:21 read register 1 (rs)
@@ -248,11 +370,11 @@ public class Simulator {
 
     if (i.getType() == Type.SHIFT) {
       r1Value = r2Value;
-      r2Value = OperationsKt.shamt(i.getNumericRepresentation());
+      r2Value = Fields.shamt((int) i.getNumericRepresentation());
     }
 
     // Instruction 15:0 sig-extend 16 -> 32 OR Instruction 5-0->ALU control
-    int funct = funct(i);
+    int funct = Fields.funct((int) i.getNumericRepresentation());
 
     // ALU Control get ALU-Operation for arithmetic.
     boolean alu1 = control.getAluOp1();
@@ -270,7 +392,13 @@ public class Simulator {
       return;
     }
 
-    ALUOperation aluArtOp = ALUOperation.from(alu1, alu0, funct(i));
+    // Every access to the data memory is a volatile read or a CAS, hence
+    // loads and stores are already ordered and sync has nothing to do.
+    if (funct == SYNC.getFunct()) {
+      return;
+    }
+
+    ALUOperation aluArtOp = ALUOperation.from(alu1, alu0, funct);
     int result = aluArtOp.apply(r1Value, r2Value);
 
     // If ALUC-RegDst save to register
@@ -280,9 +408,37 @@ public class Simulator {
 
   }
 
+  public void addChangeListener(ChangeListener l) {
+    changeListeners.add(l);
+  }
+
+  public void removeChangeListener(ChangeListener l) {
+    changeListeners.remove(l);
+  }
+
+  /**
+   * Drains what has changed in the registers and the data memory since
+   * the last call and, unless nothing has, tells every listener about it
+   * at once. How often this is called decides how the changes are
+   * batched, e.g. once per step or once per frame of a display.
+   *
+   * The data memory may be shared with other harts, whose writes are then
+   * drained as well.
+   */
+  public Changes publishChanges() {
+    Changes c = new Changes(registerFile.drainChanges(), dataMemory.drainChanges());
+    if (!c.isEmpty()) {
+      for (ChangeListener l : changeListeners) {
+        l.changed(c);
+      }
+    }
+    return c;
+  }
+
   public void loadProgram(Program p) {
-    this.instructionMemory = InstructionMemory.init();
-    instructionMemory.addAll(p.getInstructions());
+    this.instructionMemory = instructionMemoryFor(p);
+    holdingReservation = false;
+    load(p);
   }
 
   public void setDataMemoryAtAddress(int address, Byte value) {
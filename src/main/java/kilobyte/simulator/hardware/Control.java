@@ -73,7 +73,10 @@ public class Control {
     else if (opCode == 0b101011) {
       //regDst = false;
       aluSrc = true;
-      //memtoReg = false;
+      // memtoReg is a don't care for sw and beq in the textbook, but the
+      // simulator picks what to do with the ALU result based on it, so it
+      // must not stay asserted after a lw.
+      memtoReg = false;
       regWrite = false;
       memRead = false;
       memWrite = true;
@@ -85,7 +88,7 @@ public class Control {
     else if (opCode == 0b000100) {
       //regDst = false;
       aluSrc = false;
-      //memtoReg = false;
+      memtoReg = false;
       regWrite = false;
       memRead = false;
       memWrite = false;
@@ -113,6 +116,30 @@ public class Control {
       branch    = false;
       aluOp1    = true;
       aluOp0    = false;
+    }
+    /* ll, the lw control lines. The reservation is handled by the Simulator */
+    else if (opCode == 0b110000) {
+      regDst    = false;
+      aluSrc    = true;
+      memtoReg  = true;
+      regWrite  = true;
+      memRead   = true;
+      memWrite  = false;
+      branch    = false;
+      aluOp1    = false;
+      aluOp0    = false;
+    }
+    /* sc, the sw control lines except that rt is written with the outcome */
+    else if (opCode == 0b111000) {
+      regDst    = false;
+      aluSrc    = true;
+      memtoReg  = false;
+      regWrite  = true;
+      memRead   = false;
+      memWrite  = true;
+      branch    = false;
+      aluOp1    = false;
+      aluOp0    = false;
     } else {
       log.warning("No control settings found for " + opCode);
     }
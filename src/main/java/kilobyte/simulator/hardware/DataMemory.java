@@ -1,52 +1,125 @@
 package kilobyte.simulator.hardware;
 
 import kilobyte.simulator.ui.utils.Radix;
-import lombok.NoArgsConstructor;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.Value;
-import lombok.experimental.NonFinal;
 import lombok.extern.java.Log;
 
 import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Byte-addressable, big-endian data memory.
+ *
+ * The memory is stored as one cell per aligned 32-bit word. The lower 32
+ * bits of a cell hold the word itself and the upper 32 bits hold a version
+ * that is bumped on every write to that word. The version is what allows
+ * several harts to share a single DataMemory: a load-linked remembers the
+ * entire cell and the matching store-conditional only succeeds if it can
+ * compare-and-set the cell from that exact snapshot, i.e. if nobody has
+ * written to the word in between. No locks are involved.
+ *
+ * The words that change are marked in a bitmap, one bit per word, which
+ * is drained by {@link #drainChanges()}. Whoever displays or records the
+ * memory thereby only has to look at the words that have changed.
+ */
 @Value
 @Log
-@NoArgsConstructor
 public class DataMemory implements Memory {
-  int NO_OF_BYTES = 1000;
+  int NO_OF_BYTES;
+
+  AtomicLongArray cells;
+
+  // Bit i of word i / 64 is set once the word at 4 * i has changed
+  @Getter(AccessLevel.NONE)
+  AtomicLongArray dirty;
+
+  /* 1000 bytes of data memory */
+  public DataMemory() {
+    this(1000);
+  }
+
+  public DataMemory(int numberOfBytes) {
+    checkArgument(numberOfBytes > 0 && numberOfBytes % 4 == 0,
+          "Expected a positive number of bytes, divisible by 4. Got %s", numberOfBytes);
+    NO_OF_BYTES = numberOfBytes;
+    cells = new AtomicLongArray(numberOfBytes / 4);
+    dirty = new AtomicLongArray((numberOfBytes / 4 + 63) / 64);
+  }
+
+  private static long cell(long version, int word) {
+    return (version << 32) | Integer.toUnsignedLong(word);
+  }
+
+  private static long versionOf(long cell) {
+    return cell >>> 32;
+  }
+
+  /**
+   * Returns the word held by a cell previously returned from
+   * {@link #loadLinked(int)}.
+   */
+  public static int wordIn(long linkedCell) {
+    return (int) linkedCell;
+  }
 
-  @NonFinal
-  ByteBuffer memory = ByteBuffer.allocate(NO_OF_BYTES);
+  // The 0th byte of a word is its highest byte, since we are big-endian
+  private static int shiftOf(int byteAddress) {
+    return 24 - 8 * (byteAddress & 3);
+  }
 
+  /* One entry per word */
   @Override
-  public String[] toStringArray(Radix r) {
-    String[] d = new String[250];
-    for (int i = 0; i < d.length; i++) {
-      if (r == Radix.HEX) {
-        d[i] = "0x" + Integer.toHexString(memory.get(i));
-      } else if (r == Radix.DECIMAL) {
-        d[i] = Integer.toString(memory.get(i));
-      }
-    }
+  public int getNoOfEntries() {
+    return cells.length();
+  }
 
-    return d;
+  @Override
+  public String toString(int index, Radix r) {
+    int word = wordIn(cells.get(index));
+    return r == Radix.HEX ? "0x" + Integer.toHexString(word) : Integer.toString(word);
   }
 
   @Override
   public void resetMemory() {
-    memory = ByteBuffer.allocate(NO_OF_BYTES);
+    // Clearing is a write like any other, so the versions keep increasing
+    // and any outstanding reservation is broken.
+    for (int i = 0; i < cells.length(); i++) {
+      writeCell(i, 0);
+    }
   }
 
   public void writeByteAt(int index, Byte value) {
-    memory.put(index, value);
+    int i = index >>> 2;
+    int shift = shiftOf(index);
+    long prev, next;
+    do {
+      prev = cells.get(i);
+      int word = wordIn(prev) & ~(0xff << shift) | ((value & 0xff) << shift);
+      next = cell(versionOf(prev) + 1, word);
+    } while (!cells.compareAndSet(i, prev, next));
+    changed(i, prev, next);
   }
 
   public byte readByteFrom(int byteAddress) {
-    return memory.get(byteAddress);
+    return (byte) (wordIn(cells.get(byteAddress >>> 2)) >>> shiftOf(byteAddress));
   }
 
   /* Read from the n:th byte and forward */
   public int readWordFrom(int byteAddress) {
-    int word = memory.getInt(byteAddress);
+    if ((byteAddress & 3) == 0) {
+      return wordIn(cells.get(byteAddress >>> 2));
+    }
+
+    // An unaligned word straddles two cells
+    int word = 0;
+    for (int i = 0; i < 4; i++) {
+      word = (word << 8) | (readByteFrom(byteAddress + i) & 0xff);
+    }
     return word;
   }
 
@@ -89,6 +162,106 @@ public class DataMemory implements Memory {
    * @param bitWord
    */
   public void writeWordTo(int byteAddress, int bitWord) {
-    memory.putInt(byteAddress, bitWord);
+    if ((byteAddress & 3) == 0) {
+      writeCell(byteAddress >>> 2, bitWord);
+      return;
+    }
+
+    for (int i = 0; i < 4; i++) {
+      writeByteAt(byteAddress + i, (byte) (bitWord >>> (24 - 8 * i)));
+    }
+  }
+
+  /**
+   * Copies the remaining bytes of the buffer to memory, starting at the
+   * given address. Aligned words are read in the byte order of the buffer,
+   * so that the words of a little-endian image keep their values.
+   */
+  public void writeBytes(int byteAddress, ByteBuffer bytes) {
+    ByteBuffer b = bytes.duplicate().order(bytes.order());
+    checkArgument(byteAddress >= 0 && (long) byteAddress + b.remaining() <= NO_OF_BYTES,
+          "Expected %s bytes at %s to fit the %s bytes of data memory. " +
+                "Link the program to a lower address, e.g. with -Tdata=0",
+          b.remaining(), byteAddress, NO_OF_BYTES);
+
+    int address = byteAddress;
+    while (b.hasRemaining() && (address & 3) != 0) {
+      writeByteAt(address++, b.get());
+    }
+    while (b.remaining() >= 4) {
+      writeCell(address >>> 2, b.getInt());
+      address += 4;
+    }
+    while (b.hasRemaining()) {
+      writeByteAt(address++, b.get());
+    }
+  }
+
+  private void writeCell(int i, int word) {
+    long prev, next;
+    do {
+      prev = cells.get(i);
+      next = cell(versionOf(prev) + 1, word);
+    } while (!cells.compareAndSet(i, prev, next));
+    changed(i, prev, next);
+  }
+
+  /* Marks the i:th word, if the write from prev to next changed it */
+  private void changed(int i, long prev, long next) {
+    if (wordIn(prev) == wordIn(next)) {
+      return;
+    }
+    long bit = 1L << (i & 63);
+    long marked;
+    do {
+      marked = dirty.get(i >>> 6);
+      // Once a word has been marked, writing to it again costs a read
+    } while ((marked & bit) == 0 && !dirty.compareAndSet(i >>> 6, marked, marked | bit));
+  }
+
+  /**
+   * Returns the indices of the words, i.e. the byte addresses divided by
+   * four, that have changed since the last call, and starts over. A word
+   * that is written to with the value that it already holds has not
+   * changed.
+   */
+  public BitSet drainChanges() {
+    long[] changes = new long[dirty.length()];
+    for (int i = 0; i < changes.length; i++) {
+      if (dirty.get(i) != 0) {
+        changes[i] = dirty.getAndSet(i, 0);
+      }
+    }
+    return BitSet.valueOf(changes);
+  }
+
+  /**
+   * Reads the word at the given (word-aligned) address and returns it
+   * together with its current version. The returned value is the
+   * reservation to hand back to {@link #storeConditional(int, long, int)},
+   * use {@link #wordIn(long)} to get at the word itself.
+   */
+  public long loadLinked(int byteAddress) {
+    checkArgument((byteAddress & 3) == 0,
+          "Expected a word-aligned address. Got %s", byteAddress);
+    return cells.get(byteAddress >>> 2);
+  }
+
+  /**
+   * Writes {@code word} to the given address if, and only if, the word has
+   * not been written to since {@code linkedCell} was obtained through
+   * {@link #loadLinked(int)}.
+   *
+   * @return true if the store took place.
+   */
+  public boolean storeConditional(int byteAddress, long linkedCell, int word) {
+    checkArgument((byteAddress & 3) == 0,
+          "Expected a word-aligned address. Got %s", byteAddress);
+    long next = cell(versionOf(linkedCell) + 1, word);
+    if (!cells.compareAndSet(byteAddress >>> 2, linkedCell, next)) {
+      return false;
+    }
+    changed(byteAddress >>> 2, linkedCell, next);
+    return true;
   }
 }
@@ -1,6 +1,5 @@
 package kilobyte.simulator.hardware;
 
-import kilobyte.common.instruction.Format;
 import kilobyte.common.instruction.Instruction;
 import kilobyte.simulator.ui.utils.Radix;
 import lombok.AccessLevel;
@@ -9,6 +8,8 @@ import lombok.Value;
 import lombok.experimental.NonFinal;
 import lombok.extern.java.Log;
 
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.List;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -22,56 +23,60 @@ public class InstructionMemory implements Memory {
   // Hence, we need to be able to store _at least_ 250 instructions.
   @Getter(AccessLevel.PRIVATE)
   int SIZE_IN_TOTAL_NUMBER_OF_INSTRUCTIONS;
+  int[] words;
+  // The words decoded, a word that has not been read yet is null
   Instruction[] instructions;
   @NonFinal
   int index = 0;
 
   private InstructionMemory(int numberOfBytes) {
     this.SIZE_IN_TOTAL_NUMBER_OF_INSTRUCTIONS = numberOfBytes / 4;
+    words = new int[SIZE_IN_TOTAL_NUMBER_OF_INSTRUCTIONS];
     instructions = new Instruction[SIZE_IN_TOTAL_NUMBER_OF_INSTRUCTIONS];
     resetMemory();
   }
 
-  public String[] toStringArray(Radix r) {
+  /* One entry per instruction */
+  @Override
+  public int getNoOfEntries() {
+    return SIZE_IN_TOTAL_NUMBER_OF_INSTRUCTIONS;
+  }
+
+  @Override
+  public String toString(int index, Radix r) {
     checkArgument(r == Radix.HEX || r == Radix.DECIMAL,
           "Expected the supplied radix to be either HEX or DECIMAL");
-    int rad = -1;
-    if (r == Radix.HEX) rad = 16;
-    if (r == Radix.DECIMAL) rad = 10;
-
-    String[] arr = new String[instructions.length];
-    for (int i = 0; i < arr.length; i++) {
-      Instruction inst = instructions[i];
-      long numeric = inst.getNumericRepresentation();
-      Format format = inst.getFormat();
-
-      String asMachineCode;
-      String decomposed;
-
-      if (r == Radix.HEX) {
-        decomposed = inst.asDecomposedHexadecimalString();
-        asMachineCode = "0x" + Long.toString(numeric, rad);
-      } else {
-        decomposed = inst.asDecomposedDecimalString();
-        asMachineCode = Long.toString(numeric);
-      }
-
-      arr[i] = String.format("%s: %s %s %s",
-            inst.getIname(),
-            asMachineCode,
-            format,
-            decomposed);
+    if (instructions[index] == null && !Instruction.isDecodable(words[index])) {
+      // Shown rather than rejected, it is only an error once it is run
+      return r == Radix.HEX
+            ? Instruction.asWordDirective(words[index])
+            : ".word " + Integer.toUnsignedString(words[index]);
+    }
+    Instruction inst = decoded(index);
+    long numeric = inst.getNumericRepresentation();
+
+    String asMachineCode;
+    String decomposed;
+    if (r == Radix.HEX) {
+      decomposed = inst.asDecomposedHexadecimalString();
+      asMachineCode = "0x" + Long.toString(numeric, 16);
+    } else {
+      decomposed = inst.asDecomposedDecimalString();
+      asMachineCode = Long.toString(numeric);
     }
 
-    return arr;
+    return String.format("%s: %s %s %s",
+          inst.getIname(),
+          asMachineCode,
+          inst.getFormat(),
+          decomposed);
   }
 
   @Override
   public void resetMemory() {
-    // The memory should be set to zero initially
-    for (int i = 0; i < SIZE_IN_TOTAL_NUMBER_OF_INSTRUCTIONS; i++) {
-      instructions[i] = Instruction.NOP.deepCopy();
-    }
+    // The memory should be set to zero initially, which decodes to nop
+    Arrays.fill(words, 0);
+    Arrays.fill(instructions, null);
     index = 0;
   }
 
@@ -98,7 +103,7 @@ public class InstructionMemory implements Memory {
           "Expected the given address to be divisible by 4. Got " + address);
     checkArgument(address / 4 < SIZE_IN_TOTAL_NUMBER_OF_INSTRUCTIONS, String.format("Address out of range. Expected %d" +
           " to be inside the range [0, %d)", address, SIZE_IN_TOTAL_NUMBER_OF_INSTRUCTIONS));
-    return instructions[address / 4];
+    return decoded(address / 4);
   }
 
   public Instruction read(ProgramCounter programCounter) {
@@ -107,7 +112,19 @@ public class InstructionMemory implements Memory {
   }
 
   public Instruction getInstructionAt(int addressInNumberOfBytes) {
-    return instructions[addressInNumberOfBytes /4];
+    return decoded(addressInNumberOfBytes / 4);
+  }
+
+  private Instruction decoded(int index) {
+    Instruction i = instructions[index];
+    if (i == null) {
+      // Two harts decoding the same word get equal instructions
+      i = words[index] == 0
+            ? Instruction.NOP.deepCopy()
+            : Instruction.fromWord(words[index], 4 * index);
+      instructions[index] = i;
+    }
+    return i;
   }
 
   /* Add a single instruction to memory */
@@ -116,10 +133,41 @@ public class InstructionMemory implements Memory {
     if (index >= SIZE_IN_TOTAL_NUMBER_OF_INSTRUCTIONS) {
       throw new IllegalStateException("Ran out of instruction memory");
     }
+    words[index] = (int) i.getNumericRepresentation();
     instructions[index++] = i;
   }
 
   public void addAll(List<Instruction> instructions) {
     instructions.forEach(this::add);
   }
+
+  /* Places the instructions in memory starting at the given address */
+  public void addAll(int addressInNumberOfBytes, List<Instruction> instructions) {
+    checkFits(addressInNumberOfBytes, instructions.size());
+    index = addressInNumberOfBytes / 4;
+    addAll(instructions);
+  }
+
+  /**
+   * Copies the machine code into memory starting at the given address.
+   * The words are only decoded once they are read.
+   */
+  public void addWords(int addressInNumberOfBytes, IntBuffer words) {
+    int n = words.remaining();
+    checkFits(addressInNumberOfBytes, n);
+    int at = addressInNumberOfBytes / 4;
+    words.duplicate().get(this.words, at, n);
+    Arrays.fill(instructions, at, at + n, null);
+    index = at + n;
+  }
+
+  private void checkFits(int addressInNumberOfBytes, int noOfInstructions) {
+    checkArgument(addressInNumberOfBytes % 4 == 0,
+          "Expected the given address to be divisible by 4. Got " + addressInNumberOfBytes);
+    checkArgument(addressInNumberOfBytes >= 0
+                && addressInNumberOfBytes / 4 + noOfInstructions <= SIZE_IN_TOTAL_NUMBER_OF_INSTRUCTIONS,
+          String.format("Expected %d instructions at %d to fit the %d bytes of instruction memory. " +
+                      "Link the program to a lower address, e.g. with -Ttext=0",
+                noOfInstructions, addressInNumberOfBytes, 4 * SIZE_IN_TOTAL_NUMBER_OF_INSTRUCTIONS));
+  }
 }
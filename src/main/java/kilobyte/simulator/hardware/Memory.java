@@ -11,7 +11,22 @@ public interface Memory {
     return toStringArray(Radix.DECIMAL);
   }
 
-  String[] toStringArray(Radix r);
+  /**
+   * Formats every entry of the memory. Displays of large memories should
+   * format the entries that they show, one at a time, with
+   * {@link #toString(int, Radix)}.
+   */
+  default String[] toStringArray(Radix r) {
+    String[] entries = new String[getNoOfEntries()];
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = toString(i, r);
+    }
+    return entries;
+  }
+
+  int getNoOfEntries();
+
+  String toString(int index, Radix r);
 
   void resetMemory();
 }
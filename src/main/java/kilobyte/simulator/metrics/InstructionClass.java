@@ -0,0 +1,60 @@
+package kilobyte.simulator.metrics;
+
+import kilobyte.common.instruction.Format;
+import kilobyte.common.instruction.Instruction;
+import kilobyte.common.instruction.Type;
+
+import static kilobyte.common.machinecode.Fields.funct;
+
+/**
+ * A coarse classification of executed instructions, used to report the
+ * instruction mix of a running simulation.
+ */
+public enum InstructionClass {
+  ALU,
+  SHIFT,
+  IMMEDIATE,
+  LOAD,
+  STORE,
+  BRANCH,
+  JUMP,
+  OTHER;
+
+  // Opcodes 0x20 through 0x3f are the loads and stores. Bit 3 of the opcode
+  // tells them apart, i.e. lw=0x23 and sw=0x2b, ll=0x30 and sc=0x38.
+  private static final int FIRST_MEMORY_OPCODE = 0b100000;
+  private static final int STORE_BIT = 0b001000;
+
+  public static InstructionClass of(Instruction i) {
+    Format format = i.getFormat();
+    if (format == Format.J) {
+      return JUMP;
+    }
+    if (format == Format.EXIT || i.getNumericRepresentation() == 0) {
+      // exit and nop
+      return OTHER;
+    }
+
+    if (format == Format.R) {
+      if (i.getType() == Type.SHIFT) {
+        return SHIFT;
+      }
+      int funct = funct((int) i.getNumericRepresentation());
+      if (funct == Instruction.JR.getFunct()) {
+        return JUMP;
+      }
+      if (funct == Instruction.SYNC.getFunct()) {
+        return OTHER;
+      }
+      return ALU;
+    }
+
+    if (i.getType() == Type.B) {
+      return BRANCH;
+    }
+    if (i.getOpcode() >= FIRST_MEMORY_OPCODE) {
+      return (i.getOpcode() & STORE_BIT) == 0 ? LOAD : STORE;
+    }
+    return IMMEDIATE;
+  }
+}
@@ -0,0 +1,192 @@
+package kilobyte.simulator.metrics;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+
+/**
+ * Counts what a simulator does. Every simulator has metrics of its own and
+ * everything that is counted is also counted by the process-wide
+ * {@link #total()}, which is registered with the platform MBean server as
+ * {@code kilobyte:type=Simulator,name=total} as soon as this class is
+ * loaded.
+ *
+ * The metrics of an individual simulator only show up in JMX once
+ * {@link #register(int)} has been called, which is left to the entry points
+ * that want them there. The MBean server holds on to registered metrics, so
+ * they have to be unregistered when the simulator is discarded, which
+ * {@link kilobyte.simulator.Simulator#close()} does.
+ *
+ * The counters are LongAdders since the total is updated by every
+ * simulator, possibly from many threads at once.
+ */
+@Log
+public final class SimulatorMetrics implements SimulatorMetricsMXBean {
+  private static final SimulatorMetrics TOTAL = new SimulatorMetrics(null);
+  private static final AtomicInteger ids = new AtomicInteger();
+
+  static {
+    TOTAL.register("kilobyte:type=Simulator,name=total");
+  }
+
+  // Null for the total itself
+  private final SimulatorMetrics parent;
+
+  private final LongAdder instructionsExecuted = new LongAdder();
+  private final LongAdder[] instructionClassCounts = new LongAdder[InstructionClass.values().length];
+  private final LongAdder memoryReads = new LongAdder();
+  private final LongAdder memoryWrites = new LongAdder();
+  private final LongAdder branchesTaken = new LongAdder();
+
+  private volatile long startedAt = System.nanoTime();
+
+  @Getter
+  private ObjectName objectName;
+
+  private SimulatorMetrics(SimulatorMetrics parent) {
+    this.parent = parent;
+    for (int i = 0; i < instructionClassCounts.length; i++) {
+      instructionClassCounts[i] = new LongAdder();
+    }
+  }
+
+  public static SimulatorMetrics create() {
+    return new SimulatorMetrics(TOTAL);
+  }
+
+  /**
+   * The metrics summed over every simulator in this JVM.
+   */
+  public static SimulatorMetrics total() {
+    return TOTAL;
+  }
+
+  public void instructionExecuted(InstructionClass c) {
+    instructionsExecuted.increment();
+    instructionClassCounts[c.ordinal()].increment();
+    if (parent != null) {
+      parent.instructionExecuted(c);
+    }
+  }
+
+  public void memoryRead() {
+    memoryReads.increment();
+    if (parent != null) {
+      parent.memoryRead();
+    }
+  }
+
+  public void memoryWrite() {
+    memoryWrites.increment();
+    if (parent != null) {
+      parent.memoryWrite();
+    }
+  }
+
+  public void branchTaken() {
+    branchesTaken.increment();
+    if (parent != null) {
+      parent.branchTaken();
+    }
+  }
+
+  @Override
+  public long getInstructionsExecuted() {
+    return instructionsExecuted.sum();
+  }
+
+  @Override
+  public double getInstructionsPerSecond() {
+    long elapsed = System.nanoTime() - startedAt;
+    if (elapsed <= 0) {
+      return 0;
+    }
+    return instructionsExecuted.sum() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+  }
+
+  @Override
+  public Map<String, Long> getInstructionClassMix() {
+    Map<String, Long> mix = new LinkedHashMap<>();
+    for (InstructionClass c : InstructionClass.values()) {
+      mix.put(c.name(), instructionClassCounts[c.ordinal()].sum());
+    }
+    return mix;
+  }
+
+  public long getInstructionCount(InstructionClass c) {
+    return instructionClassCounts[c.ordinal()].sum();
+  }
+
+  @Override
+  public long getMemoryReads() {
+    return memoryReads.sum();
+  }
+
+  @Override
+  public long getMemoryWrites() {
+    return memoryWrites.sum();
+  }
+
+  @Override
+  public long getBranchesTaken() {
+    return branchesTaken.sum();
+  }
+
+  /* Only resets these metrics, what has been added to the total stays there */
+  @Override
+  public void reset() {
+    instructionsExecuted.reset();
+    for (LongAdder count : instructionClassCounts) {
+      count.reset();
+    }
+    memoryReads.reset();
+    memoryWrites.reset();
+    branchesTaken.reset();
+    startedAt = System.nanoTime();
+  }
+
+  /**
+   * Makes these metrics visible through JMX as
+   * {@code kilobyte:type=Simulator,hart=<hartId>,id=<n>} where n is unique
+   * within the JVM. Does nothing if these metrics are already registered.
+   */
+  public synchronized void register(int hartId) {
+    if (objectName != null) {
+      return;
+    }
+    register(format("kilobyte:type=Simulator,hart=%d,id=%d", hartId, ids.incrementAndGet()));
+  }
+
+  private void register(String name) {
+    try {
+      ObjectName n = new ObjectName(name);
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, n);
+      objectName = n;
+    } catch (JMException e) {
+      // Failing to publish metrics must never stop a simulation
+      log.warning(format("Could not register the MBean \"%s\". Cause: %s", name, e.getMessage()));
+    }
+  }
+
+  public synchronized void unregister() {
+    if (objectName == null) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    } catch (JMException e) {
+      log.warning(format("Could not unregister the MBean \"%s\". Cause: %s", objectName, e.getMessage()));
+    }
+    objectName = null;
+  }
+}
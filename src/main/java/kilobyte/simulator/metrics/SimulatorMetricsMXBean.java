@@ -0,0 +1,25 @@
+package kilobyte.simulator.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link SimulatorMetrics}, i.e. what is
+ * visible through JMX (jconsole, VisualVM, ...).
+ */
+public interface SimulatorMetricsMXBean {
+  long getInstructionsExecuted();
+
+  /* Averaged over the time since the metrics were created or last reset */
+  double getInstructionsPerSecond();
+
+  /* Number of executed instructions keyed by InstructionClass */
+  Map<String, Long> getInstructionClassMix();
+
+  long getMemoryReads();
+
+  long getMemoryWrites();
+
+  long getBranchesTaken();
+
+  void reset();
+}
@@ -0,0 +1,768 @@
+package kilobyte.simulator.program;
+
+import kilobyte.common.instruction.Instruction;
+import kilobyte.common.instruction.Type;
+import kilobyte.decompiler.MachineCodeDecoder;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Assembles MIPS assembly with labels, directives and pseudo-instructions
+ * into an {@link Assembly}, e.g.
+ *
+ * <pre>
+ *         .data
+ * n:      .word 10
+ *         .text
+ * main:   lw $t0, n
+ *         li $t1, 0
+ * loop:   beq $t0, $zero, done   # Count down to zero
+ *         addi $t0, $t0, -1
+ *         b loop
+ * done:   exit
+ * </pre>
+ *
+ * The source is read once, line by line. This first pass puts the labels
+ * into a hash table, lays out the data and works out where each
+ * instruction goes, pseudo-instructions taking up one or two words. Once
+ * every label is known the instructions are independent of each other,
+ * so the second pass encodes them in chunks on a fork-join pool, each
+ * into its own slots of the text. Hence assembly takes time linear in
+ * the size of the source, and the result does not depend on how the
+ * text was split up.
+ *
+ * Errors do not stop either pass. They are collected and the one on the
+ * first offending line is thrown, with the following ones, in line
+ * order, attached as suppressed exceptions.
+ *
+ * A source can also be assembled on its own into an {@link ObjectFile},
+ * for the {@link Linker} to combine with others. Then labels that are not
+ * defined are imports rather than errors, .globl exports labels and the
+ * addresses of labels are left to the linker, as relocations. For la,
+ * that means lui and ori, as the address is not known to fit in 16 bits.
+ *
+ * Labels are resolved the way the simulator executes,
+ * <ul>
+ *   <li>branches are relative to the branch itself, in instructions,</li>
+ *   <li>j and jal take the address of the label,</li>
+ *   <li>loads and stores, la and .word take the address of the label as
+ *   is. The data starts at address 0 of the data memory, which is
+ *   separate from the instruction memory.</li>
+ * </ul>
+ *
+ * The supported directives are .text, .data, .word, .half, .byte,
+ * .space, .align, .ascii, .asciiz and .globl, which only matters to
+ * objects. The supported pseudo-instructions are
+ * <ul>
+ *   <li>move rd, rs: add rd, rs, $zero</li>
+ *   <li>li rt, imm: addi or ori if imm fits in 16 bits, lui and ori
+ *   otherwise</li>
+ *   <li>la rt, label: ori rt, $zero, label. Data addresses are small
+ *   enough to always fit in 16 bits.</li>
+ *   <li>b label: beq $zero, $zero, label</li>
+ *   <li>beqz rs, label and bnez rs, label: beq or bne against $zero</li>
+ * </ul>
+ *
+ * Comments start with #.
+ */
+public final class Assembler {
+  static final int STATEMENTS_PER_CHUNK = 4096;
+
+  // The most errors that are attached to the one that is thrown
+  static final int MAX_SUPPRESSED_ERRORS = 100;
+
+  private enum Section {TEXT, DATA}
+
+  /* A word of data that is the address of a label, patched after the first pass */
+  private static final class Reference {
+    final String label;
+    // The offset into the data
+    final int at;
+    final int lineNumber;
+    final String line;
+
+    Reference(String label, int at, int lineNumber, String line) {
+      this.label = label;
+      this.at = at;
+      this.lineNumber = lineNumber;
+      this.line = line;
+    }
+  }
+
+  private static final class Label {
+    final String name;
+    final Section section;
+    final int address;
+
+    Label(String name, Section section, int address) {
+      this.name = name;
+      this.section = section;
+      this.address = address;
+    }
+  }
+
+  /* What the second pass makes of a chunk of statements, besides instructions */
+  private static final class Chunk {
+    List<AssemblyException> errors = Collections.emptyList();
+    List<Relocation> relocations = Collections.emptyList();
+  }
+
+  /* An instruction, or a pseudo-instruction, left for the second pass */
+  private static final class Statement {
+    final int lineNumber;
+    final String line;
+    // Without labels and comments
+    final String s;
+    // The index of its first instruction in the text
+    final int at;
+
+    Statement(int lineNumber, String line, String s, int at) {
+      this.lineNumber = lineNumber;
+      this.line = line;
+      this.s = s;
+      this.at = at;
+    }
+  }
+
+  private final Map<String, Label> labels = new HashMap<>();
+  // In order of definition
+  private final List<Label> definedLabels = new ArrayList<>();
+
+  private final List<Statement> statements = new ArrayList<>();
+  private int textSize = 0;
+
+  private byte[] data = new byte[256];
+  private int dataSize = 0;
+  private final List<Reference> references = new ArrayList<>();
+
+  private Section section = Section.TEXT;
+  private int lineNumber = 0;
+
+  private final List<AssemblyException> errors = new ArrayList<>();
+
+  // Whether the addresses of labels are left to the linker
+  private final boolean relocatable;
+  private final Set<String> globals = new HashSet<>();
+  private final List<Relocation> relocations = new ArrayList<>();
+
+  private Assembler(boolean relocatable) {
+    this.relocatable = relocatable;
+  }
+
+  public static Assembly assemble(File f) throws IOException {
+    try (Reader r = new FileReader(f)) {
+      return assemble(r);
+    }
+  }
+
+  public static Assembly assemble(String... lines) {
+    try {
+      return assemble(new StringReader(String.join("\n", lines)));
+    } catch (IOException e) {
+      // Never thrown by a StringReader
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /* Encodes the instructions on the common pool */
+  public static Assembly assemble(Reader r) throws IOException {
+    return assemble(r, ForkJoinPool.commonPool());
+  }
+
+  public static Assembly assemble(Reader r, ForkJoinPool pool) throws IOException {
+    Assembler a = new Assembler(false);
+    Instruction[] text = a.assemble(new BufferedReader(r), pool);
+    return a.finish(text);
+  }
+
+  public static ObjectFile assembleObject(File f) throws IOException {
+    try (Reader r = new FileReader(f)) {
+      return assembleObject(f.getPath(), r, ForkJoinPool.commonPool());
+    }
+  }
+
+  public static ObjectFile assembleObject(String name, String... lines) {
+    try {
+      return assembleObject(name, new StringReader(String.join("\n", lines)), ForkJoinPool.commonPool());
+    } catch (IOException e) {
+      // Never thrown by a StringReader
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /* Assembles the source on its own, the name is what the object is called in messages */
+  public static ObjectFile assembleObject(String name, Reader r, ForkJoinPool pool) throws IOException {
+    Assembler a = new Assembler(true);
+    Instruction[] text = a.assemble(new BufferedReader(r), pool);
+    return a.finishObject(name, text);
+  }
+
+  private Instruction[] assemble(BufferedReader br, ForkJoinPool pool) throws IOException {
+    for (String line = br.readLine(); line != null; line = br.readLine()) {
+      lineNumber++;
+      line(line);
+    }
+    patchData();
+    Instruction[] text = encode(pool);
+    throwIfAnyErrors();
+    return text;
+  }
+
+  private void throwIfAnyErrors() {
+    if (errors.isEmpty()) {
+      return;
+    }
+    // Stable, the errors of a line stay in the order they were found in
+    errors.sort(Comparator.comparingInt(AssemblyException::getLineNumber));
+    AssemblyException first = errors.get(0);
+    for (int i = 1; i < errors.size() && i <= MAX_SUPPRESSED_ERRORS; i++) {
+      first.addSuppressed(errors.get(i));
+    }
+    throw first;
+  }
+
+  /*
+   * The second pass. Chunks of statements are encoded on the pool, at
+   * most two chunks per thread at a time, and their errors are gathered
+   * in the order of the chunks. Sources of a single chunk are encoded on
+   * the calling thread.
+   */
+  private Instruction[] encode(ForkJoinPool pool) {
+    // The relocations of the text go before those of the data
+    List<Relocation> dataRelocations = new ArrayList<>(relocations);
+    relocations.clear();
+
+    Instruction[] text = new Instruction[textSize];
+    if (statements.size() <= STATEMENTS_PER_CHUNK) {
+      gather(encode(text, 0, statements.size()));
+    } else {
+      int maxChunksInFlight = 2 * pool.getParallelism();
+      ArrayDeque<ForkJoinTask<Chunk>> inFlight = new ArrayDeque<>();
+      for (int from = 0; from < statements.size(); from += STATEMENTS_PER_CHUNK) {
+        if (inFlight.size() == maxChunksInFlight) {
+          gather(inFlight.removeFirst().join());
+        }
+        int start = from;
+        int end = Math.min(from + STATEMENTS_PER_CHUNK, statements.size());
+        inFlight.addLast(pool.submit(() -> encode(text, start, end)));
+      }
+      while (!inFlight.isEmpty()) {
+        gather(inFlight.removeFirst().join());
+      }
+    }
+    relocations.addAll(dataRelocations);
+    return text;
+  }
+
+  private void gather(Chunk chunk) {
+    errors.addAll(chunk.errors);
+    relocations.addAll(chunk.relocations);
+  }
+
+  /* Each statement is written to slots of the text of its own */
+  private Chunk encode(Instruction[] text, int from, int to) {
+    Chunk chunk = new Chunk();
+    for (int i = from; i < to; i++) {
+      Statement st = statements.get(i);
+      try {
+        instruction(st, text, chunk);
+      } catch (AssemblyException e) {
+        chunk.errors = add(chunk.errors, e);
+      } catch (Exception e) {
+        // Instruction.from throws a checked NoSuchInstructionException
+        chunk.errors = add(chunk.errors, new AssemblyException(st.lineNumber, st.line, e.getMessage()));
+      }
+    }
+    return chunk;
+  }
+
+  private static <T> List<T> add(List<T> l, T t) {
+    List<T> added = l.isEmpty() ? new ArrayList<>() : l;
+    added.add(t);
+    return added;
+  }
+
+  private Assembly finish(Instruction[] text) {
+    List<Symbol> textSymbols = new ArrayList<>();
+    List<Symbol> dataSymbols = new ArrayList<>();
+    for (Label l : definedLabels) {
+      (l.section == Section.TEXT ? textSymbols : dataSymbols).add(new Symbol(l.name, l.address, 0));
+    }
+    Label main = labels.get("main");
+    int entryPoint = main != null && main.section == Section.TEXT ? main.address : 0;
+    return new Assembly(Arrays.asList(text), Arrays.copyOf(data, dataSize), entryPoint, textSymbols, dataSymbols);
+  }
+
+  private ObjectFile finishObject(String name, Instruction[] text) {
+    List<Definition> definitions = new ArrayList<>(definedLabels.size());
+    for (Label l : definedLabels) {
+      definitions.add(new Definition(l.name, l.section == Section.TEXT, l.address, globals.contains(l.name)));
+    }
+    return new ObjectFile(name, Arrays.asList(text), Arrays.copyOf(data, dataSize), definitions, relocations);
+  }
+
+  private void line(String line) {
+    String s = stripComment(line).trim();
+
+    // Any number of labels may precede the statement
+    List<String> names = null;
+    int colon;
+    while ((colon = labelEnd(s)) > 0) {
+      if (names == null) {
+        names = new ArrayList<>(1);
+      }
+      names.add(s.substring(0, colon));
+      s = s.substring(colon + 1).trim();
+    }
+    if (names != null) {
+      // A label of a word or a half labels it where it ends up once aligned
+      if (section == Section.DATA && s.startsWith(".word")) {
+        align(4);
+      } else if (section == Section.DATA && s.startsWith(".half")) {
+        align(2);
+      }
+      for (String name : names) {
+        define(name, line);
+      }
+    }
+    if (s.isEmpty()) {
+      return;
+    }
+
+    try {
+      if (s.charAt(0) == '.') {
+        directive(s, line);
+      } else if (section == Section.TEXT) {
+        statements.add(new Statement(lineNumber, line, s, textSize));
+        textSize += size(s);
+      } else {
+        throw new AssemblyException(lineNumber, line, "Expected a directive in the .data section");
+      }
+    } catch (AssemblyException e) {
+      errors.add(e);
+    } catch (Exception e) {
+      errors.add(new AssemblyException(lineNumber, line, e.getMessage()));
+    }
+  }
+
+  private static String stripComment(String line) {
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"' && (i == 0 || line.charAt(i - 1) != '\\')) {
+        quoted = !quoted;
+      } else if (c == '#' && !quoted) {
+        return line.substring(0, i);
+      }
+    }
+    return line;
+  }
+
+  private static boolean isLabelStart(char c) {
+    return Character.isLetter(c) || c == '_' || c == '.';
+  }
+
+  private static boolean isLabelPart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '.';
+  }
+
+  // The index of the colon that ends a label at the start of s, if any
+  private static int labelEnd(String s) {
+    if (s.isEmpty() || !isLabelStart(s.charAt(0))) {
+      return -1;
+    }
+    int i = 1;
+    while (i < s.length() && isLabelPart(s.charAt(i))) {
+      i++;
+    }
+    return i < s.length() && s.charAt(i) == ':' ? i : -1;
+  }
+
+  private void define(String name, String line) {
+    if (labels.containsKey(name)) {
+      errors.add(new AssemblyException(lineNumber, line,
+            String.format("The label \"%s\" is already defined", name)));
+      return;
+    }
+    Label l = new Label(name, section, section == Section.TEXT ? 4 * textSize : dataSize);
+    labels.put(name, l);
+    definedLabels.add(l);
+  }
+
+  /*
+   * Fills in the words of data that are addresses, now that every label
+   * is known, or leaves them to the linker.
+   */
+  private void patchData() {
+    for (Reference r : references) {
+      Label l = labels.get(r.label);
+      if (relocatable) {
+        relocations.add(new Relocation(Relocation.Kind.WORD, r.at, r.label));
+      } else if (l == null) {
+        errors.add(new AssemblyException(r.lineNumber, r.line, String.format("Undefined label \"%s\"", r.label)));
+      } else {
+        putWord(r.at, l.address);
+      }
+    }
+  }
+
+  /*
+   * Puts the address of the label into the instruction, which has a zero
+   * in its place, the same way as the simulator will read it back. When
+   * assembling an object, only branches to labels of its own are resolved,
+   * the rest are relocated by the linker.
+   */
+  private Instruction resolve(Instruction i, int at, String name, Relocation.Kind kind, Statement st, Chunk chunk) {
+    Label l = labels.get(name);
+    if (l == null && !relocatable) {
+      throw new AssemblyException(st.lineNumber, st.line, String.format("Undefined label \"%s\"", name));
+    }
+    if (l != null && kind.isJump() && l.section != Section.TEXT) {
+      throw new AssemblyException(st.lineNumber, st.line,
+            String.format("Expected \"%s\" to label an instruction, not data", l.name));
+    }
+    if (relocatable && (l == null || kind != Relocation.Kind.BRANCH)) {
+      chunk.relocations = add(chunk.relocations, new Relocation(kind, 4 * at, name));
+      return i;
+    }
+
+    try {
+      int word = kind.apply((int) i.getNumericRepresentation(), 4 * at, l.address, l.name);
+      return i.withNumericRepresentation(Integer.toUnsignedLong(word));
+    } catch (IllegalArgumentException e) {
+      throw new AssemblyException(st.lineNumber, st.line, e.getMessage());
+    }
+  }
+
+  /* Splits the operands of an instruction or directive at its commas */
+  private static String[] operands(String s, int from) {
+    List<String> operands = new ArrayList<>(3);
+    int start = from;
+    for (int i = from; i <= s.length(); i++) {
+      if (i == s.length() || s.charAt(i) == ',') {
+        String operand = s.substring(start, i).trim();
+        if (!operand.isEmpty() || i < s.length()) {
+          operands.add(operand);
+        }
+        start = i + 1;
+      }
+    }
+    return operands.toArray(new String[operands.size()]);
+  }
+
+  private static int nameEnd(String s) {
+    int i = 0;
+    while (i < s.length() && !Character.isWhitespace(s.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static boolean isLabelReference(String operand) {
+    return !operand.isEmpty() && isLabelStart(operand.charAt(0));
+  }
+
+  /* The number of instructions that the statement assembles into */
+  private int size(String s) {
+    int end = nameEnd(s);
+    String iname = s.substring(0, end);
+    if (relocatable && iname.equalsIgnoreCase("la")) {
+      String[] operands = operands(s, end);
+      return operands.length == 2 && isLabelReference(operands[1]) ? 2 : 1;
+    }
+    if (!iname.equalsIgnoreCase("li")) {
+      return 1;
+    }
+    String[] operands = operands(s, end);
+    try {
+      // An immediate that is not a number is reported by the second pass
+      return operands.length == 2 && !fitsInOneInstruction(MachineCodeDecoder.scan(operands[1], 0, operands[1].length()))
+            ? 2 : 1;
+    } catch (IllegalArgumentException e) {
+      return 1;
+    }
+  }
+
+  private static boolean fitsInOneInstruction(int immediate) {
+    return immediate >= Short.MIN_VALUE && immediate <= 0xffff;
+  }
+
+  /* The second pass, assembles a statement into its slots of the text */
+  private void instruction(Statement st, Instruction[] text, Chunk chunk) throws Exception {
+    String s = st.s;
+    int end = nameEnd(s);
+    String iname = s.substring(0, end).toLowerCase();
+    String[] operands = operands(s, end);
+
+    switch (iname) {
+      case "move":
+        expectOperands(operands, 2, st);
+        emit(st, text, chunk, st.at, "add", operands[0], operands[1], "$zero");
+        return;
+      case "li":
+        expectOperands(operands, 2, st);
+        loadImmediate(st, text, chunk, operands[0], operands[1]);
+        return;
+      case "la":
+        expectOperands(operands, 2, st);
+        if (relocatable && isLabelReference(operands[1])) {
+          emit(st, text, chunk, st.at, "lui", operands[0], "0");
+          text[st.at + 1] = Instruction.from(String.format("ori %s, %s, 0", operands[0], operands[0]));
+          chunk.relocations = add(chunk.relocations, new Relocation(Relocation.Kind.HI_16, 4 * st.at, operands[1]));
+          chunk.relocations = add(chunk.relocations, new Relocation(Relocation.Kind.LO_16, 4 * st.at + 4, operands[1]));
+        } else {
+          emit(st, text, chunk, st.at, "ori", operands[0], "$zero", operands[1]);
+        }
+        return;
+      case "b":
+        expectOperands(operands, 1, st);
+        emit(st, text, chunk, st.at, "beq", "$zero", "$zero", operands[0]);
+        return;
+      case "beqz":
+        expectOperands(operands, 2, st);
+        emit(st, text, chunk, st.at, "beq", operands[0], "$zero", operands[1]);
+        return;
+      case "bnez":
+        expectOperands(operands, 2, st);
+        emit(st, text, chunk, st.at, "bne", operands[0], "$zero", operands[1]);
+        return;
+      default:
+        emit(st, text, chunk, st.at, iname, operands);
+    }
+  }
+
+  private static void expectOperands(String[] operands, int n, Statement st) {
+    if (operands.length != n) {
+      throw new AssemblyException(st.lineNumber, st.line,
+            String.format("Expected %d operand(s). Got %d", n, operands.length));
+    }
+  }
+
+  private void loadImmediate(Statement st, Instruction[] text, Chunk chunk, String rt, String immediate)
+        throws Exception {
+    int value = MachineCodeDecoder.scan(immediate, 0, immediate.length());
+    if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+      emit(st, text, chunk, st.at, "addi", rt, "$zero", Integer.toString(value));
+    } else if (value >= 0 && value <= 0xffff) {
+      emit(st, text, chunk, st.at, "ori", rt, "$zero", Integer.toString(value));
+    } else {
+      emit(st, text, chunk, st.at, "lui", rt, Integer.toString(value >>> 16));
+      emit(st, text, chunk, st.at + 1, "ori", rt, rt, Integer.toString(value & 0xffff));
+    }
+  }
+
+  /*
+   * Assembles a single instruction into the given slot of the text. A
+   * label is replaced by a zero and then by its address, how depends on
+   * the field of the instruction that the label is in.
+   */
+  private void emit(Statement st, Instruction[] text, Chunk chunk, int at, String iname, String... operands)
+        throws Exception {
+    Instruction prototype = Instruction.prototypeOf(iname);
+    if (prototype == null) {
+      throw new AssemblyException(st.lineNumber, st.line,
+            String.format("There is no instruction named \"%s\"", iname));
+    }
+    List<String> fields = prototype.getPattern().fieldNames();
+
+    String label = null;
+    Relocation.Kind kind = null;
+    for (int k = 0; k < operands.length; k++) {
+      if (!isLabelReference(operands[k]) || k + 1 >= fields.size()) {
+        continue;
+      }
+      if (label != null) {
+        throw new AssemblyException(st.lineNumber, st.line, "Expected at most one label");
+      }
+
+      String operand = operands[k];
+      int parenthesis = operand.indexOf('(');
+      label = (parenthesis < 0 ? operand : operand.substring(0, parenthesis)).trim();
+      switch (fields.get(k + 1)) {
+        case "target":
+          kind = Relocation.Kind.TARGET;
+          operands[k] = "0";
+          break;
+        case "offset":
+          kind = prototype.getType() == Type.B ? Relocation.Kind.BRANCH : Relocation.Kind.ABSOLUTE_16;
+          operands[k] = "0";
+          break;
+        case "address":
+          kind = Relocation.Kind.ABSOLUTE_16;
+          operands[k] = parenthesis < 0 ? "0($zero)" : "0" + operand.substring(parenthesis);
+          break;
+        default:
+          throw new AssemblyException(st.lineNumber, st.line,
+                String.format("Expected a register or a number in place of \"%s\"", operand));
+      }
+    }
+
+    StringBuilder mnemonic = new StringBuilder(iname);
+    for (int k = 0; k < operands.length; k++) {
+      mnemonic.append(k == 0 ? " " : ", ").append(operands[k]);
+    }
+    Instruction i = Instruction.from(mnemonic.toString());
+    text[at] = label == null ? i : resolve(i, at, label, kind, st, chunk);
+  }
+
+  private void directive(String s, String line) {
+    int end = nameEnd(s);
+    String name = s.substring(0, end).toLowerCase();
+
+    switch (name) {
+      case ".text":
+        section = Section.TEXT;
+        return;
+      case ".data":
+        section = Section.DATA;
+        return;
+      case ".globl":
+      case ".global":
+        for (String operand : operands(s, end)) {
+          globals.add(operand);
+        }
+        return;
+      default:
+        break;
+    }
+
+    if (section != Section.DATA) {
+      throw new AssemblyException(lineNumber, line, String.format("Expected %s in the .data section", name));
+    }
+
+    switch (name) {
+      case ".word":
+        for (String operand : operands(s, end)) {
+          align(4);
+          if (isLabelReference(operand)) {
+            reserve(4);
+            references.add(new Reference(operand, dataSize - 4, lineNumber, line));
+          } else {
+            reserve(4);
+            putWord(dataSize - 4, number(operand, line));
+          }
+        }
+        return;
+      case ".half":
+        for (String operand : operands(s, end)) {
+          align(2);
+          int value = number(operand, line);
+          checkFits(value, 16, operand, line);
+          reserve(2);
+          data[dataSize - 2] = (byte) (value >>> 8);
+          data[dataSize - 1] = (byte) value;
+        }
+        return;
+      case ".byte":
+        for (String operand : operands(s, end)) {
+          int value = number(operand, line);
+          checkFits(value, 8, operand, line);
+          reserve(1);
+          data[dataSize - 1] = (byte) value;
+        }
+        return;
+      case ".space":
+        reserve(number(s.substring(end).trim(), line));
+        return;
+      case ".align":
+        int n = number(s.substring(end).trim(), line);
+        if (n < 0 || n > 16) {
+          throw new AssemblyException(lineNumber, line, "Expected an alignment in [0, 16]. Got " + n);
+        }
+        align(1 << n);
+        return;
+      case ".ascii":
+        string(s.substring(end).trim(), line);
+        return;
+      case ".asciiz":
+        string(s.substring(end).trim(), line);
+        reserve(1);
+        return;
+      default:
+        throw new AssemblyException(lineNumber, line, String.format("Unknown directive \"%s\"", name));
+    }
+  }
+
+  private int number(String s, String line) {
+    if (s.isEmpty()) {
+      throw new AssemblyException(lineNumber, line, "Expected a number");
+    }
+    try {
+      return MachineCodeDecoder.scan(s, 0, s.length());
+    } catch (NumberFormatException e) {
+      throw new AssemblyException(lineNumber, line, e.getMessage());
+    }
+  }
+
+  private void checkFits(int value, int bits, String operand, String line) {
+    // Either signed or unsigned
+    if (value < -(1 << (bits - 1)) || value >= (1 << bits)) {
+      throw new AssemblyException(lineNumber, line,
+            String.format("Expected \"%s\" to fit in %d bits", operand, bits));
+    }
+  }
+
+  private void string(String literal, String line) {
+    if (literal.length() < 2 || literal.charAt(0) != '"' || literal.charAt(literal.length() - 1) != '"') {
+      throw new AssemblyException(lineNumber, line, "Expected a string in double quotes");
+    }
+    for (int i = 1; i < literal.length() - 1; i++) {
+      char c = literal.charAt(i);
+      if (c == '\\' && i + 1 < literal.length() - 1) {
+        c = literal.charAt(++i);
+        switch (c) {
+          case 'n':
+            c = '\n';
+            break;
+          case 't':
+            c = '\t';
+            break;
+          case '0':
+            c = '\0';
+            break;
+          default:
+            // \\ and \" are themselves
+            break;
+        }
+      }
+      reserve(1);
+      data[dataSize - 1] = (byte) c;
+    }
+  }
+
+  private void align(int alignment) {
+    int padding = (alignment - dataSize % alignment) % alignment;
+    reserve(padding);
+  }
+
+  /* Appends n zeroed bytes to the data */
+  private void reserve(int n) {
+    if (n < 0) {
+      throw new AssemblyException(lineNumber, "Expected a non-negative size. Got " + n);
+    }
+    if (dataSize + n > data.length) {
+      data = Arrays.copyOf(data, Math.max(dataSize + n, 2 * data.length));
+    }
+    dataSize += n;
+  }
+
+  // Big-endian, the same as the data memory
+  private void putWord(int at, int word) {
+    data[at] = (byte) (word >>> 24);
+    data[at + 1] = (byte) (word >>> 16);
+    data[at + 2] = (byte) (word >>> 8);
+    data[at + 3] = (byte) word;
+  }
+}
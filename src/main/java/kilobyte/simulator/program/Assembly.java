@@ -0,0 +1,96 @@
+package kilobyte.simulator.program;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import kilobyte.common.instruction.Instruction;
+import lombok.Getter;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The output of the {@link Assembler}, or of the {@link Linker}, the
+ * instructions of the .text section, the bytes of the .data section and
+ * the labels of both.
+ *
+ * The text is placed at address 0 of the instruction memory and the data
+ * at address 0 of the data memory.
+ */
+public final class Assembly {
+  private final ImmutableList<Instruction> instructions;
+  private final byte[] data;
+
+  // The byte address of main, or 0 if there is no main
+  @Getter
+  private final int entryPoint;
+
+  @Getter
+  private final ImmutableList<Symbol> textSymbols;
+
+  @Getter
+  private final ImmutableList<Symbol> dataSymbols;
+
+  private final ImmutableMap<String, Symbol> symbolsByName;
+
+  Assembly(List<Instruction> instructions,
+           byte[] data,
+           int entryPoint,
+           List<Symbol> textSymbols,
+           List<Symbol> dataSymbols) {
+    this.instructions = ImmutableList.copyOf(instructions);
+    this.data = data;
+    this.entryPoint = entryPoint;
+    this.textSymbols = ImmutableList.copyOf(textSymbols);
+    this.dataSymbols = ImmutableList.copyOf(dataSymbols);
+
+    // Labels local to different objects may share a name, the first one is found
+    Map<String, Symbol> byName = new HashMap<>();
+    textSymbols.forEach(s -> byName.putIfAbsent(s.getName(), s));
+    dataSymbols.forEach(s -> byName.putIfAbsent(s.getName(), s));
+    symbolsByName = ImmutableMap.copyOf(byName);
+  }
+
+  public ImmutableList<Instruction> getInstructions() {
+    return instructions;
+  }
+
+  /* The initialised data, big-endian, the same as the data memory */
+  public ByteBuffer getData() {
+    return ByteBuffer.wrap(data).asReadOnlyBuffer();
+  }
+
+  public Optional<Symbol> symbol(String name) {
+    return Optional.ofNullable(symbolsByName.get(name));
+  }
+
+  public Program toProgram() {
+    ImmutableList<Segment> segments = data.length == 0
+          ? ImmutableList.of()
+          : ImmutableList.of(new Segment(".data", 0, ByteBuffer.wrap(data), data.length));
+    return Program.from(instructions, 0, entryPoint, segments, textSymbols, dataSymbols);
+  }
+
+  /**
+   * Writes the machine code of the text, one 32-bit word per instruction,
+   * in the given byte order. The result can be fed straight to the
+   * decompiler in binary mode.
+   *
+   * The exit pseudo-instruction has no machine code of its own and is
+   * written as a nop.
+   */
+  public void writeText(OutputStream out, ByteOrder order) throws IOException {
+    DataOutputStream dos = new DataOutputStream(out);
+    for (Instruction i : instructions) {
+      int word = (int) i.getNumericRepresentation();
+      dos.writeInt(order == ByteOrder.BIG_ENDIAN ? word : Integer.reverseBytes(word));
+    }
+    dos.flush();
+  }
+}
@@ -0,0 +1,21 @@
+package kilobyte.simulator.program;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a source can not be assembled, identifies the offending line.
+ */
+public class AssemblyException extends IllegalArgumentException {
+  // Counting from 1
+  @Getter
+  private final int lineNumber;
+
+  public AssemblyException(int lineNumber, String message) {
+    super(String.format("Line %d: %s", lineNumber, message));
+    this.lineNumber = lineNumber;
+  }
+
+  public AssemblyException(int lineNumber, String line, String message) {
+    this(lineNumber, String.format("%s in \"%s\"", message, line.trim()));
+  }
+}
@@ -0,0 +1,18 @@
+package kilobyte.simulator.program;
+
+import lombok.Value;
+
+/**
+ * A label of an {@link ObjectFile}, which the {@link Linker} gives an
+ * address once it knows where the object is placed.
+ */
+@Value
+public class Definition {
+  String name;
+  // Else it labels data
+  boolean text;
+  // The byte offset into the text, or the data, of the object
+  int offset;
+  // Named by .globl, and so visible to the other objects
+  boolean exported;
+}
@@ -0,0 +1,207 @@
+package kilobyte.simulator.program;
+
+import com.google.common.collect.ImmutableSet;
+import lombok.extern.java.Log;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Loads 32-bit, big- or little-endian, MIPS ELF executables, such as those
+ * produced by a MIPS cross-compiler, into a {@link Program}.
+ *
+ * <ul>
+ *   <li>The words of the .text section become the instructions of the
+ *   program, placed at the address of the section.</li>
+ *   <li>The .data, .rodata and .bss sections, and their small-data
+ *   counterparts, become segments at their addresses. The .bss sections
+ *   are zeroed.</li>
+ *   <li>The entry point of the file is the entry point of the program.</li>
+ *   <li>The functions and objects of the symbol table, if any, become the
+ *   symbols of the program.</li>
+ * </ul>
+ *
+ * The file is mapped rather than read. The words of the text are kept as
+ * they are and only decoded once they are executed, the same as for other
+ * machine code, so a word that the simulator does not know, such as a
+ * floating point instruction or data placed in the text, only fails the
+ * program if it is run.
+ */
+@Log
+public final class ElfLoader {
+  private static final int MAGIC = 0x7f454c46; // 0x7f E L F
+
+  private static final int EI_CLASS = 4;
+  private static final int EI_DATA = 5;
+  private static final int ELFCLASS32 = 1;
+  private static final int ELFDATA2LSB = 1;
+  private static final int ELFDATA2MSB = 2;
+  private static final int EM_MIPS = 8;
+
+  private static final int ELF_HEADER_SIZE = 52;
+  private static final int SECTION_HEADER_SIZE = 40;
+  private static final int SYMBOL_SIZE = 16;
+
+  private static final int SHT_SYMTAB = 2;
+  private static final int SHT_NOBITS = 8;
+
+  private static final int STT_SECTION = 3;
+  private static final int STT_FILE = 4;
+
+  static final String TEXT = ".text";
+  static final ImmutableSet<String> DATA = ImmutableSet.of(
+        ".data", ".rodata", ".bss", ".sdata", ".sbss");
+
+  private ElfLoader() {
+  }
+
+  public static boolean isElf(File f) throws IOException {
+    try (DataInputStream in = new DataInputStream(new FileInputStream(f))) {
+      return in.readInt() == MAGIC;
+    } catch (EOFException e) {
+      return false;
+    }
+  }
+
+  public static Program load(File f) throws IOException {
+    try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+      return load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /* Loads the image held by the buffer, from index 0 through to its limit */
+  public static Program load(ByteBuffer image) {
+    ByteBuffer elf = image.duplicate();
+    checkArgument(elf.limit() >= ELF_HEADER_SIZE && elf.getInt(0) == MAGIC,
+          "Expected an ELF file");
+    checkArgument(elf.get(EI_CLASS) == ELFCLASS32,
+          "Expected a 32-bit ELF file. Got class %s", elf.get(EI_CLASS));
+    byte data = elf.get(EI_DATA);
+    checkArgument(data == ELFDATA2LSB || data == ELFDATA2MSB,
+          "Expected a big- or little-endian ELF file. Got %s", data);
+    elf.order(data == ELFDATA2MSB ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    checkArgument(elf.getShort(18) == EM_MIPS,
+          "Expected a MIPS ELF file. Got machine %s", elf.getShort(18));
+
+    int entryPoint = elf.getInt(24);
+    int sectionHeaders = elf.getInt(32);
+    int sectionHeaderSize = elf.getShort(46) & 0xffff;
+    int noOfSections = elf.getShort(48) & 0xffff;
+    int sectionNames = elf.getShort(50) & 0xffff;
+    checkArgument(sectionHeaderSize >= SECTION_HEADER_SIZE,
+          "Expected section headers of at least %s bytes. Got %s", SECTION_HEADER_SIZE, sectionHeaderSize);
+    checkArgument(Integer.toUnsignedLong(sectionHeaders) + (long) noOfSections * sectionHeaderSize <= elf.limit(),
+          "Expected the section headers to be inside the file");
+    checkArgument(sectionNames < noOfSections,
+          "Expected the section name table to be one of the %s sections. Got %s", noOfSections, sectionNames);
+
+    Section[] sections = new Section[noOfSections];
+    for (int i = 0; i < noOfSections; i++) {
+      sections[i] = new Section(elf, sectionHeaders + i * sectionHeaderSize);
+    }
+    ByteBuffer names = sections[sectionNames].contents(elf);
+
+    int[] words = new int[0];
+    int textAddress = 0;
+    List<Segment> segments = new ArrayList<>();
+    List<Symbol> symbols = new ArrayList<>();
+    boolean hasText = false;
+
+    for (Section s : sections) {
+      String name = stringAt(names, s.name);
+      if (name.equals(TEXT)) {
+        hasText = true;
+        textAddress = s.address;
+        IntBuffer text = s.contents(elf).asIntBuffer();
+        words = new int[text.remaining()];
+        text.get(words);
+      } else if (DATA.contains(name)) {
+        segments.add(s.type == SHT_NOBITS
+              ? Segment.zeroed(name, s.address, s.size)
+              : new Segment(name, s.address, s.contents(elf), s.size));
+      } else if (s.type == SHT_SYMTAB) {
+        checkArgument(s.link < noOfSections,
+              "Expected the string table of %s to be one of the %s sections. Got %s", name, noOfSections, s.link);
+        symbols(s.contents(elf), sections[s.link].contents(elf), symbols);
+      }
+    }
+    checkArgument(hasText, "Expected a %s section", TEXT);
+
+    log.info(format("Loaded %d words at %#x, %d segments and %d symbols, entry=%#x",
+          words.length, textAddress, segments.size(), symbols.size(), entryPoint));
+    // An executable stops by itself, hence no exit after the text
+    return Program.from(new EncodedInstructions(words, textAddress, false), textAddress, entryPoint, segments, symbols);
+  }
+
+  private static void symbols(ByteBuffer table, ByteBuffer strings, List<Symbol> symbols) {
+    // The first entry is always the undefined symbol
+    for (int at = SYMBOL_SIZE; at + SYMBOL_SIZE <= table.limit(); at += SYMBOL_SIZE) {
+      int type = table.get(at + 12) & 0xf;
+      String name = stringAt(strings, table.getInt(at));
+      if (type == STT_SECTION || type == STT_FILE || name.isEmpty()) {
+        continue;
+      }
+      symbols.add(new Symbol(name, table.getInt(at + 4), table.getInt(at + 8)));
+    }
+  }
+
+  private static String stringAt(ByteBuffer strings, int offset) {
+    checkArgument(offset >= 0 && offset <= strings.limit(),
+          "Expected a string table offset within [0, %s]. Got %s", strings.limit(), offset);
+    int end = offset;
+    while (end < strings.limit() && strings.get(end) != 0) {
+      end++;
+    }
+    byte[] bytes = new byte[end - offset];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = strings.get(offset + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /* A section header, only the fields we have any use for */
+  private static final class Section {
+    final int name;
+    final int type;
+    final int address;
+    final int offset;
+    final int size;
+    final int link;
+
+    Section(ByteBuffer elf, int at) {
+      name = elf.getInt(at);
+      type = elf.getInt(at + 4);
+      address = elf.getInt(at + 12);
+      offset = elf.getInt(at + 16);
+      size = elf.getInt(at + 20);
+      link = elf.getInt(at + 24);
+    }
+
+    /* The bytes of the section in the byte order of the file */
+    ByteBuffer contents(ByteBuffer elf) {
+      if (type == SHT_NOBITS) {
+        return ByteBuffer.allocate(0).order(elf.order());
+      }
+      checkArgument(offset >= 0 && size >= 0 && (long) offset + size <= elf.limit(),
+            "Expected section contents [%s, %s) to be inside the file", offset, (long) offset + size);
+      ByteBuffer b = elf.duplicate();
+      b.position(offset).limit(offset + size);
+      // A slice is always big-endian to begin with
+      return b.slice().order(elf.order());
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package kilobyte.simulator.program;
+
+import kilobyte.common.instruction.Instruction;
+
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * The instructions of a program that was loaded as machine code. The words
+ * are kept as they are and each one is only decoded the first time it is
+ * asked for, so loading a program is a copy of its words.
+ *
+ * Machine code has no exit of its own, so the words are followed by an
+ * exit, which stops the simulator once it runs past the last word. The
+ * text of an executable is left as it is.
+ *
+ * A word that does not decode is only rejected once it is asked for, e.g.
+ * by the simulator executing it.
+ */
+final class EncodedInstructions extends AbstractList<Instruction> implements RandomAccess {
+  private final int[] words;
+  private final int textAddress;
+  // Decoded on demand, two threads decoding the same word get equal instructions
+  private final Instruction[] decoded;
+
+  EncodedInstructions(int[] words, int textAddress) {
+    this(words, textAddress, true);
+  }
+
+  EncodedInstructions(int[] words, int textAddress, boolean followedByExit) {
+    this.words = words;
+    this.textAddress = textAddress;
+    decoded = new Instruction[followedByExit ? words.length + 1 : words.length];
+    if (followedByExit) {
+      decoded[words.length] = Instruction.EXIT;
+    }
+  }
+
+  @Override
+  public Instruction get(int index) {
+    checkElementIndex(index, decoded.length);
+    Instruction i = decoded[index];
+    if (i == null) {
+      i = Instruction.fromWord(words[index], textAddress + 4 * index);
+      decoded[index] = i;
+    }
+    return i;
+  }
+
+  /* Whether get decodes the instruction rather than rejecting its word */
+  boolean isDecodable(int index) {
+    checkElementIndex(index, decoded.length);
+    return decoded[index] != null || Instruction.isDecodable(words[index]);
+  }
+
+  int word(int index) {
+    checkElementIndex(index, words.length);
+    return words[index];
+  }
+
+  @Override
+  public int size() {
+    return decoded.length;
+  }
+
+  /* The machine code, without the exit that follows it */
+  IntBuffer words() {
+    return IntBuffer.wrap(words).asReadOnlyBuffer();
+  }
+}
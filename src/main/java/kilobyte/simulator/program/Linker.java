@@ -0,0 +1,228 @@
+package kilobyte.simulator.program;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import kilobyte.common.instruction.Instruction;
+import lombok.extern.java.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Combines {@link ObjectFile}s into a single {@link Assembly}, from which
+ * either a {@link Program} or an image of the text can be had.
+ *
+ * The texts of the objects are placed one after the other from address 0
+ * of the instruction memory, in the order given, and so are their data,
+ * each aligned to a word, from address 0 of the data memory. Then every
+ * relocation is resolved, against the labels of its own object first and
+ * against the labels that the objects export second. The entry point is
+ * the exported main, or else the main of the first object that has one.
+ *
+ * A linker remembers the objects it has assembled, so linking a set of
+ * source files again only reassembles the files whose contents have
+ * changed. A shared library is thus assembled once however many programs
+ * it is linked into. The files that do need assembling are assembled in
+ * parallel.
+ */
+@Log
+public final class Linker {
+  /* An object and the hash of the source that it was assembled from */
+  private static final class Assembled {
+    final HashCode hash;
+    final ObjectFile object;
+
+    Assembled(HashCode hash, ObjectFile object) {
+      this.hash = hash;
+      this.object = object;
+    }
+  }
+
+  private final ForkJoinPool pool;
+  private final Map<Path, Assembled> assembled = new HashMap<>();
+
+  public Linker() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public Linker(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Assembles the source files that have changed since this linker last
+   * saw them and links the objects of all of them, in the order given.
+   */
+  public synchronized Assembly link(File... sources) throws IOException {
+    ObjectFile[] objects = new ObjectFile[sources.length];
+    List<ForkJoinTask<?>> assembling = new ArrayList<>();
+    Path[] paths = new Path[sources.length];
+    HashCode[] hashes = new HashCode[sources.length];
+
+    for (int i = 0; i < sources.length; i++) {
+      paths[i] = sources[i].toPath().toAbsolutePath().normalize();
+      byte[] source = Files.readAllBytes(paths[i]);
+      hashes[i] = Hashing.sha256().hashBytes(source);
+
+      Assembled previous = assembled.get(paths[i]);
+      if (previous != null && previous.hash.equals(hashes[i])) {
+        objects[i] = previous.object;
+        continue;
+      }
+      int at = i;
+      String name = sources[i].getPath();
+      assembling.add(pool.submit(() -> {
+        try (Reader r = new InputStreamReader(new ByteArrayInputStream(source), StandardCharsets.UTF_8)) {
+          objects[at] = Assembler.assembleObject(name, r, pool);
+        } catch (IOException e) {
+          // Never thrown when reading from memory
+          throw new UncheckedIOException(e);
+        }
+      }));
+    }
+    for (ForkJoinTask<?> task : assembling) {
+      task.join();
+    }
+    for (int i = 0; i < sources.length; i++) {
+      assembled.put(paths[i], new Assembled(hashes[i], objects[i]));
+    }
+    log.info(format("Assembled %d of %d sources", assembling.size(), sources.length));
+    return link(objects);
+  }
+
+  /* The object that the file was last assembled into, if any */
+  synchronized Optional<ObjectFile> remembered(File source) {
+    Assembled a = assembled.get(source.toPath().toAbsolutePath().normalize());
+    return a == null ? Optional.empty() : Optional.of(a.object);
+  }
+
+  public static Assembly link(ObjectFile... objects) {
+    return link(Arrays.asList(objects));
+  }
+
+  public static Assembly link(List<ObjectFile> objects) {
+    int[] textBases = new int[objects.size()];
+    int[] dataBases = new int[objects.size()];
+    int textSize = 0;
+    int dataSize = 0;
+    for (int i = 0; i < objects.size(); i++) {
+      textBases[i] = 4 * textSize;
+      dataBases[i] = dataSize;
+      textSize += objects.get(i).getInstructions().size();
+      dataSize = (dataSize + objects.get(i).getDataSize() + 3) & ~3;
+    }
+
+    // The exported labels of every object, and all labels of each object
+    Map<String, Resolved> exports = new HashMap<>();
+    List<Map<String, Resolved>> locals = new ArrayList<>(objects.size());
+    List<Symbol> textSymbols = new ArrayList<>();
+    List<Symbol> dataSymbols = new ArrayList<>();
+    List<Symbol> localTextSymbols = new ArrayList<>();
+    List<Symbol> localDataSymbols = new ArrayList<>();
+    for (int i = 0; i < objects.size(); i++) {
+      ObjectFile o = objects.get(i);
+      Map<String, Resolved> own = new HashMap<>();
+      for (Definition d : o.getDefinitions()) {
+        Resolved r = new Resolved(o, d, d.getOffset() + (d.isText() ? textBases[i] : dataBases[i]));
+        own.put(d.getName(), r);
+        Symbol s = new Symbol(d.getName(), r.address, 0);
+        if (d.isExported()) {
+          Resolved other = exports.put(d.getName(), r);
+          checkArgument(other == null, "\"%s\" is exported by both %s and %s",
+                d.getName(), other == null ? null : other.object.getName(), o.getName());
+          (d.isText() ? textSymbols : dataSymbols).add(s);
+        } else {
+          (d.isText() ? localTextSymbols : localDataSymbols).add(s);
+        }
+      }
+      locals.add(own);
+    }
+    // Exported symbols come first, so that they are the ones found by name
+    textSymbols.addAll(localTextSymbols);
+    dataSymbols.addAll(localDataSymbols);
+
+    Instruction[] text = new Instruction[textSize];
+    byte[] data = new byte[dataSize];
+    for (int i = 0; i < objects.size(); i++) {
+      ObjectFile o = objects.get(i);
+      List<Instruction> instructions = o.getInstructions();
+      for (int k = 0; k < instructions.size(); k++) {
+        text[textBases[i] / 4 + k] = instructions.get(k);
+      }
+      byte[] own = o.getData();
+      System.arraycopy(own, 0, data, dataBases[i], own.length);
+
+      for (Relocation r : o.getRelocations()) {
+        Resolved target = locals.get(i).get(r.getSymbol());
+        if (target == null) {
+          target = exports.get(r.getSymbol());
+        }
+        checkArgument(target != null, "Undefined symbol \"%s\" in %s", r.getSymbol(), o.getName());
+        checkArgument(!r.getKind().isJump() || target.definition.isText(),
+              "Expected \"%s\" to label an instruction, not data, in %s", r.getSymbol(), o.getName());
+        try {
+          relocate(r, target.address, text, textBases[i], data, dataBases[i]);
+        } catch (IllegalArgumentException e) {
+          throw new IllegalArgumentException(format("%s in %s", e.getMessage(), o.getName()), e);
+        }
+      }
+    }
+
+    Resolved main = exports.get("main");
+    for (int i = 0; main == null && i < objects.size(); i++) {
+      main = locals.get(i).get("main");
+    }
+    int entryPoint = main != null && main.definition.isText() ? main.address : 0;
+
+    log.info(format("Linked %d objects into %d instructions and %d bytes of data, entry=%#x",
+          objects.size(), textSize, dataSize, entryPoint));
+    return new Assembly(Arrays.asList(text), data, entryPoint, textSymbols, dataSymbols);
+  }
+
+  private static void relocate(Relocation r, int address, Instruction[] text, int textBase, byte[] data, int dataBase) {
+    if (!r.getKind().isInText()) {
+      int at = dataBase + r.getOffset();
+      int word = r.getKind().apply(0, at, address, r.getSymbol());
+      data[at] = (byte) (word >>> 24);
+      data[at + 1] = (byte) (word >>> 16);
+      data[at + 2] = (byte) (word >>> 8);
+      data[at + 3] = (byte) word;
+      return;
+    }
+    int at = textBase + r.getOffset();
+    Instruction i = text[at / 4];
+    int word = r.getKind().apply((int) i.getNumericRepresentation(), at, address, r.getSymbol());
+    text[at / 4] = i.withNumericRepresentation(Integer.toUnsignedLong(word));
+  }
+
+  /* A label and where it ended up */
+  private static final class Resolved {
+    final ObjectFile object;
+    final Definition definition;
+    final int address;
+
+    Resolved(ObjectFile object, Definition definition, int address) {
+      this.object = object;
+      this.definition = definition;
+      this.address = address;
+    }
+  }
+}
@@ -0,0 +1,176 @@
+package kilobyte.simulator.program;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import kilobyte.common.instruction.Instruction;
+import lombok.Getter;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * A single source file assembled on its own, see
+ * {@link Assembler#assembleObject}, to be combined with others by the
+ * {@link Linker}.
+ *
+ * Its text and its data both start at offset 0, as the object does not
+ * know where it will be placed. Every place that holds the address of a
+ * label, be it one of its own or one that another object exports, has a
+ * {@link Relocation}. Branches to labels of its own are relative and so
+ * are resolved by the assembler.
+ *
+ * Labels named by .globl are exported, the rest are only visible to the
+ * object itself.
+ */
+public final class ObjectFile {
+  private static final int MAGIC = 0x4b424f31; // K B O 1
+
+  // What the object was assembled from, for messages
+  @Getter
+  private final String name;
+
+  @Getter
+  private final ImmutableList<Instruction> instructions;
+
+  private final byte[] data;
+
+  @Getter
+  private final ImmutableList<Definition> definitions;
+
+  // In the order of the places they patch, the text first
+  @Getter
+  private final ImmutableList<Relocation> relocations;
+
+  ObjectFile(String name,
+             List<Instruction> instructions,
+             byte[] data,
+             List<Definition> definitions,
+             List<Relocation> relocations) {
+    this.name = name;
+    this.instructions = ImmutableList.copyOf(instructions);
+    this.data = data;
+    this.definitions = ImmutableList.copyOf(definitions);
+    this.relocations = ImmutableList.copyOf(relocations);
+  }
+
+  public int getDataSize() {
+    return data.length;
+  }
+
+  /* The initialised data, big-endian, with zeroes where there are relocations */
+  public byte[] getData() {
+    return data.clone();
+  }
+
+  /* The symbols that the object refers to but does not define */
+  public ImmutableSet<String> getImports() {
+    Set<String> defined = new HashSet<>();
+    definitions.forEach(d -> defined.add(d.getName()));
+    Set<String> imports = new LinkedHashSet<>();
+    for (Relocation r : relocations) {
+      if (!defined.contains(r.getSymbol())) {
+        imports.add(r.getSymbol());
+      }
+    }
+    return ImmutableSet.copyOf(imports);
+  }
+
+  /**
+   * Writes the object, the machine code of the text, the data, the labels
+   * and the relocations, in a format that {@link #read} reads back.
+   *
+   * The exit pseudo-instruction has the same machine code as nop, so the
+   * indices of the exits are written as well.
+   */
+  public void write(OutputStream out) throws IOException {
+    DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(out));
+    dos.writeInt(MAGIC);
+    dos.writeUTF(name);
+
+    List<Integer> exits = new ArrayList<>();
+    dos.writeInt(instructions.size());
+    for (int i = 0; i < instructions.size(); i++) {
+      Instruction instruction = instructions.get(i);
+      if (instruction.equals(Instruction.EXIT)) {
+        exits.add(i);
+      }
+      dos.writeInt((int) instruction.getNumericRepresentation());
+    }
+    dos.writeInt(exits.size());
+    for (int i : exits) {
+      dos.writeInt(i);
+    }
+
+    dos.writeInt(data.length);
+    dos.write(data);
+
+    dos.writeInt(definitions.size());
+    for (Definition d : definitions) {
+      dos.writeUTF(d.getName());
+      dos.writeBoolean(d.isText());
+      dos.writeInt(d.getOffset());
+      dos.writeBoolean(d.isExported());
+    }
+
+    dos.writeInt(relocations.size());
+    for (Relocation r : relocations) {
+      dos.writeByte(r.getKind().ordinal());
+      dos.writeInt(r.getOffset());
+      dos.writeUTF(r.getSymbol());
+    }
+    dos.flush();
+  }
+
+  public static ObjectFile read(InputStream in) throws IOException {
+    DataInputStream dis = new DataInputStream(new BufferedInputStream(in));
+    checkArgument(dis.readInt() == MAGIC, "Expected an object file");
+    String name = dis.readUTF();
+
+    int noOfInstructions = dis.readInt();
+    checkArgument(noOfInstructions >= 0, "Expected a non-negative number of instructions. Got %s", noOfInstructions);
+    List<Instruction> instructions = new ArrayList<>(noOfInstructions);
+    for (int i = 0; i < noOfInstructions; i++) {
+      int word = dis.readInt();
+      // Written by the assembler, the words are all known instructions
+      instructions.add(Instruction.from(Integer.toUnsignedLong(word)));
+    }
+    int noOfExits = dis.readInt();
+    for (int i = 0; i < noOfExits; i++) {
+      int at = dis.readInt();
+      checkArgument(at >= 0 && at < noOfInstructions, "Expected an exit within the text. Got %s", at);
+      instructions.set(at, Instruction.EXIT);
+    }
+
+    byte[] data = new byte[dis.readInt()];
+    dis.readFully(data);
+
+    int noOfDefinitions = dis.readInt();
+    List<Definition> definitions = new ArrayList<>(Math.max(noOfDefinitions, 0));
+    for (int i = 0; i < noOfDefinitions; i++) {
+      definitions.add(new Definition(dis.readUTF(), dis.readBoolean(), dis.readInt(), dis.readBoolean()));
+    }
+
+    int noOfRelocations = dis.readInt();
+    List<Relocation> relocations = new ArrayList<>(Math.max(noOfRelocations, 0));
+    Relocation.Kind[] kinds = Relocation.Kind.values();
+    for (int i = 0; i < noOfRelocations; i++) {
+      int kind = dis.readUnsignedByte();
+      checkArgument(kind < kinds.length, "Expected a relocation kind. Got %s", kind);
+      relocations.add(new Relocation(kinds[kind], dis.readInt(), dis.readUTF()));
+    }
+    return new ObjectFile(name, instructions, data, definitions, relocations);
+  }
+
+  @Override
+  public String toString() {
+    return format("%s: %d instructions, %d bytes of data, %d labels, %d relocations",
+          name, instructions.size(), data.length, definitions.size(), relocations.size());
+  }
+}
@@ -1,23 +1,68 @@
 package kilobyte.simulator.program;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
 import kilobyte.common.instruction.Instruction;
+import kilobyte.decompiler.MachineCodeDecoder;
 import lombok.Value;
 
 import java.io.*;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 @Value
 public class Program {
+  private static final Ordering<Symbol> BY_ADDRESS =
+        Ordering.from((Symbol a, Symbol b) -> Integer.compareUnsigned(a.getAddress(), b.getAddress()));
+
   // A program is just an ordered collection of instructions
-  ImmutableList<Instruction> instructions;
+  List<Instruction> instructions;
+
+  // The byte address of the first instruction
+  int textAddress;
+
+  // The byte address of the instruction that execution starts at
+  int entryPoint;
 
-  private Program(List<Instruction> instructions) {
-    this.instructions = ImmutableList.copyOf(instructions);
+  // Copied into the data memory before the program is run
+  ImmutableList<Segment> data;
+
+  // Ordered by address
+  ImmutableList<Symbol> symbols;
+
+  // The labels of the data, ordered by address
+  ImmutableList<Symbol> dataSymbols;
+
+  private Program(List<Instruction> instructions,
+                  int textAddress,
+                  int entryPoint,
+                  List<Segment> data,
+                  List<Symbol> symbols,
+                  List<Symbol> dataSymbols) {
+    checkArgument(textAddress % 4 == 0,
+          "Expected the text address to be divisible by 4. Got %s", textAddress);
+    checkArgument(entryPoint % 4 == 0,
+          "Expected the entry point to be divisible by 4. Got %s", entryPoint);
+    // Machine code is decoded as it is needed, see EncodedInstructions
+    this.instructions = instructions instanceof EncodedInstructions
+          ? instructions
+          : ImmutableList.copyOf(instructions);
+    this.textAddress = textAddress;
+    this.entryPoint = entryPoint;
+    this.data = ImmutableList.copyOf(data);
+    this.symbols = BY_ADDRESS.immutableSortedCopy(symbols);
+    this.dataSymbols = BY_ADDRESS.immutableSortedCopy(dataSymbols);
   }
+
   public static Program from(Instruction... instructions) {
     return from(Arrays.asList(instructions));
   }
@@ -26,28 +71,245 @@ public class Program {
     return from(Arrays.stream(instructions).map(Instruction::from).collect(Collectors.toList()));
   }
 
+  /**
+   * Reads an ELF executable, a file of machine code, or else a file of
+   * mnemonics, see {@link #machineCodeIn}.
+   */
   public static Program from(File f) throws IOException {
+    Optional<Program> p = machineCodeIn(f);
+    if (p.isPresent()) {
+      return p.get();
+    }
     return from(new FileReader(f));
   }
 
-  public static Program from(Reader r) throws IOException {
-    BufferedReader br = new BufferedReader(r);
-
-    List<Instruction> instructions = new ArrayList<>();
-    String line;
-    while ((line = br.readLine()) != null) {
-      line = line.trim(); // Indentation doesn't matter
-      if (line.isEmpty()) {
-        continue;
+  /**
+   * Reads the file as machine code, if it is:
+   * <ul>
+   *   <li>an ELF executable,</li>
+   *   <li>a .bin file of big-endian words, or</li>
+   *   <li>a file of one word per line, such as 0x23bdfff8.</li>
+   * </ul>
+   * Anything else is taken to be mnemonics, which are left for the
+   * assembler.
+   *
+   * Sources, .s and .asm files, are told by their name and anything else
+   * by the start of its contents, a file whose first line is not a word
+   * is not read any further. Only a file that starts with a word is
+   * parsed in full, and taken to be mnemonics if a later line is not.
+   */
+  static Optional<Program> machineCodeIn(File f) throws IOException {
+    String name = f.getName();
+    if (name.endsWith(".s") || name.endsWith(".asm")) {
+      return Optional.empty();
+    }
+    if (ElfLoader.isElf(f)) {
+      return Optional.of(ElfLoader.load(f));
+    }
+    if (name.endsWith(".bin")) {
+      return Optional.of(fromBinary(f, ByteOrder.BIG_ENDIAN));
+    }
+    if (startsWithMnemonics(f)) {
+      return Optional.empty();
+    }
+    try {
+      int[] words = lines(f);
+      return words.length == 0 ? Optional.empty() : Optional.of(fromWords(words));
+    } catch (NumberFormatException e) {
+      // A mnemonic, the first line that is not a number is usually the first line
+      return Optional.empty();
+    }
+  }
+
+  // Enough for the longest word, 0b followed by 32 digits, and the blanks around it
+  private static final int WORD_LINE_LENGTH = 64;
+
+  /*
+   * Whether the first line of the file that is not blank is something
+   * other than a word. Only the start of the file is read, a file that
+   * starts with blanks only is left to be parsed in full.
+   */
+  private static boolean startsWithMnemonics(File f) throws IOException {
+    ByteBuffer start = ByteBuffer.allocate(WORD_LINE_LENGTH);
+    try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+      while (start.hasRemaining() && channel.read(start) >= 0) {
+        // Until the buffer is full or the file has ended
       }
+    }
+    int limit = start.position();
+    int from = 0;
+    while (from < limit && start.get(from) <= ' ') {
+      from++;
+    }
+    if (from == limit) {
+      return false;
+    }
+    int to = from;
+    while (to < limit && start.get(to) != '\n') {
+      to++;
+    }
+    if (to == WORD_LINE_LENGTH) {
+      // The line goes on past the longest word
+      return true;
+    }
+    try {
+      MachineCodeDecoder.scan(start, from, to);
+      return false;
+    } catch (NumberFormatException e) {
+      return true;
+    }
+  }
+
+  /* Reads a file of one word per line, hexadecimal, binary or decimal */
+  public static Program fromHex(File f) throws IOException {
+    return fromWords(lines(f));
+  }
+
+  /* Reads a file of raw words in the given byte order, any trailing bytes are left out */
+  public static Program fromBinary(File f, ByteOrder order) throws IOException {
+    List<IntBuffer> windows = MachineCodeDecoder.map(f, order);
+    long noOfWords = windows.stream().mapToLong(IntBuffer::remaining).sum();
+    checkArgument(noOfWords <= Integer.MAX_VALUE - 1, "Expected at most %s words. Got %s",
+          Integer.MAX_VALUE - 1, noOfWords);
+    int[] words = new int[(int) noOfWords];
+    int at = 0;
+    for (IntBuffer w : windows) {
+      int n = w.remaining();
+      w.get(words, at, n);
+      at += n;
+    }
+    return fromWords(words);
+  }
+
+  /**
+   * A program of the given machine code, placed at address 0. The words
+   * are copied as they are and are decoded as they are executed. Machine
+   * code has no exit of its own, so one is added after the last word.
+   */
+  public static Program fromMachineCode(IntBuffer words) {
+    int[] copy = new int[words.remaining()];
+    words.duplicate().get(copy);
+    return fromWords(copy);
+  }
+
+  private static Program fromWords(int[] words) {
+    return new Program(new EncodedInstructions(words, 0), 0, 0, ImmutableList.of(), ImmutableList.of(), ImmutableList.of());
+  }
 
-      instructions.add(Instruction.from(line));
+  /* The words of the lines of the file that are not blank */
+  private static int[] lines(File f) throws IOException {
+    try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+      return lines(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
     }
+  }
 
-    return from(instructions);
+  /* The words of the lines that are not blank, read as ASCII */
+  private static int[] lines(ByteBuffer text) {
+    int[] words = new int[16];
+    int n = 0;
+    int limit = text.limit();
+    for (int from = 0; from < limit; ) {
+      int to = from;
+      boolean blank = true;
+      while (to < limit && text.get(to) != '\n') {
+        blank &= text.get(to) <= ' ';
+        to++;
+      }
+      if (!blank) {
+        if (n == words.length) {
+          words = Arrays.copyOf(words, 2 * n);
+        }
+        words[n++] = MachineCodeDecoder.scan(text, from, to);
+      }
+      from = to + 1;
+    }
+    return Arrays.copyOf(words, n);
+  }
+
+  /* Assembles the source, see Assembler */
+  public static Program from(Reader r) throws IOException {
+    return Assembler.assemble(r).toProgram();
   }
 
   public static Program from(List<Instruction> instructions) {
-    return new Program(instructions);
+    return new Program(instructions, 0, 0, ImmutableList.of(), ImmutableList.of(), ImmutableList.of());
+  }
+
+  /**
+   * A program whose instructions are placed at {@code textAddress} rather
+   * than at 0, that starts executing at {@code entryPoint}.
+   */
+  public static Program from(List<Instruction> instructions,
+                             int textAddress,
+                             int entryPoint,
+                             List<Segment> data,
+                             List<Symbol> symbols) {
+    return from(instructions, textAddress, entryPoint, data, symbols, ImmutableList.of());
+  }
+
+  /* The same as above, along with the labels of the data */
+  public static Program from(List<Instruction> instructions,
+                             int textAddress,
+                             int entryPoint,
+                             List<Segment> data,
+                             List<Symbol> symbols,
+                             List<Symbol> dataSymbols) {
+    return new Program(instructions, textAddress, entryPoint, data, symbols, dataSymbols);
+  }
+
+  /**
+   * The machine code of the program, when it was loaded as machine code,
+   * so that it can be copied into memory as it is. The exit that follows
+   * the words is not among them.
+   */
+  public Optional<IntBuffer> getWords() {
+    return instructions instanceof EncodedInstructions
+          ? Optional.of(((EncodedInstructions) instructions).words())
+          : Optional.empty();
+  }
+
+  /**
+   * Whether the instruction at the given index decodes. Machine code may
+   * hold words that do not, which are only rejected once they are run.
+   */
+  public boolean isDecodable(int index) {
+    return !(instructions instanceof EncodedInstructions)
+          || ((EncodedInstructions) instructions).isDecodable(index);
+  }
+
+  /* The mnemonic of the instruction at the given index, or the .word directive of a word that does not decode */
+  public String mnemonicAt(int index) {
+    return isDecodable(index)
+          ? instructions.get(index).getMnemonicRepresentation()
+          : Instruction.asWordDirective(((EncodedInstructions) instructions).word(index));
+  }
+
+  /**
+   * Returns the symbol that names the given address, either exactly or,
+   * for a sized symbol such as a function, by covering it.
+   */
+  public Optional<Symbol> symbolAt(int address) {
+    int lo = 0;
+    int hi = symbols.size() - 1;
+    // Find the last symbol at or below the address and walk back from there
+    int candidate = -1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (Integer.compareUnsigned(symbols.get(mid).getAddress(), address) <= 0) {
+        candidate = mid;
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+
+    for (int i = candidate; i >= 0; i--) {
+      Symbol s = symbols.get(i);
+      long offset = Integer.toUnsignedLong(address) - Integer.toUnsignedLong(s.getAddress());
+      if (offset == 0 || offset < Integer.toUnsignedLong(s.getSize())) {
+        return Optional.of(s);
+      }
+    }
+    return Optional.empty();
   }
 }
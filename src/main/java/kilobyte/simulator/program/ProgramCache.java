@@ -0,0 +1,254 @@
+package kilobyte.simulator.program;
+
+import com.google.common.hash.Hashing;
+import kilobyte.common.instruction.Instruction;
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Keeps the assembled programs of source files on disk, each under the
+ * SHA-256 hash of the version of the image and the contents of its
+ * source, so that loading a source that has been loaded before, by this
+ * or an earlier run, skips the assembler altogether.
+ *
+ * A cached program is an image of its machine code, the indices of its
+ * exits, its data and the symbols of both. The image is mapped rather than read
+ * and the instructions are decoded straight from their machine code. The
+ * data segment of the program is a view of the mapped image.
+ *
+ * Files of machine code, such as ELF executables, are loaded as they are.
+ * A cache that cannot be written to, or an image that cannot be read,
+ * only costs the assembling of the source.
+ */
+@Log
+public final class ProgramCache {
+  private static final int MAGIC = 0x4b424331; // K B C 1
+  // Bumped whenever the layout of the image, or what the assembler makes
+  // of a source, changes, so that images of an earlier version are not used
+  static final int VERSION = 2;
+  private static final String SUFFIX = ".kbc";
+
+  @Getter
+  private final Path directory;
+
+  private final AtomicInteger hits = new AtomicInteger();
+  private final AtomicInteger misses = new AtomicInteger();
+
+  public ProgramCache(Path directory) {
+    this.directory = directory;
+  }
+
+  /* A cache in the .kilobyte directory of the home of the user */
+  public static ProgramCache atDefaultLocation() {
+    return new ProgramCache(Paths.get(System.getProperty("user.home"), ".kilobyte", "programs"));
+  }
+
+  /* The number of loads that found their program in the cache */
+  public int getHits() {
+    return hits.get();
+  }
+
+  /* The number of loads that had to assemble their source */
+  public int getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Loads the program of the given file, from the cache if its contents
+   * have been assembled before and otherwise by assembling it and adding
+   * the result to the cache.
+   */
+  public Program load(File f) throws IOException {
+    Optional<Program> machineCode = Program.machineCodeIn(f);
+    if (machineCode.isPresent()) {
+      return machineCode.get();
+    }
+    byte[] source = Files.readAllBytes(f.toPath());
+    Path image = directory.resolve(Hashing.sha256().newHasher()
+          .putInt(VERSION)
+          .putBytes(source)
+          .hash() + SUFFIX);
+
+    if (Files.isRegularFile(image)) {
+      try {
+        Program p = read(image);
+        hits.incrementAndGet();
+        log.info(format("Loaded %s from %s", f, image));
+        return p;
+      } catch (IllegalArgumentException | BufferUnderflowException | IOException e) {
+        log.warning(format("Ignoring the cached image %s of %s: %s", image, f, e));
+      }
+    }
+
+    misses.incrementAndGet();
+    Assembly a;
+    try (Reader r = new InputStreamReader(new ByteArrayInputStream(source), StandardCharsets.UTF_8)) {
+      a = Assembler.assemble(r);
+    }
+    try {
+      write(a, image);
+    } catch (IOException e) {
+      log.warning(format("Could not cache %s in %s: %s", f, image, e));
+    }
+    return a.toProgram();
+  }
+
+  /* Writes to a file of its own first, so that a reader never sees half an image */
+  private void write(Assembly a, Path image) throws IOException {
+    Files.createDirectories(directory);
+    Path temporary = Files.createTempFile(directory, "program", ".tmp");
+    try {
+      try (OutputStream out = Files.newOutputStream(temporary)) {
+        write(a, out);
+      }
+      try {
+        Files.move(temporary, image, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, image, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Writes the image of an assembly, big-endian: the magic number, the
+   * version, the entry point, the machine code of the text, the indices
+   * of the exits, the data, the symbols of the text and those of the data.
+   *
+   * The exit pseudo-instruction has the same machine code as nop, hence
+   * the indices.
+   */
+  static void write(Assembly a, OutputStream out) throws IOException {
+    DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(out));
+    dos.writeInt(MAGIC);
+    dos.writeInt(VERSION);
+    dos.writeInt(a.getEntryPoint());
+
+    List<Instruction> instructions = a.getInstructions();
+    List<Integer> exits = new ArrayList<>();
+    dos.writeInt(instructions.size());
+    for (int i = 0; i < instructions.size(); i++) {
+      Instruction instruction = instructions.get(i);
+      if (instruction.equals(Instruction.EXIT)) {
+        exits.add(i);
+      }
+      dos.writeInt((int) instruction.getNumericRepresentation());
+    }
+    dos.writeInt(exits.size());
+    for (int i : exits) {
+      dos.writeInt(i);
+    }
+
+    ByteBuffer data = a.getData();
+    dos.writeInt(data.remaining());
+    while (data.hasRemaining()) {
+      dos.writeByte(data.get());
+    }
+
+    write(a.getTextSymbols(), dos);
+    write(a.getDataSymbols(), dos);
+    dos.flush();
+  }
+
+  private static void write(List<Symbol> symbols, DataOutputStream dos) throws IOException {
+    dos.writeInt(symbols.size());
+    for (Symbol s : symbols) {
+      byte[] name = s.getName().getBytes(StandardCharsets.UTF_8);
+      dos.writeInt(name.length);
+      dos.write(name);
+      dos.writeInt(s.getAddress());
+      dos.writeInt(s.getSize());
+    }
+  }
+
+  static Program read(Path image) throws IOException {
+    try (FileChannel channel = FileChannel.open(image, StandardOpenOption.READ)) {
+      return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  static Program read(ByteBuffer image) {
+    ByteBuffer b = image.duplicate();
+    checkArgument(b.getInt() == MAGIC, "Expected a cached program");
+    int version = b.getInt();
+    checkArgument(version == VERSION, "Expected an image of version %s. Got %s", VERSION, version);
+    int entryPoint = b.getInt();
+
+    int noOfInstructions = count(b, 4);
+    List<Instruction> instructions = new ArrayList<>(noOfInstructions);
+    for (int i = 0; i < noOfInstructions; i++) {
+      // Written from an assembly, the words are all known instructions
+      instructions.add(Instruction.from(Integer.toUnsignedLong(b.getInt())));
+    }
+    int noOfExits = count(b, 4);
+    for (int i = 0; i < noOfExits; i++) {
+      int at = b.getInt();
+      checkArgument(at >= 0 && at < noOfInstructions, "Expected an exit within the text. Got %s", at);
+      instructions.set(at, Instruction.EXIT);
+    }
+
+    int size = count(b, 1);
+    ByteBuffer contents = b.slice();
+    contents.limit(size);
+    b.position(b.position() + size);
+    List<Segment> data = new ArrayList<>(1);
+    if (size > 0) {
+      data.add(new Segment(".data", 0, contents, size));
+    }
+
+    List<Symbol> textSymbols = symbols(b);
+    List<Symbol> dataSymbols = symbols(b);
+    return Program.from(instructions, 0, entryPoint, data, textSymbols, dataSymbols);
+  }
+
+  private static List<Symbol> symbols(ByteBuffer b) {
+    int noOfSymbols = count(b, 12);
+    List<Symbol> symbols = new ArrayList<>(noOfSymbols);
+    for (int i = 0; i < noOfSymbols; i++) {
+      byte[] name = new byte[count(b, 1)];
+      b.get(name);
+      symbols.add(new Symbol(new String(name, StandardCharsets.UTF_8), b.getInt(), b.getInt()));
+    }
+    return symbols;
+  }
+
+  /* Reads a count of elements of the given size, that all have to be in the image */
+  private static int count(ByteBuffer b, int sizeOfElement) {
+    int n = b.getInt();
+    checkArgument(n >= 0 && (long) n * sizeOfElement <= b.remaining(),
+          "Expected at most %s elements. Got %s", b.remaining() / sizeOfElement, n);
+    return n;
+  }
+
+  @Override
+  public String toString() {
+    return format("%s: %d hits, %d misses", directory, hits.get(), misses.get());
+  }
+}
@@ -0,0 +1,75 @@
+package kilobyte.simulator.program;
+
+import lombok.Value;
+
+/**
+ * A place in an {@link ObjectFile} that holds the address of a symbol,
+ * which is not known until the objects are linked. The place holds a
+ * zero until then.
+ */
+@Value
+public class Relocation {
+  public enum Kind {
+    // A branch offset, relative to the branch in number of instructions
+    BRANCH,
+    // The 26-bit target of a jump, the address of the symbol shifted twice
+    TARGET,
+    // A 16-bit immediate that is the address of the symbol
+    ABSOLUTE_16,
+    // The upper half of the address, for a lui
+    HI_16,
+    // The lower half of the address, for the ori that follows a lui
+    LO_16,
+    // A word of data that is the address of the symbol
+    WORD;
+
+    /* Whether the place is in the text, or else in the data */
+    public boolean isInText() {
+      return this != WORD;
+    }
+
+    /* Whether the symbol has to label an instruction */
+    public boolean isJump() {
+      return this == BRANCH || this == TARGET;
+    }
+
+    /**
+     * Returns the word, found at the given byte address, with the address
+     * of the symbol put in its place, the same way as the simulator will
+     * read it back.
+     *
+     * @throws IllegalArgumentException if the address does not fit.
+     */
+    public int apply(int word, int at, int address, String symbol) {
+      switch (this) {
+        case BRANCH:
+          int offset = address / 4 - at / 4;
+          if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                  String.format("\"%s\" is %d instructions away, too far to branch to", symbol, offset));
+          }
+          return (word & 0xffff0000) | (offset & 0xffff);
+        case TARGET:
+          return (word & 0xfc000000) | ((address >>> 2) & 0x3ffffff);
+        case ABSOLUTE_16:
+          if (Integer.compareUnsigned(address, 0xffff) > 0) {
+            throw new IllegalArgumentException(
+                  String.format("The address of \"%s\", %d, does not fit in 16 bits", symbol, address));
+          }
+          return (word & 0xffff0000) | address;
+        case HI_16:
+          return (word & 0xffff0000) | (address >>> 16);
+        case LO_16:
+          // ori zero-extends, there is nothing to carry into the upper half
+          return (word & 0xffff0000) | (address & 0xffff);
+        default:
+          return address;
+      }
+    }
+  }
+
+  Kind kind;
+  // The byte offset of the place into the text, or the data, of the object
+  int offset;
+  String symbol;
+}
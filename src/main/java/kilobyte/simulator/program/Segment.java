@@ -0,0 +1,35 @@
+package kilobyte.simulator.program;
+
+import lombok.Value;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A block of initialised, or zeroed, data that is copied into the data
+ * memory at a fixed address when a program is loaded.
+ */
+@Value
+public class Segment {
+  String name;
+  int address;
+  // The initialised bytes, whole words are read in the byte order of the buffer
+  ByteBuffer contents;
+  // The size of the segment in bytes, anything past the contents is zeroed
+  int size;
+
+  public Segment(String name, int address, ByteBuffer contents, int size) {
+    this.name = name;
+    this.address = address;
+    this.contents = contents.asReadOnlyBuffer().order(contents.order());
+    this.size = Math.max(size, contents.remaining());
+  }
+
+  public static Segment zeroed(String name, int address, int size) {
+    return new Segment(name, address, ByteBuffer.allocate(0), size);
+  }
+
+  public ByteBuffer getContents() {
+    // Every caller gets a position of its own
+    return contents.duplicate().order(contents.order());
+  }
+}
@@ -0,0 +1,14 @@
+package kilobyte.simulator.program;
+
+import lombok.Value;
+
+/**
+ * A named address in a program, such as a function or a variable.
+ */
+@Value
+public class Symbol {
+  String name;
+  int address;
+  // The size in bytes of what the symbol names, 0 if unknown
+  int size;
+}
@@ -0,0 +1,90 @@
+package kilobyte.simulator.ui;
+
+import kilobyte.common.instruction.Instruction;
+import kilobyte.simulator.program.Program;
+import kilobyte.simulator.ui.utils.EmptyIcon;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * The rows of the {@link ProgramView}, one per instruction, backed by the
+ * program itself. A row is only formatted when the table asks for it,
+ * i.e. once it is scrolled into view, so a program of a million
+ * instructions is displayed as quickly as one of ten. Accessed on the EDT
+ * only.
+ */
+class ProgramTableModel extends AbstractTableModel {
+  static final int INSTRUCTION_POINTER_COL_INDEX = 0;
+
+  private static final String NO_PROGRAM = "No program is loaded: Try ALT+F by CTRL+L to open the file browser, " +
+        "or use the \"File\" menu in the top left corner";
+
+  private final ImageIcon currentInstructionPointer = Icon.INSTRUCTION_POINTER.getImageIcon();
+  private final EmptyIcon noInstructionPointer = new EmptyIcon(16, 16);
+
+  private Program program;
+  private int currentRowIndex = 0;
+
+  void display(Program p) {
+    program = p;
+    currentRowIndex = 0;
+    fireTableDataChanged();
+  }
+
+  /* The address of the instruction on the first row */
+  int getTextAddress() {
+    return program == null ? 0 : program.getTextAddress();
+  }
+
+  /* The instruction on the given row, if a program is loaded and the row decodes */
+  Instruction instructionAt(int rowIndex) {
+    return program == null || !program.isDecodable(rowIndex) ? null : program.getInstructions().get(rowIndex);
+  }
+
+  /* Only the rows that the pointer leaves and enters are repainted */
+  void highlightLine(int rowIndex) {
+    int previous = currentRowIndex;
+    currentRowIndex = rowIndex;
+    if (previous < getRowCount()) {
+      fireTableRowsUpdated(previous, previous);
+    }
+    if (rowIndex >= 0 && rowIndex < getRowCount()) {
+      fireTableRowsUpdated(rowIndex, rowIndex);
+    }
+  }
+
+  @Override
+  public int getRowCount() {
+    return program == null ? 1 : program.getInstructions().size();
+  }
+
+  @Override
+  public int getColumnCount() {
+    return 2;
+  }
+
+  @Override
+  public Class<?> getColumnClass(int columnIndex) {
+    // Lets the table pick a renderer that draws the icon
+    return columnIndex == INSTRUCTION_POINTER_COL_INDEX ? javax.swing.Icon.class : String.class;
+  }
+
+  @Override
+  public Object getValueAt(int rowIndex, int columnIndex) {
+    if (columnIndex == INSTRUCTION_POINTER_COL_INDEX) {
+      return rowIndex == currentRowIndex ? currentInstructionPointer : noInstructionPointer;
+    }
+    if (program == null) {
+      return NO_PROGRAM;
+    }
+    // Instructions that a symbol names are labelled with it, words that
+    // do not decode are shown as such rather than failing to paint
+    String mnemonic = program.mnemonicAt(rowIndex);
+    int address = program.getTextAddress() + 4 * rowIndex;
+    return program.symbolAt(address)
+          .filter(symbol -> symbol.getAddress() == address)
+          .map(symbol -> symbol.getName() + ": " + mnemonic)
+          .orElse(mnemonic);
+  }
+}
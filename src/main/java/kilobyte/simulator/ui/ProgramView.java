@@ -5,49 +5,22 @@ import kilobyte.common.annotations.InstantiateOnEDT;
 import kilobyte.common.annotations.InvokeLaterNotNecessary;
 import kilobyte.common.instruction.Instruction;
 import kilobyte.simulator.program.Program;
-import kilobyte.simulator.ui.utils.EmptyIcon;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
-import lombok.experimental.NonFinal;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.MouseEvent;
-import java.util.ArrayList;
-import java.util.List;
 
 @InstantiateOnEDT
 @Value
 @EqualsAndHashCode(callSuper = true)
 class ProgramView extends JPanel {
-  int INITIAL_NO_OF_ROWS = 0;
-  int NO_OF_COLUMNS = 2;
-  int INSTRUCTION_POINTER_COL_INDEX = 0;
-
-  @NonFinal
-  int currentRowIndex = 0;
-
-  List<Instruction> instructionsInTable = new ArrayList<>();
-  DefaultTableModel tableModel = new DefaultTableModel(INITIAL_NO_OF_ROWS, NO_OF_COLUMNS) {
-    @Override
-    public boolean isCellEditable(int row, int column) {
-      // Makes all cells uneditable
-      return false;
-    }
-  };
-
-  ImageIcon currentInstructionPointer = Icon.INSTRUCTION_POINTER.getImageIcon();
+  // The rows are formatted as they are scrolled into view, and the
+  // cells are not editable
+  ProgramTableModel tableModel = new ProgramTableModel();
 
   JTable table = new JTable(tableModel) {
-    // Returning the Class of each column will allow different
-    // renderers to be used based on Class. We need this to
-    // render the icon
-    @Override
-    public Class getColumnClass(int column) {
-      return getValueAt(0, column).getClass();
-    }
-
     //Implement table cell tool tips.
     @Override
     public String getToolTipText(MouseEvent e) {
@@ -57,8 +30,8 @@ class ProgramView extends JPanel {
       int colIndex = columnAtPoint(p);
 
       try {
-        if ((rowIndex > -1 && rowIndex < table.getRowCount()) && (colIndex > -1 && colIndex < table.getColumnCount())) {
-          Instruction i = instructionsInTable.get(rowIndex);
+        Instruction i = rowIndex > -1 && rowIndex < table.getRowCount() ? tableModel.instructionAt(rowIndex) : null;
+        if (i != null && colIndex > -1 && colIndex < table.getColumnCount()) {
           String tooltip = "<html><p>" + i.getIname() + "</p>" + "<p>    Mnemonic example: " + i.getMnemonicRepresentation()
                 + "</p><p>    Numeric example: 0x" + Long.toHexString(i.getNumericRepresentation())
                 + "</p><br><p>Description: " + i.getDescription() + "</p></html>";
@@ -86,41 +59,24 @@ class ProgramView extends JPanel {
     table.getColumn("A").setPreferredWidth(18);
     table.getColumn("A").setMaxWidth(18);
     table.getColumn("A").setMinWidth(18);
-
-    append("No program is loaded: Try ALT+F by CTRL+L to open the file browser, or use the \"File\" menu in the top left corner");
-    highlightLine(0);
   }
 
   @InvokeLaterNotNecessary
   public void display(Program p) {
+    // The rows are read on the EDT, so the program is replaced there
     SwingUtilities.invokeLater(() -> {
-      // Clear the old instructions if any
-      tableModel.getDataVector().removeAllElements();
-      instructionsInTable.clear();
-
-      // notifies the JTable that the model has changed
-      tableModel.fireTableDataChanged();
-
-      // Adding the elements has to happen on the EDT
-      p.getInstructions().forEach(this::append);
-      currentRowIndex = 0;
-      highlightLine(0);
+      tableModel.display(p);
+      highlightAddress(p.getEntryPoint());
     });
   }
 
-  private void append(String s) {
-    tableModel.addRow(new Object[]{null, s});
-  }
-
   @CallOnEDT
   public void highlightLine(int rowIndex) {
-    tableModel.setValueAt(new EmptyIcon(16, 16), currentRowIndex, INSTRUCTION_POINTER_COL_INDEX);
-    tableModel.setValueAt(currentInstructionPointer, rowIndex, INSTRUCTION_POINTER_COL_INDEX);
-    currentRowIndex = rowIndex;
+    tableModel.highlightLine(rowIndex);
   }
 
-  private void append(Instruction i) {
-    instructionsInTable.add(i);
-    append(i.getMnemonicRepresentation());
+  @CallOnEDT
+  public void highlightAddress(int address) {
+    highlightLine((address - tableModel.getTextAddress()) / 4);
   }
 }
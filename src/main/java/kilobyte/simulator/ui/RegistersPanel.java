@@ -5,7 +5,6 @@ import kilobyte.common.hardware.Register;
 import kilobyte.common.hardware.RegisterFile;
 import kilobyte.simulator.ui.utils.Radix;
 import lombok.experimental.NonFinal;
-import lombok.val;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
@@ -19,10 +18,7 @@ import static java.lang.String.valueOf;
 class RegistersPanel extends JPanel implements ChangeRadixDisplayCapable {
   RegisterFile registerFile;
 
-  // Used to determine if a value has changed
-  int[] previouslyDisplayedValues = new int[32];
-
-  // Defaults to false values
+  // Defaults to false values, set once the register file reports a change
   boolean[] valuesThatHaveChanged = new boolean[32];
 
   JTable table;
@@ -53,7 +49,6 @@ class RegistersPanel extends JPanel implements ChangeRadixDisplayCapable {
 
     for (int i = 0; i < noOfRows; i++) {
       data[i] = greyRow(registers[i], i);
-      previouslyDisplayedValues[i] = registers[i].getValue();
     }
 
     /* We assume that the caller instantiates this class on the EDT,
@@ -124,19 +119,7 @@ class RegistersPanel extends JPanel implements ChangeRadixDisplayCapable {
   }
 
   private void displayRegisterFile() {
-    Register[] registers = registerFile.getRegisters();
-
-    for (int rowIndex = 0; rowIndex < registers.length; rowIndex++) {
-      Register r = registers[rowIndex];
-      val actual = r.getValue();
-
-      if (!(previouslyDisplayedValues[rowIndex] == actual)) {
-        valuesThatHaveChanged[rowIndex] = true;
-        previouslyDisplayedValues[rowIndex] = actual;
-      }
-
-      // We need to re-write the entire line just in case it has been bold before
-      // this happens when the display has been display
+    for (int rowIndex = 0; rowIndex < noOfRows; rowIndex++) {
       renderRow(rowIndex);
     }
   }
@@ -145,6 +128,18 @@ class RegistersPanel extends JPanel implements ChangeRadixDisplayCapable {
     displayRegisterFile();
   }
 
+  /**
+   * Re-renders the registers that have changed, given as a mask from
+   * {@link RegisterFile#drainChanges()}, and leaves the others be.
+   */
+  public void update(int changedRegisters) {
+    for (int mask = changedRegisters; mask != 0; mask &= mask - 1) {
+      int rowIndex = Integer.numberOfTrailingZeros(mask);
+      valuesThatHaveChanged[rowIndex] = true;
+      renderRow(rowIndex);
+    }
+  }
+
   public void display(RegisterFile registerFile) {
     this.registerFile = registerFile;
     Register[] registers = this.registerFile.getRegisters();
@@ -153,7 +148,6 @@ class RegistersPanel extends JPanel implements ChangeRadixDisplayCapable {
 
     for (int i = 0; i < registers.length; i++) {
       valuesThatHaveChanged[i] = false;
-      previouslyDisplayedValues[i] = registers[i].getValue();
     }
 
     update();
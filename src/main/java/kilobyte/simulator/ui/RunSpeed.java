@@ -0,0 +1,41 @@
+package kilobyte.simulator.ui;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How fast a run executes instructions, from one every 400 ms, so that
+ * every step can be followed, up to as fast as the simulator can. The
+ * display is refreshed at a frame rate of its own, so a fast run is not
+ * held back by rendering every instruction.
+ */
+public enum RunSpeed {
+  ANIMATED("2.5 instructions/s", 2.5),
+  SLOW("10 instructions/s", 10),
+  MODERATE("100 instructions/s", 100),
+  FAST("1,000 instructions/s", 1_000),
+  FASTER("10,000 instructions/s", 10_000),
+  FASTEST("1,000,000 instructions/s", 1_000_000),
+  UNTHROTTLED("As fast as possible", Double.POSITIVE_INFINITY);
+
+  private final String description;
+  private final double instructionsPerSecond;
+
+  RunSpeed(String description, double instructionsPerSecond) {
+    this.description = description;
+    this.instructionsPerSecond = instructionsPerSecond;
+  }
+
+  boolean isThrottled() {
+    return this != UNTHROTTLED;
+  }
+
+  /* The time from the start of a run at this speed until the n:th instruction is due */
+  long nanosUntil(long n) {
+    return isThrottled() ? (long) (n * TimeUnit.SECONDS.toNanos(1) / instructionsPerSecond) : 0;
+  }
+
+  @Override
+  public String toString() {
+    return description;
+  }
+}
@@ -0,0 +1,135 @@
+package kilobyte.simulator.ui;
+
+import lombok.extern.java.Log;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * The one thread that drives the simulator of the GUI. Every control,
+ * i.e. run, step, stop, reset and load, is a command that is queued and
+ * carried out in order, so the simulator, and the state of the
+ * application that goes with it, is only ever touched by this thread.
+ *
+ * Commands that interrupt, such as stop, cancel the commands that were
+ * submitted before them. A long-running command, such as a run, checks
+ * {@link #isCancelled()} between instructions, which is a single
+ * volatile read, and waits through {@link #sleep(long)}, which is woken
+ * up by the cancellation. Stopping a program in an infinite loop thus
+ * takes effect within an instruction, after which the commands queued
+ * behind the run are carried out.
+ *
+ * Closing the actor cancels the command being carried out, drops those
+ * queued and waits for the thread to finish.
+ */
+@Log
+final class SimulationActor implements AutoCloseable {
+  /* A command and the generation that it belongs to */
+  private static final class Queued {
+    final long generation;
+    final Runnable command;
+    // Commands that interrupt are never skipped, e.g. two loads in a row
+    final boolean interrupts;
+
+    Queued(long generation, Runnable command, boolean interrupts) {
+      this.generation = generation;
+      this.command = command;
+      this.interrupts = interrupts;
+    }
+  }
+
+  private final BlockingQueue<Queued> commands = new LinkedBlockingQueue<>();
+  // Bumped by every command that interrupts the ones before it
+  private final AtomicLong generation = new AtomicLong();
+  private final Thread thread = new Thread(this::consume, "Simulation");
+
+  // The generation of the command being carried out, only accessed by the thread
+  private long current;
+
+  private volatile boolean closed = false;
+
+  SimulationActor() {
+    // The simulation does not keep the application from exiting
+    thread.setDaemon(true);
+  }
+
+  void start() {
+    thread.start();
+  }
+
+  /* Queues a command behind the ones that are already queued */
+  synchronized void submit(Runnable command) {
+    commands.add(new Queued(generation.get(), command, false));
+  }
+
+  /* Cancels the command that is being carried out, skips those queued, and queues this one */
+  synchronized void interruptWith(Runnable command) {
+    commands.add(new Queued(generation.incrementAndGet(), command, true));
+    LockSupport.unpark(thread);
+  }
+
+  /**
+   * Stops the thread, cancelling the command being carried out, and waits
+   * for it to finish. Commands that are queued, or submitted after, are
+   * never carried out.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    // Cancels the current command, and wakes the thread if it is waiting for one
+    interruptWith(() -> log.info("Closed the simulation"));
+    if (Thread.currentThread() == thread) {
+      return;
+    }
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  boolean isAlive() {
+    return thread.isAlive();
+  }
+
+  /* Whether a command that interrupts has been submitted since the current one was */
+  boolean isCancelled() {
+    return generation.get() != current;
+  }
+
+  /* Waits for the given time, or until cancelled, whichever comes first */
+  void sleep(long nanos) {
+    if (!isCancelled()) {
+      LockSupport.parkNanos(this, nanos);
+    }
+  }
+
+  private void consume() {
+    while (!closed) {
+      Queued q;
+      try {
+        q = commands.take();
+      } catch (InterruptedException e) {
+        // Nobody but this class knows the thread, hence nobody interrupts it
+        continue;
+      }
+      current = q.generation;
+      if (closed) {
+        break;
+      }
+      if (isCancelled() && !q.interrupts) {
+        log.info("Skipping a cancelled command");
+        continue;
+      }
+      try {
+        q.command.run();
+      } catch (RuntimeException e) {
+        // The thread outlives a command that fails, e.g. on an unsupported instruction
+        log.log(Level.SEVERE, "The simulation failed", e);
+      }
+    }
+  }
+}
@@ -1,8 +1,10 @@
 package kilobyte.simulator.ui;
 
 import kilobyte.common.annotations.InstantiateOnEDT;
+import kilobyte.simulator.Changes;
 import kilobyte.simulator.Simulator;
 import kilobyte.simulator.program.Program;
+import kilobyte.simulator.program.ProgramCache;
 import kilobyte.simulator.ui.memory.DataMemoryPanel;
 import kilobyte.simulator.ui.memory.InstructionMemoryPanel;
 import kilobyte.simulator.ui.memory.TabbedMemoryPane;
@@ -16,10 +18,12 @@ import org.apache.commons.cli.*;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
@@ -98,39 +102,106 @@ public class SimulatorApplication {
   Object interruptLock = new Object();
   SimulatorControlsToolbar controls;
 
+  // Sources that have been loaded before are not assembled again
+  ProgramCache programCache = ProgramCache.atDefaultLocation();
+
+  // Drives the simulator, which, along with the program and whether it
+  // has exited, is only accessed by its thread
+  SimulationActor simulation = new SimulationActor();
+
   @NonFinal
   Program currentlyOpenProgram = null;
 
   @NonFinal
-  AtomicBoolean wasInterrupted = new AtomicBoolean(false);
+  boolean hasReadExitStatement = false;
 
+  // May be changed while running, from the EDT
   @NonFinal
-  boolean hasReadExitStatement = false;
+  volatile RunSpeed speed = RunSpeed.ANIMATED;
+
+  // The display is refreshed at most 30 times a second while running
+  private static final long NANOS_PER_FRAME = TimeUnit.SECONDS.toNanos(1) / 30;
 
+  /* Runs until the program exits or is stopped */
   public void run() {
-    wasInterrupted.set(false);
-    controls.transitionToDisplayState(SimulatorControlsToolbar.ToolbarDisplayState.RUNNING);
-    while(!(hasReadExitStatement || wasInterrupted.get() || Thread.interrupted())) {
-      log.info("Executing the next instruction: " + simulator.getCurrentInstruction());
-      executeNextInstruction();
-      try {
-        Thread.sleep(400);
-      } catch (InterruptedException ignored) {
+    simulation.submit(this::runUntilStopped);
+  }
+
+  /* Executes the next instruction, or instructions, and then waits */
+  public void step() {
+    step(1);
+  }
+
+  public void step(int noOfInstructions) {
+    simulation.submit(() -> executeNextInstructions(noOfInstructions));
+  }
+
+  /* Stops a run at once, even if the program is in an unending loop */
+  public void stop() {
+    simulation.interruptWith(() -> log.info("Interrupted the simulation"));
+  }
+
+  /**
+   * Runs at the current speed. The instructions are executed on the
+   * thread of the simulation and the display is refreshed once per frame
+   * with whatever has changed since the last one, however many
+   * instructions that took.
+   */
+  private void runUntilStopped() {
+    RunSpeed pace = null;
+    long paceStarted = 0;
+    long executedAtPace = 0;
+    long nextFrame = System.nanoTime();
+    boolean changedSinceFrame = false;
+    while(!(hasReadExitStatement || simulation.isCancelled())) {
+      long now = System.nanoTime();
+      if (pace != speed) {
+        pace = speed;
+        paceStarted = now;
+        executedAtPace = 0;
+      }
+
+      long due = paceStarted + pace.nanosUntil(executedAtPace);
+      if (due - now <= 0) {
+        hasReadExitStatement = simulator.executeNextInstruction();
+        executedAtPace++;
+        changedSinceFrame = true;
+      }
+
+      if (changedSinceFrame && now - nextFrame >= 0) {
+        displayFrame();
+        changedSinceFrame = false;
+        nextFrame = now + NANOS_PER_FRAME;
+      } else if (due - now > 0) {
+        // Ahead of the pace, so wait for the next instruction or frame
+        long wakeUp = changedSinceFrame && nextFrame - due < 0 ? nextFrame : due;
+        simulation.sleep(wakeUp - now);
       }
     }
+
+    displayFrame();
     if (hasReadExitStatement) {
-      controls.transitionToDisplayState(SimulatorControlsToolbar.ToolbarDisplayState.FINISHED);
+      transitionTo(SimulatorControlsToolbar.ToolbarDisplayState.FINISHED);
     }
   }
 
-  public void stop() {
-    log.info("Interrupting the simulation");
-    wasInterrupted.set(true);
+  public void setSpeed(RunSpeed speed) {
+    log.info("Running at " + speed);
+    this.speed = speed;
   }
 
   SimulatorApplication() {
+    simulator.getMetrics().register(simulator.getHartId());
+    simulator.addChangeListener(this::displayChanges);
+
     // DISPOSE_ON_CLOSE is cleaner than EXIT_ON_CLOSE
     applicationFrame.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+    applicationFrame.addWindowListener(new WindowAdapter() {
+      @Override
+      public void windowClosed(WindowEvent e) {
+        close();
+      }
+    });
     fileMenu.setMnemonic(VK_F);
     displaySettings.setMnemonic(VK_V);
     menuBar = new SimulatorMenuBar(fileMenu, displaySettings);
@@ -169,6 +240,14 @@ public class SimulatorApplication {
 
     /* Center the GUI on the screen, has to be called after pack() */
     applicationFrame.setLocationRelativeTo(null);
+
+    simulation.start();
+  }
+
+  /* Stops the simulation once the window has been disposed of */
+  private void close() {
+    simulation.close();
+    simulator.close();
   }
 
   private void dispatchEvent(int i) {
@@ -217,45 +296,81 @@ public class SimulatorApplication {
     });
   }
 
+  /* Stops whatever is running and loads the program of the file */
   public void loadProgram(File f) {
-    try {
-      loadProgram(Program.from(f));
-    } catch (IOException e) {
-      // TODO: Catch sensibly
-      e.printStackTrace();
-    }
+    simulation.interruptWith(() -> {
+      try {
+        load(programCache.load(f));
+      } catch (IOException | IllegalArgumentException e) {
+        // The file could not be read, or does not hold a program
+        log.log(Level.WARNING, "Failed to load " + f, e);
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(applicationFrame,
+              "Failed to load " + f.getName() + ": " + e.getMessage(),
+              "Failed to load the program", JOptionPane.ERROR_MESSAGE));
+      }
+    });
   }
 
+  /* Stops whatever is running and loads the program */
   public void loadProgram(Program p) {
+    simulation.interruptWith(() -> load(p));
+  }
+
+  private void load(Program p) {
     currentlyOpenProgram = p;
+    hasReadExitStatement = false;
 
     // All the values will be display
+    simulator.close();
     simulator = Simulator.executingProgram(currentlyOpenProgram);
+    simulator.getMetrics().register(simulator.getHartId());
+    // Loading the program is not a change of its own
+    simulator.publishChanges();
+    simulator.addChangeListener(this::displayChanges);
     programCounterView.display(simulator.getProgramCounter());
     registersPanel.display(simulator.getRegisterFile());
     instructionMemoryPanel.display(simulator.getInstructionMemory());
     dataMemoryPanel.display(simulator.getDataMemory());
     controlLines.display(simulator.getControl());
-    controls.transitionToDisplayState(SimulatorControlsToolbar.ToolbarDisplayState.RESET);
+    transitionTo(SimulatorControlsToolbar.ToolbarDisplayState.RESET);
 
     programView.display(currentlyOpenProgram);
   }
 
-  public boolean executeNextInstruction() {
-    hasReadExitStatement = simulator.executeNextInstruction();
-    registersPanel.update();
-    instructionMemoryPanel.update();
-    dataMemoryPanel.update();
-    programView.highlightLine(simulator.getProgramCounter().currentInstructionIndex());
-    programCounterView.update();
-    controlLines.update();
+  private void executeNextInstructions(int noOfInstructions) {
+    for (int i = 0; i < noOfInstructions && !(hasReadExitStatement || simulation.isCancelled()); i++) {
+      hasReadExitStatement = simulator.executeNextInstruction();
+    }
+    displayFrame();
     if (hasReadExitStatement) {
-      controls.transitionToDisplayState(SimulatorControlsToolbar.ToolbarDisplayState.FINISHED);
+      transitionTo(SimulatorControlsToolbar.ToolbarDisplayState.FINISHED);
     }
-    return hasReadExitStatement;
   }
 
+  private void transitionTo(SimulatorControlsToolbar.ToolbarDisplayState state) {
+    SwingUtilities.invokeLater(() -> controls.transitionToDisplayState(state));
+  }
+
+  /*
+   * Renders the state of the simulator as of now. The instruction memory
+   * does not change while running, it is only displayed when loading.
+   */
+  private void displayFrame() {
+    simulator.publishChanges();
+    int address = simulator.getProgramCounter().getAddressPointer();
+    SwingUtilities.invokeLater(() -> programView.highlightAddress(address));
+    programCounterView.update();
+    controlLines.update();
+  }
+
+  /* Only the registers and words that have changed are rendered again */
+  private void displayChanges(Changes c) {
+    registersPanel.update(c.getRegisters());
+    dataMemoryPanel.update(c.getWords());
+  }
+
+  /* Stops whatever is running and resets to the program as it was loaded, without reading its file again */
   public void reloadProgram() {
-    loadProgram(currentlyOpenProgram);
+    simulation.interruptWith(() -> load(currentlyOpenProgram));
   }
 }
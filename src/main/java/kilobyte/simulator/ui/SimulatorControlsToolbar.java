@@ -5,6 +5,7 @@ import lombok.extern.java.Log;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.Hashtable;
 
 import static kilobyte.simulator.ui.SimulatorControlsToolbar.ToolbarDisplayState.*;
 
@@ -45,7 +46,8 @@ public class SimulatorControlsToolbar extends JToolBar {
       return button;
   }
   
-  Thread backgroundThread = null;
+  // From animated, one instruction every 400 ms, to unthrottled
+  JSlider speed = new JSlider(0, RunSpeed.values().length - 1, RunSpeed.ANIMATED.ordinal());
 
   // Dictates what icons should/shouldn't be active in the given state
   public enum ToolbarDisplayState {
@@ -90,41 +92,58 @@ public class SimulatorControlsToolbar extends JToolBar {
     add(step);
     add(reset);
     add(stop);
+    addSeparator();
+    add(createSpeedControl(s));
 
+    // The controls are queued for the thread of the simulation
     play.addActionListener(e -> {
       log.info("Running the simulation");
       transitionToDisplayState(RUNNING);
-      changeCurrentBackgroundThread(new Thread(s::run));
+      s.run();
     });
 
     reset.addActionListener(e -> {
       log.info("Resetting the simulation");
       transitionToDisplayState(RESET);
-      changeCurrentBackgroundThread(new Thread(s::reloadProgram));
+      s.reloadProgram();
     });
 
     step.addActionListener(e -> {
       log.info("Executing the next instruction");
       transitionToDisplayState(STEP);
-      changeCurrentBackgroundThread(new Thread(s::executeNextInstruction));
+      s.step();
     });
     stop.addActionListener(e -> {
       log.info("Stopping the simulation");
       transitionToDisplayState(STOPPED);
-      changeCurrentBackgroundThread(new Thread(s::stop));
+      s.stop();
     });
   }
 
+  /* Can be changed while running, the run picks up the new speed */
+  private JSlider createSpeedControl(SimulatorApplication s) {
+    Hashtable<Integer, JLabel> labels = new Hashtable<>();
+    labels.put(0, new JLabel("Animated"));
+    labels.put(RunSpeed.values().length - 1, new JLabel("Unthrottled"));
+    speed.setLabelTable(labels);
+    speed.setPaintLabels(true);
+    speed.setMajorTickSpacing(1);
+    speed.setPaintTicks(true);
+    speed.setSnapToTicks(true);
+    speed.setValue(s.getSpeed().ordinal());
+    speed.setToolTipText(s.getSpeed().toString());
+    speed.addChangeListener(e -> {
+      RunSpeed selected = RunSpeed.values()[speed.getValue()];
+      speed.setToolTipText(selected.toString());
+      if (!speed.getValueIsAdjusting()) {
+        s.setSpeed(selected);
+      }
+    });
+    return speed;
+  }
+
   @CallOnEDT
   public void transitionToDisplayState(ToolbarDisplayState tbs) {
     tbs.callOnStateChange.invoke();
   }
-
-  private synchronized void changeCurrentBackgroundThread(Thread thread) {
-    if (backgroundThread != null) {
-      backgroundThread.interrupt();
-    }
-    backgroundThread = thread;
-    thread.start();
-  }
 }
@@ -1,6 +1,7 @@
 package kilobyte.simulator.ui.memory;
 
 import kilobyte.common.annotations.InstantiateOnEDT;
+import kilobyte.common.annotations.InvokeLaterNotNecessary;
 import kilobyte.common.machinecode.OperationsKt;
 import kilobyte.simulator.hardware.DataMemory;
 import kilobyte.simulator.ui.ChangeRadixDisplayCapable;
@@ -8,49 +9,81 @@ import kilobyte.simulator.ui.utils.Radix;
 import lombok.experimental.NonFinal;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
 import java.awt.*;
+import java.util.BitSet;
 
 import static java.lang.String.format;
 
+/**
+ * Shows the data memory, one word per row. The table is backed by the
+ * memory itself and only the rows that are scrolled into view are ever
+ * formatted, so a memory of megabytes is as quick to display as one of
+ * a kilobyte. Changes only repaint the rows of the words that changed.
+ */
 @InstantiateOnEDT
 public class DataMemoryPanel extends JPanel implements ChangeRadixDisplayCapable {
-  DefaultTableModel dtm;
+  /* Formats a cell whenever the table asks for it */
+  private final class Words extends AbstractTableModel {
+    @Override
+    public int getRowCount() {
+      return dataMemory.getNO_OF_BYTES() / 4;
+    }
+
+    @Override
+    public int getColumnCount() {
+      return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+      return columnNames[column].toString();
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+      int address = rowIndex * 4;
+      int _32bitWord = dataMemory.readWordFrom(address);
+      String value;
+      if (columnIndex == ADDRESS_COLUMN) {
+        value = prettify(address);
+      } else if (columnIndex == _31to0_COLUMN) {
+        value = prettify(_32bitWord);
+      } else {
+        // [31:24] is the highest byte, the 3rd, and [7:0] the lowest
+        value = prettify(OperationsKt.nthByte(_32bitWord, _7to0_COLUMN - columnIndex));
+      }
+      // Either the value has changed or we've already changed this one in the past
+      return valuesThatHaveChanged.get(rowIndex) ? html(bold(value)) : html(grey(value));
+    }
+  }
+
+  Words model = new Words();
   JTable table;
+  // Read on the EDT only
   DataMemory dataMemory;
 
   Object[] columnNames = new Object[]{
         "Addr", "[31:0]", "[31:24]", "[23:16]", "[15:8]", "[7:0]"};
-  int ADDRESS_COLUMN = 0;
-  int _31to0_COLUMN = 1;
-  int _31to24_COLUMN = 2;
-  int _23to16_COLUMN = 3;
-  int _15to8_COLUMN = 4;
-  int _7to0_COLUMN = 5;
+  static final int ADDRESS_COLUMN = 0;
+  static final int _31to0_COLUMN = 1;
+  static final int _7to0_COLUMN = 5;
 
   @NonFinal
   Radix currentRadix = Radix.HEX;
 
-  boolean[] valuesThatHaveChanged;
-  int[] previousValues;
-  int noOfRows;
+  // The words that have been reported as changed, accessed on the EDT only
+  BitSet valuesThatHaveChanged = new BitSet();
+
   public DataMemoryPanel(DataMemory dataMemory) {
     super(new BorderLayout());
     this.dataMemory = dataMemory;
 
-    noOfRows = dataMemory.getNO_OF_BYTES()/4;
-    int noOfColumns = columnNames.length;
-    Object[][] data = new Object[noOfRows][noOfColumns];
-    valuesThatHaveChanged = new boolean[noOfRows];
-    previousValues = new int[noOfRows];
-    
-    dtm = new DefaultTableModel(data, columnNames);
-    table = new JTable(dtm);
+    table = new JTable(model);
 
     JScrollPane scrollPane = new JScrollPane(table);
     scrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS);
     this.add(scrollPane, BorderLayout.CENTER);
-    update();
   }
 
   String prettify(byte b) {
@@ -83,80 +116,43 @@ public class DataMemoryPanel extends JPanel implements ChangeRadixDisplayCapable
     return color(s,"#B4B4B4");
   }
 
-
-  public void renderBold(int rowIndex, int address, 
-                         int _32bitWord, byte lowestByte, 
-                         byte byte2, byte byte3, byte highestByte) {
-    render(rowIndex, html(bold(prettify(address))),
-          html(bold(prettify(_32bitWord))),
-          html(bold(prettify(lowestByte))),
-          html(bold(prettify(byte2))),
-          html(bold(prettify(byte3))),
-          html(bold(prettify(highestByte))));
-  }
-
+  @InvokeLaterNotNecessary
   public void display(DataMemory dataMemory) {
-    this.dataMemory = dataMemory;
-
-    for (int i = 0; i < noOfRows; i++) {
-      valuesThatHaveChanged[i] = false;
-      previousValues[i] = 0;
-    }
-
-    update();
-  }
-
-  public void render(int rowIndex, String address,
-                     String _32bitWord, String lowestByte,
-                     String byte2, String byte3, String highestByte) {
     SwingUtilities.invokeLater(() -> {
-      dtm.setValueAt(address, rowIndex, ADDRESS_COLUMN);
-      dtm.setValueAt(_32bitWord, rowIndex, _31to0_COLUMN);
-      dtm.setValueAt(highestByte, rowIndex, _31to24_COLUMN);
-      dtm.setValueAt(byte3, rowIndex, _23to16_COLUMN);
-      dtm.setValueAt(byte2, rowIndex, _15to8_COLUMN);
-      dtm.setValueAt(lowestByte, rowIndex, _7to0_COLUMN);
-      dtm.fireTableRowsUpdated(rowIndex, rowIndex);
+      this.dataMemory = dataMemory;
+      valuesThatHaveChanged.clear();
+      model.fireTableDataChanged();
     });
   }
 
-
-
+  @InvokeLaterNotNecessary
   public void update() {
-    for (int rowIndex = 0; rowIndex < noOfRows; rowIndex++) {
-      int address = rowIndex * 4;
-      int _32bitWord = dataMemory.readWordFrom(address);
-      byte lowestByte = OperationsKt.nthByte(_32bitWord, 0);
-      byte byte2 = OperationsKt.nthByte(_32bitWord, 1);
-      byte byte3 = OperationsKt.nthByte(_32bitWord, 2);
-      byte highestByte = OperationsKt.nthByte(_32bitWord, 3);
-      int previousValue = previousValues[rowIndex];
-
-      if (previousValue != _32bitWord) {
-        valuesThatHaveChanged[rowIndex] = true;
-        previousValues[rowIndex] = _32bitWord;
-      }
-
-      // Either the value has changed or we've already changed this one in the past
-      if (valuesThatHaveChanged[rowIndex]) {
-        renderBold(rowIndex, address, _32bitWord, lowestByte, byte2, byte3, highestByte);
-      } else {
-        renderGrey(rowIndex, address, _32bitWord, lowestByte, byte2, byte3, highestByte);
-      }
-    }
+    SwingUtilities.invokeLater(model::fireTableDataChanged);
   }
 
-  private void renderGrey(int rowIndex, int address, 
-                          int _32bitWord, byte lowestByte, 
-                          byte byte2, byte byte3, 
-                          byte highestByte) {
-    render(rowIndex, html(grey(prettify(address))), html(grey(prettify(_32bitWord))), html(grey(prettify(lowestByte))),
-          html(grey(prettify(byte2))), html(grey(prettify(byte3))), html(grey(prettify(highestByte))));
+  /**
+   * Repaints the words that have changed, given by their indices as from
+   * {@link DataMemory#drainChanges()}, a run of adjacent words at a time,
+   * and leaves the others be.
+   */
+  @InvokeLaterNotNecessary
+  public void update(BitSet changedWords) {
+    SwingUtilities.invokeLater(() -> {
+      valuesThatHaveChanged.or(changedWords);
+      int rows = model.getRowCount();
+      for (int first = changedWords.nextSetBit(0); first >= 0 && first < rows; ) {
+        int end = Math.min(changedWords.nextClearBit(first), rows);
+        model.fireTableRowsUpdated(first, end - 1);
+        first = changedWords.nextSetBit(end);
+      }
+    });
   }
 
   @Override
   public void setRadix(Radix r) {
-    currentRadix = r;
-    update();
+    SwingUtilities.invokeLater(() -> {
+      currentRadix = r;
+      model.fireTableDataChanged();
+    });
   }
 }
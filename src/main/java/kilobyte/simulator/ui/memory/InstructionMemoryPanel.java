@@ -10,11 +10,39 @@ import lombok.extern.java.Log;
 import javax.swing.*;
 import java.awt.*;
 
+/**
+ * Lists the instruction memory. The list is backed by the memory itself
+ * and only the entries that are scrolled into view are ever formatted,
+ * so a memory of a million instructions is as quick to display as one of
+ * a thousand.
+ */
 @InstantiateOnEDT
 @Log
 public class InstructionMemoryPanel extends JPanel implements ChangeRadixDisplayCapable {
-  DefaultListModel<String> model = new DefaultListModel<>();
+  // Every entry is as wide and as high as this one, so that the list
+  // never has to format the entries to lay itself out
+  private static final String PROTOTYPE_ENTRY = "addiu: 0xffffffff R [0x3f 0x1f 0x1f 0x1f 0x1f 0x3f]";
+
+  /* Formats an entry whenever the list asks for it */
+  private final class Entries extends AbstractListModel<String> {
+    @Override
+    public int getSize() {
+      return instructionMemory.getNoOfEntries();
+    }
+
+    @Override
+    public String getElementAt(int index) {
+      return instructionMemory.toString(index, currentRadix);
+    }
+
+    void changed() {
+      fireContentsChanged(this, 0, Math.max(getSize() - 1, 0));
+    }
+  }
+
+  Entries model = new Entries();
   JList<String> displayList = new JList<>(model);
+  // Read on the EDT only
   InstructionMemory instructionMemory;
   String label;
   Radix currentRadix = Radix.HEX;
@@ -23,58 +51,31 @@ public class InstructionMemoryPanel extends JPanel implements ChangeRadixDisplay
     super(new BorderLayout());
     this.instructionMemory = instructionMemory;
     this.label = label;
+    displayList.setPrototypeCellValue(PROTOTYPE_ENTRY);
 
     JScrollPane scrollPane = new JScrollPane(displayList);
     scrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS);
     this.add(scrollPane, BorderLayout.CENTER);
-
-    populateList();
   }
 
   @InvokeLaterNotNecessary
   public void update() { // Call whenever the underlying memory has changed.
-    // Events on the EDT are performed in order, so this is
-    // guaranteed to happen before we start adding data back
-    // into the model.
-    clearList();
-    populateList();
-  }
-
-  private void clearList() {
-    SwingUtilities.invokeLater(() -> model.removeAllElements());
-  }
-
-  public void populateList() {
-    String[] memoryContents;
-
-    if (currentRadix == Radix.HEX) {
-      memoryContents = instructionMemory.toHexStringArray();
-    } else {
-      memoryContents = instructionMemory.toDecimalStringArray();
-    }
-
-    int noOfEntries = memoryContents.length;
-    for (int i = 0; i < noOfEntries; i++) {
-      String entry = memoryContents[i];
-      if (entry == null) {
-        log.warning("Found null entry in memory at index=" + i);
-        break;
-      }
-
-      // invokeLater call is necessary
-      SwingUtilities.invokeLater(() -> model.addElement(entry));
-    }
+    SwingUtilities.invokeLater(model::changed);
   }
 
   @Override
   public void setRadix(Radix r) {
-    currentRadix = r;
-    clearList();
-    populateList();
+    SwingUtilities.invokeLater(() -> {
+      currentRadix = r;
+      model.changed();
+    });
   }
 
+  @InvokeLaterNotNecessary
   public void display(InstructionMemory instructionMemory) {
-    this.instructionMemory = instructionMemory;
-    update();
+    SwingUtilities.invokeLater(() -> {
+      this.instructionMemory = instructionMemory;
+      model.changed();
+    });
   }
 }
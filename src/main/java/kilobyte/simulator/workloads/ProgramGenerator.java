@@ -0,0 +1,353 @@
+package kilobyte.simulator.workloads;
+
+import com.google.common.collect.ImmutableMap;
+import kilobyte.common.instruction.Encoder;
+import kilobyte.common.instruction.Format;
+import kilobyte.common.instruction.Instruction;
+import kilobyte.common.instruction.parametrizedroutines.Hint;
+import kilobyte.simulator.Simulator;
+import kilobyte.simulator.program.Program;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Generates random, but reproducible, programs of any size, either as
+ * machine code or as mnemonics. The same seed, mix and size always give
+ * the same program.
+ *
+ * <ul>
+ *   <li>{@link #runnable} programs only use the instructions that the
+ *   {@link Simulator} supports and are guaranteed to exit. Branches and
+ *   jumps only ever go forward, and loops, if enabled, count a register
+ *   of their own down to zero. Loads and stores stay within the data
+ *   memory and $zero is never written to. jr is left out, as its target
+ *   is whatever a register happens to hold.</li>
+ *   <li>{@link #ofInstructionSet} programs draw from every instruction of
+ *   the instruction set, with random operands, and are meant for the
+ *   decompiler. They are not meant to be run.</li>
+ * </ul>
+ *
+ * The words are generated in chunks into a primitive buffer, so that
+ * programs of gigabytes can be streamed without holding them in memory.
+ */
+public final class ProgramGenerator {
+  // Registers that generated instructions write to, $v0 through $s6
+  private static final int FIRST_DESTINATION = 2;
+  private static final int LAST_DESTINATION = 22;
+  // Counts the iterations of a loop, never written to by anything else
+  private static final int LOOP_COUNTER = 23;
+  // $at, whether a loop is to go on, never written to by anything else
+  private static final int LOOP_CONDITION = 1;
+  // Loads and stores address this many words from address 0
+  private static final int DATA_WORDS = 250;
+  // The number of instructions in the body of a loop is at most
+  private static final int MAX_LOOP_BODY = 16;
+  // One in this many instructions of a runnable program starts a loop
+  private static final int LOOP_ONE_IN = 64;
+  // The number of words generated at a time when streaming
+  private static final int CHUNK = 1 << 16;
+
+  private final long seed;
+  private final boolean runnable;
+  private final Instruction[] mix;
+  // The cumulative weights of the mix
+  private final int[] weights;
+  private final int maxIterations;
+
+  private ProgramGenerator(long seed, boolean runnable, Map<Instruction, Integer> mix, int maxIterations) {
+    checkArgument(!mix.isEmpty(), "Expected at least one instruction to draw from");
+    this.seed = seed;
+    this.runnable = runnable;
+    this.mix = new Instruction[mix.size()];
+    this.weights = new int[mix.size()];
+    this.maxIterations = maxIterations;
+    int i = 0;
+    int total = 0;
+    for (Map.Entry<Instruction, Integer> e : mix.entrySet()) {
+      checkArgument(e.getValue() >= 0, "Expected a non-negative weight for %s. Got %s",
+            e.getKey().getIname(), e.getValue());
+      total = Math.addExact(total, e.getValue());
+      this.mix[i] = e.getKey();
+      this.weights[i++] = total;
+    }
+    checkArgument(total > 0, "Expected at least one instruction of non-zero weight");
+  }
+
+  /* Programs of the instructions that the simulator supports, all of equal weight */
+  public static ProgramGenerator runnable(long seed) {
+    Map<Instruction, Integer> mix = new LinkedHashMap<>();
+    for (Instruction i : Simulator.getSupportedInstructions()) {
+      if (i != Instruction.JR) {
+        mix.put(i, 1);
+      }
+    }
+    return new ProgramGenerator(seed, true, mix, 0);
+  }
+
+  /* Programs of every instruction of the instruction set, all of equal weight */
+  public static ProgramGenerator ofInstructionSet(long seed) {
+    Map<Instruction, Integer> mix = new LinkedHashMap<>();
+    for (Instruction i : Instruction.InstructionSet.getPrimordialSet()) {
+      if (i.getFormat() != Format.EXIT) {
+        mix.put(i, 1);
+      }
+    }
+    return new ProgramGenerator(seed, false, mix, 0);
+  }
+
+  /**
+   * The same generator, drawing from the given instructions in proportion
+   * to their weights. A runnable program may only use instructions that
+   * the simulator supports, other than jr.
+   */
+  public ProgramGenerator withMix(Map<Instruction, Integer> weights) {
+    if (runnable) {
+      for (Instruction i : weights.keySet()) {
+        checkArgument(i != Instruction.JR && Simulator.getSupportedInstructions().contains(i),
+              "Expected an instruction that a runnable program can use. Got %s", i.getIname());
+      }
+    } else {
+      for (Instruction i : weights.keySet()) {
+        checkArgument(i.getFormat() != Format.EXIT, "The exit pseudo-instruction has no machine code");
+      }
+    }
+    return new ProgramGenerator(seed, runnable, ImmutableMap.copyOf(weights), maxIterations);
+  }
+
+  /**
+   * The same generator, where runnable programs now and then run a few
+   * instructions in a loop of up to the given number of iterations. This
+   * makes the number of executed instructions larger than the program.
+   */
+  public ProgramGenerator withLoops(int maxIterations) {
+    checkArgument(runnable, "Only runnable programs have loops");
+    checkArgument(maxIterations >= 0 && maxIterations <= Short.MAX_VALUE,
+          "Expected at most %s iterations. Got %s", Short.MAX_VALUE, maxIterations);
+    return new ProgramGenerator(seed, true, toMap(), maxIterations);
+  }
+
+  private Map<Instruction, Integer> toMap() {
+    Map<Instruction, Integer> map = new LinkedHashMap<>();
+    for (int i = 0; i < mix.length; i++) {
+      map.put(mix[i], weights[i] - (i == 0 ? 0 : weights[i - 1]));
+    }
+    return map;
+  }
+
+  /* The words of a program of the given number of instructions */
+  public int[] words(int noOfInstructions) {
+    Generation g = new Generation(noOfInstructions);
+    int[] words = new int[noOfInstructions];
+    g.fill(words, noOfInstructions);
+    return words;
+  }
+
+  /* A program of the given number of instructions, followed by an exit */
+  public Program program(int noOfInstructions) {
+    return Program.fromMachineCode(IntBuffer.wrap(words(noOfInstructions)));
+  }
+
+  /* Writes the words of a program of the given number of instructions */
+  public void writeWords(long noOfInstructions, OutputStream out, ByteOrder order) throws IOException {
+    DataOutputStream dos = new DataOutputStream(out);
+    Generation g = new Generation(noOfInstructions);
+    int[] chunk = new int[CHUNK];
+    for (long remaining = noOfInstructions; remaining > 0; ) {
+      int n = (int) Math.min(remaining, CHUNK);
+      g.fill(chunk, n);
+      for (int i = 0; i < n; i++) {
+        dos.writeInt(order == ByteOrder.BIG_ENDIAN ? chunk[i] : Integer.reverseBytes(chunk[i]));
+      }
+      remaining -= n;
+    }
+    dos.flush();
+  }
+
+  /**
+   * Writes the mnemonics of a program of the given number of instructions,
+   * one per line. A runnable program ends with an exit, so that the
+   * assembler gives the same program as {@link #program}.
+   */
+  public void writeMnemonics(long noOfInstructions, Writer out) throws IOException {
+    Generation g = new Generation(noOfInstructions);
+    int[] chunk = new int[CHUNK];
+    long address = 0;
+    for (long remaining = noOfInstructions; remaining > 0; ) {
+      int n = (int) Math.min(remaining, CHUNK);
+      g.fill(chunk, n);
+      for (int i = 0; i < n; i++, address += 4) {
+        out.write(Instruction.fromWord(chunk[i], (int) address).getMnemonicRepresentation());
+        out.write('\n');
+      }
+      remaining -= n;
+    }
+    if (runnable) {
+      out.write(Instruction.EXIT.getIname());
+      out.write('\n');
+    }
+    out.flush();
+  }
+
+  /* The state of generating a single program */
+  private final class Generation {
+    private final SplittableRandom random = new SplittableRandom(seed);
+    private final long size;
+    private final Encoder encoder = new Encoder(MAX_LOOP_BODY + 8);
+    // The index of the next word, and the words that have been generated ahead of it
+    private long index;
+    private int pending;
+
+    Generation(long size) {
+      checkArgument(size >= 0, "Expected a non-negative number of instructions. Got %s", size);
+      // The targets of jumps are 26 bits
+      checkArgument(!runnable || size <= Encoder.MAX_TARGET,
+            "Expected a runnable program of at most %s instructions. Got %s", Encoder.MAX_TARGET, size);
+      this.size = size;
+    }
+
+    void fill(int[] words, int n) {
+      for (int i = 0; i < n; i++) {
+        if (pending == encoder.getSize()) {
+          encoder.clear();
+          pending = 0;
+          generate();
+        }
+        words[i] = encoder.get(pending++);
+        index++;
+      }
+    }
+
+    /* Generates at least one more word */
+    private void generate() {
+      long remaining = size - index;
+      if (maxIterations > 0 && remaining >= MAX_LOOP_BODY + 5 && random.nextInt(LOOP_ONE_IN) == 0) {
+        loop();
+        return;
+      }
+      Instruction prototype = draw();
+      if (runnable) {
+        runnable(prototype, index);
+      } else {
+        anything(prototype);
+      }
+    }
+
+    /*
+     *         addi  counter, $zero, iterations
+     * body:   ...
+     *         addi  counter, counter, -1
+     *         slt   $at, $zero, counter
+     *         beq   $at, $zero, 2
+     *         j     body
+     *
+     * A forward branch may land in the middle of the body, where the
+     * counter is at most zero, hence the loop goes on while the counter is
+     * positive rather than until it is zero.
+     */
+    private void loop() {
+      int body = 1 + random.nextInt(MAX_LOOP_BODY);
+      encoder.addi(LOOP_COUNTER, 0, 1 + random.nextInt(maxIterations));
+      long start = index + 1;
+      while (encoder.getSize() < 1 + body) {
+        Instruction prototype = draw();
+        // Nothing may leave the body, other than the loop itself
+        runnable(prototype == Instruction.BEQ || prototype == Instruction.J ? Instruction.NOP : prototype,
+              index + encoder.getSize());
+      }
+      encoder.addi(LOOP_COUNTER, LOOP_COUNTER, -1);
+      encoder.slt(LOOP_CONDITION, 0, LOOP_COUNTER);
+      encoder.beq(LOOP_CONDITION, 0, 2);
+      encoder.j((int) start);
+    }
+
+    private Instruction draw() {
+      int r = random.nextInt(weights[weights.length - 1]);
+      int lo = 0;
+      int hi = weights.length - 1;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (weights[mid] > r) {
+          hi = mid;
+        } else {
+          lo = mid + 1;
+        }
+      }
+      return mix[lo];
+    }
+
+    private int destination() {
+      return FIRST_DESTINATION + random.nextInt(LAST_DESTINATION - FIRST_DESTINATION + 1);
+    }
+
+    private int source() {
+      return random.nextInt(LOOP_COUNTER + 1);
+    }
+
+    private int dataOffset() {
+      return 4 * random.nextInt(DATA_WORDS);
+    }
+
+    /* An instruction of a runnable program, at the given index */
+    private void runnable(Instruction prototype, long at) {
+      if (prototype == Instruction.BEQ) {
+        // Forward, to anywhere up until the exit that follows the program
+        encoder.beq(source(), source(), 1 + random.nextInt((int) Math.min(size - at, Short.MAX_VALUE)));
+      } else if (prototype == Instruction.J) {
+        encoder.j((int) (at + 1 + random.nextInt((int) Math.min(size - at, Integer.MAX_VALUE))));
+      } else if (prototype == Instruction.LW || prototype == Instruction.SW
+            || prototype == Instruction.LL || prototype == Instruction.SC) {
+        encoder.emit(prototype, destination(), dataOffset(), 0);
+      } else if (prototype == Instruction.SRL || prototype == Instruction.SRA) {
+        encoder.emit(prototype, destination(), source(), random.nextInt(32));
+      } else if (prototype == Instruction.ADDI || prototype == Instruction.ORI) {
+        encoder.emit(prototype, destination(), source(), random.nextInt(1 << 16) + Short.MIN_VALUE);
+      } else if (prototype == Instruction.NOP || prototype == Instruction.SYNC) {
+        encoder.emit(prototype);
+      } else {
+        // add, sub, and, or, nor and slt
+        encoder.emit(prototype, destination(), source(), source());
+      }
+    }
+
+    /* An instruction with random operands, which only have to fit their fields */
+    private void anything(Instruction prototype) {
+      List<String> fields = prototype.getPattern().fieldNames();
+      int[] operands = new int[fields.size() - 1 + (fields.contains("address") ? 1 : 0)];
+      int k = 0;
+      for (int i = 1; i < fields.size(); i++) {
+        switch (fields.get(i)) {
+          case "address":
+            operands[k++] = random.nextInt(1 << 16);
+            operands[k++] = random.nextInt(32);
+            break;
+          case "offset":
+            operands[k++] = random.nextInt(1 << 16);
+            break;
+          case "hint":
+            operands[k++] = Hint.values()[random.nextInt(Hint.values().length)].getValue();
+            break;
+          case "target":
+            int target = random.nextInt(Encoder.MAX_TARGET + 1);
+            // The target of jal is a byte address
+            operands[k++] = prototype == Instruction.JAL ? target << 2 : target;
+            break;
+          default:
+            // A register or a shift amount
+            operands[k++] = random.nextInt(32);
+        }
+      }
+      encoder.emit(prototype, operands);
+    }
+  }
+}
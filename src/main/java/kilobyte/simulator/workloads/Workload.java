@@ -0,0 +1,157 @@
+package kilobyte.simulator.workloads;
+
+import kilobyte.simulator.Simulator;
+import kilobyte.simulator.program.Program;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import static java.lang.String.format;
+
+/**
+ * A corpus of programs that resemble real work, written using only the
+ * instructions that the {@link Simulator} supports. Every workload sets up
+ * its own input, so it can be run on a fresh simulator, and knows how to
+ * verify its output once it has exited.
+ *
+ * See src/main/resources/kilobyte/simulator/workloads/README.md for the
+ * annotated sources.
+ */
+public enum Workload {
+  /* Sorts 64 words, initially in descending order, at address 0 */
+  BUBBLE_SORT("bubble_sort.asm", Workload::verifyBubbleSort),
+  /* C = AB for 6x6 matrices, multiplication is done by shifting and adding */
+  MATRIX_MULTIPLY("matrix_multiply.asm", Workload::verifyMatrixMultiply),
+  /* fib(15) computed recursively, with a stack in the data memory */
+  FIBONACCI("fibonacci.asm", Workload::verifyFibonacci),
+  /* Generates a 400 character string and then measures its length and counts its spaces */
+  STRING_SCAN("string_scan.asm", Workload::verifyStringScan),
+  /* Traverses a linked list of 64 nodes, scattered over the memory, 50 times */
+  POINTER_CHASE("pointer_chase.asm", Workload::verifyPointerChase);
+
+  // Guards against workloads that never exit, none of them come close.
+  public static final long MAX_INSTRUCTIONS = 10_000_000;
+
+  @Getter
+  private final String fileName;
+  private final Consumer<Simulator> verifier;
+
+  Workload(String fileName, Consumer<Simulator> verifier) {
+    this.fileName = fileName;
+    this.verifier = verifier;
+  }
+
+  public Program program() {
+    try (InputStream in = Workload.class.getResourceAsStream(fileName)) {
+      if (in == null) {
+        throw new IllegalStateException("Missing workload: " + fileName);
+      }
+      return Program.from(new InputStreamReader(in, StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Executes the given simulator until it exits.
+   *
+   * @return the number of executed instructions, including the exit.
+   * @throws IllegalStateException if the program does not exit within
+   * {@link #MAX_INSTRUCTIONS} instructions.
+   */
+  public static long runToCompletion(Simulator s) {
+    long executed = 0;
+    boolean exited = false;
+    while (!exited) {
+      if (executed == MAX_INSTRUCTIONS) {
+        throw new IllegalStateException(format(
+              "Expected the program to exit within %d instructions", MAX_INSTRUCTIONS));
+      }
+      exited = s.executeNextInstruction();
+      executed++;
+    }
+    return executed;
+  }
+
+  /**
+   * Runs this workload on a fresh simulator and verifies the outcome.
+   */
+  public Simulator execute() {
+    Simulator s = Simulator.executingProgram(program());
+    runToCompletion(s);
+    verify(s);
+    return s;
+  }
+
+  /**
+   * @throws IllegalStateException if the simulator, which must have run
+   * this workload to completion, does not hold the expected result.
+   */
+  public void verify(Simulator s) {
+    verifier.accept(s);
+  }
+
+  private static void expectWord(Simulator s, int address, int expected) {
+    int actual = s.getDataMemory().readWordFrom(address);
+    if (actual != expected) {
+      throw new IllegalStateException(format(
+            "Expected %d at address %d. Got %d", expected, address, actual));
+    }
+  }
+
+  private static void verifyBubbleSort(Simulator s) {
+    for (int i = 0; i < 64; i++) {
+      expectWord(s, 4 * i, i + 1);
+    }
+  }
+
+  private static void verifyMatrixMultiply(Simulator s) {
+    int n = 6;
+    // A is stored at 0, B at 144 and C at 288, all in row-major order
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        int sum = 0;
+        for (int k = 0; k < n; k++) {
+          int a = i + k + 1;
+          int b = k + 2 * j + 1;
+          sum += a * b;
+        }
+        expectWord(s, 288 + 4 * (n * i + j), sum);
+      }
+    }
+  }
+
+  private static void verifyFibonacci(Simulator s) {
+    expectWord(s, 0, 610);
+  }
+
+  private static void verifyStringScan(Simulator s) {
+    int length = 400;
+    int spaces = 0;
+    for (int i = 0; i < length; i++) {
+      boolean isSpace = i % 7 == 6;
+      int c = isSpace ? ' ' : 'a' + i % 26;
+      if (isSpace) {
+        spaces++;
+      }
+      int actual = s.getDataMemory().readByteFrom(i);
+      if (actual != c) {
+        throw new IllegalStateException(format(
+              "Expected '%c' at address %d. Got %d", (char) c, i, actual));
+      }
+    }
+    expectWord(s, 800, length);
+    expectWord(s, 804, spaces);
+  }
+
+  private static void verifyPointerChase(Simulator s) {
+    int nodes = 64;
+    int laps = 50;
+    expectWord(s, 0, laps * nodes * (nodes + 1) / 2);
+  }
+}
@@ -53,7 +53,11 @@ fun String.tokenize(delimiter: String = ","): Array<String> {
  * For a String on the form OFFSET($REG) this function yields OFFSET, meaning that for
  * "10($t0)".getOffset() is equal to "10"
  */
-fun String.getOffset(): Int = MachineCodeDecoder.decode(this.remove(")").tokenize("(")[0]).toInt()
+fun String.getOffset(): Int {
+  var end = 0
+  while (end < length && this[end] != '(' && this[end] != ')') end++
+  return MachineCodeDecoder.scan(this, 0, end)
+}
 
 /**
  * For a String on the form OFFSET($REG) this function yields OFFSET, meaning that for
@@ -11,7 +11,16 @@ package kilobyte.common.hardware
  * representations, for instance {@code $t1}.
  */
 class Register(val index: Int, val name: String, val description: String) {
+  // The register file that is told about changes, if any
+  internal var file: RegisterFile? = null
+
   var value: Int = 0
+    set(value) {
+      if (field != value) {
+        field = value
+        file?.changed(index)
+      }
+    }
 
   override fun toString(): String {
     return name
@@ -4,7 +4,7 @@ package kilobyte.common.hardware
 import com.google.common.base.Preconditions.checkArgument
 import kilobyte.common.instruction.Instruction
 import kilobyte.common.machinecode.*
-import kotlin.reflect.KFunction1
+import java.util.concurrent.atomic.AtomicInteger
 
 class RegisterFile {
   /**
@@ -67,16 +67,49 @@ class RegisterFile {
         Register(31, "\$ra", "Return offset  = Register(used by function call)")
   )
 
+  /*
+   * Bit i is set once register i has changed, and cleared when the
+   * changes are drained. Written by the simulator and drained by whoever
+   * displays or records the registers, possibly on another thread.
+   */
+  private val dirty = AtomicInteger()
+
+  init {
+    for (r in registers) {
+      r.file = this
+    }
+  }
+
+  internal fun changed(index: Int) {
+    val bit = 1 shl index
+    var mask = dirty.get()
+    // Once a register has been marked, writing to it again costs a read
+    while (mask and bit == 0 && !dirty.compareAndSet(mask, mask or bit)) {
+      mask = dirty.get()
+    }
+  }
+
+  /**
+   * Returns a mask of the registers that have changed since the last
+   * call, bit i being set if register i has, and starts over. A register
+   * that is written to with the value that it already holds has not
+   * changed.
+   */
+  fun drainChanges(): Int = dirty.getAndSet(0)
+
   // Creates a lookup table for getting the associate index given a specific name,
   // i.e. nameToIndexLookup["$zero"] == "$zero"
   val nameToRegisterLookup = registers.associateBy({ it.name })
 
   operator fun get(machineCode: Int): Register {
-    checkArgument(machineCode in 0..31, "Expected $machineCode to be in range [0, 32)")
+    // Not checkArgument, as the message would be built on every call
+    if (machineCode !in 0..31) {
+      throw IllegalArgumentException("Expected $machineCode to be in range [0, 32)")
+    }
     return registers[machineCode]
   }
 
-  fun get(f :Field , i: Instruction) : Register = get(f.getFunc(i.numericRepresentation))
+  fun get(f :Field , i: Instruction) : Register = get(f.of(i.numericRepresentation.toInt()))
 
   fun writeToRegister(f : Field, i : Instruction, value : Int) {
     get(f, i).value = value
@@ -90,16 +123,11 @@ class RegisterFile {
 
   operator fun get(mnemonic: String): Register {
     checkArgument(mnemonic.startsWith("$"), "Registers has to start with a \"$\". Got $mnemonic")
-    val sansDollarSign = mnemonic.replace("$", "")
-
-    if (sansDollarSign.matches(Regex("\\d+"))) {
-      // A non-symbolic name was passed, such as "$8" as opposed
-      // to the symbolic "$t0".
-      return registers[sansDollarSign.toInt()]
-    } else {
-      // A symbolic name was passed.
-      return nameToRegisterLookup[mnemonic]!!
+    val index = indexOf(mnemonic, 1, mnemonic.length)
+    if (index < 0) {
+      throw IllegalArgumentException("There is no register named \"$mnemonic\"")
     }
+    return registers[index]
   }
 
   companion object {
@@ -122,13 +150,72 @@ class RegisterFile {
      * i.e. indexOf($t0) == 8
      */
     @JvmStatic fun indexOf(mnemonic: String): Int = rf[mnemonic].index
+
+    /*
+     * The index of each symbolic name, keyed on its two characters after
+     * the dollar sign as ((first and 31) shl 7) or second. "zero" is the
+     * only name that is longer than two characters and is handled apart.
+     */
+    private val symbolicNames = ByteArray(32 shl 7, { -1 })
+
+    init {
+      for (r in rf.registers) {
+        if (r.name.length == 3) {
+          symbolicNames[((r.name[1].toInt() and 31) shl 7) or r.name[2].toInt()] = r.index.toByte()
+        }
+      }
+    }
+
+    /**
+     * Returns the index of the register named by the characters in
+     * [from, to) of the given sequence, without its dollar sign, i.e.
+     * indexOf("\$t0", 1, 3) == 8 and indexOf("\$8", 1, 2) == 8. Returns
+     * -1 if there is no such register.
+     *
+     * No strings are created, which is what the mnemonic lexer relies on.
+     */
+    @JvmStatic fun indexOf(s: CharSequence, from: Int, to: Int): Int {
+      val length = to - from
+      if (length <= 0) {
+        return -1
+      }
+
+      if (s[from] in '0'..'9') {
+        // A non-symbolic name, such as "$8" as opposed to the symbolic "$t0"
+        var index = 0
+        for (i in from until to) {
+          val c = s[i]
+          if (c !in '0'..'9') {
+            return -1
+          }
+          index = 10 * index + (c - '0')
+          if (index > 31) {
+            return -1
+          }
+        }
+        return index
+      }
+
+      if (length == 4) {
+        return if (s[from] == 'z' && s[from + 1] == 'e' && s[from + 2] == 'r' && s[from + 3] == 'o') 0 else -1
+      }
+      if (length != 2 || s[from + 1].toInt() > 127) {
+        return -1
+      }
+      val index = symbolicNames[((s[from].toInt() and 31) shl 7) or s[from + 1].toInt()].toInt()
+      // The key folds the case of the first character, so it is checked
+      return if (index >= 0 && rf.registers[index].name[1] == s[from]) index else -1
+    }
   }
 
 }
 
-enum class Field(val getFunc: KFunction1<MachineCode, Int>) {
-  RD(MachineCode::rd),
-  RT(MachineCode::rt),
-  RS(MachineCode::rs),
-  TARGET(MachineCode::target)
+enum class Field(private val shift: Int, private val mask: Int) {
+  RD(RD_SHIFT, REGISTER_MASK),
+  RT(RT_SHIFT, REGISTER_MASK),
+  RS(RS_SHIFT, REGISTER_MASK),
+  TARGET(0, TARGET_MASK);
+
+  /** Extracts this field from the given instruction word. */
+  fun of(word: Int): Int = (word ushr shift) and mask
 }
@@ -6,7 +6,10 @@ import java.util.*
 
 sealed class DecompiledInstruction {
   class Valid(val instruction: Instruction) : DecompiledInstruction()
-  class PartiallyValid(val instruction: Instruction, val errors: List<String>) : DecompiledInstruction()
+  class PartiallyValid(val instruction: Instruction, errors: List<String>) : DecompiledInstruction() {
+    // Shared by everyone who gets this instance from a DecodeCache
+    val errors: List<String> = Collections.unmodifiableList(ArrayList(errors))
+  }
   class UnknownInstruction(val machineCode: MachineCode) : DecompiledInstruction()
 
   override fun toString(): String {
@@ -18,9 +21,12 @@ sealed class DecompiledInstruction {
         return instruction.toString() + " error(s)=" + sj.toString()
       }
       is UnknownInstruction -> {
+        // Described by its 32 bits, the same whether it was sign- or
+        // zero-extended, e.g. by a DecodeCache, on the way here
+        val word = machineCode.toInt()
         val op = machineCode.opcode()
         val sj = StringJoiner(" ")
-        sj.add("Unknown instruction: \"$machineCode\". opcode=\"$op\".")
+        sj.add("Unknown instruction: \"$word\". opcode=\"$op\".")
         val eitherFormatOrString = Instruction.formatFrom(op)
 
         if (eitherFormatOrString.isLeft) {
@@ -31,7 +37,7 @@ sealed class DecompiledInstruction {
           // we are dealing with some other kind of format.
           if (actualFormat != Format.EXIT) {
             sj.add("Format=\"${actualFormat.name}\".")
-            sj.add("Decomposition=${actualFormat.decompose(machineCode)}")
+            sj.add("Decomposition=${actualFormat.decompose(word.toLong())}")
           }
         } else {
           sj.add(eitherFormatOrString.right().get())
@@ -0,0 +1,326 @@
+package kilobyte.common.instruction
+
+import com.google.common.base.Preconditions.checkArgument
+import kilobyte.common.instruction.Instruction.InstructionSet.ADD
+import kilobyte.common.instruction.Instruction.InstructionSet.ADDI
+import kilobyte.common.instruction.Instruction.InstructionSet.ADDIU
+import kilobyte.common.instruction.Instruction.InstructionSet.ADDU
+import kilobyte.common.instruction.Instruction.InstructionSet.AND
+import kilobyte.common.instruction.Instruction.InstructionSet.ANDI
+import kilobyte.common.instruction.Instruction.InstructionSet.BEQ
+import kilobyte.common.instruction.Instruction.InstructionSet.BNE
+import kilobyte.common.instruction.Instruction.InstructionSet.J
+import kilobyte.common.instruction.Instruction.InstructionSet.JAL
+import kilobyte.common.instruction.Instruction.InstructionSet.JALR
+import kilobyte.common.instruction.Instruction.InstructionSet.JR
+import kilobyte.common.instruction.Instruction.InstructionSet.LB
+import kilobyte.common.instruction.Instruction.InstructionSet.LL
+import kilobyte.common.instruction.Instruction.InstructionSet.LUI
+import kilobyte.common.instruction.Instruction.InstructionSet.LW
+import kilobyte.common.instruction.Instruction.InstructionSet.NOP
+import kilobyte.common.instruction.Instruction.InstructionSet.NOR
+import kilobyte.common.instruction.Instruction.InstructionSet.OR
+import kilobyte.common.instruction.Instruction.InstructionSet.ORI
+import kilobyte.common.instruction.Instruction.InstructionSet.SB
+import kilobyte.common.instruction.Instruction.InstructionSet.SC
+import kilobyte.common.instruction.Instruction.InstructionSet.SLL
+import kilobyte.common.instruction.Instruction.InstructionSet.SLT
+import kilobyte.common.instruction.Instruction.InstructionSet.SLTI
+import kilobyte.common.instruction.Instruction.InstructionSet.SLTU
+import kilobyte.common.instruction.Instruction.InstructionSet.SRA
+import kilobyte.common.instruction.Instruction.InstructionSet.SRL
+import kilobyte.common.instruction.Instruction.InstructionSet.SUB
+import kilobyte.common.instruction.Instruction.InstructionSet.SUBU
+import kilobyte.common.instruction.Instruction.InstructionSet.SW
+import kilobyte.common.instruction.Instruction.InstructionSet.SYNC
+import kilobyte.common.instruction.Instruction.InstructionSet.XOR
+import kilobyte.common.instruction.Instruction.InstructionSet.XORI
+import kilobyte.common.instruction.parametrizedroutines.Hint
+import kilobyte.common.machinecode.*
+import java.nio.IntBuffer
+import java.util.*
+
+/**
+ * Writes machine code straight into a growable buffer of words, without
+ * formatting a mnemonic and parsing it back, e.g.
+ *
+ *     Encoder().addi(T0, ZERO, 3).add(T1, T0, T0).words()
+ *
+ * Registers are given by their numbers, see RegisterFile.indexOf. The
+ * operands come in the same order as in the mnemonic, so that
+ * {@code lw(rt, offset, base)} is {@code lw rt, offset(base)}, and mean
+ * the same: branch offsets are in instructions, relative to the branch,
+ * the target of j is the target field and the target of jal is a byte
+ * address.
+ *
+ * The layout of every instruction is derived from its prototype in
+ * {@code Instruction.InstructionSet}, i.e. its opcode, funct and the
+ * fields of its pattern, so any instruction can be written through
+ * {@link #emit}. The named methods cover the common instructions and do
+ * not allocate.
+ *
+ * Operands that do not fit their fields are rejected. Immediates may be
+ * given either signed or unsigned, from -32768 up to 65535.
+ */
+class Encoder @JvmOverloads constructor(initialCapacity: Int = 64) {
+  private var words = IntArray(Math.max(initialCapacity, 1))
+
+  /* The number of words written so far, the index of the next one */
+  var size = 0
+    private set
+
+  fun add(rd: Int, rs: Int, rt: Int) = put(ADD_.encode(rd, rs, rt))
+  fun addu(rd: Int, rs: Int, rt: Int) = put(ADDU_.encode(rd, rs, rt))
+  fun sub(rd: Int, rs: Int, rt: Int) = put(SUB_.encode(rd, rs, rt))
+  fun subu(rd: Int, rs: Int, rt: Int) = put(SUBU_.encode(rd, rs, rt))
+  fun and(rd: Int, rs: Int, rt: Int) = put(AND_.encode(rd, rs, rt))
+  fun or(rd: Int, rs: Int, rt: Int) = put(OR_.encode(rd, rs, rt))
+  fun xor(rd: Int, rs: Int, rt: Int) = put(XOR_.encode(rd, rs, rt))
+  fun nor(rd: Int, rs: Int, rt: Int) = put(NOR_.encode(rd, rs, rt))
+  fun slt(rd: Int, rs: Int, rt: Int) = put(SLT_.encode(rd, rs, rt))
+  fun sltu(rd: Int, rs: Int, rt: Int) = put(SLTU_.encode(rd, rs, rt))
+
+  fun sll(rd: Int, rt: Int, shamt: Int) = put(SLL_.encode(rd, rt, shamt))
+  fun srl(rd: Int, rt: Int, shamt: Int) = put(SRL_.encode(rd, rt, shamt))
+  fun sra(rd: Int, rt: Int, shamt: Int) = put(SRA_.encode(rd, rt, shamt))
+
+  fun addi(rt: Int, rs: Int, immediate: Int) = put(ADDI_.encode(rt, rs, immediate))
+  fun addiu(rt: Int, rs: Int, immediate: Int) = put(ADDIU_.encode(rt, rs, immediate))
+  fun andi(rt: Int, rs: Int, immediate: Int) = put(ANDI_.encode(rt, rs, immediate))
+  fun ori(rt: Int, rs: Int, immediate: Int) = put(ORI_.encode(rt, rs, immediate))
+  fun xori(rt: Int, rs: Int, immediate: Int) = put(XORI_.encode(rt, rs, immediate))
+  fun slti(rt: Int, rs: Int, immediate: Int) = put(SLTI_.encode(rt, rs, immediate))
+  fun lui(rt: Int, immediate: Int) = put(LUI_.encode(rt, immediate, 0))
+
+  fun lw(rt: Int, offset: Int, base: Int) = put(LW_.encode(rt, offset, base))
+  fun sw(rt: Int, offset: Int, base: Int) = put(SW_.encode(rt, offset, base))
+  fun lb(rt: Int, offset: Int, base: Int) = put(LB_.encode(rt, offset, base))
+  fun sb(rt: Int, offset: Int, base: Int) = put(SB_.encode(rt, offset, base))
+  fun ll(rt: Int, offset: Int, base: Int) = put(LL_.encode(rt, offset, base))
+  fun sc(rt: Int, offset: Int, base: Int) = put(SC_.encode(rt, offset, base))
+
+  fun beq(rs: Int, rt: Int, offset: Int) = put(BEQ_.encode(rs, rt, offset))
+  fun bne(rs: Int, rt: Int, offset: Int) = put(BNE_.encode(rs, rt, offset))
+  fun j(target: Int) = put(J_.encode(target, 0, 0))
+  fun jal(address: Int) = put(JAL_.encode(address, 0, 0))
+  fun jr(rs: Int) = put(JR_.encode(rs, 0, 0))
+  fun jalr(rd: Int, rs: Int) = put(JALR_.encode(rd, rs, 0))
+
+  fun nop() = put(NOP_.encode(0, 0, 0))
+  fun sync() = put(SYNC_.encode(0, 0, 0))
+
+  /**
+   * Writes any instruction of the instruction set, given its prototype,
+   * e.g. {@code emit(Instruction.MOVN, rd, rs, rt)}.
+   */
+  fun emit(prototype: Instruction, vararg operands: Int): Encoder {
+    val layout = layoutOf(prototype)
+    checkArgument(operands.size == layout.noOfOperands,
+          "Expected %s operands for %s. Got %s", layout.noOfOperands, prototype.iname, operands.size)
+    var word = layout.template
+    for (i in operands.indices) {
+      word = word or layout.field(i, operands[i])
+    }
+    return put(word)
+  }
+
+  /**
+   * Replaces the immediate of the word at the given index, e.g. to point
+   * a forward branch at an instruction that has since been written.
+   */
+  fun setImmediate(index: Int, immediate: Int): Encoder {
+    checkElementIndex(index)
+    words[index] = (words[index] and IMMEDIATE_MASK.inv()) or immediateField(immediate)
+    return this
+  }
+
+  operator fun get(index: Int): Int {
+    checkElementIndex(index)
+    return words[index]
+  }
+
+  /* A read-only view of the words written so far */
+  fun words(): IntBuffer = IntBuffer.wrap(words, 0, size).slice().asReadOnlyBuffer()
+
+  fun toIntArray(): IntArray = Arrays.copyOf(words, size)
+
+  fun clear(): Encoder {
+    size = 0
+    return this
+  }
+
+  private fun put(word: Int): Encoder {
+    if (size == words.size) {
+      words = Arrays.copyOf(words, 2 * size)
+    }
+    words[size++] = word
+    return this
+  }
+
+  private fun checkElementIndex(index: Int) {
+    if (index < 0 || index >= size) {
+      throw IndexOutOfBoundsException("Index $index is outside of the $size words written")
+    }
+  }
+
+  /* Where an operand goes and which values it accepts */
+  private enum class Operand(val shift: Int, val length: Int) {
+    RS(RS_SHIFT, 5),
+    RT(RT_SHIFT, 5),
+    RD(RD_SHIFT, 5),
+    SHAMT(SHAMT_SHIFT, 5),
+    IMMEDIATE(0, 16),
+    HINT(RT_SHIFT, 5),
+    TARGET(0, 26),
+    // The byte address of the target of jal, coded without its last two bits
+    ADDRESS(0, 26)
+  }
+
+  /**
+   * The word of an instruction with all of its operands zero, and where
+   * each operand goes, in the order of the mnemonic.
+   */
+  private class Layout(val prototype: Instruction, val template: Int, val operands: Array<Operand>) {
+    val noOfOperands: Int get() = operands.size
+
+    fun field(i: Int, value: Int): Int {
+      val operand = operands[i]
+      when (operand) {
+        Operand.IMMEDIATE -> return immediateField(value)
+        Operand.ADDRESS -> {
+          if (value and 3 != 0 || (value ushr 2) > TARGET_MASK) {
+            throw IllegalArgumentException(
+                  "Expected a word-aligned address of at most 28 bits for ${prototype.iname}. Got $value")
+          }
+          return value ushr 2
+        }
+        Operand.HINT -> if (!isHint(value)) {
+          throw IllegalArgumentException("Expected a defined hint for ${prototype.iname}. Got $value")
+        }
+        else -> Unit
+      }
+      if (value < 0 || value > mask(operand.length)) {
+        throw IllegalArgumentException(
+              "Expected $operand of ${prototype.iname} to fit in ${operand.length} bits. Got $value")
+      }
+      return value shl operand.shift
+    }
+
+    /* The same as field, for the first three operands, those that are missing are zero */
+    fun encode(a: Int, b: Int, c: Int): Int {
+      var word = template
+      if (operands.size > 0) word = word or field(0, a)
+      if (operands.size > 1) word = word or field(1, b)
+      if (operands.size > 2) word = word or field(2, c)
+      return word
+    }
+  }
+
+  companion object {
+    /* The largest target field, that of j, or that of jal shifted twice */
+    const val MAX_TARGET = TARGET_MASK
+
+    // Hint.values() copies the array on every call
+    private val HINTS = Hint.values()
+
+    /*
+     * The checks of the fields throw by hand rather than through
+     * checkArgument, whose varargs box the values into an array even when
+     * the check passes. The message is only built once a check fails.
+     */
+    private fun immediateField(value: Int): Int {
+      if (value < Short.MIN_VALUE || value > 0xffff) {
+        throw IllegalArgumentException("Expected an immediate of 16 bits. Got $value")
+      }
+      return value and IMMEDIATE_MASK
+    }
+
+    private fun isHint(value: Int): Boolean {
+      for (hint in HINTS) {
+        if (hint.value == value) return true
+      }
+      return false
+    }
+
+    /**
+     * Derives the layout of the prototype from the fields of its pattern,
+     * the same way that the pattern places the values of a mnemonic.
+     */
+    private fun layout(prototype: Instruction): Layout {
+      checkArgument(prototype.format != Format.EXIT, "The exit pseudo-instruction has no machine code")
+      var template = prototype.opcode shl OPCODE_SHIFT
+      if (prototype.format == Format.R || prototype == JALR) {
+        template = template or prototype.funct!!
+      }
+      if (prototype.opcode == 1) {
+        // Branches and traps that are told apart by their rt field
+        template = template or (prototype.rt!! shl RT_SHIFT)
+      }
+
+      val operands = ArrayList<Operand>()
+      for (field in prototype.pattern.fieldNames().drop(1)) {
+        when (field) {
+          "rs" -> operands.add(Operand.RS)
+          "rt" -> operands.add(Operand.RT)
+          "rd" -> operands.add(Operand.RD)
+          "shamt" -> operands.add(Operand.SHAMT)
+          "offset" -> operands.add(Operand.IMMEDIATE)
+          "hint" -> operands.add(Operand.HINT)
+          "target" -> operands.add(if (prototype == JAL) Operand.ADDRESS else Operand.TARGET)
+          "address" -> {
+            // offset(base)
+            operands.add(Operand.IMMEDIATE)
+            operands.add(Operand.RS)
+          }
+          else -> throw IllegalArgumentException("Unknown field \"$field\" of ${prototype.iname}")
+        }
+      }
+      return Layout(prototype, template, operands.toTypedArray())
+    }
+
+    private val layouts = IdentityHashMap<Instruction, Layout>().apply {
+      Instruction.primordialSet
+            .filter { it.format != Format.EXIT }
+            .forEach { put(it, layout(it)) }
+    }
+
+    private fun layoutOf(prototype: Instruction): Layout =
+          layouts[prototype] ?: throw IllegalArgumentException(
+                "Expected a prototype of the instruction set. Got \"${prototype.mnemonicRepresentation}\"")
+
+    private val ADD_ = layoutOf(ADD)
+    private val ADDU_ = layoutOf(ADDU)
+    private val SUB_ = layoutOf(SUB)
+    private val SUBU_ = layoutOf(SUBU)
+    private val AND_ = layoutOf(AND)
+    private val OR_ = layoutOf(OR)
+    private val XOR_ = layoutOf(XOR)
+    private val NOR_ = layoutOf(NOR)
+    private val SLT_ = layoutOf(SLT)
+    private val SLTU_ = layoutOf(SLTU)
+    private val SLL_ = layoutOf(SLL)
+    private val SRL_ = layoutOf(SRL)
+    private val SRA_ = layoutOf(SRA)
+    private val ADDI_ = layoutOf(ADDI)
+    private val ADDIU_ = layoutOf(ADDIU)
+    private val ANDI_ = layoutOf(ANDI)
+    private val ORI_ = layoutOf(ORI)
+    private val XORI_ = layoutOf(XORI)
+    private val SLTI_ = layoutOf(SLTI)
+    private val LUI_ = layoutOf(LUI)
+    private val LW_ = layoutOf(LW)
+    private val SW_ = layoutOf(SW)
+    private val LB_ = layoutOf(LB)
+    private val SB_ = layoutOf(SB)
+    private val LL_ = layoutOf(LL)
+    private val SC_ = layoutOf(SC)
+    private val BEQ_ = layoutOf(BEQ)
+    private val BNE_ = layoutOf(BNE)
+    private val J_ = layoutOf(J)
+    private val JAL_ = layoutOf(JAL)
+    private val JR_ = layoutOf(JR)
+    private val JALR_ = layoutOf(JALR)
+    private val NOP_ = layoutOf(NOP)
+    private val SYNC_ = layoutOf(SYNC)
+  }
+}
@@ -3,8 +3,7 @@ package kilobyte.common.instruction
 import io.atlassian.fugue.Either
 import kilobyte.common.instruction.decomposedrepresentation.DecomposedRepresentation
 import kilobyte.common.instruction.exceptions.NoSuchInstructionException
-import kilobyte.common.instruction.mnemonic.iname
-import kilobyte.common.instruction.mnemonic.mnemonicEquals
+import kilobyte.common.instruction.mnemonic.MnemonicLexer
 import kilobyte.common.instruction.parametrizedroutines.*
 import kilobyte.common.machinecode.*
 import java.util.*
@@ -62,6 +61,18 @@ import java.util.*
  * Kotlin documentation available here
  * https://kotlinlang.org/docs/reference/functions.html#named-arguments
  *
+ * Memory layout:
+ *
+ * Everything that the instances of an instruction have in common, i.e.
+ * its name, description, format and so on, is kept once in a
+ * {@code Prototype}. An instance consists of nothing but the index of
+ * its prototype and its 32-bit word. The mnemonic representation of a
+ * decompiled instance, its decomposition and its padded hexadecimal
+ * string are rendered from the word the first time they are asked for
+ * and are cached from then on. Equality and hashing only consider the
+ * prototype and the word, which is what the mnemonic representation
+ * is derived from.
+ *
  * @property iname The name of the instruction
  * @property opcode The opcode of the instruction
  * @property mnemonicRepresentation A symbolic representation of the instruction instance
@@ -84,41 +95,122 @@ import java.util.*
  *                should be set to the the same value.
  * @property funct Like the @rt property but for the funct field.
  */
-data class Instruction private constructor(
-      val iname: String,
-      val opcode: Opcode,
-      val mnemonicRepresentation: String,
-      val numericRepresentation: MachineCode, 
-      val description: String,
-      val format: Format,
-      val pattern: ParametrizedInstructionRoutine,
-      val primordial: Boolean = true,
-      var additionalExamples: Map<String, Int>? = null,
-      var type: Type? = null,
-      var rt: Int? = null,
-      var funct: Int? = null,
-      var offset: Int? = null,
-      var hint: Hint? = null) {
-  val example = Example(mnemonicRepresentation, numericRepresentation)
-  val allExamples: List<Example> = listOf(example).plus(additionalExamples)
-  val decomposed = DecomposedRepresentation.fromNumber(numericRepresentation, *format.lengths)
+class Instruction private constructor(
+      private val prototypeIndex: Int,
+      private val word: Int,
+      private var mnemonic: String?) {
+  private var decomposition: DecomposedRepresentation? = null
+  private var paddedHexString: String? = null
+
+  private constructor(
+        iname: String,
+        opcode: Opcode,
+        mnemonicRepresentation: String,
+        numericRepresentation: MachineCode,
+        description: String,
+        format: Format,
+        pattern: ParametrizedInstructionRoutine,
+        additionalExamples: Map<String, Int>? = null,
+        type: Type? = null,
+        rt: Int? = null,
+        funct: Int? = null,
+        offset: Int? = null) : this(
+        define(Prototype(iname, opcode, description, format, pattern,
+              additionalExamples, type, rt, funct, offset)),
+        numericRepresentation.toInt(),
+        mnemonicRepresentation) {
+    primordialSet.add(this)
+  }
 
-  fun asPaddedHexString(): String {
-    // Pad the string with leading zeroes. Target length is 10
-    // characters (including 0x). So for instance, the number
-    // 0x3e00008
-    // should be written as
-    // 0x03e00008
-
-    // Creates a hexadecimal string without the 0x prefix, target
-    // length is 8 characters.
-    var hexString = Integer.toHexString(numericRepresentation.toInt())
-
-    while (hexString.length < 8) {
-      hexString = "0" + hexString
+  /**
+   * What all instances of an instruction have in common. There is one
+   * per primordial instruction, found at the same index in
+   * {@code prototypes} as the instruction is in {@code primordialSet}.
+   */
+  private class Prototype(
+        val iname: String,
+        val opcode: Opcode,
+        val description: String,
+        val format: Format,
+        val pattern: ParametrizedInstructionRoutine,
+        val additionalExamples: Map<String, Int>?,
+        val type: Type?,
+        val rt: Int?,
+        val funct: Int?,
+        val offset: Int?)
+
+  private val prototype: Prototype
+    get() = prototypes[prototypeIndex]
+
+  val iname: String get() = prototype.iname
+  val opcode: Opcode get() = prototype.opcode
+  val description: String get() = prototype.description
+  val format: Format get() = prototype.format
+  val pattern: ParametrizedInstructionRoutine get() = prototype.pattern
+  val additionalExamples: Map<String, Int>? get() = prototype.additionalExamples
+  val type: Type? get() = prototype.type
+  val rt: Int? get() = prototype.rt
+  val funct: Int? get() = prototype.funct
+  val offset: Int? get() = prototype.offset
+  val primordial: Boolean get() = primordialSet[prototypeIndex] === this
+
+  val numericRepresentation: MachineCode
+    get() = Integer.toUnsignedLong(word)
+
+  val mnemonicRepresentation: String
+    get() {
+      // Racing threads at most render the same string twice
+      var m = mnemonic
+      if (m == null) {
+        m = pattern.mnemonicOf(primordialSet[prototypeIndex], numericRepresentation)
+        mnemonic = m
+      }
+      return m
     }
 
-    return "0x" + hexString
+  val hint: Hint?
+    get() {
+      if (pattern !== INAME_HINT_ADDRESS) {
+        return null
+      }
+      val value = numericRepresentation.hint()
+      return Hint.values().firstOrNull { it.value == value }
+    }
+
+  val example: Example
+    get() = Example(mnemonicRepresentation, numericRepresentation)
+
+  val allExamples: List<Example>
+    get() = listOf(example).plus(additionalExamples)
+
+  val decomposed: DecomposedRepresentation
+    get() {
+      var d = decomposition
+      if (d == null) {
+        d = DecomposedRepresentation.fromNumber(numericRepresentation, *format.lengths)
+        decomposition = d
+      }
+      return d!!
+    }
+
+  fun asPaddedHexString(): String {
+    var s = paddedHexString
+    if (s == null) {
+      // Pad the string with leading zeroes. Target length is 10
+      // characters (including 0x). So for instance, the number
+      // 0x3e00008
+      // should be written as
+      // 0x03e00008
+      val hex = CharArray(10)
+      hex[0] = '0'
+      hex[1] = 'x'
+      for (i in 0..7) {
+        hex[9 - i] = HEX_DIGITS[(word ushr (4 * i)) and 0xf]
+      }
+      s = String(hex)
+      paddedHexString = s
+    }
+    return s
   }
 
   fun asLong() = numericRepresentation
@@ -136,29 +228,31 @@ data class Instruction private constructor(
   }
 
   override fun equals(other: Any?): Boolean {
-    if (other == null) return false
-
-    when (other) {
-      is Instruction -> {
-        return (iname == other.iname)
-              && (opcode == other.opcode)
-              && (mnemonicEquals(mnemonicRepresentation, other.mnemonicRepresentation))
-              && (numericRepresentation == other.numericRepresentation)
-              && (format == other.format)
-      }
-      else -> return false
-    }
+    if (this === other) return true
+    if (other !is Instruction) return false
+    return prototypeIndex == other.prototypeIndex && word == other.word
+  }
+
+  override fun hashCode(): Int {
+    return 31 * prototypeIndex + word
   }
 
   operator fun invoke(mnemonicRepresentation: String, numericRepresentation: MachineCode): Instruction {
-    return this.copy(primordial = false,
-          mnemonicRepresentation = mnemonicRepresentation,
-          numericRepresentation = Integer.toUnsignedLong(numericRepresentation.toInt()))
+    return Instruction(prototypeIndex, numericRepresentation.toInt(), mnemonicRepresentation)
+  }
+
+  /**
+   * Returns an instance of this instruction with the given numeric
+   * representation. Its mnemonic representation is rendered when it is
+   * first asked for.
+   */
+  fun withNumericRepresentation(numericRepresentation: MachineCode): Instruction {
+    return Instruction(prototypeIndex, numericRepresentation.toInt(), null)
   }
 
   fun deepCopy(): Instruction {
-    // Create a deep copy of this instruction
-    return copy()
+    // Instructions are immutable, there is nothing to copy
+    return this
   }
 
   operator fun invoke(mnemonicRepresentation: String): Instruction {
@@ -170,31 +264,16 @@ data class Instruction private constructor(
     return this.pattern.invoke(this, machineCode)
   }
 
-  override fun hashCode(): Int {
-    var result = iname.hashCode()
-    result = 31 * result + opcode
-    result = 31 * result + mnemonicRepresentation.hashCode()
-    result = 31 * result + numericRepresentation.hashCode()
-    result = 31 * result + description.hashCode()
-    result = 31 * result + format.hashCode()
-    result = 31 * result + pattern.hashCode()
-    result = 31 * result + primordial.hashCode()
-    result = 31 * result + (type?.hashCode() ?: 0)
-    result = 31 * result + (rt ?: 0)
-    result = 31 * result + (funct ?: 0)
-    result = 31 * result + (offset ?: 0)
-    result = 31 * result + example.hashCode()
-    result = 31 * result + (decomposed?.hashCode() ?: 0)
-    return result
-  }
+  companion object InstructionSet {
+    private val HEX_DIGITS = "0123456789abcdef".toCharArray()
+
+    private val prototypes = ArrayList<Prototype>()
 
-  init {
-    if (primordial) {
-      primordialSet.add(this)
+    private fun define(prototype: Prototype): Int {
+      prototypes.add(prototype)
+      return prototypes.size - 1
     }
-  }
 
-  companion object InstructionSet {
     val primordialSet = mutableListOf<Instruction>()
 
     @JvmField val ADD = Instruction(
@@ -1028,7 +1107,7 @@ data class Instruction private constructor(
           pattern = INAME)
 
     /*
-    // TODO: The following three aren't actually in the R-format. but we do not need to support them
+    // TODO: The following two aren't actually in the R-format. but we do not need to support them
     @JvmField val SYSCALL = Instruction(
       iname = "syscall",
       opcode = 0,
@@ -1050,18 +1129,18 @@ data class Instruction private constructor(
         "with exception",
       format = Format.R,
       pattern = INAME)
+    */
 
     @JvmField val SYNC = Instruction(
-      iname = "sync",
-      opcode = 0,
-      funct = 15,
-      mnemonicRepresentation = "sync",
-      numericRepresentation = 0x0000000f,
-      description = "To order loads and stores to shared memory in a " +
-        "multiprocessor system",
-      format = Format.R,
-      pattern = INAME)
-    */
+          iname = "sync",
+          opcode = 0,
+          funct = 15,
+          mnemonicRepresentation = "sync",
+          numericRepresentation = 0x0000000f,
+          description = "To order loads and stores to shared memory in a " +
+                "multiprocessor system",
+          format = Format.R,
+          pattern = INAME)
 
     @JvmField val BLEZL = Instruction(
           iname = "blezl",
@@ -1451,16 +1530,89 @@ data class Instruction private constructor(
       }
     }
 
-    @JvmStatic fun from(symbolicRepresentation: String): Instruction {
-      val iname = symbolicRepresentation.iname()
-      if (!inameToPrototype.containsKey(iname)) {
-        throw NoSuchInstructionException(iname)
+    /* The prototype of the instruction with the given name, if any */
+    @JvmStatic fun prototypeOf(iname: String): Instruction? = inameToPrototype[iname]
+
+    /*
+     * A perfect hash table of the prototypes, keyed on their inames, so
+     * that the iname of a mnemonic can be looked up where it is, in the
+     * mnemonic, without first being made into a string of its own. The
+     * table is found when the class is loaded by trying seeds, and sizes,
+     * until none of the inames collide.
+     */
+    private var inameSeed = 0
+    private var inameTable: Array<Instruction?> = arrayOfNulls(0)
+
+    init {
+      var size = Integer.highestOneBit(primordialSet.size) shl 1
+      search@ while (true) {
+        for (seed in 1..1024) {
+          val table = arrayOfNulls<Instruction>(size)
+          var collides = false
+          for (prototype in primordialSet) {
+            val slot = inameHash(seed, prototype.iname, 0, prototype.iname.length) and (size - 1)
+            if (table[slot] != null) {
+              collides = true
+              break
+            }
+            table[slot] = prototype
+          }
+          if (!collides) {
+            inameSeed = seed
+            inameTable = table
+            break@search
+          }
+        }
+        size = size shl 1
+      }
+    }
+
+    private fun inameHash(seed: Int, s: CharSequence, from: Int, to: Int): Int {
+      // FNV-1a, with the seed in place of the offset basis
+      var h = seed
+      for (i in from until to) {
+        h = (h xor s[i].toInt()) * 0x01000193
+      }
+      return h xor (h ushr 15)
+    }
+
+    /* The prototype of the instruction named by the first token of the lexer */
+    private fun prototypeOf(lexer: MnemonicLexer): Instruction? {
+      if (lexer.noOfTokens == 0) {
+        return null
       }
-      return inameToPrototype[symbolicRepresentation.iname()]!!(symbolicRepresentation)
+      val slot = inameHash(inameSeed, lexer.mnemonic, lexer.start(0), lexer.end(0)) and (inameTable.size - 1)
+      val prototype = inameTable[slot]
+      return if (prototype != null && lexer.inameEquals(prototype.iname)) prototype else null
     }
 
+    @JvmStatic fun from(symbolicRepresentation: String): Instruction {
+      val lexer = MnemonicLexer(symbolicRepresentation)
+      val prototype = prototypeOf(lexer) ?: throw NoSuchInstructionException(lexer.iname())
+      return prototype.pattern.invoke(prototype, lexer)
+    }
+
+    /**
+     * The cache that {@code decompile} consults, if any. There is none by
+     * default.
+     */
+    @Volatile @JvmStatic var decodeCache: DecodeCache? = null
+
     @JvmStatic fun decompile(machineCode: MachineCode): DecompiledInstruction {
-      val opcode = machineCode.opcode()
+      val cache = decodeCache
+      if (cache != null) {
+        return cache.decompile(machineCode)
+      }
+      return decompileUncached(machineCode)
+    }
+
+    /**
+     * Decompiles the given machine code without consulting the
+     * {@code decodeCache}.
+     */
+    @JvmStatic fun decompileUncached(machineCode: MachineCode): DecompiledInstruction {
+      val word = machineCode.toInt()
+      val opcode = opcode(word)
       if (opcode < 0 || opcode > 62) {
         return DecompiledInstruction.UnknownInstruction(machineCode)
       }
@@ -1474,11 +1626,11 @@ data class Instruction private constructor(
 
       val prototype: Instruction?
       if (opcode == 0) {
-        prototype = opcodeEquals0x00IdentifiedByFunct[machineCode.funct()]
+        prototype = opcodeEquals0x00IdentifiedByFunct[funct(word)]
       } else if (opcode == 0x1c) {
-        prototype = opcodeEquals0x1cIdentifiedByFunct[machineCode.funct()]
+        prototype = opcodeEquals0x1cIdentifiedByFunct[funct(word)]
       } else if (opcode == 0x01) {
-        prototype = opcodeEquals0x01IdentifiedByRt[machineCode.rt()]
+        prototype = opcodeEquals0x01IdentifiedByRt[rt(word)]
       } else {
         prototype = identifiedByTheirOpcodeAlone[opcode]
       }
@@ -1494,6 +1646,32 @@ data class Instruction private constructor(
       return decompile(machineCode).asInstruction()
     }
 
+    /**
+     * Decodes a word of a program, sign-extended the same as for the
+     * decompiler. Words that decode with errors, such as non-zero fields
+     * that should be zero, are accepted.
+     *
+     * @throws IllegalArgumentException if the word is not an instruction.
+     * The address of the word is only used for the message.
+     */
+    @JvmStatic fun fromWord(word: Int, address: Int): Instruction {
+      val d = decompile(word.toLong())
+      when (d) {
+        is DecompiledInstruction.Valid -> return d.instruction
+        is DecompiledInstruction.PartiallyValid -> return d.instruction
+        else -> throw IllegalArgumentException(String.format("Unknown instruction %#010x at %#x", word, address))
+      }
+    }
+
+    /**
+     * Whether {@code fromWord} decodes the word rather than rejecting it
+     * as unknown.
+     */
+    @JvmStatic fun isDecodable(word: Int): Boolean = !decompile(word.toLong()).isUnknown()
+
+    /* A word that does not decode, shown as the directive that places it */
+    @JvmStatic fun asWordDirective(word: Int): String = String.format(".word %#010x", word)
+
     @JvmStatic fun allExamples(): Iterable<Example> {
       val allExamples = ArrayList<Example>()
       primordialSet.map { allExamples.addAll(it.allExamples) }
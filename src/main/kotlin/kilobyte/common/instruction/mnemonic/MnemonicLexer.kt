@@ -0,0 +1,190 @@
+package kilobyte.common.instruction.mnemonic
+
+import kilobyte.common.hardware.RegisterFile
+import kilobyte.common.instruction.exceptions.MalformedMnemonicException
+import kilobyte.decompiler.MachineCodeDecoder
+
+/**
+ * Scans a mnemonic, such as "lw $t0, 24($s2)", once from left to right
+ * and splits it into its tokens, the iname followed by the operands,
+ * without creating any strings along the way.
+ *
+ * The tokens are delimited by white-space and commas, the same as for
+ * {@code tokenize}, and are kept as ranges of the mnemonic. What an
+ * operand is, a register, an immediate or an offset(base) pair, depends
+ * on the pattern of the instruction, so the operands are interpreted
+ * when they are asked for rather than when they are scanned.
+ *
+ * Whilst scanning, the lexer counts what the checks of the patterns need,
+ * the commas, the arguments of the standardized mnemonic, the illegal
+ * characters and the parentheses, so that the mnemonic does not have to
+ * be standardized, matched against regular expressions or tokenized
+ * again.
+ */
+class MnemonicLexer(val mnemonic: String) {
+  // The start and end of each token, the iname is token 0
+  private var bounds = IntArray(10)
+
+  var noOfTokens = 0
+    private set
+
+  var noOfCommas = 0
+    private set
+
+  /**
+   * The number of arguments, counted the same way as for the
+   * standardized mnemonic, i.e. as the number of spaces in it.
+   */
+  var noOfArguments = 0
+    private set
+
+  var containsIllegalCharacters = false
+    private set
+
+  var containsParentheses = false
+    private set
+
+  // Whether the mnemonic is already on the standardized form
+  private var standardized = true
+
+  init {
+    /*
+     * The standardized mnemonic is tracked without being created, out is
+     * the length it would have had. As long as every character that would
+     * have been written to it is the one found at the same index of the
+     * mnemonic the two are the same.
+     */
+    var out = 0
+    var pendingSpace = false
+    var start = -1
+    for (i in 0..mnemonic.length - 1) {
+      val c = mnemonic[i]
+      if (isWhiteSpace(c) || c == ',') {
+        if (start >= 0) {
+          addToken(start, i)
+          start = -1
+        }
+        if (c == ',') {
+          if (noOfTokens == 0) {
+            // Leading commas leave an empty iname, as for tokenize
+            addToken(i, i)
+          }
+          noOfCommas++
+          out = write(c, out, pendingSpace)
+        }
+        pendingSpace = true
+        continue
+      }
+
+      if (start < 0) {
+        start = i
+      }
+      if (c == '(' || c == ')') {
+        containsParentheses = true
+      } else if (!isLegal(c)) {
+        containsIllegalCharacters = true
+      }
+      out = write(c, out, pendingSpace)
+      pendingSpace = false
+    }
+    if (start >= 0) {
+      addToken(start, mnemonic.length)
+    }
+    standardized = standardized && out == mnemonic.length
+  }
+
+  private fun write(c: Char, out: Int, pendingSpace: Boolean): Int {
+    var at = out
+    if (pendingSpace && at > 0) {
+      noOfArguments++
+      standardized = standardized && at < mnemonic.length && mnemonic[at] == ' '
+      at++
+    }
+    standardized = standardized && at < mnemonic.length && mnemonic[at] == c
+    return at + 1
+  }
+
+  private fun addToken(start: Int, end: Int) {
+    if (2 * noOfTokens == bounds.size) {
+      bounds = bounds.copyOf(2 * bounds.size)
+    }
+    bounds[2 * noOfTokens] = start
+    bounds[2 * noOfTokens + 1] = end
+    noOfTokens++
+  }
+
+  fun start(token: Int): Int = bounds[2 * token]
+  fun end(token: Int): Int = bounds[2 * token + 1]
+
+  fun token(token: Int): String = mnemonic.substring(start(token), end(token))
+
+  /* The iname, or the empty string if there is none */
+  fun iname(): String = if (noOfTokens == 0) "" else token(0)
+
+  fun inameEquals(iname: String): Boolean {
+    if (noOfTokens == 0) {
+      return iname.isEmpty()
+    }
+    return end(0) - start(0) == iname.length && mnemonic.regionMatches(start(0), iname, 0, iname.length)
+  }
+
+  /**
+   * The mnemonic on the same form as {@code standardizeMnemonic} puts it
+   * on, which is the mnemonic itself more often than not.
+   */
+  fun standardizedMnemonic(): String = if (standardized) mnemonic else standardizeMnemonic(mnemonic)
+
+  /**
+   * Interprets the given token as a register, i.e. "$t0" and "$8" are
+   * both 8.
+   */
+  fun register(token: Int): Int {
+    return register(token, start(token), end(token))
+  }
+
+  private fun register(token: Int, from: Int, to: Int): Int {
+    val index = if (to > from && mnemonic[from] == '$') RegisterFile.indexOf(mnemonic, from + 1, to) else -1
+    if (index < 0) {
+      throw MalformedMnemonicException(standardizedMnemonic(),
+            "Expected a register. Got: ${token(token)}")
+    }
+    return index
+  }
+
+  /**
+   * Interprets the given token as a number, i.e. "0x10" and "16" are both
+   * 16. For a token on the form OFFSET($REG) this is the OFFSET.
+   */
+  fun immediate(token: Int): Int {
+    val start = start(token)
+    val end = end(token)
+    var at = start
+    while (at < end && mnemonic[at] != '(' && mnemonic[at] != ')') at++
+    return MachineCodeDecoder.scan(mnemonic, start, at)
+  }
+
+  /* For a token on the form OFFSET($REG) this is the index of $REG */
+  fun base(token: Int): Int {
+    val end = end(token)
+    val open = mnemonic.indexOf('(', start(token))
+    if (open < 0 || open >= end || mnemonic[end - 1] != ')') {
+      throw MalformedMnemonicException(standardizedMnemonic(),
+            "Expected an offset and a register on the form OFFSET(\$REG). Got: ${token(token)}")
+    }
+    return register(token, open + 1, end - 1)
+  }
+
+  /* Interprets the entire token as a number */
+  fun number(token: Int): Int = MachineCodeDecoder.scan(mnemonic, start(token), end(token))
+
+  private companion object {
+    /* The same white-space as \s, what standardizeMnemonic collapses */
+    fun isWhiteSpace(c: Char) = c == ' ' || c in '\t'..'\r'
+
+    /*
+     * Letters, numbers, dollar signs and minus signs, the commas, spaces
+     * and parentheses are accounted for elsewhere.
+     */
+    fun isLegal(c: Char) = c in 'a'..'z' || c in 'A'..'Z' || c in '0'..'9' || c == '$' || c == '-'
+  }
+}
@@ -6,15 +6,13 @@ import kilobyte.common.hardware.RegisterFile
 import kilobyte.common.instruction.DecompiledInstruction
 import kilobyte.common.instruction.Format
 import kilobyte.common.instruction.Instruction
-import kilobyte.common.instruction.decomposedrepresentation.DecomposedRepresentation
 import kilobyte.common.instruction.exceptions.IllegalCharactersInMnemonicException
 import kilobyte.common.instruction.exceptions.MalformedMnemonicException
-import kilobyte.common.instruction.mnemonic.iname
+import kilobyte.common.instruction.mnemonic.MnemonicLexer
 import kilobyte.common.instruction.mnemonic.standardizeMnemonic
 import kilobyte.common.instruction.mnemonic.throwExceptionIfContainsIllegalCharacters
 import kilobyte.common.instruction.mnemonic.throwIfIncorrectNumberOfCommas
 import kilobyte.common.machinecode.*
-import kilobyte.decompiler.MachineCodeDecoder
 import java.util.*
 
 val fieldNameToIndexMap = mapOf(
@@ -33,16 +31,16 @@ fun indexOf(fieldName: String): Int {
   return fieldNameToIndexMap[fieldName]!!
 }
 
-val fieldNameToMethodCallMap: HashMap<String, (n: MachineCode) -> Int> = hashMapOf(
-      Pair("rs", MachineCode::rs),
-      Pair("rt", MachineCode::rt),
-      Pair("rd", MachineCode::rd),
-      Pair("shamt", MachineCode::shamt),
-      Pair("funct", MachineCode::funct),
-      Pair("offset", MachineCode::offset),
-      Pair("target", MachineCode::target),
-      Pair("address", MachineCode::offset),
-      Pair("hint", MachineCode::hint)
+val fieldNameToMethodCallMap: HashMap<String, (word: Int) -> Int> = hashMapOf(
+      Pair("rs", { word: Int -> rs(word) }),
+      Pair("rt", { word: Int -> rt(word) }),
+      Pair("rd", { word: Int -> rd(word) }),
+      Pair("shamt", { word: Int -> shamt(word) }),
+      Pair("funct", { word: Int -> funct(word) }),
+      Pair("offset", { word: Int -> immediate(word) }),
+      Pair("target", { word: Int -> target(word) }),
+      Pair("address", { word: Int -> immediate(word) }),
+      Pair("hint", { word: Int -> rt(word) })
 )
 
 /**
@@ -226,6 +224,24 @@ enum class Hint(val value: Int) {
 interface ParametrizedInstructionRoutine {
   fun invoke(prototype: Instruction, machineCode: MachineCode): DecompiledInstruction
   fun invoke(prototype: Instruction, mnemonicRepresentation: String): Instruction
+
+  /**
+   * The same as for a mnemonic representation, for one that has already
+   * been scanned.
+   */
+  fun invoke(prototype: Instruction, lexer: MnemonicLexer): Instruction
+
+  /**
+   * Renders the mnemonic representation of the given machine code, which
+   * is assumed to be an instance of the given prototype.
+   */
+  fun mnemonicOf(prototype: Instruction, machineCode: MachineCode): String
+
+  /**
+   * The names of the fields of the pattern, in order, e.g.
+   * ["iname", "rt", "offset"] for "iname rt, offset".
+   */
+  fun fieldNames(): List<String>
 }
 
 fun from(format: Format, pattern: String): ParametrizedInstructionRoutine {
@@ -241,36 +257,58 @@ fun from(format: Format, pattern: String): ParametrizedInstructionRoutine {
    * above example we get that fields = ["iname", "rt", "offset"]
    */
   val fields = standardizedPattern.tokenize()
+  val fieldNames = Collections.unmodifiableList(fields.asList())
+
+  val expectedNumberOfCommas = standardizedPattern.countCommas()
+  val expectedNumberOfArguments = fields.size - 1
+
+  // Where the value of each field goes, the iname has no place
+  val destinations = IntArray(fields.size, { if (it == 0) -1 else indexOf(fields[it]) })
 
   return object : ParametrizedInstructionRoutine {
+    override fun fieldNames() = fieldNames
+
     override fun invoke(prototype: Instruction,
                         mnemonicRepresentation: String): Instruction {
-      val standardizedMnemonic = standardizeMnemonic(mnemonicRepresentation)
-      throwExceptionIfContainsIllegalCharacters(standardizedMnemonic)
-      val expectedNumberOfCommas = standardizedPattern.countCommas()
-      throwIfIncorrectNumberOfCommas(expectedNumberOfCommas, mnemonicRepresentation)
-      val expectedNumberOfArguments = standardizedPattern.replace(",", "").split(" ").size - 1
-      throwIfIncorrectNumberOfArgs(expectedNumberOfArguments, standardizedMnemonic)
-      if (!isAllowedToContainParentheses(format) && standardizedMnemonic.containsParentheses()) {
-        throw IllegalCharactersInMnemonicException(standardizedMnemonic, "<parentheses>")
+      return invoke(prototype, MnemonicLexer(mnemonicRepresentation))
+    }
+
+    override fun invoke(prototype: Instruction, lexer: MnemonicLexer): Instruction {
+      // The checks are made in the same order as they always have been,
+      // the exceptions are only ever built once something is amiss
+      if (lexer.containsIllegalCharacters) {
+        throwExceptionIfContainsIllegalCharacters(lexer.standardizedMnemonic())
+      }
+      if (lexer.noOfCommas != expectedNumberOfCommas) {
+        throwIfIncorrectNumberOfCommas(expectedNumberOfCommas, lexer.mnemonic)
       }
-      checkArgument(prototype.iname == standardizedMnemonic.iname())
+      if (lexer.noOfArguments != expectedNumberOfArguments) {
+        throwIfIncorrectNumberOfArgs(expectedNumberOfArguments, lexer.standardizedMnemonic())
+      }
+      if (lexer.noOfTokens != fields.size) {
+        // Empty arguments, such as the one in "add $t1,, $t2"
+        val err = "Wrong number of arguments. Expected $expectedNumberOfArguments " +
+              "arguments. Got: ${lexer.noOfTokens - 1}"
+        throw MalformedMnemonicException(lexer.standardizedMnemonic(), err)
+      }
+      if (!isAllowedToContainParentheses(format) && lexer.containsParentheses) {
+        throw IllegalCharactersInMnemonicException(lexer.standardizedMnemonic(), "<parentheses>")
+      }
+      checkArgument(lexer.inameEquals(prototype.iname))
 
       /*
        * For instructions expressed using the mnemonic-pattern "iname rd, rs, rt"
-       * we get that the contents of the tokens array will contain
-       * the _values_ of rd, rs, and rt, (and _not_ the string literals
-       * "rd", "rs, "rt") like so:
+       * we get that the tokens of the lexer are the _values_ of rd, rs,
+       * and rt, (and _not_ the string literals "rd", "rs, "rt") like so:
        *
-       *       tokens=[rd, rs, rt]
+       *       tokens=[iname, rd, rs, rt]
        *
        * however, the arguments rd, rs, rt do not appear in the same
        * order as they have to when represented numerically so we
        * use the "fields" array which tells us what values we are observing
-       * inside the "tokens" array together with "fieldNameToIndexMap"
+       * among the tokens together with "fieldNameToIndexMap"
        * to place the values at the correct places.
        */
-      val tokens: Array<String> = standardizedMnemonic.tokenize()
       val opcode = prototype.opcode
       val n = IntArray(format.noOfFields)
       n[0] = opcode
@@ -289,21 +327,18 @@ fun from(format: Format, pattern: String): ParametrizedInstructionRoutine {
          *              BGEZ:   op=1, rt=1
          *              TGEI:   op=1, rt=8
          */
-        val index = indexOf("rt")
-        n[index] = prototype.rt!!
+        n[indexOf("rt")] = prototype.rt!!
       }
 
-      // TODO: Why? return value is not captured does this happen in-place?
-      formatMnemonic(tokens, n, prototype, fields)
+      formatMnemonic(lexer, n, fields, destinations)
 
       if (prototype == Instruction.JAL) {
         // The jump instruction (jal) specifies an absolute memory address
         // (in bytes) to jump to, but is coded without its last two bits.
-        n[1] = (MachineCodeDecoder.decode(tokens[1]) shr 2).toInt()
+        n[1] = lexer.number(1) shr 2
       }
 
-      val d = DecomposedRepresentation.fromIntArray(n, *format.lengths).asLong()
-      return prototype(standardizedMnemonic, d)
+      return prototype(lexer.standardizedMnemonic(), compose(n, format.lengths).toLong())
     }
 
 
@@ -311,16 +346,18 @@ fun from(format: Format, pattern: String): ParametrizedInstructionRoutine {
      * When in machineCode, we trust.
      **/
     override fun invoke(prototype: Instruction, machineCode: MachineCode): DecompiledInstruction {
-      val mnemonicRepresentation = formatMachineCodeToMnemonic(prototype,
-            machineCode,
-            fields)
-      val inst = prototype(mnemonicRepresentation, machineCode)
+      // The mnemonic representation is rendered on demand, see mnemonicOf
+      val inst = prototype.withNumericRepresentation(machineCode)
       val errors = errorCheckPrototype(machineCode, format, fields)
       if (errors.isNotEmpty()) {
         return DecompiledInstruction.PartiallyValid(inst, errors)
       }
       return DecompiledInstruction.Valid(inst)
     }
+
+    override fun mnemonicOf(prototype: Instruction, machineCode: MachineCode): String {
+      return formatMachineCodeToMnemonic(prototype, machineCode, fields)
+    }
   }
 
 }
@@ -329,28 +366,29 @@ private fun shouldFieldBeZero(fieldName: String, fields: Array<String>): Boolean
   return !fields.contains(fieldName)
 }
 
-private fun fieldIsNotZero(fieldName: String, machineCode: MachineCode): Boolean {
-  return fieldNameToMethodCallMap[fieldName]!!.invoke(machineCode) != 0
+private fun fieldIsNotZero(fieldName: String, word: Int): Boolean {
+  return fieldNameToMethodCallMap[fieldName]!!.invoke(word) != 0
 }
 
 private fun errorCheckPrototype(machineCode: MachineCode,
                                 format: Format,
                                 fields: Array<String>): ArrayList<String> {
   val errors = ArrayList<String>()
+  val word = machineCode.toInt()
   when (format) {
     Format.R -> {
       // TODO: Can definitely be refactored
-      if (shouldFieldBeZero("shamt", fields) && fieldIsNotZero("shamt", machineCode)) {
-        errors.add("Expected shamt to be zero. Got ${machineCode.shamt()}")
+      if (shouldFieldBeZero("shamt", fields) && fieldIsNotZero("shamt", word)) {
+        errors.add("Expected shamt to be zero. Got ${shamt(word)}")
       }
-      if (shouldFieldBeZero("rd", fields) && fieldIsNotZero("rd", machineCode)) {
-        errors.add("Expected rd to be zero. Got ${machineCode.rd()}")
+      if (shouldFieldBeZero("rd", fields) && fieldIsNotZero("rd", word)) {
+        errors.add("Expected rd to be zero. Got ${rd(word)}")
       }
-      if (shouldFieldBeZero("rt", fields) && fieldIsNotZero("rt", machineCode)) {
-        errors.add("Expected rt to be zero. Got ${machineCode.rt()}")
+      if (shouldFieldBeZero("rt", fields) && fieldIsNotZero("rt", word)) {
+        errors.add("Expected rt to be zero. Got ${rt(word)}")
       }
-      if (shouldFieldBeZero("rs", fields) && fieldIsNotZero("rs", machineCode)) {
-        errors.add("Expected rs to be zero. Got ${machineCode.rs()}")
+      if (shouldFieldBeZero("rs", fields) && fieldIsNotZero("rs", word)) {
+        errors.add("Expected rs to be zero. Got ${rs(word)}")
       }
     }
     Format.I -> {
@@ -369,29 +407,27 @@ private fun formatMachineCodeToMnemonic(prototype: Instruction,
                                         machineCode: MachineCode,
                                         fields: Array<String>): String {
   val iname = prototype.iname
+  val word = machineCode.toInt()
   var mnemonicRepresentation = "$iname "
   for (i in fields.indices) {
     // The fields are given in order, so we can just concatenate
     // the strings.
     when (fields[i]) {
-      "rd" -> mnemonicRepresentation += RegisterFile.getMnemonic(machineCode.rd())
-      "rt" -> mnemonicRepresentation += RegisterFile.getMnemonic(machineCode.rt())
-      "rs" -> mnemonicRepresentation += RegisterFile.getMnemonic(machineCode.rs())
-      "offset" -> mnemonicRepresentation += machineCode.offset().toString()
-      "target" -> mnemonicRepresentation += machineCode.target().toString()
-      "shamt" -> mnemonicRepresentation += machineCode.shamt().toString()
+      "rd" -> mnemonicRepresentation += RegisterFile.getMnemonic(rd(word))
+      "rt" -> mnemonicRepresentation += RegisterFile.getMnemonic(rt(word))
+      "rs" -> mnemonicRepresentation += RegisterFile.getMnemonic(rs(word))
+      "offset" -> mnemonicRepresentation += immediate(word).toString()
+      "target" -> mnemonicRepresentation += target(word).toString()
+      "shamt" -> mnemonicRepresentation += shamt(word).toString()
       "address" -> {
-        mnemonicRepresentation += machineCode.offset().toString()
+        mnemonicRepresentation += immediate(word).toString()
         if (!fields.contains("rs") && iname != "lui") {
           mnemonicRepresentation += "("
-          mnemonicRepresentation += RegisterFile.getMnemonic(machineCode.rs())
+          mnemonicRepresentation += RegisterFile.getMnemonic(rs(word))
           mnemonicRepresentation += ")"
         }
       }
-      "hint" -> {
-        mnemonicRepresentation += machineCode.hint().toString()
-        prototype.hint = Hint.from(machineCode.hint())
-      }
+      "hint" -> mnemonicRepresentation += rt(word).toString()
     }
 
     if (i != fields.indices.first && i != fields.indices.last) {
@@ -401,30 +437,46 @@ private fun formatMachineCodeToMnemonic(prototype: Instruction,
   return mnemonicRepresentation.trim()
 }
 
-private fun formatMnemonic(tokens: Array<String>, n: IntArray, prototype: Instruction, fields: Array<String>): Array<String> {
-  for (i in 1..tokens.size - 1) {
+private fun formatMnemonic(lexer: MnemonicLexer, n: IntArray, fields: Array<String>, destinations: IntArray) {
+  for (i in 1..lexer.noOfTokens - 1) {
     // from 1 so that we can skip the iname
-    val destinationIndex: Int = indexOf(fields[i])
+    val destinationIndex: Int = destinations[i]
     when (fields[i]) {
-      "target" -> n[destinationIndex] = tokens[i].getOffset()
-      "offset" -> n[destinationIndex] = tokens[i].getOffset()
+      "target" -> n[destinationIndex] = lexer.immediate(i)
+      "offset" -> n[destinationIndex] = lexer.immediate(i)
       "address" -> {
-        n[destinationIndex] = tokens[i].getOffset()
-        n[indexOf("rs")] = RegisterFile.indexOf(tokens[i].getRegister())
+        n[destinationIndex] = lexer.immediate(i)
+        n[indexOf("rs")] = lexer.base(i)
       }
       "hint" -> {
-        val hint = tokens[i].getOffset()
+        val hint = lexer.immediate(i)
         n[destinationIndex] = hint
-        prototype.hint = Hint.from(hint)
+        // Throws if the hint is not defined
+        Hint.from(hint)
       }
       "shamt" -> {
         // Handles for instance the "19" in sll $s1, $t1, 19
-        n[destinationIndex] = tokens[i].toInt()
+        n[destinationIndex] = lexer.number(i)
       }
-      else -> n[destinationIndex] = RegisterFile.indexOf(tokens[i])
+      else -> n[destinationIndex] = lexer.register(i)
     }
   }
-  return tokens
+}
+
+/**
+ * Packs the fields into a word the same way that
+ * DecomposedRepresentation.fromIntArray does, without creating one.
+ * Negative fields are taken to be 16-bit immediates.
+ */
+private fun compose(n: IntArray, lengths: IntArray): Int {
+  var word = 0
+  var shift = 0
+  for (i in lengths.indices.reversed()) {
+    val field = if (n[i] < 0) n[i] and 0xffff else n[i]
+    word = word or (field shl shift)
+    shift += lengths[i]
+  }
+  return word
 }
 
 fun isAllowedToContainParentheses(format: Format): Boolean {
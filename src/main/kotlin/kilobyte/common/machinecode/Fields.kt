@@ -0,0 +1,71 @@
+@file:JvmName("Fields")
+
+package kilobyte.common.machinecode
+
+import com.google.common.base.Preconditions.checkArgument
+
+/*
+ * Field accessors for 32-bit instruction words. Each field is extracted
+ * with a single shift and a precomputed mask, so none of these functions
+ * allocate. They are used on every path that inspects an instruction
+ * word, i.e. the simulator, the decompiler and the assembler.
+ *
+ * | 31:26  | 25:21 | 20:16 | 15:11 | 10:6  | 5:0   |
+ * |:------:|:-----:|:-----:|:-----:|:-----:|:-----:|
+ * | opcode | rs    | rt    | rd    | shamt | funct |
+ * | opcode | rs    | rt    | immediate             |
+ * | opcode | target                                |
+ */
+
+const val OPCODE_SHIFT = 26
+const val RS_SHIFT = 21
+const val RT_SHIFT = 16
+const val RD_SHIFT = 11
+const val SHAMT_SHIFT = 6
+
+const val OPCODE_MASK = 0x3f
+const val REGISTER_MASK = 0x1f
+const val SHAMT_MASK = 0x1f
+const val FUNCT_MASK = 0x3f
+const val IMMEDIATE_MASK = 0xffff
+const val TARGET_MASK = 0x3ffffff
+
+fun opcode(word: Int): Int = word ushr OPCODE_SHIFT
+fun rs(word: Int): Int = (word ushr RS_SHIFT) and REGISTER_MASK
+fun rt(word: Int): Int = (word ushr RT_SHIFT) and REGISTER_MASK
+fun rd(word: Int): Int = (word ushr RD_SHIFT) and REGISTER_MASK
+fun shamt(word: Int): Int = (word ushr SHAMT_SHIFT) and SHAMT_MASK
+fun funct(word: Int): Int = word and FUNCT_MASK
+
+/** The lower 16 bits of the word, without sign-extension. */
+fun immediate(word: Int): Int = word and IMMEDIATE_MASK
+
+/** The lower 16 bits of the word, sign-extended to 32 bits. */
+fun signedImmediate(word: Int): Int = word.toShort().toInt()
+
+fun target(word: Int): Int = word and TARGET_MASK
+
+/**
+ * Returns B[upperIndex]..B[lowerIndex] (inclusive, and with zero indexing)
+ * of the given word, i.e.
+ *
+ *     bits(0x014b4820, 19, 16) == 0b1011
+ */
+fun bits(word: Int, upperIndex: Int, lowerIndex: Int): Int {
+  checkArgument(upperIndex > lowerIndex,
+        "upperIndex (%s) must be greater than lowerIndex (%s)",
+        upperIndex, lowerIndex)
+
+  checkArgument(upperIndex <= 31,
+        "upperIndex (%s) must be less than (or equal to) 31",
+        upperIndex)
+
+  checkArgument(lowerIndex >= 0,
+        "lowerIndex (%s) must be greater than or equal to zero",
+        lowerIndex)
+
+  return (word ushr lowerIndex) and mask(upperIndex - lowerIndex + 1)
+}
+
+/** A mask of the given number of low bits, 0 < length <= 32. */
+fun mask(length: Int): Int = -1 ushr (32 - length)
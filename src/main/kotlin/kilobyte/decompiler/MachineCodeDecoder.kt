@@ -5,6 +5,11 @@ import java.io.BufferedReader
 import java.io.File
 import java.io.FileReader
 import java.io.Reader
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.IntBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
 import java.util.*
 
 object MachineCodeDecoder {
@@ -30,76 +35,129 @@ object MachineCodeDecoder {
     return instructions
   }
 
+  /*
+   * A single mapping can not exceed Integer.MAX_VALUE bytes, larger files
+   * are mapped in windows of this many bytes (a multiple of four).
+   */
+  const val MAX_BYTES_PER_WINDOW = 1L shl 30
+
+  /**
+   * Maps the 32-bit words of a raw binary file into memory, without
+   * reading or parsing them. The words are read in the given byte order,
+   * starting {@code offset} bytes into the file and spanning {@code length}
+   * bytes, or up until the end of the file if {@code length} is negative.
+   * Any trailing bytes that do not make up a whole word are left out.
+   *
+   * @return the mapped words, in windows of at most MAX_BYTES_PER_WINDOW
+   * bytes each.
+   */
+  @JvmStatic @JvmOverloads
+  fun map(f: File, order: ByteOrder, offset: Long = 0, length: Long = -1): List<IntBuffer> {
+    checkArgument(offset >= 0, "Expected a non-negative offset. Got %s", offset)
+    FileChannel.open(f.toPath(), StandardOpenOption.READ).use { channel ->
+      val size = channel.size()
+      checkArgument(offset <= size, "The offset (%s) is past the end of \"%s\" (%s bytes)", offset, f, size)
+      var remaining = if (length < 0) size - offset else length
+      checkArgument(offset + remaining <= size,
+            "The length (%s) reaches past the end of \"%s\" (%s bytes)", remaining, f, size)
+      remaining -= remaining % 4
+
+      val windows = ArrayList<IntBuffer>()
+      var position = offset
+      while (remaining > 0) {
+        val n = Math.min(remaining, MAX_BYTES_PER_WINDOW)
+        windows.add(channel.map(FileChannel.MapMode.READ_ONLY, position, n).order(order).asIntBuffer())
+        position += n
+        remaining -= n
+      }
+      // The mappings stay valid once the channel has been closed
+      return windows
+    }
+  }
+
   @JvmStatic fun equals(s1: String, s2: String): Boolean {
     return decode(s1) == decode(s2)
   }
 
-  @JvmStatic fun decode(str: String): Long {
-    var s = str
-    checkArgument(s.isNotEmpty(), "Expected input argument to have non-zero length")
-    s = s.trim { it <= ' ' } // Remove trailing and leading spaces
-
-    // Convert the string to lower-case, simplifies regex validating
-    // the String format as well as matching on the prefix.
-    s = s.toLowerCase()
-
-    /*
-     * Check that all characters match either hexadecimal, decimal
-     * or binary strings.
-     */
-    if (!s.matches("-?([0-9]+)|(0[x][0-9a-f]+)|(0[b][0-1]+)|(0[d])?[0-9]+".toRegex())) {
-      throw NumberFormatException("Could not interpret \"$str\" as a number")
+  /**
+   * Interprets a hexadecimal (0x), binary (0b), explicitly decimal (0d) or
+   * decimal string as a number. Prefixes are case-insensitive, leading and
+   * trailing white-space is ignored and only decimal numbers may be
+   * negative. Unsigned numbers of up to 32 bits are accepted and sign-
+   * extended, so that "0xafbf0004" yields the same as "-1346502652".
+   */
+  @JvmStatic fun decode(str: String): Long = scan(str, 0, str.length).toLong()
+
+  /**
+   * The same as {@link #decode(String)}, but for the characters in
+   * [from, to) of the given sequence and without allocating.
+   *
+   * @throws NumberFormatException if the characters are not a number or if
+   * the number does not fit in 32 bits.
+   */
+  @JvmStatic fun scan(s: CharSequence, from: Int, to: Int): Int =
+        scan(from, to, { s[it] }, { s.subSequence(from, to).toString() })
+
+  /* The same as for a CharSequence, the bytes are read as ASCII */
+  @JvmStatic fun scan(b: ByteBuffer, from: Int, to: Int): Int =
+        scan(from, to, { (b.get(it).toInt() and 0xff).toChar() }, {
+          val bytes = ByteArray(to - from)
+          for (i in bytes.indices) bytes[i] = b.get(from + i)
+          String(bytes, Charsets.US_ASCII)
+        })
+
+  /*
+   * A single pass over the characters. The input is only turned into a
+   * string to describe it when it is not a number.
+   */
+  private inline fun scan(from: Int, to: Int, charAt: (Int) -> Char, input: () -> String): Int {
+    checkArgument(to > from, "Expected input argument to have non-zero length")
+    var start = from
+    var end = to
+    // Remove trailing and leading spaces
+    while (start < end && charAt(start) <= ' ') start++
+    while (end > start && charAt(end - 1) <= ' ') end--
+    if (start == end) {
+      throw NumberFormatException("Could not interpret \"${input()}\" as a number")
     }
 
-    if (s.length <= 1) {
-      // There can be no specified prefix
-      return s.toLong()
+    var i = start
+    var base = 10
+    val negative = charAt(i) == '-'
+    if (negative) {
+      i++
+    } else if (end - start > 2 && charAt(i) == '0') {
+      when (charAt(i + 1)) {
+        'x', 'X' -> { base = 16; i += 2 }
+        'b', 'B' -> { base = 2; i += 2 }
+        'd', 'D' -> i += 2
+      }
+    }
+    if (i == end) {
+      throw NumberFormatException("Could not interpret \"${input()}\" as a number")
     }
-    // Yank out the two leading characters
-    val prefix = s.substring(0, 2)
 
-    // Assuming that the number is not prefixed and then we default
-    // to interpreting the number as being a decimal number (base 10)
-    var base = 10
-    var encounteredPrefix = false
-
-    // The earlier .toLowerCase call allows us to switch on lower-case
-    // string representations.
-    when (prefix) {
-      "0x" -> {
-        base = 16
-        encounteredPrefix = true
+    // Negative numbers go down to -2^31, all others up to 2^32 - 1
+    val limit = if (negative) 0x80000000L else 0xffffffffL
+    var value = 0L
+    while (i < end) {
+      val c = charAt(i++)
+      val digit = when (c) {
+        in '0'..'9' -> c - '0'
+        in 'a'..'f' -> c - 'a' + 10
+        in 'A'..'F' -> c - 'A' + 10
+        else -> base
       }
-      "0b" -> {
-        base = 2
-        encounteredPrefix = true
+      if (digit >= base) {
+        throw NumberFormatException("Could not interpret \"${input()}\" as a number")
       }
-      "0d" -> encounteredPrefix = true
-      else -> {
+      value = value * base + digit
+      if (value > limit) {
+        throw NumberFormatException("\"${input()}\" does not fit in 32 bits")
       }
-    }// Our regex assures us that the two characters
-    // that we have can only be numbers between 0 and 9
-    // so treating the string as being in base 10 is
-    // safe from here on.
-
-    if (encounteredPrefix) {
-      // Remove the prefix from the string for the subsequent parseInt
-      // call. The method call "substring(2)" splits the string at
-      // the second character (exclusive) so we get that
-      //
-      // "0x014b4820" becomes "014b4820"
-      //
-      // Remove the prefix from the string, substring() takes the
-      // tail starting _behind_ the second character.
-      s = s.substring(2)
     }
-    if (s.startsWith('-')) {
-      return Integer.parseInt(s, base).toLong()
-    }
-
-    // parseUnsignedInt lets us handle "large" numbers such as 0xafbf0004
-    return Integer.parseUnsignedInt(s, base).toLong()
 
+    return if (negative) (-value).toInt() else value.toInt()
   }
 
   @JvmStatic fun decode(s: String, base: Int): Int {
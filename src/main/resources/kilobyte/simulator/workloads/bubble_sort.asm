@@ -0,0 +1,25 @@
+addi $s0, $zero, 64
+add $t0, $zero, $zero
+add $t1, $s0, $zero
+sw $t1, 0($t0)
+addi $t0, $t0, 4
+addi $t1, $t1, -1
+beq $t1, $zero, 2
+j 3
+addi $s1, $s0, -1
+beq $s1, $zero, 15
+add $t0, $zero, $zero
+add $t2, $s1, $zero
+lw $t3, 0($t0)
+lw $t4, 4($t0)
+slt $t5, $t4, $t3
+beq $t5, $zero, 3
+sw $t4, 0($t0)
+sw $t3, 4($t0)
+addi $t0, $t0, 4
+addi $t2, $t2, -1
+beq $t2, $zero, 2
+j 12
+addi $s1, $s1, -1
+j 9
+exit
@@ -0,0 +1,27 @@
+addi $sp, $zero, 1000
+addi $a0, $zero, 15
+addi $ra, $zero, -22
+j 6
+sw $v0, 0($zero)
+exit
+addi $t1, $zero, 2
+slt $t0, $a0, $t1
+beq $t0, $zero, 3
+add $v0, $a0, $zero
+beq $zero, $zero, 16
+addi $sp, $sp, -12
+sw $ra, 0($sp)
+sw $a0, 4($sp)
+addi $a0, $a0, -1
+addi $ra, $zero, -9
+j 6
+sw $v0, 8($sp)
+lw $a0, 4($sp)
+addi $a0, $a0, -2
+addi $ra, $zero, -4
+j 6
+lw $t0, 8($sp)
+add $v0, $v0, $t0
+lw $ra, 0($sp)
+addi $sp, $sp, 12
+jr $ra
@@ -0,0 +1,54 @@
+addi $s0, $zero, 6
+addi $s1, $zero, 24
+addi $s7, $zero, 1
+add $t0, $zero, $zero
+addi $t1, $zero, 144
+add $t2, $zero, $zero
+add $t3, $zero, $zero
+add $t4, $t2, $t3
+addi $t4, $t4, 1
+sw $t4, 0($t0)
+add $t4, $t4, $t3
+sw $t4, 0($t1)
+addi $t0, $t0, 4
+addi $t1, $t1, 4
+addi $t3, $t3, 1
+beq $t3, $s0, 2
+j 7
+addi $t2, $t2, 1
+beq $t2, $s0, 2
+j 6
+add $s3, $zero, $zero
+addi $s4, $zero, 288
+add $s2, $s0, $zero
+addi $s6, $zero, 144
+add $s5, $s0, $zero
+add $t1, $s3, $zero
+add $t2, $s6, $zero
+add $t0, $s0, $zero
+add $t3, $zero, $zero
+lw $t4, 0($t1)
+lw $t5, 0($t2)
+beq $t5, $zero, 7
+and $t6, $t5, $s7
+beq $t6, $zero, 2
+add $t3, $t3, $t4
+add $t4, $t4, $t4
+srl $t5, $t5, 1
+j 31
+addi $t1, $t1, 4
+add $t2, $t2, $s1
+addi $t0, $t0, -1
+beq $t0, $zero, 2
+j 29
+sw $t3, 0($s4)
+addi $s4, $s4, 4
+addi $s6, $s6, 4
+addi $s5, $s5, -1
+beq $s5, $zero, 2
+j 25
+add $s3, $s3, $s1
+addi $s2, $s2, -1
+beq $s2, $zero, 2
+j 23
+exit
@@ -0,0 +1,30 @@
+addi $s0, $zero, 64
+addi $s1, $zero, 520
+addi $t0, $zero, 8
+addi $t1, $zero, 1
+add $t2, $zero, $zero
+sw $t1, 0($t0)
+beq $t2, $zero, 2
+sw $t0, 4($t2)
+add $t2, $t0, $zero
+addi $t0, $t0, 56
+slt $t3, $t0, $s1
+beq $t3, $zero, 2
+beq $zero, $zero, 2
+addi $t0, $t0, -512
+beq $t1, $s0, 3
+addi $t1, $t1, 1
+j 5
+addi $s2, $zero, 50
+add $v0, $zero, $zero
+addi $t0, $zero, 8
+lw $t1, 0($t0)
+add $v0, $v0, $t1
+lw $t0, 4($t0)
+beq $t0, $zero, 2
+j 20
+addi $s2, $s2, -1
+beq $s2, $zero, 2
+j 19
+sw $v0, 0($zero)
+exit
@@ -0,0 +1,77 @@
+addi $s0, $zero, 400
+addi $s1, $zero, 26
+addi $s2, $zero, 7
+addi $s3, $zero, 32
+addi $s4, $zero, 4
+add $t0, $zero, $zero
+add $t1, $zero, $zero
+add $t2, $zero, $zero
+add $t3, $zero, $zero
+add $t4, $zero, $zero
+add $t5, $zero, $zero
+addi $t6, $t1, 97
+addi $t7, $t2, 1
+beq $t7, $s2, 2
+beq $zero, $zero, 2
+add $t6, $s3, $zero
+add $t3, $t3, $t3
+add $t3, $t3, $t3
+add $t3, $t3, $t3
+add $t3, $t3, $t3
+add $t3, $t3, $t3
+add $t3, $t3, $t3
+add $t3, $t3, $t3
+add $t3, $t3, $t3
+or $t3, $t3, $t6
+addi $t4, $t4, 1
+beq $t4, $s4, 2
+beq $zero, $zero, 5
+sw $t3, 0($t5)
+addi $t5, $t5, 4
+add $t3, $zero, $zero
+add $t4, $zero, $zero
+addi $t0, $t0, 1
+addi $t1, $t1, 1
+beq $t1, $s1, 2
+beq $zero, $zero, 2
+add $t1, $zero, $zero
+addi $t2, $t2, 1
+beq $t2, $s2, 2
+beq $zero, $zero, 2
+add $t2, $zero, $zero
+beq $t0, $s0, 2
+j 11
+addi $s5, $zero, 255
+addi $s6, $zero, 33
+add $t5, $zero, $zero
+add $v0, $zero, $zero
+add $v1, $zero, $zero
+lw $t3, 0($t5)
+srl $t6, $t3, 24
+and $t6, $t6, $s5
+beq $t6, $zero, 23
+addi $v0, $v0, 1
+slt $t7, $t6, $s6
+add $v1, $v1, $t7
+srl $t6, $t3, 16
+and $t6, $t6, $s5
+beq $t6, $zero, 17
+addi $v0, $v0, 1
+slt $t7, $t6, $s6
+add $v1, $v1, $t7
+srl $t6, $t3, 8
+and $t6, $t6, $s5
+beq $t6, $zero, 11
+addi $v0, $v0, 1
+slt $t7, $t6, $s6
+add $v1, $v1, $t7
+and $t6, $t3, $s5
+beq $t6, $zero, 6
+addi $v0, $v0, 1
+slt $t7, $t6, $s6
+add $v1, $v1, $t7
+addi $t5, $t5, 4
+j 48
+sw $v0, 800($zero)
+sw $v1, 804($zero)
+exit
@@ -0,0 +1,106 @@
+package kilobyte.common.instruction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecodeCacheTests {
+  @AfterEach
+  void uninstallTheCache() {
+    Instruction.setDecodeCache(null);
+  }
+
+  @Test
+  @DisplayName("Repeated words share a single decompiled instruction")
+  void testRepeatedWordsAreDecompiledOnce() {
+    DecodeCache cache = DecodeCache.directMapped(16);
+    DecompiledInstruction first = cache.decompile(0x03e00008); // jr $ra
+    DecompiledInstruction second = cache.decompile(0x03e00008);
+
+    assertThat(second, is(sameInstance(first)));
+    assertThat(first.asInstruction(), is(equalTo(Instruction.from("jr $ra"))));
+    assertThat(cache.getHits(), is(equalTo(1L)));
+    assertThat(cache.getMisses(), is(equalTo(1L)));
+  }
+
+  @Test
+  @DisplayName("Words that map to the same slot evict each other")
+  void testEviction() {
+    DecodeCache cache = DecodeCache.directMapped(2);
+    long[] words = {0x00000000, 0x03e00008, 0x014b4820, 0x23bdfff8, 0x8fbf0004L};
+    for (long word : words) {
+      cache.decompile(word);
+    }
+    for (long word : words) {
+      // Whatever the cache holds on to, it never answers with another word
+      assertThat(cache.decompile(word).asInstruction().getNumericRepresentation(), is(equalTo(word)));
+    }
+    assertThat(cache.getHits() + cache.getMisses(), is(equalTo(10L)));
+    assertTrue(cache.getMisses() > 5);
+  }
+
+  @Test
+  @DisplayName("Unknown and partially valid words are cached as such")
+  void testInvalidWordsAreCached() {
+    DecodeCache cache = DecodeCache.directMapped(16);
+    assertTrue(cache.decompile(0xFFFFFF).isUnknown());
+    assertTrue(cache.decompile(0xFFFFFF).isUnknown());
+    assertThat(cache.getHits(), is(equalTo(1L)));
+  }
+
+  @Test
+  @DisplayName("Instruction.decompile consults the installed cache")
+  void testInstalledCache() {
+    DecodeCache cache = DecodeCache.directMapped(16);
+    Instruction.setDecodeCache(cache);
+    DecompiledInstruction first = DecompiledInstruction.from(0x014b4820);
+    DecompiledInstruction second = Instruction.decompile(0x014b4820);
+
+    assertThat(second, is(sameInstance(first)));
+    assertThat(cache.getHits(), is(equalTo(1L)));
+
+    cache.clear();
+    assertThat(cache.getHits(), is(equalTo(0L)));
+    assertThat(Instruction.decompile(0x014b4820), is(not(sameInstance(first))));
+  }
+
+  @Test
+  @DisplayName("Sign- and zero-extended machine code share an entry")
+  void testWordsAreKeyedOnTheirThirtyTwoBits() {
+    DecodeCache cache = DecodeCache.directMapped(16);
+    DecompiledInstruction zeroExtended = cache.decompile(0x8fbf0004L); // lw $ra, 4($sp)
+    DecompiledInstruction signExtended = cache.decompile((long) 0x8fbf0004);
+
+    assertThat(signExtended, is(sameInstance(zeroExtended)));
+    assertThat(signExtended.asInstruction().getNumericRepresentation(), is(equalTo(0x8fbf0004L)));
+    assertThat(cache.getHits(), is(equalTo(1L)));
+  }
+
+  @Test
+  @DisplayName("What the cache hands out can not be changed by whoever gets it")
+  void testCachedInstructionsCanNotBeChanged() {
+    DecodeCache cache = DecodeCache.directMapped(16);
+    long word = 0x014b4820; // add $t1, $t2, $t3
+    cache.decompile(word).asInstruction().getDecomposed().toIntArray()[0] = 0x3f;
+    assertThat(cache.decompile(word).asInstruction().getDecomposed().toIntArray()[0], is(equalTo(0)));
+
+    long shamtSet = 0x014b4860; // add with a shamt of 1
+    assertTrue(cache.decompile(shamtSet).isPartiallyValid());
+    assertThrows(UnsupportedOperationException.class, () -> cache.decompile(shamtSet).errors().clear());
+    assertThat(cache.decompile(shamtSet).errors().size(), is(equalTo(1)));
+  }
+
+  @Test
+  void testThatTheCapacityHasToBeAPowerOfTwo() {
+    assertThrows(IllegalArgumentException.class, () -> DecodeCache.directMapped(3));
+    assertThrows(IllegalArgumentException.class, () -> DecodeCache.directMapped(0));
+  }
+}
@@ -0,0 +1,161 @@
+package kilobyte.common.instruction;
+
+import kilobyte.common.hardware.RegisterFile;
+import kilobyte.common.instruction.mnemonic.MnemonicLexer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EncoderTests {
+  private static final int ZERO = RegisterFile.indexOf("$zero");
+  private static final int T0 = RegisterFile.indexOf("$t0");
+  private static final int T1 = RegisterFile.indexOf("$t1");
+  private static final int SP = RegisterFile.indexOf("$sp");
+  private static final int RA = RegisterFile.indexOf("$ra");
+
+  @Test
+  void testNamedInstructions() {
+    int[] words = new Encoder(1)
+          .addi(SP, SP, -8)
+          .sw(RA, 4, SP)
+          .add(T1, T0, T0)
+          .srl(T1, T1, 2)
+          .beq(T0, ZERO, -3)
+          .lui(T0, 0xffff)
+          .jal(0x00400000)
+          .j(1)
+          .jr(RA)
+          .nop()
+          .toIntArray();
+
+    String[] mnemonics = {
+          "addi $sp, $sp, -8",
+          "sw $ra, 4($sp)",
+          "add $t1, $t0, $t0",
+          "srl $t1, $t1, 2",
+          "beq $t0, $zero, -3",
+          "lui $t0, 0xffff",
+          "jal 0x00400000",
+          "j 1",
+          "jr $ra",
+          "nop",
+    };
+    assertThat(words.length, is(equalTo(mnemonics.length)));
+    for (int i = 0; i < words.length; i++) {
+      assertThat(mnemonics[i], Integer.toUnsignedLong(words[i]), is(equalTo(Instruction.from(mnemonics[i]).getNumericRepresentation())));
+    }
+  }
+
+  @Test
+  @DisplayName("The named instructions do not allocate once the encoder has room for them")
+  void testNamedInstructionsDoNotAllocate() {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    Encoder encoder = new Encoder(16);
+    // The first round loads the layouts
+    encodeNamedInstructions(encoder);
+
+    long before = threads.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < 10_000; i++) {
+      encodeNamedInstructions(encoder);
+    }
+    long allocated = threads.getThreadAllocatedBytes(thread) - before;
+    // Leaves room for the measurement itself, boxing the operands would take megabytes
+    assertTrue(allocated < 1024, "Allocated " + allocated + " bytes");
+  }
+
+  private static void encodeNamedInstructions(Encoder encoder) {
+    encoder.clear()
+          .addi(SP, SP, -8)
+          .sw(RA, 4, SP)
+          .lw(T0, 0, SP)
+          .add(T1, T0, T0)
+          .slt(T1, ZERO, T0)
+          .sll(T1, T1, 2)
+          .beq(T0, ZERO, -3)
+          .lui(T0, 0xffff)
+          .jal(0x00400000)
+          .j(1)
+          .jr(RA)
+          .nop()
+          .sync();
+  }
+
+  @Test
+  @DisplayName("Every example of the instruction set encodes to the same word as its mnemonic")
+  void testAgainstTheInstructionSet() {
+    for (Instruction prototype : Instruction.InstructionSet.getPrimordialSet()) {
+      if (prototype.getFormat() == Format.EXIT) {
+        continue;
+      }
+      for (Example e : prototype.getAllExamples()) {
+        Instruction expected = Instruction.from(e.getMnemonicExample());
+        if (expected.getIname().equals(prototype.getIname())) {
+          int word = new Encoder().emit(prototype, operands(prototype, e.getMnemonicExample())).get(0);
+          assertThat(e.getMnemonicExample(), Integer.toUnsignedLong(word), is(equalTo(expected.getNumericRepresentation())));
+        }
+      }
+    }
+  }
+
+  @Test
+  void testOperandsThatDoNotFit() {
+    Encoder encoder = new Encoder();
+    assertThrows(IllegalArgumentException.class, () -> encoder.add(32, T0, T0));
+    assertThrows(IllegalArgumentException.class, () -> encoder.addi(T0, T0, 0x10000));
+    assertThrows(IllegalArgumentException.class, () -> encoder.addi(T0, T0, -32769));
+    assertThrows(IllegalArgumentException.class, () -> encoder.sll(T0, T0, 32));
+    assertThrows(IllegalArgumentException.class, () -> encoder.jal(2));
+    assertThrows(IllegalArgumentException.class, () -> encoder.emit(Instruction.ADD, T0, T0));
+    assertThrows(IllegalArgumentException.class, () -> encoder.emit(Instruction.EXIT));
+    assertThat(encoder.getSize(), is(equalTo(0)));
+  }
+
+  @Test
+  void testForwardBranches() {
+    Encoder encoder = new Encoder();
+    int branch = encoder.getSize();
+    encoder.beq(T0, ZERO, 0).addi(T0, T0, -1).nop();
+    encoder.setImmediate(branch, encoder.getSize() - branch);
+    assertThat(Integer.toUnsignedLong(encoder.get(branch)), is(equalTo(Instruction.from("beq $t0, $zero, 3").getNumericRepresentation())));
+    assertThat(encoder.words().remaining(), is(equalTo(3)));
+    assertThat(encoder.clear().getSize(), is(equalTo(0)));
+  }
+
+  /* The operands of the mnemonic, in the order of the fields of its pattern */
+  private static int[] operands(Instruction prototype, String mnemonic) {
+    MnemonicLexer lexer = new MnemonicLexer(mnemonic);
+    List<String> fields = prototype.getPattern().fieldNames();
+    List<Integer> operands = new ArrayList<>();
+    for (int i = 1; i < fields.size(); i++) {
+      switch (fields.get(i)) {
+        case "address":
+          operands.add(lexer.immediate(i));
+          operands.add(lexer.base(i));
+          break;
+        case "offset":
+        case "hint":
+          operands.add(lexer.immediate(i));
+          break;
+        case "target":
+          operands.add(prototype == Instruction.JAL ? lexer.number(i) : lexer.immediate(i));
+          break;
+        case "shamt":
+          operands.add(lexer.number(i));
+          break;
+        default:
+          operands.add(lexer.register(i));
+      }
+    }
+    return operands.stream().mapToInt(Integer::intValue).toArray();
+  }
+}
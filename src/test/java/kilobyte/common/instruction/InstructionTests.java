@@ -1,6 +1,7 @@
 package kilobyte.common.instruction;
 
 import kilobyte.common.instruction.exceptions.NoSuchInstructionException;
+import kilobyte.common.instruction.parametrizedroutines.Hint;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -141,6 +142,27 @@ class InstructionTests {
     assertEquals(mnemonic, instructionNumeric);
   }
 
+  @Test
+  @DisplayName("Decompiled instructions render their mnemonic when asked for")
+  void testDecompiledInstructionsRenderTheirMnemonic() throws Exception {
+    Instruction i = Instruction.from(0x8fbdfff8L);
+    assertThat(i.getMnemonicRepresentation(), is(equalTo("lw $sp, 65528($sp)")));
+    assertThat(i.asPaddedHexString(), is(equalTo("0x8fbdfff8")));
+    assertThat(Instruction.from(0x3e00008).asPaddedHexString(), is(equalTo("0x03e00008")));
+    assertThat(i.getHint(), is(equalTo(null)));
+    assertThat(Instruction.from(0xCFA10002).getHint(), is(equalTo(Hint.STORE)));
+  }
+
+  @Test
+  @DisplayName("Equal instructions have equal hash codes")
+  void testEqualInstructionsHashAlike() throws Exception {
+    Instruction fromMnemonic = Instruction.from("add $9, $10, $11");
+    Instruction fromNumeric = Instruction.from(0x014b4820);
+    assertEquals(fromMnemonic, fromNumeric);
+    assertEquals(fromMnemonic.hashCode(), fromNumeric.hashCode());
+    assertThat(Instruction.from(0x00), is(not(equalTo(Instruction.EXIT))));
+  }
+
   @Test
   void testHexInstruction() throws Exception {
     String s = "pref 0x01, 0x02($sp)";
@@ -0,0 +1,85 @@
+package kilobyte.common.instruction;
+
+import kilobyte.common.hardware.RegisterFile;
+import kilobyte.common.instruction.exceptions.IllegalCharactersInMnemonicException;
+import kilobyte.common.instruction.exceptions.MalformedMnemonicException;
+import kilobyte.common.instruction.exceptions.NoSuchInstructionException;
+import kilobyte.common.instruction.mnemonic.MnemonicLexer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MnemonicLexerTests {
+  @Test
+  void testTokens() {
+    MnemonicLexer lexer = new MnemonicLexer("  lw $t0,24($s2) ");
+    assertThat(lexer.getNoOfTokens(), is(equalTo(3)));
+    assertThat(lexer.iname(), is(equalTo("lw")));
+    assertThat(lexer.register(1), is(equalTo(8)));
+    assertThat(lexer.immediate(2), is(equalTo(24)));
+    assertThat(lexer.base(2), is(equalTo(18)));
+    assertThat(lexer.getNoOfCommas(), is(equalTo(1)));
+    assertThat(lexer.getNoOfArguments(), is(equalTo(2)));
+    assertThat(lexer.standardizedMnemonic(), is(equalTo("lw $t0, 24($s2)")));
+  }
+
+  @Test
+  @DisplayName("Mnemonics that are already standardized are kept as they are")
+  void testStandardizedMnemonicsAreKept() {
+    String mnemonic = "add $t1, $t2, $t3";
+    assertThat(new MnemonicLexer(mnemonic).standardizedMnemonic(), is(sameInstance(mnemonic)));
+    assertThat(Instruction.from("add\t$t1,$t2,\n  $t3 ").getMnemonicRepresentation(),
+          is(equalTo("add $t1, $t2, $t3")));
+  }
+
+  @Test
+  void testWhiteSpaceAndBasesDoNotMatter() {
+    assertThat(Instruction.from("  pref 0x01,0x02($sp)"), is(equalTo(Instruction.from("pref 1, 2($29)"))));
+    assertThat(Instruction.from("srl $t5, $t5, 0x2"), is(equalTo(Instruction.from("srl $t5, $t5, 2"))));
+    assertThat(Instruction.from("addi $sp, $sp, -8").getNumericRepresentation(), is(equalTo(0x23bdfff8L)));
+    assertThat(Instruction.from("jal 0x00400000").getNumericRepresentation(), is(equalTo(0x0c100000L)));
+  }
+
+  @Test
+  void testRegisterNames() {
+    for (int i = 0; i < 32; i++) {
+      String name = RegisterFile.getMnemonic(i);
+      assertThat(name, RegisterFile.indexOf(name, 1, name.length()), is(equalTo(i)));
+      assertThat(RegisterFile.indexOf("$" + i, 1, ("$" + i).length()), is(equalTo(i)));
+    }
+    assertThat(RegisterFile.indexOf("$32", 1, 3), is(equalTo(-1)));
+    assertThat(RegisterFile.indexOf("$T0", 1, 3), is(equalTo(-1)));
+    assertThat(RegisterFile.indexOf("$s8", 1, 3), is(equalTo(-1)));
+    assertThat(RegisterFile.indexOf("$", 1, 1), is(equalTo(-1)));
+  }
+
+  @Test
+  void testErrors() {
+    assertThrows(NoSuchInstructionException.class, () -> Instruction.from("frobnicate $t0"));
+    assertThrows(NoSuchInstructionException.class, () -> Instruction.from(""));
+    assertThrows(NoSuchInstructionException.class, () -> Instruction.from(", add $t1, $t2, $t3"));
+
+    Throwable e = assertThrows(IllegalCharactersInMnemonicException.class,
+          () -> Instruction.from("add $t1, $t2, $t3!#"));
+    assertThat(e.getMessage(), containsString("['!', '#']"));
+    e = assertThrows(IllegalCharactersInMnemonicException.class, () -> Instruction.from("jr ($t1)"));
+    assertThat(e.getMessage(), containsString("<parentheses>"));
+
+    e = assertThrows(MalformedMnemonicException.class, () -> Instruction.from("add $t1, $t2 $t3"));
+    assertThat(e.getMessage(), containsString("Wrong number of commas: Expected: 2. Got: 1"));
+    e = assertThrows(MalformedMnemonicException.class, () -> Instruction.from("add $t1, $t2, $t3 $t4"));
+    assertThat(e.getMessage(), containsString("Wrong number of arguments. Expected 3 arguments. Got: 4"));
+    e = assertThrows(MalformedMnemonicException.class, () -> Instruction.from("add $t1,, $t2"));
+    assertThat(e.getMessage(), containsString("Wrong number of arguments. Expected 3 arguments. Got: 2"));
+
+    assertThrows(MalformedMnemonicException.class, () -> Instruction.from("add $t1, $t2, $t10"));
+    assertThrows(MalformedMnemonicException.class, () -> Instruction.from("lw $t0, 4"));
+    assertThrows(NumberFormatException.class, () -> Instruction.from("addi $t0, $t0, 1a"));
+  }
+}
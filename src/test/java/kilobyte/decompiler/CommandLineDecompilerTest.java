@@ -0,0 +1,172 @@
+package kilobyte.decompiler;
+
+import kilobyte.common.instruction.DecodeCache;
+import kilobyte.common.instruction.Instruction;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CommandLineDecompilerTest {
+  private static String decompile(String input) throws IOException {
+    StringWriter out = new StringWriter();
+    CommandLineDecompiler.decompile(new StringReader(input), new TableWriter(out), out);
+    return out.toString();
+  }
+
+  @Test
+  void testRowsAreWrittenInOrderAndEmptyLinesAreSkipped() throws IOException {
+    String[] rows = decompile("0x014b4820\n\n0x0000000c\n").split(System.lineSeparator());
+    assertThat(rows.length, is(equalTo(2)));
+    assertThat(rows[0], is(equalTo("0x014b4820    |  R       |  [0 10 11 9 0 32]  |  " +
+          "[0 0xa 0xb 9 0 0x20]       |  add $t1, $t2, $t3         |  ")));
+    assertThat(rows[1].endsWith("syscall                   |  "), is(true));
+  }
+
+  @Test
+  void testPartiallyValidInstructionsListTheirErrors() throws IOException {
+    String row = decompile("0x01398860");
+    assertThat(row.trim().endsWith("|   error(s)=[\"Expected shamt to be zero. Got 1\"]"), is(true));
+  }
+
+  @Test
+  void testUnknownInstructionsAreDescribed() throws IOException {
+    assertThat(decompile("0xFFFFFF").startsWith("Unknown instruction: \"16777215\"."), is(true));
+  }
+
+  @Test
+  void testParallelDecompilationKeepsTheInputOrder() throws IOException {
+    StringBuilder input = new StringBuilder();
+    for (int i = 0; i < 3 * ParallelDecompiler.LINES_PER_CHUNK + 17; i++) {
+      // Vary rd and rs so that neighbouring rows differ
+      input.append(String.format("0x%08x%n", 0x014b0020 | ((i % 32) << 11) | ((i / 32 % 32) << 21)));
+      if (i % 1000 == 0) {
+        input.append(System.lineSeparator());
+      }
+    }
+
+    StringWriter out = new StringWriter();
+    try (ParallelDecompiler parallel = new ParallelDecompiler(4)) {
+      parallel.decompile(new StringReader(input.toString()), out);
+    }
+    assertThat(out.toString(), is(equalTo(decompile(input.toString()))));
+  }
+
+  private static String decompile(IntBuffer words) throws IOException {
+    StringWriter out = new StringWriter();
+    CommandLineDecompiler.decompile(words, 0, words.limit(), new TableWriter(out));
+    return out.toString();
+  }
+
+  @Test
+  void testBinaryInput() throws IOException {
+    File f = File.createTempFile("kilobyte", ".bin");
+    f.deleteOnExit();
+    // Two bytes of padding, add $t1, $t2, $t3 and syscall in big-endian
+    // followed by a stray byte that does not make up a whole word.
+    Files.write(f.toPath(), new byte[]{
+          0x7f, 0x7f,
+          0x01, 0x4b, 0x48, 0x20,
+          0x00, 0x00, 0x00, 0x0c,
+          0x01});
+
+    List<IntBuffer> words = MachineCodeDecoder.map(f, ByteOrder.BIG_ENDIAN, 2);
+    assertThat(words.size(), is(equalTo(1)));
+    assertThat(decompile(words.get(0)), is(equalTo(decompile("0x014b4820\n0x0000000c\n"))));
+
+    words = MachineCodeDecoder.map(f, ByteOrder.LITTLE_ENDIAN, 2, 4);
+    assertThat(decompile(words.get(0)), is(equalTo(decompile("0x20484b01"))));
+  }
+
+  @Test
+  void testThatBinaryInputMustFitInTheFile() throws IOException {
+    File f = File.createTempFile("kilobyte", ".bin");
+    f.deleteOnExit();
+    Files.write(f.toPath(), new byte[8]);
+    assertThrows(IllegalArgumentException.class, () -> MachineCodeDecoder.map(f, ByteOrder.BIG_ENDIAN, 4, 8));
+    assertThrows(IllegalArgumentException.class, () -> MachineCodeDecoder.map(f, ByteOrder.BIG_ENDIAN, 12));
+  }
+
+  private static String decompile(String input, OutputFormat format) throws IOException {
+    StringWriter out = new StringWriter();
+    RowWriter rows = format.open(out);
+    rows.writeHeader();
+    CommandLineDecompiler.decompile(new StringReader(input), rows, out);
+    return out.toString();
+  }
+
+  private static final String INPUT = "0x014b4820\n0x01398860\n0xFFFFFF\n";
+
+  @Test
+  void testCommaSeparatedValues() throws IOException {
+    String[] rows = decompile(INPUT, OutputFormat.CSV).split(System.lineSeparator());
+    assertThat(rows.length, is(equalTo(4)));
+    assertThat(rows[0], is(equalTo("word,format,decomposition,mnemonic,errors")));
+    assertThat(rows[1], is(equalTo("0x014b4820,R,0 10 11 9 0 32,\"add $t1, $t2, $t3\",")));
+    assertThat(rows[2].endsWith(",Expected shamt to be zero. Got 1"), is(true));
+    assertThat(rows[3].startsWith("0x00ffffff,,,,\"Unknown instruction: \"\"16777215\"\"."), is(true));
+  }
+
+  @Test
+  void testTabSeparatedValues() throws IOException {
+    String[] rows = decompile(INPUT, OutputFormat.TSV).split(System.lineSeparator());
+    assertThat(rows[1], is(equalTo("0x014b4820\tR\t0 10 11 9 0 32\tadd $t1, $t2, $t3\t")));
+  }
+
+  @Test
+  void testJsonLines() throws IOException {
+    String[] rows = decompile(INPUT, OutputFormat.JSONL).split("\n");
+    assertThat(rows.length, is(equalTo(3)));
+    assertThat(rows[0], is(equalTo("{\"word\":\"0x014b4820\",\"format\":\"R\"," +
+          "\"decomposition\":[0,10,11,9,0,32],\"mnemonic\":\"add $t1, $t2, $t3\",\"errors\":[]}")));
+    assertThat(rows[1].endsWith("\"errors\":[\"Expected shamt to be zero. Got 1\"]}"), is(true));
+    assertThat(rows[2].startsWith("{\"word\":\"0x00ffffff\",\"format\":null,\"decomposition\":[]," +
+          "\"mnemonic\":\"\",\"errors\":[\"Unknown instruction: \\\"16777215\\\"."), is(true));
+  }
+
+  @Test
+  void testBinaryRecords() throws IOException {
+    String records = decompile("0x014b4820", OutputFormat.BIN);
+    String mnemonic = "add $t1, $t2, $t3";
+    StringBuilder expected = new StringBuilder()
+          .append("\u0001\u004b\u0048\u0020") // The word
+          .append((char) kilobyte.common.instruction.Format.R.ordinal())
+          .append("\u0006\0\0\0\n\0\u000b\0\u0009\0\0\0\u0020") // The decomposition
+          .append('\0').append((char) mnemonic.length()).append(mnemonic)
+          .append('\0'); // No errors
+    assertThat(records, is(equalTo(expected.toString())));
+  }
+
+  @Test
+  void testUnknownInstructionsAreDescribedTheSameWithAndWithoutACache() throws IOException {
+    // Opcode 0x3f, the words are sign-extended as they are read
+    String input = "0xffffffff\n0xfc000000\n";
+    String uncached = decompile(input);
+    Instruction.setDecodeCache(DecodeCache.directMapped(CommandLineDecompiler.DEFAULT_CACHE_SIZE));
+    try {
+      assertThat(decompile(input), is(equalTo(uncached)));
+      // A second time from the cache
+      assertThat(decompile(input), is(equalTo(uncached)));
+    } finally {
+      Instruction.setDecodeCache(null);
+    }
+    assertThat(uncached.startsWith("Unknown instruction: \"-1\"."), is(true));
+  }
+
+  @Test
+  void testThatTheFormatIsCaseInsensitive() {
+    assertThat(OutputFormat.from("JsonL"), is(equalTo(OutputFormat.JSONL)));
+    assertThrows(IllegalArgumentException.class, () -> OutputFormat.from("xml"));
+  }
+}
@@ -56,7 +56,7 @@ class ALUControlTest {
   private void assertSWFormat(Control aluC) {
     //assertFalse(aluC.getRegDst());
     assertTrue(aluC.getAluSrc());
-    //assertFalse(aluC.getMemtoReg());
+    assertFalse(aluC.getMemtoReg());
     assertFalse(aluC.getRegWrite());
     assertFalse(aluC.getMemRead());
     assertTrue(aluC.getMemWrite());
@@ -69,7 +69,7 @@ class ALUControlTest {
   private void assertBEQFormat(Control aluC) {
     //assertFalse(aluC.getRegDst());
     assertFalse(aluC.getAluSrc());
-    //assertFalse(aluC.getMemtoReg());
+    assertFalse(aluC.getMemtoReg());
     assertFalse(aluC.getRegWrite());
     assertFalse(aluC.getMemRead());
     assertFalse(aluC.getMemWrite());
@@ -108,6 +108,20 @@ class ALUControlTest {
     assertBEQFormat(aluC);
   }
 
+  @Test
+  void testUpdateOperationTypeCheckValuesAfterLWSW() {
+    aluC.updateOperationType(LW.getOpcode());
+    aluC.updateOperationType(SW.getOpcode());
+    assertSWFormat(aluC);
+  }
+
+  @Test
+  void testUpdateOperationTypeCheckValuesAfterLWBEQ() {
+    aluC.updateOperationType(LW.getOpcode());
+    aluC.updateOperationType(BEQ.getOpcode());
+    assertBEQFormat(aluC);
+  }
+
 
 
 
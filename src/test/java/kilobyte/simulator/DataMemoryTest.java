@@ -2,10 +2,14 @@ package kilobyte.simulator;
 
 import kilobyte.common.machinecode.OperationsKt;
 import kilobyte.simulator.hardware.DataMemory;
+import kilobyte.simulator.ui.utils.Radix;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.BitSet;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class DataMemoryTest {
@@ -65,4 +69,80 @@ public class DataMemoryTest {
     assertTrue(byte4 == 0x0f);
 
   }
+
+  @Test
+  public void testStoreConditionalSucceedsWithoutInterveningStore() {
+    dm.writeWordTo(8, 41);
+    long reservation = dm.loadLinked(8);
+    assertTrue(dm.storeConditional(8, reservation, DataMemory.wordIn(reservation) + 1));
+    assertEquals(42, dm.readWordFrom(8));
+  }
+
+  @Test
+  public void testStoreConditionalFailsAfterInterveningStore() {
+    long reservation = dm.loadLinked(8);
+    // Storing the very same value still breaks the reservation
+    dm.writeWordTo(8, DataMemory.wordIn(reservation));
+    assertFalse(dm.storeConditional(8, reservation, 1));
+    assertEquals(0, dm.readWordFrom(8));
+  }
+
+  @Test
+  public void testStoreConditionalFailsAfterByteStoreToTheSameWord() {
+    long reservation = dm.loadLinked(8);
+    dm.writeByteAt(11, (byte) 1);
+    assertFalse(dm.storeConditional(8, reservation, 2));
+  }
+
+  @Test
+  public void testDrainChangesReturnsTheChangedWordsOnce() {
+    dm.writeWordTo(8, 1);
+    dm.writeByteAt(13, (byte) 2);
+    dm.writeWordTo(996, -1);
+
+    BitSet changes = dm.drainChanges();
+    assertEquals(3, changes.cardinality());
+    assertTrue(changes.get(2));
+    assertTrue(changes.get(3));
+    assertTrue(changes.get(249));
+    assertTrue(dm.drainChanges().isEmpty());
+  }
+
+  @Test
+  public void testWritingTheSameValueIsNotAChange() {
+    dm.writeWordTo(8, 0);
+    dm.writeByteAt(9, (byte) 0);
+    assertTrue(dm.drainChanges().isEmpty());
+  }
+
+  @Test
+  public void testStoreConditionalIsAChangeOnlyIfItTakesPlace() {
+    long reservation = dm.loadLinked(8);
+    dm.writeWordTo(8, 1);
+    dm.drainChanges();
+    assertFalse(dm.storeConditional(8, reservation, 2));
+    assertTrue(dm.drainChanges().isEmpty());
+
+    reservation = dm.loadLinked(8);
+    assertTrue(dm.storeConditional(8, reservation, 2));
+    assertTrue(dm.drainChanges().get(2));
+  }
+
+  @Test
+  public void testMemoryOfAGivenSize() {
+    DataMemory large = new DataMemory(1 << 22);
+    large.writeWordTo((1 << 22) - 4, 0xcafe);
+    assertEquals(1 << 20, large.getNoOfEntries());
+    assertEquals("0xcafe", large.toString((1 << 20) - 1, Radix.HEX));
+    assertTrue(large.drainChanges().get((1 << 20) - 1));
+  }
+
+  @Test
+  public void testEntriesAreWords() {
+    dm.writeWordTo(4, -2);
+    String[] entries = dm.toDecimalStringArray();
+    assertEquals(250, entries.length);
+    assertEquals("0", entries[0]);
+    assertEquals("-2", entries[1]);
+  }
 }
@@ -0,0 +1,67 @@
+package kilobyte.simulator;
+
+import kilobyte.simulator.hardware.DataMemory;
+import kilobyte.simulator.program.Program;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MultiHartSimulatorTest {
+  // Every hart increments the word at address 0 a hundred times using ll/sc
+  private static final String SHARED_COUNTER =
+        "src/test/resources/kilobyte/simulator/ll_sc_shared_counter.asm";
+
+  @Test
+  void hartsAreGivenTheirIdInA0() throws Exception {
+    val simulator = MultiHartSimulator.executingProgram(Program.from("exit"), 3);
+    for (int hartId = 0; hartId < 3; hartId++) {
+      assertEquals(hartId, simulator.getHart(hartId).getRegisterValue("$a0"));
+    }
+  }
+
+  @Test
+  void roundRobinIncrementsOfASharedCounterAreNotLost() throws Exception {
+    val simulator = MultiHartSimulator.executingProgram(Program.from(new File(SHARED_COUNTER)), 4);
+    simulator.runRoundRobin(3);
+    assertEquals(400, simulator.getDataMemory().readWordFrom(0));
+  }
+
+  @Test
+  void roundRobinRunsAreReproducible() throws Exception {
+    val first = MultiHartSimulator.executingProgram(Program.from(new File(SHARED_COUNTER)), 4);
+    val second = MultiHartSimulator.executingProgram(Program.from(new File(SHARED_COUNTER)), 4);
+    assertEquals(first.runRoundRobin(2), second.runRoundRobin(2));
+
+    for (int hartId = 0; hartId < 4; hartId++) {
+      assertArrayEquals(registersOf(first.getHart(hartId)), registersOf(second.getHart(hartId)), "hart " + hartId);
+    }
+    assertArrayEquals(wordsOf(first.getDataMemory()), wordsOf(second.getDataMemory()));
+  }
+
+  @Test
+  void parallelIncrementsOfASharedCounterAreNotLost() throws Exception {
+    val simulator = MultiHartSimulator.executingProgram(Program.from(new File(SHARED_COUNTER)), 4);
+    simulator.runInParallel();
+    assertEquals(400, simulator.getDataMemory().readWordFrom(0));
+  }
+
+  private static int[] registersOf(Simulator hart) {
+    int[] values = new int[32];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = hart.getRegisterFile().get(i).getValue();
+    }
+    return values;
+  }
+
+  private static int[] wordsOf(DataMemory memory) {
+    int[] words = new int[memory.getNO_OF_BYTES() / 4];
+    for (int i = 0; i < words.length; i++) {
+      words[i] = memory.readWordFrom(4 * i);
+    }
+    return words;
+  }
+}
@@ -5,10 +5,14 @@ import kilobyte.simulator.program.Program;
 import lombok.val;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 class SimulatorTest {
@@ -392,4 +396,41 @@ class SimulatorTest {
     assertEquals(22, simulator.getDataMemory(0));
   }
 
+  @Test
+  public void testSWAfterLWStoresToMemory() {
+    // The sw used to inherit memtoReg from the lw and load instead of store
+    val simulator = Simulator.withInstructionsInMemory(
+          "lw $t1, 0($zero)",
+          "sw $t0, 4($zero)"
+    );
+    simulator.setRegisterValue("$t0", 22);
+    simulator.executeNextInstruction();
+    simulator.executeNextInstruction();
+    assertEquals(22, simulator.getDataMemory(4));
+    assertEquals(22, simulator.getRegisterValue("$t0"));
+  }
+
+
+  @Test
+  public void testChangesArePublishedInBatches() {
+    val simulator = Simulator.withInstructionsInMemory(
+          "addi $t0, $zero, 4",
+          "sw $t0, 8($zero)",
+          "addi $t0, $zero, 4");
+    simulator.publishChanges();
+    List<Changes> published = new ArrayList<>();
+    simulator.addChangeListener(published::add);
+
+    simulator.executeNextInstruction();
+    simulator.executeNextInstruction();
+    simulator.executeNextInstruction();
+    simulator.publishChanges();
+    // Nothing has changed since
+    simulator.publishChanges();
+
+    assertEquals(1, published.size());
+    assertEquals(1 << 8, published.get(0).getRegisters());
+    assertEquals(1, published.get(0).getWords().cardinality());
+    assertTrue(published.get(0).getWords().get(2));
+  }
 }
@@ -0,0 +1,95 @@
+package kilobyte.simulator.metrics;
+
+import kilobyte.simulator.MultiHartSimulator;
+import kilobyte.simulator.Simulator;
+import kilobyte.simulator.program.Program;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimulatorMetricsTest {
+  private static Simulator runToExit(String... instructions) {
+    val simulator = Simulator.withInstructionsInMemory(instructions);
+    while (!simulator.executeNextInstruction()) {
+      // Keep going
+    }
+    return simulator;
+  }
+
+  @Test
+  void countsInstructionsMemoryAccessesAndBranches() {
+    val metrics = runToExit(
+          "addi $t0, $zero, 5",
+          "sw $t0, 0($zero)",
+          "lw $t1, 0($zero)",
+          "addi $t2, $zero, 0",
+          "beq $t0, $t1, 1",
+          "exit").getMetrics();
+
+    assertEquals(6, metrics.getInstructionsExecuted());
+    assertEquals(1, metrics.getMemoryReads());
+    assertEquals(1, metrics.getMemoryWrites());
+    assertEquals(1, metrics.getBranchesTaken());
+    assertEquals(2, metrics.getInstructionCount(InstructionClass.IMMEDIATE));
+    assertEquals(1, metrics.getInstructionCount(InstructionClass.LOAD));
+    assertEquals(1, metrics.getInstructionCount(InstructionClass.STORE));
+    assertEquals(1, metrics.getInstructionCount(InstructionClass.BRANCH));
+    assertEquals(1, metrics.getInstructionCount(InstructionClass.OTHER));
+  }
+
+  @Test
+  void everySimulatorAddsToTheTotal() {
+    long before = SimulatorMetrics.total().getInstructionsExecuted();
+    runToExit("add $t0, $t1, $t2", "srl $t0, $t0, 2", "exit");
+    runToExit("j 1", "exit");
+    assertTrue(SimulatorMetrics.total().getInstructionsExecuted() - before >= 5);
+  }
+
+  @Test
+  void registeredMetricsAreReadableThroughJmx() throws Exception {
+    val simulator = runToExit("add $t0, $t1, $t2", "exit");
+    val metrics = simulator.getMetrics();
+    assertNull(metrics.getObjectName());
+    metrics.register(simulator.getHartId());
+    ObjectName name = metrics.getObjectName();
+    val server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      assertEquals(2L, server.getAttribute(name, "InstructionsExecuted"));
+    } finally {
+      simulator.close();
+    }
+    assertFalse(server.isRegistered(name));
+    assertTrue(server.isRegistered(new ObjectName("kilobyte:type=Simulator,name=total")));
+  }
+
+  @Test
+  void everyHartIsRegisteredUnderANameOfItsOwn() throws Exception {
+    val simulator = MultiHartSimulator.executingProgram(Program.from("exit"), 2);
+    for (Simulator hart : simulator.getHarts()) {
+      hart.getMetrics().register(hart.getHartId());
+    }
+    ObjectName first = simulator.getHart(0).getMetrics().getObjectName();
+    ObjectName second = simulator.getHart(1).getMetrics().getObjectName();
+    val server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      assertTrue(server.isRegistered(first));
+      assertTrue(server.isRegistered(second));
+      assertFalse(first.equals(second));
+      assertEquals("1", second.getKeyProperty("hart"));
+      // Registering again keeps the name
+      simulator.getHart(1).getMetrics().register(1);
+      assertEquals(second, simulator.getHart(1).getMetrics().getObjectName());
+    } finally {
+      simulator.close();
+    }
+    assertFalse(server.isRegistered(first));
+    assertFalse(server.isRegistered(second));
+  }
+}
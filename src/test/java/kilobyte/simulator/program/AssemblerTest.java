@@ -0,0 +1,172 @@
+package kilobyte.simulator.program;
+
+import kilobyte.common.instruction.Instruction;
+import kilobyte.simulator.Simulator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteOrder;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AssemblerTest {
+  private static final String WORKLOADS = "src/main/resources/kilobyte/simulator/workloads/";
+  private static final String LABELLED = "src/test/resources/kilobyte/simulator/program/";
+
+  @Test
+  void testLabelsResolveToTheHandResolvedWorkloads() throws IOException {
+    for (String workload : new String[]{"bubble_sort", "matrix_multiply", "string_scan", "pointer_chase"}) {
+      Program expected = Program.from(new File(WORKLOADS + workload + ".asm"));
+      Program actual = Program.from(new File(LABELLED + workload + "_with_labels.asm"));
+      assertThat(workload, actual.getInstructions(), is(equalTo(expected.getInstructions())));
+    }
+  }
+
+  @Test
+  void testForwardAndBackwardReferences() {
+    Assembly a = Assembler.assemble(
+          "start: beq $t0, $t1, end",
+          "       j start",
+          "       jal end",
+          "end:   exit");
+    assertThat(a.getInstructions().get(0), is(equalTo(Instruction.from("beq $t0, $t1, 3"))));
+    assertThat(a.getInstructions().get(1), is(equalTo(Instruction.from("j 0"))));
+    assertThat(a.getInstructions().get(2), is(equalTo(Instruction.from("jal 12"))));
+    assertThat(a.getInstructions().get(3), is(equalTo(Instruction.EXIT)));
+    assertThat(a.symbol("end").get().getAddress(), is(equalTo(12)));
+  }
+
+  @Test
+  void testDataAndPseudoInstructions() {
+    Assembly a = Assembler.assemble(
+          "        .data",
+          "msg:    .asciiz \"hi # there\"  # Not a comment until the string ends",
+          "n:      .word 41, n",
+          "        .text",
+          "        nop",
+          "main:   la $t2, n",
+          "        lw $t0, n",
+          "        lw $t1, 4($t2)",
+          "        move $t3, $t0",
+          "        li $t4, 0xffff",
+          "        li $t5, 0x12345678",
+          "        addi $t0, $t0, 1",
+          "        sw $t0, n($zero)",
+          "        exit");
+
+    assertThat(a.symbol("msg").get().getAddress(), is(equalTo(0)));
+    // "hi # there" and its terminating zero take up 11 bytes, .word aligns
+    assertThat(a.symbol("n").get().getAddress(), is(equalTo(12)));
+    assertThat(a.getEntryPoint(), is(equalTo(4)));
+    assertThat(a.getInstructions().get(1), is(equalTo(Instruction.from("ori $t2, $zero, 12"))));
+    assertThat(a.getInstructions().get(2), is(equalTo(Instruction.from("lw $t0, 12($zero)"))));
+    assertThat(a.getInstructions().get(4), is(equalTo(Instruction.from("add $t3, $t0, $zero"))));
+    assertThat(a.getInstructions().get(5), is(equalTo(Instruction.from("ori $t4, $zero, 65535"))));
+    assertThat(a.getInstructions().get(6), is(equalTo(Instruction.from("lui $t5, 4660"))));
+    assertThat(a.getInstructions().get(7), is(equalTo(Instruction.from("ori $t5, $t5, 22136"))));
+
+    Program p = a.toProgram();
+    Simulator s = Simulator.executingProgram(p);
+    for (int i = 0; i < 4; i++) {
+      s.executeNextInstruction();
+    }
+    assertThat(s.getRegisterValue("$t0"), is(equalTo(41)));
+    // The second word of n holds the address of n
+    assertThat(s.getRegisterValue("$t1"), is(equalTo(12)));
+    assertThat(s.getRegisterValue("$t3"), is(equalTo(41)));
+  }
+
+  @Test
+  void testWordImage() throws IOException {
+    Assembly a = Assembler.assemble("add $t1, $t2, $t3", "syscall");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    a.writeText(out, ByteOrder.LITTLE_ENDIAN);
+    assertThat(out.toByteArray(), is(equalTo(new byte[]{0x20, 0x48, 0x4b, 0x01, 0x0c, 0, 0, 0})));
+  }
+
+  @Test
+  void testLongSourcesAreAssembledInOnePass() {
+    int n = 100_000;
+    String[] lines = new String[2 * n + 1];
+    for (int i = 0; i < n; i++) {
+      // Every branch goes forward to the label below it, every jump back
+      lines[2 * i] = String.format("l%d: beq $t0, $t1, l%d", i, i + 1);
+      lines[2 * i + 1] = String.format("j l%d", i);
+    }
+    lines[2 * n] = String.format("l%d: exit", n);
+
+    Assembly a = Assembler.assemble(lines);
+    assertThat(a.getInstructions().size(), is(equalTo(2 * n + 1)));
+    assertThat(a.getInstructions().get(2 * n - 2), is(equalTo(Instruction.from("beq $t0, $t1, 2"))));
+    assertThat(a.getInstructions().get(2 * n - 1), is(equalTo(Instruction.from("j " + (2 * n - 2)))));
+  }
+
+  private static String source(int n) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < n; i++) {
+      // Every fifth li takes two instructions, so chunks start at odd addresses
+      sb.append(String.format("l%d: li $t0, %d%n", i, i % 5 == 0 ? 0x10000 + i : i));
+      sb.append(String.format("bne $t0, $t1, l%d%n", i < n - 1 ? i + 1 : i));
+      sb.append(String.format("jal l%d%n", n - 1 - i));
+    }
+    return sb.toString();
+  }
+
+  @Test
+  void testParallelAssemblyIsDeterministic() throws IOException {
+    String source = source(20_000);
+    Assembly sequential = Assembler.assemble(new StringReader(source), new ForkJoinPool(1));
+    Assembly parallel = Assembler.assemble(new StringReader(source), new ForkJoinPool(4));
+    assertThat(parallel.getInstructions(), is(equalTo(sequential.getInstructions())));
+
+    // l0 takes four instructions and l1 through l3 three each
+    assertThat(parallel.symbol("l4").get().getAddress(), is(equalTo(4 * (4 + 3 * 3))));
+    assertThat(parallel.getInstructions().get(2), is(equalTo(Instruction.from("bne $t0, $t1, 2"))));
+    assertThat(parallel.getInstructions().get(3), is(equalTo(Instruction.from("jal " + 4 * (20_000 * 3 + 4000 - 3)))));
+  }
+
+  @Test
+  void testErrorsOfAllChunksAreReportedInLineOrder() {
+    int n = 3 * Assembler.STATEMENTS_PER_CHUNK;
+    String[] lines = new String[n];
+    for (int i = 0; i < n; i++) {
+      lines[i] = "nop";
+    }
+    lines[n - 1] = "j nowhere";
+    lines[n / 2] = "add $t0, $t1";
+    lines[10] = "frobnicate";
+    lines[5] = ".word 1";
+
+    AssemblyException e = assertThrows(AssemblyException.class, () -> Assembler.assemble(lines));
+    assertThat(e.getLineNumber(), is(equalTo(6)));
+    Throwable[] suppressed = e.getSuppressed();
+    assertThat(suppressed.length, is(equalTo(3)));
+    assertThat(((AssemblyException) suppressed[0]).getLineNumber(), is(equalTo(11)));
+    assertThat(((AssemblyException) suppressed[1]).getLineNumber(), is(equalTo(n / 2 + 1)));
+    assertThat(((AssemblyException) suppressed[2]).getLineNumber(), is(equalTo(n)));
+    assertTrue(suppressed[2].getMessage().contains("nowhere"));
+  }
+
+  @Test
+  void testErrorsNameTheLine() {
+    AssemblyException e = assertThrows(AssemblyException.class, () -> Assembler.assemble("nop", "j nowhere"));
+    assertThat(e.getLineNumber(), is(equalTo(2)));
+    e = assertThrows(AssemblyException.class, () -> Assembler.assemble("a: nop", "a: nop"));
+    assertThat(e.getLineNumber(), is(equalTo(2)));
+    e = assertThrows(AssemblyException.class, () -> Assembler.assemble("", "frobnicate $t0"));
+    assertThat(e.getLineNumber(), is(equalTo(2)));
+    e = assertThrows(AssemblyException.class, () -> Assembler.assemble(".data", "x: .word 1", ".text", "j x"));
+    assertThat(e.getLineNumber(), is(equalTo(4)));
+    assertTrue(e.getMessage().contains("\"j x\""), e.getMessage());
+    e = assertThrows(AssemblyException.class, () -> Assembler.assemble(".data", "y: .word nowhere"));
+    assertTrue(e.getMessage().contains("\"y: .word nowhere\""), e.getMessage());
+  }
+}
@@ -0,0 +1,171 @@
+package kilobyte.simulator.program;
+
+import kilobyte.common.instruction.Instruction;
+import kilobyte.simulator.Simulator;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ElfLoaderTest {
+  private static final int DATA = 0x100;
+  private static final int BSS = 0x108;
+
+  private static final String[] TEXT = {
+        "addi $t1, $zero, 99", // Skipped, the entry point is the next one
+        "lw $t0, 256($zero)",
+        "addi $t0, $t0, 1",
+        "sw $t0, 264($zero)",
+  };
+
+  /*
+   * Builds an executable of the sections
+   *
+   * [0] null, [1] .text, [2] .data, [3] .bss, [4] .symtab, [5] .strtab, [6] .shstrtab
+   *
+   * where .data holds 41 and -2 and main is the second instruction.
+   */
+  private static ByteBuffer executable(ByteOrder order) {
+    ByteBuffer text = ByteBuffer.allocate(4 * TEXT.length).order(order);
+    for (String s : TEXT) {
+      text.putInt((int) Instruction.from(s).getNumericRepresentation());
+    }
+    ByteBuffer data = ByteBuffer.allocate(8).order(order).putInt(41).putInt(-2);
+
+    byte[] strtab = "\0main\0counter\0".getBytes(StandardCharsets.US_ASCII);
+    ByteBuffer symtab = ByteBuffer.allocate(3 * 16).order(order);
+    symtab.position(16);
+    symtab.putInt(1).putInt(4).putInt(12).put((byte) 0x12).put((byte) 0).putShort((short) 1);  // FUNC
+    symtab.putInt(6).putInt(BSS).putInt(4).put((byte) 0x11).put((byte) 0).putShort((short) 3); // OBJECT
+    byte[] shstrtab = "\0.text\0.data\0.bss\0.symtab\0.strtab\0.shstrtab\0".getBytes(StandardCharsets.US_ASCII);
+
+    int textAt = 52;
+    int dataAt = textAt + text.capacity();
+    int symtabAt = dataAt + data.capacity();
+    int strtabAt = symtabAt + symtab.capacity();
+    int shstrtabAt = strtabAt + strtab.length;
+    int sectionHeadersAt = (shstrtabAt + shstrtab.length + 3) & ~3;
+
+    ByteBuffer elf = ByteBuffer.allocate(sectionHeadersAt + 7 * 40).order(order);
+    elf.put(new byte[]{0x7f, 'E', 'L', 'F', 1, (byte) (order == ByteOrder.BIG_ENDIAN ? 2 : 1), 1});
+    elf.position(16);
+    elf.putShort((short) 2).putShort((short) 8).putInt(1); // EXEC, MIPS
+    elf.putInt(4).putInt(0).putInt(sectionHeadersAt).putInt(0); // entry, phoff, shoff, flags
+    elf.putShort((short) 52).putShort((short) 0).putShort((short) 0);
+    elf.putShort((short) 40).putShort((short) 7).putShort((short) 6);
+
+    elf.position(textAt);
+    elf.put(text.array()).put(data.array()).put(symtab.array()).put(strtab).put(shstrtab);
+
+    elf.position(sectionHeadersAt + 40);
+    section(elf, 1, 1, 0, textAt, text.capacity(), 0);
+    section(elf, 7, 1, DATA, dataAt, data.capacity(), 0);
+    section(elf, 13, 8, BSS, 0, 16, 0);
+    section(elf, 18, 2, 0, symtabAt, symtab.capacity(), 5);
+    section(elf, 26, 3, 0, strtabAt, strtab.length, 0);
+    section(elf, 34, 3, 0, shstrtabAt, shstrtab.length, 0);
+    elf.flip();
+    return elf;
+  }
+
+  private static void section(ByteBuffer elf, int name, int type, int address, int offset, int size, int link) {
+    elf.putInt(name).putInt(type).putInt(0).putInt(address).putInt(offset).putInt(size).putInt(link);
+    elf.putInt(0).putInt(4).putInt(0);
+  }
+
+  private static void assertLoaded(Program p) {
+    assertThat(p.getInstructions().size(), is(equalTo(TEXT.length)));
+    assertThat(p.getInstructions().get(0), is(equalTo(Instruction.from(TEXT[0]))));
+    assertLoadedFrom(p, 1);
+  }
+
+  /* The instructions from the given one onwards, the data and what running them does */
+  private static void assertLoadedFrom(Program p, int first) {
+    for (int i = first; i < TEXT.length; i++) {
+      assertThat(p.getInstructions().get(i), is(equalTo(Instruction.from(TEXT[i]))));
+    }
+    assertThat(p.getTextAddress(), is(equalTo(0)));
+    assertThat(p.getEntryPoint(), is(equalTo(4)));
+    assertThat(p.getData().size(), is(equalTo(2)));
+
+    Simulator s = Simulator.executingProgram(p);
+    assertThat(s.getDataMemory(DATA), is(equalTo(41)));
+    assertThat(s.getDataMemory(DATA + 4), is(equalTo(-2)));
+    for (int i = 0; i < 3; i++) {
+      s.executeNextInstruction();
+    }
+    assertThat(s.getRegisterValue("$t1"), is(equalTo(0)));
+    assertThat(s.getDataMemory(BSS), is(equalTo(42)));
+    assertThat(s.getDataMemory(BSS + 12), is(equalTo(0)));
+  }
+
+  @Test
+  void testBigEndianExecutable() {
+    assertLoaded(ElfLoader.load(executable(ByteOrder.BIG_ENDIAN)));
+  }
+
+  @Test
+  void testLittleEndianExecutable() {
+    assertLoaded(ElfLoader.load(executable(ByteOrder.LITTLE_ENDIAN)));
+  }
+
+  @Test
+  void testSymbols() {
+    Program p = ElfLoader.load(executable(ByteOrder.BIG_ENDIAN));
+    assertThat(p.getSymbols().size(), is(equalTo(2)));
+    assertThat(p.symbolAt(4).get().getName(), is(equalTo("main")));
+    // main is 12 bytes long
+    assertThat(p.symbolAt(12).get().getName(), is(equalTo("main")));
+    assertThat(p.symbolAt(BSS).get().getName(), is(equalTo("counter")));
+    assertTrue(!p.symbolAt(0).isPresent());
+    assertTrue(!p.symbolAt(16).isPresent());
+  }
+
+  @Test
+  void testProgramFromFileRecognisesElf() throws IOException {
+    File f = File.createTempFile("kilobyte", ".elf");
+    f.deleteOnExit();
+    ByteBuffer elf = executable(ByteOrder.BIG_ENDIAN);
+    byte[] bytes = new byte[elf.remaining()];
+    elf.get(bytes);
+    Files.write(f.toPath(), bytes);
+
+    assertTrue(ElfLoader.isElf(f));
+    assertLoaded(Program.from(f));
+  }
+
+  @Test
+  void testWordsThatDoNotDecodeOnlyFailWhenRun() {
+    ByteBuffer elf = executable(ByteOrder.BIG_ENDIAN);
+    // The first word of the text, which is skipped by the entry point
+    elf.putInt(52, 0xffffffff);
+    Program p = ElfLoader.load(elf);
+    assertThat(p.getInstructions().size(), is(equalTo(TEXT.length)));
+    assertThat(p.mnemonicAt(0), is(equalTo(".word 0xffffffff")));
+    assertLoadedFrom(p, 1);
+
+    Simulator s = Simulator.executingProgram(p);
+    s.getProgramCounter().setTo(0);
+    assertThrows(IllegalArgumentException.class, s::executeNextInstruction);
+  }
+
+  @Test
+  void testThatOnlyMipsExecutablesAreLoaded() {
+    ByteBuffer elf = executable(ByteOrder.BIG_ENDIAN);
+    elf.putShort(18, (short) 3); // x86
+    assertThrows(IllegalArgumentException.class, () -> ElfLoader.load(elf));
+
+    ByteBuffer notElf = ByteBuffer.allocate(64);
+    assertThrows(IllegalArgumentException.class, () -> ElfLoader.load(notElf));
+  }
+}
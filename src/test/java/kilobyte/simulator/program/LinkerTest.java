@@ -0,0 +1,150 @@
+package kilobyte.simulator.program;
+
+import kilobyte.common.instruction.Instruction;
+import kilobyte.simulator.Simulator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LinkerTest {
+  private static final String[] LIBRARY = {
+        "        .globl table, done",
+        "        .data",
+        "pad:    .byte 1",
+        "table:  .word 3, 4",
+        "self:   .word table",
+        "        .text",
+        "here:   nop",
+        "done:   exit",
+  };
+
+  private static final String[] MAIN = {
+        "        .globl main",
+        "        .data",
+        "count:  .word 2",
+        "ptr:    .word table",
+        "        .text",
+        "main:",
+        "here:   lw $t0, table",
+        "        lw $t1, count",
+        "        lw $t2, ptr",
+        "        beq $t1, $zero, here",
+        "        la $t3, table",
+        "        j done",
+  };
+
+  @Test
+  void testObjects() {
+    ObjectFile main = Assembler.assembleObject("main.s", MAIN);
+    assertThat(main.getImports().asList(), is(equalTo(Arrays.asList("table", "done"))));
+    // la takes two words in an object, as the address may not fit in 16 bits
+    assertThat(main.getInstructions().size(), is(equalTo(7)));
+    // The three loads, both halves of la, j and .word table. The branch is local.
+    assertThat(main.getRelocations().size(), is(equalTo(7)));
+    assertThat(main.getRelocations().get(6).getKind(), is(equalTo(Relocation.Kind.WORD)));
+    assertThat(main.getInstructions().get(3), is(equalTo(Instruction.from("beq $t1, $zero, -3"))));
+  }
+
+  @Test
+  void testLinking() {
+    Assembly a = Linker.link(
+          Assembler.assembleObject("library.s", LIBRARY),
+          Assembler.assembleObject("main.s", MAIN));
+
+    // The library takes the first two instructions and the first 16 bytes of data
+    assertThat(a.getEntryPoint(), is(equalTo(8)));
+    assertThat(a.symbol("table").get().getAddress(), is(equalTo(4)));
+    assertThat(a.symbol("count").get().getAddress(), is(equalTo(16)));
+    // The exported label is the one found by name, not one of the local ones
+    assertThat(a.symbol("main").get().getAddress(), is(equalTo(8)));
+    assertThat(a.getInstructions().get(2), is(equalTo(Instruction.from("lw $t0, 4($zero)"))));
+    assertThat(a.getInstructions().get(3), is(equalTo(Instruction.from("lw $t1, 16($zero)"))));
+    assertThat(a.getInstructions().get(5), is(equalTo(Instruction.from("beq $t1, $zero, -3"))));
+    assertThat(a.getInstructions().get(6), is(equalTo(Instruction.from("lui $t3, 0"))));
+    assertThat(a.getInstructions().get(7), is(equalTo(Instruction.from("ori $t3, $t3, 4"))));
+    assertThat(a.getInstructions().get(8), is(equalTo(Instruction.from("j 1"))));
+    assertThat(a.getInstructions().get(1), is(equalTo(Instruction.EXIT)));
+
+    Simulator s = Simulator.executingProgram(a.toProgram());
+    assertThat(s.getDataMemory(12), is(equalTo(4)));
+    assertThat(s.getDataMemory(20), is(equalTo(4)));
+    for (int i = 0; i < 4; i++) {
+      s.executeNextInstruction();
+    }
+    assertThat(s.getRegisterValue("$t0"), is(equalTo(3)));
+    assertThat(s.getRegisterValue("$t1"), is(equalTo(2)));
+    assertThat(s.getRegisterValue("$t2"), is(equalTo(4)));
+  }
+
+  @Test
+  void testErrors() {
+    ObjectFile main = Assembler.assembleObject("main.s", MAIN);
+    assertThrows(IllegalArgumentException.class, () -> Linker.link(main));
+    ObjectFile other = Assembler.assembleObject("other.s", ".globl main", "main: nop");
+    assertThrows(IllegalArgumentException.class,
+          () -> Linker.link(Assembler.assembleObject("library.s", LIBRARY), main, other));
+    assertThrows(AssemblyException.class,
+          () -> Assembler.assembleObject("data.s", ".data", "x: .word 1", ".text", "j x"));
+    // The linker is the one to notice when the label is in another object
+    assertThrows(IllegalArgumentException.class,
+          () -> Linker.link(Assembler.assembleObject("jump.s", "j table"),
+                            Assembler.assembleObject("library.s", LIBRARY)));
+  }
+
+  @Test
+  void testObjectsAreReadBack() throws IOException {
+    ObjectFile main = Assembler.assembleObject("main.s", MAIN);
+    ObjectFile library = Assembler.assembleObject("library.s", LIBRARY);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    library.write(out);
+    ObjectFile read = ObjectFile.read(new ByteArrayInputStream(out.toByteArray()));
+
+    assertThat(read.getName(), is(equalTo("library.s")));
+    assertThat(read.getInstructions(), is(equalTo(library.getInstructions())));
+    assertThat(read.getData(), is(equalTo(library.getData())));
+    assertThat(read.getDefinitions().size(), is(equalTo(library.getDefinitions().size())));
+    assertThat(read.getRelocations().size(), is(equalTo(library.getRelocations().size())));
+    assertThat(Linker.link(read, main).getInstructions(), is(equalTo(Linker.link(library, main).getInstructions())));
+  }
+
+  @Test
+  void testUnchangedSourcesAreNotReassembled() throws IOException {
+    File library = source("library", LIBRARY);
+    File main = source("main", MAIN);
+    Linker linker = new Linker();
+
+    Assembly first = linker.link(library, main);
+    ObjectFile libraryObject = linker.remembered(library).get();
+    ObjectFile mainObject = linker.remembered(main).get();
+
+    assertThat(linker.link(library, main).getInstructions(), is(equalTo(first.getInstructions())));
+    assertThat(linker.remembered(library).get(), is(sameInstance(libraryObject)));
+    assertThat(linker.remembered(main).get(), is(sameInstance(mainObject)));
+
+    Files.write(main.toPath(), String.join("\n", MAIN).replace("lw $t0", "lw $t4").getBytes(StandardCharsets.UTF_8));
+    Assembly changed = linker.link(library, main);
+    assertThat(linker.remembered(library).get(), is(sameInstance(libraryObject)));
+    assertThat(linker.remembered(main).get(), is(not(sameInstance(mainObject))));
+    assertThat(changed.getInstructions().get(2), is(equalTo(Instruction.from("lw $t4, 4($zero)"))));
+  }
+
+  private static File source(String name, String[] lines) throws IOException {
+    File f = File.createTempFile(name, ".s");
+    f.deleteOnExit();
+    Files.write(f.toPath(), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    return f;
+  }
+}
@@ -0,0 +1,108 @@
+package kilobyte.simulator.program;
+
+import kilobyte.simulator.Simulator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProgramCacheTest {
+  private static final String SOURCE = String.join("\n",
+        "        .data",
+        "four:   .word 4",
+        "        .text",
+        "start:  nop",
+        "main:   lw $t0, four",
+        "        add $t1, $t0, $t0",
+        "        exit");
+
+  @Test
+  void testSecondLoadIsServedFromTheCache() throws IOException {
+    ProgramCache cache = new ProgramCache(Files.createTempDirectory("kilobyte"));
+    File source = source(SOURCE);
+
+    Program assembled = cache.load(source);
+    Program cached = cache.load(source);
+    assertThat(cache.getMisses(), is(equalTo(1)));
+    assertThat(cache.getHits(), is(equalTo(1)));
+
+    assertThat(cached.getInstructions(), is(equalTo(assembled.getInstructions())));
+    assertThat(cached.getEntryPoint(), is(equalTo(4)));
+    assertThat(cached.getSymbols().size(), is(equalTo(2)));
+    assertThat(cached.getSymbols().get(1).getName(), is(equalTo("main")));
+    assertThat(cached.getDataSymbols().size(), is(equalTo(1)));
+    assertThat(cached.getDataSymbols().get(0).getName(), is(equalTo("four")));
+    assertThat(cached.getDataSymbols().get(0).getAddress(), is(equalTo(0)));
+    assertThat(cached.getData().get(0).getContents().getInt(), is(equalTo(4)));
+
+    Simulator s = Simulator.executingProgram(cached);
+    while (!s.executeNextInstruction()) {
+    }
+    assertThat(s.getRegisterValue("$t1"), is(equalTo(8)));
+  }
+
+  @Test
+  void testChangedSourcesAreAssembledAgain() throws IOException {
+    ProgramCache cache = new ProgramCache(Files.createTempDirectory("kilobyte"));
+    File source = source(SOURCE);
+    cache.load(source);
+
+    Files.write(source.toPath(), SOURCE.replace("$t0, $t0", "$t0, $zero").getBytes(StandardCharsets.UTF_8));
+    Program changed = cache.load(source);
+    assertThat(cache.getMisses(), is(equalTo(2)));
+    assertThat(changed.getInstructions().get(2).getMnemonicRepresentation(), is(equalTo("add $t1, $t0, $zero")));
+
+    // Both versions stay cached, so going back is a hit
+    Files.write(source.toPath(), SOURCE.getBytes(StandardCharsets.UTF_8));
+    cache.load(source);
+    assertThat(cache.getHits(), is(equalTo(1)));
+  }
+
+  @Test
+  void testDamagedImagesAreReplaced() throws IOException {
+    Path directory = Files.createTempDirectory("kilobyte");
+    ProgramCache cache = new ProgramCache(directory);
+    File source = source(SOURCE);
+    Program assembled = cache.load(source);
+
+    try (DirectoryStream<Path> images = Files.newDirectoryStream(directory)) {
+      for (Path image : images) {
+        Files.write(image, new byte[]{0x4b, 0x42, 0x43, 0x31, 0, 0, 0, 0, 0x7f});
+      }
+    }
+    assertThat(cache.load(source).getInstructions(), is(equalTo(assembled.getInstructions())));
+    assertThat(cache.getMisses(), is(equalTo(2)));
+    assertThat(cache.load(source).getInstructions(), is(equalTo(assembled.getInstructions())));
+    assertThat(cache.getHits(), is(equalTo(1)));
+  }
+
+  @Test
+  void testImagesOfAnotherVersionAreRejected() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ProgramCache.write(Assembler.assemble(new StringReader(SOURCE)), out);
+    ByteBuffer image = ByteBuffer.wrap(out.toByteArray());
+    assertThat(ProgramCache.read(image).getInstructions().size(), is(equalTo(4)));
+
+    image.putInt(4, ProgramCache.VERSION - 1);
+    assertThrows(IllegalArgumentException.class, () -> ProgramCache.read(image));
+  }
+
+  private static File source(String contents) throws IOException {
+    File f = File.createTempFile("kilobyte", ".s");
+    f.deleteOnExit();
+    Files.write(f.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    return f;
+  }
+}
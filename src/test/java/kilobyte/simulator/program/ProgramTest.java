@@ -0,0 +1,129 @@
+package kilobyte.simulator.program;
+
+import kilobyte.common.instruction.Instruction;
+import kilobyte.simulator.Simulator;
+import kilobyte.simulator.ui.utils.Radix;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProgramTest {
+  private static final int[] WORDS = {
+        0x20080003, // addi $t0, $zero, 3
+        0x01084820, // add $t1, $t0, $t0
+        0x01285022, // sub $t2, $t1, $t0
+  };
+
+  @Test
+  void testMachineCodeEndsWithAnExit() {
+    Program p = Program.fromMachineCode(IntBuffer.wrap(WORDS));
+    assertThat(p.getInstructions().size(), is(equalTo(4)));
+    assertThat(p.getInstructions().get(1), is(equalTo(Instruction.from("add $t1, $t0, $t0"))));
+    assertThat(p.getInstructions().get(3), is(equalTo(Instruction.EXIT)));
+    assertThat(p.getWords().get().remaining(), is(equalTo(3)));
+
+    Simulator s = Simulator.executingProgram(p);
+    int executed = 0;
+    while (!s.executeNextInstruction()) {
+      executed++;
+    }
+    assertThat(executed, is(equalTo(3)));
+    assertThat(s.getRegisterValue("$t2"), is(equalTo(3)));
+    assertThat(s.getInstructionMemory().getInstructionAt(4), is(equalTo(Instruction.from("add $t1, $t0, $t0"))));
+  }
+
+  @Test
+  void testWordsAreOnlyDecodedWhenRead() {
+    // Not an instruction, but never asked for
+    Program p = Program.fromMachineCode(IntBuffer.wrap(new int[]{WORDS[0], 0xffffffff}));
+    assertThat(p.getInstructions().get(0), is(equalTo(Instruction.from("addi $t0, $zero, 3"))));
+    assertThrows(IllegalArgumentException.class, () -> p.getInstructions().get(1));
+
+    Simulator s = Simulator.executingProgram(p);
+    s.executeNextInstruction();
+    assertThat(s.getRegisterValue("$t0"), is(equalTo(3)));
+  }
+
+  @Test
+  void testWordsThatDoNotDecodeAreShownAsWords() {
+    Program p = Program.fromMachineCode(IntBuffer.wrap(new int[]{WORDS[0], 0xffffffff}));
+    assertThat(p.mnemonicAt(0), is(equalTo("addi $t0, $zero, 3")));
+    assertThat(p.isDecodable(1), is(false));
+    assertThat(p.mnemonicAt(1), is(equalTo(".word 0xffffffff")));
+    assertThat(p.mnemonicAt(2), is(equalTo(Instruction.EXIT.getMnemonicRepresentation())));
+
+    Simulator s = Simulator.executingProgram(p);
+    assertThat(s.getInstructionMemory().toString(1, Radix.HEX), is(equalTo(".word 0xffffffff")));
+    assertThat(s.getInstructionMemory().toString(1, Radix.DECIMAL), is(equalTo(".word 4294967295")));
+  }
+
+  @Test
+  void testHexFiles() throws IOException {
+    File f = File.createTempFile("kilobyte", ".hex");
+    f.deleteOnExit();
+    Files.write(f.toPath(), "0x20080003\r\n\n  0x01084820\n0x01285022\n".getBytes(StandardCharsets.UTF_8));
+
+    Program p = Program.from(f);
+    assertThat(p.getWords().isPresent(), is(equalTo(true)));
+    assertThat(p.getInstructions(), is(equalTo(Program.fromMachineCode(IntBuffer.wrap(WORDS)).getInstructions())));
+
+    // Mnemonics are still assembled
+    Files.write(f.toPath(), "addi $t0, $zero, 3\n".getBytes(StandardCharsets.UTF_8));
+    assertThat(Program.from(f).getWords().isPresent(), is(equalTo(false)));
+    assertThat(Program.from(f).getInstructions().size(), is(equalTo(1)));
+  }
+
+  @Test
+  void testMnemonicsAreToldByTheStartOfTheFile() throws IOException {
+    File f = File.createTempFile("kilobyte", ".txt");
+    f.deleteOnExit();
+    Files.write(f.toPath(), "\n  addi $t0, $zero, 3\n0x01084820\n".getBytes(StandardCharsets.UTF_8));
+    assertThat(Program.machineCodeIn(f).isPresent(), is(false));
+
+    // A line longer than any word
+    Files.write(f.toPath(), (String.join("", Collections.nCopies(20, "nop; ")) + "\n").getBytes(StandardCharsets.UTF_8));
+    assertThat(Program.machineCodeIn(f).isPresent(), is(false));
+
+    // Only the first line is a word, the rest is read before giving up
+    Files.write(f.toPath(), "0x20080003\nadd $t1, $t0, $t0\n".getBytes(StandardCharsets.UTF_8));
+    assertThat(Program.machineCodeIn(f).isPresent(), is(false));
+
+    Files.write(f.toPath(), "\n\n0x20080003\n0x01084820\n".getBytes(StandardCharsets.UTF_8));
+    assertThat(Program.machineCodeIn(f).get().getWords().get().remaining(), is(equalTo(2)));
+  }
+
+  @Test
+  void testSourcesAreToldByTheirName() throws IOException {
+    File f = File.createTempFile("kilobyte", ".asm");
+    f.deleteOnExit();
+    Files.write(f.toPath(), "0x20080003\n".getBytes(StandardCharsets.UTF_8));
+    assertThat(Program.machineCodeIn(f).isPresent(), is(false));
+  }
+
+  @Test
+  void testBinaryFiles() throws IOException {
+    File f = File.createTempFile("kilobyte", ".bin");
+    f.deleteOnExit();
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(f))) {
+      for (int word : WORDS) {
+        out.writeInt(word);
+      }
+      // A trailing partial word is left out
+      out.writeByte(0x20);
+    }
+    Program p = Program.from(f);
+    assertThat(p.getInstructions(), is(equalTo(Program.fromMachineCode(IntBuffer.wrap(WORDS)).getInstructions())));
+  }
+}
@@ -0,0 +1,131 @@
+package kilobyte.simulator.ui;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimulationActorTest {
+  SimulationActor actor;
+  List<String> carriedOut;
+
+  @BeforeEach
+  void setUp() {
+    actor = new SimulationActor();
+    carriedOut = new CopyOnWriteArrayList<>();
+    actor.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    actor.close();
+  }
+
+  @Test
+  void commandsAreCarriedOutInOrder() throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(1);
+    actor.submit(() -> carriedOut.add("a"));
+    actor.submit(() -> carriedOut.add("b"));
+    actor.submit(() -> carriedOut.add("c"));
+    actor.submit(done::countDown);
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals("[a, b, c]", carriedOut.toString());
+  }
+
+  @Test
+  void anUnendingCommandIsCancelled() throws InterruptedException {
+    CountDownLatch running = new CountDownLatch(1);
+    CountDownLatch stopped = new CountDownLatch(1);
+    actor.submit(() -> {
+      running.countDown();
+      while (!actor.isCancelled()) {
+        // An unending loop of the simulated program
+      }
+      carriedOut.add("cancelled");
+    });
+    assertTrue(running.await(5, TimeUnit.SECONDS));
+    actor.interruptWith(stopped::countDown);
+
+    assertTrue(stopped.await(5, TimeUnit.SECONDS));
+    assertEquals("cancelled", carriedOut.get(0));
+  }
+
+  @Test
+  void aSleepingCommandIsWokenUpWhenCancelled() throws InterruptedException {
+    CountDownLatch sleeping = new CountDownLatch(1);
+    CountDownLatch stopped = new CountDownLatch(1);
+    actor.submit(() -> {
+      sleeping.countDown();
+      while (!actor.isCancelled()) {
+        actor.sleep(TimeUnit.HOURS.toNanos(1));
+      }
+    });
+    assertTrue(sleeping.await(5, TimeUnit.SECONDS));
+    actor.interruptWith(stopped::countDown);
+
+    assertTrue(stopped.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void commandsQueuedBeforeAnInterruptionAreSkipped() throws InterruptedException {
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(1);
+    actor.submit(() -> {
+      blocked.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    assertTrue(blocked.await(5, TimeUnit.SECONDS));
+    actor.submit(() -> carriedOut.add("run"));
+    actor.interruptWith(() -> carriedOut.add("reset"));
+    actor.interruptWith(() -> carriedOut.add("load"));
+    actor.submit(done::countDown);
+    release.countDown();
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(2, carriedOut.size());
+    assertEquals("reset", carriedOut.get(0));
+    assertEquals("load", carriedOut.get(1));
+  }
+
+  @Test
+  void aFailingCommandDoesNotStopTheSimulation() throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(1);
+    actor.submit(() -> {
+      throw new IllegalArgumentException("Unsupported instruction");
+    });
+    actor.submit(done::countDown);
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void closingStopsTheThread() throws InterruptedException {
+    CountDownLatch running = new CountDownLatch(1);
+    actor.submit(() -> {
+      running.countDown();
+      while (!actor.isCancelled()) {
+        actor.sleep(TimeUnit.HOURS.toNanos(1));
+      }
+    });
+    actor.submit(() -> carriedOut.add("queued"));
+    assertTrue(running.await(5, TimeUnit.SECONDS));
+    actor.close();
+
+    assertFalse(actor.isAlive());
+    assertTrue(carriedOut.isEmpty());
+  }
+}
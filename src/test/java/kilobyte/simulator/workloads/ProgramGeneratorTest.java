@@ -0,0 +1,119 @@
+package kilobyte.simulator.workloads;
+
+import com.google.common.collect.ImmutableMap;
+import kilobyte.common.instruction.Instruction;
+import kilobyte.simulator.Simulator;
+import kilobyte.simulator.program.Assembler;
+import kilobyte.simulator.program.Assembly;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProgramGeneratorTest {
+  private static final Logger kilobyte = Logger.getLogger("kilobyte");
+  private static Level previousLevel;
+
+  @BeforeAll
+  static void silenceTheSimulator() {
+    previousLevel = kilobyte.getLevel();
+    kilobyte.setLevel(Level.WARNING);
+  }
+
+  @AfterAll
+  static void restoreLogging() {
+    kilobyte.setLevel(previousLevel);
+  }
+
+  @Test
+  void theSameSeedGivesTheSameProgram() {
+    assertThat(ProgramGenerator.runnable(7).words(1000), is(ProgramGenerator.runnable(7).words(1000)));
+    assertFalse(Arrays.equals(ProgramGenerator.runnable(7).words(1000), ProgramGenerator.runnable(8).words(1000)));
+  }
+
+  @Test
+  void runnableProgramsExit() {
+    for (long seed = 0; seed < 20; seed++) {
+      ProgramGenerator g = ProgramGenerator.runnable(seed).withLoops(50);
+      Simulator s = Simulator.executingProgram(g.program(200));
+      Workload.runToCompletion(s);
+    }
+  }
+
+  @Test
+  void runnableProgramsLargerThanTheDefaultInstructionMemoryFit() {
+    Workload.runToCompletion(Simulator.executingProgram(ProgramGenerator.runnable(3).program(5000)));
+  }
+
+  @Test
+  void programsOfTheInstructionSetDecode() {
+    int[] words = ProgramGenerator.ofInstructionSet(11).words(5000);
+    for (int i = 0; i < words.length; i++) {
+      Instruction.fromWord(words[i], 4 * i);
+    }
+  }
+
+  @Test
+  void theMixIsRespected() {
+    int[] words = ProgramGenerator.runnable(5)
+          .withMix(ImmutableMap.of(Instruction.ADD, 1, Instruction.LW, 1))
+          .words(500);
+    for (int word : words) {
+      String iname = Instruction.fromWord(word, 0).getIname();
+      assertTrue(iname.equals("add") || iname.equals("lw"), iname);
+    }
+  }
+
+  @Test
+  void runnableProgramsOnlyUseSupportedInstructions() {
+    assertThrows(IllegalArgumentException.class, () ->
+          ProgramGenerator.runnable(0).withMix(ImmutableMap.of(Instruction.JR, 1)));
+    assertThrows(IllegalArgumentException.class, () ->
+          ProgramGenerator.runnable(0).withMix(ImmutableMap.of(Instruction.XOR, 1)));
+  }
+
+  @Test
+  void writtenWordsAreTheWordsOfTheProgram() throws IOException {
+    ProgramGenerator g = ProgramGenerator.ofInstructionSet(13);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    g.writeWords(70_000, out, ByteOrder.LITTLE_ENDIAN);
+
+    IntBuffer written = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    int[] words = new int[written.remaining()];
+    written.get(words);
+    assertThat(words, is(g.words(70_000)));
+  }
+
+  @Test
+  void writtenMnemonicsAssembleIntoTheSameProgram() throws IOException {
+    ProgramGenerator g = ProgramGenerator.runnable(17).withLoops(10);
+    StringWriter out = new StringWriter();
+    g.writeMnemonics(300, out);
+
+    Assembly a = Assembler.assemble(new StringReader(out.toString()));
+    List<Instruction> instructions = a.getInstructions();
+    int[] words = g.words(300);
+    assertThat(instructions.size(), is(words.length + 1));
+    for (int i = 0; i < words.length; i++) {
+      assertThat(instructions.get(i).getNumericRepresentation(), is(Integer.toUnsignedLong(words[i])));
+    }
+    assertThat(instructions.get(words.length), is(Instruction.EXIT));
+  }
+}
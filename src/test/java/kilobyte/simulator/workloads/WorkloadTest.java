@@ -0,0 +1,53 @@
+package kilobyte.simulator.workloads;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+class WorkloadTest {
+  // The workloads execute tens of thousands of instructions each and the
+  // simulator logs several lines per instruction.
+  private static final Logger kilobyte = Logger.getLogger("kilobyte");
+  private static Level previousLevel;
+
+  @BeforeAll
+  static void silenceTheSimulator() {
+    previousLevel = kilobyte.getLevel();
+    kilobyte.setLevel(Level.WARNING);
+  }
+
+  @AfterAll
+  static void restoreLogging() {
+    kilobyte.setLevel(previousLevel);
+  }
+
+  // execute() throws if the result is wrong
+
+  @Test
+  void bubbleSort() {
+    Workload.BUBBLE_SORT.execute();
+  }
+
+  @Test
+  void matrixMultiply() {
+    Workload.MATRIX_MULTIPLY.execute();
+  }
+
+  @Test
+  void fibonacci() {
+    Workload.FIBONACCI.execute();
+  }
+
+  @Test
+  void stringScan() {
+    Workload.STRING_SCAN.execute();
+  }
+
+  @Test
+  void pointerChase() {
+    Workload.POINTER_CHASE.execute();
+  }
+}
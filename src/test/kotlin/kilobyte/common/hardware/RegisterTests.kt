@@ -48,4 +48,16 @@ class RegisterTests {
   fun testThatIndexOfReturnsTheExpectedValue() {
     assertThat(RegisterFile.indexOf("\$t0"), `is`(equalTo(8)))
   }
+
+  @Test
+  @DisplayName("RegisterFile.drainChanges() returns the registers that changed, once")
+  fun drainChangesReturnsTheChangedRegistersOnce() {
+    val rf = RegisterFile()
+    rf["\$t0"].value = 2
+    rf["\$ra"].value = 3
+    rf["\$v0"].value = 0
+
+    assertThat(rf.drainChanges(), `is`(equalTo((1 shl 8) or (1 shl 31))))
+    assertThat(rf.drainChanges(), `is`(equalTo(0)))
+  }
 }
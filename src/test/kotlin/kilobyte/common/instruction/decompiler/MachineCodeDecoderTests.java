@@ -3,8 +3,12 @@ package kilobyte.common.instruction.decompiler;
 import kilobyte.decompiler.MachineCodeDecoder;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class MachineCodeDecoderTests {
   @Test
@@ -29,4 +33,30 @@ public class MachineCodeDecoderTests {
   void testThatLargeNumbersCanBeDecodedAsWell() {
     assertEquals(0xafbf0004, MachineCodeDecoder.decode("0xafbf0004"), "Failed to decode \"0xafbf0004\", i.e. [sw $ra, 4($sp)]");
   }
+
+  @Test
+  void testSignedAndPaddedNumbers() {
+    assertAll(() -> {
+      assertEquals(-8, MachineCodeDecoder.decode("-8"));
+      assertEquals(Integer.MIN_VALUE, MachineCodeDecoder.decode("-2147483648"));
+      assertEquals(-1, MachineCodeDecoder.decode("4294967295"));
+      assertEquals(10, MachineCodeDecoder.decode("  0x000000000a\t"));
+    });
+  }
+
+  @Test
+  void testThatMalformedNumbersAreRejected() {
+    assertThrows(IllegalArgumentException.class, () -> MachineCodeDecoder.decode(""));
+    for (String s : new String[]{" ", "-", "0x", "0b2", "12ab", "-0x5", "- 5", "0x1ffffffff", "-2147483649"}) {
+      assertThrows(NumberFormatException.class, () -> MachineCodeDecoder.decode(s));
+    }
+  }
+
+  @Test
+  void testScanningARange() {
+    assertEquals(0x14b4820, MachineCodeDecoder.scan("add 0x014b4820 # comment", 4, 14));
+    ByteBuffer b = ByteBuffer.wrap("-4,0b101".getBytes(StandardCharsets.US_ASCII));
+    assertEquals(-4, MachineCodeDecoder.scan(b, 0, 2));
+    assertEquals(5, MachineCodeDecoder.scan(b, 3, 8));
+  }
 }
@@ -0,0 +1,74 @@
+package kilobyte.common.machinecode
+
+import kilobyte.common.hardware.Field
+import kilobyte.common.instruction.decomposedrepresentation.DecomposedRepresentation
+import org.hamcrest.CoreMatchers.`is`
+import org.hamcrest.CoreMatchers.equalTo
+import org.hamcrest.MatcherAssert.assertThat
+import org.junit.jupiter.api.DisplayName
+import org.junit.jupiter.api.Test
+
+class FieldsTests {
+  // add $t1, $t2, $t3
+  val add = 0x014b4820
+
+  // lw $sp, -8($sp)
+  val lw = 0x8fbdfff8.toInt()
+
+  @Test
+  @DisplayName("The R-format fields of add \$t1, \$t2, \$t3")
+  fun testRFormatFields() {
+    assertThat(opcode(add), `is`(equalTo(0)))
+    assertThat(rs(add), `is`(equalTo(10)))
+    assertThat(rt(add), `is`(equalTo(11)))
+    assertThat(rd(add), `is`(equalTo(9)))
+    assertThat(shamt(add), `is`(equalTo(0)))
+    assertThat(funct(add), `is`(equalTo(0x20)))
+  }
+
+  @Test
+  @DisplayName("The I-format fields of a word with its top bit set")
+  fun testIFormatFields() {
+    assertThat(opcode(lw), `is`(equalTo(0x23)))
+    assertThat(rs(lw), `is`(equalTo(29)))
+    assertThat(rt(lw), `is`(equalTo(29)))
+    assertThat(immediate(lw), `is`(equalTo(0xfff8)))
+    assertThat(signedImmediate(lw), `is`(equalTo(-8)))
+  }
+
+  @Test
+  @DisplayName("Sign-extended machine code yields the same fields as the word")
+  fun testThatTheLongAccessorsAgreeWithTheIntAccessors() {
+    val machineCode: MachineCode = lw.toLong()
+    assertThat(machineCode.opcode(), `is`(equalTo(opcode(lw))))
+    assertThat(machineCode.offset(), `is`(equalTo(immediate(lw))))
+    assertThat(machineCode.bits(31, 26), `is`(equalTo(0x23)))
+    assertThat(Integer.toUnsignedLong(lw).bits(31, 26), `is`(equalTo(0x23)))
+  }
+
+  @Test
+  @DisplayName("bits(0x014b4820, 19, 16) equals 0b1011")
+  fun testBits() {
+    assertThat(bits(add, 19, 16), `is`(equalTo(0b1011)))
+    assertThat(bits(-1, 31, 0), `is`(equalTo(-1)))
+    assertThat(target(0x0bffffff), `is`(equalTo(0x3ffffff)))
+  }
+
+  @Test
+  @DisplayName("Field extracts the same registers as the accessors")
+  fun testField() {
+    assertThat(Field.RS.of(add), `is`(equalTo(rs(add))))
+    assertThat(Field.RT.of(add), `is`(equalTo(rt(add))))
+    assertThat(Field.RD.of(add), `is`(equalTo(rd(add))))
+  }
+
+  @Test
+  @DisplayName("Decomposing into fields of a single bit")
+  fun testDecomposingIntoSingleBits() {
+    val lengths = IntArray(32, { 1 })
+    val bitsOfAdd = DecomposedRepresentation.fromNumber(add.toLong(), *lengths).toIntArray()
+    for (i in 0..31) {
+      assertThat(bitsOfAdd[i], `is`(equalTo((add ushr (31 - i)) and 1)))
+    }
+  }
+}
@@ -0,0 +1,9 @@
+addi $t1, $zero, 100
+ll $t0, 0($zero)
+addi $t0, $t0, 1
+sc $t0, 0($zero)
+beq $t0, $zero, -3
+addi $t1, $t1, -1
+beq $t1, $zero, 2
+j 1
+exit
@@ -0,0 +1,32 @@
+  addi $s0, $zero, 64        # n
+  add $t0, $zero, $zero      # address of a[i]
+  add $t1, $s0, $zero        # value to store, n - i
+fill:
+  sw $t1, 0($t0)
+  addi $t0, $t0, 4
+  addi $t1, $t1, -1
+  beq $t1, $zero, filled
+  j fill
+filled:
+  addi $s1, $s0, -1          # number of comparisons in the next pass
+outer:
+  beq $s1, $zero, done
+  add $t0, $zero, $zero
+  add $t2, $s1, $zero
+inner:
+  lw $t3, 0($t0)
+  lw $t4, 4($t0)
+  slt $t5, $t4, $t3
+  beq $t5, $zero, noswap
+  sw $t4, 0($t0)
+  sw $t3, 4($t0)
+noswap:
+  addi $t0, $t0, 4
+  addi $t2, $t2, -1
+  beq $t2, $zero, nextpass
+  j inner
+nextpass:
+  addi $s1, $s1, -1
+  j outer
+done:
+  exit
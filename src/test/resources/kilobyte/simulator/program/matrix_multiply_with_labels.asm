@@ -0,0 +1,67 @@
+  addi $s0, $zero, 6          # n
+  addi $s1, $zero, 24         # bytes per row, 4n
+  addi $s7, $zero, 1
+  add $t0, $zero, $zero       # address into A
+  addi $t1, $zero, 144        # address into B
+  add $t2, $zero, $zero       # i
+initrow:
+  add $t3, $zero, $zero       # j
+initcol:
+  add $t4, $t2, $t3
+  addi $t4, $t4, 1
+  sw $t4, 0($t0)
+  add $t4, $t4, $t3
+  sw $t4, 0($t1)
+  addi $t0, $t0, 4
+  addi $t1, $t1, 4
+  addi $t3, $t3, 1
+  beq $t3, $s0, initnext
+  j initcol
+initnext:
+  addi $t2, $t2, 1
+  beq $t2, $s0, multiply
+  j initrow
+multiply:
+  add $s3, $zero, $zero       # address of row i of A
+  addi $s4, $zero, 288        # address of C[i][j]
+  add $s2, $s0, $zero         # rows left
+row:
+  addi $s6, $zero, 144        # address of column j of B
+  add $s5, $s0, $zero         # columns left
+col:
+  add $t1, $s3, $zero
+  add $t2, $s6, $zero
+  add $t0, $s0, $zero
+  add $t3, $zero, $zero
+dot:
+  lw $t4, 0($t1)
+  lw $t5, 0($t2)
+mul:
+  beq $t5, $zero, muldone
+  and $t6, $t5, $s7
+  beq $t6, $zero, skip
+  add $t3, $t3, $t4
+skip:
+  add $t4, $t4, $t4
+  srl $t5, $t5, 1
+  j mul
+muldone:
+  addi $t1, $t1, 4
+  add $t2, $t2, $s1
+  addi $t0, $t0, -1
+  beq $t0, $zero, store
+  j dot
+store:
+  sw $t3, 0($s4)
+  addi $s4, $s4, 4
+  addi $s6, $s6, 4
+  addi $s5, $s5, -1
+  beq $s5, $zero, nextrow
+  j col
+nextrow:
+  add $s3, $s3, $s1
+  addi $s2, $s2, -1
+  beq $s2, $zero, done
+  j row
+done:
+  exit
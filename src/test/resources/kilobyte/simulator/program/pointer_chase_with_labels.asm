@@ -0,0 +1,39 @@
+  addi $s0, $zero, 64        # nodes
+  addi $s1, $zero, 520       # end of the node area, nodes start at 8
+  addi $t0, $zero, 8         # address of the current node
+  addi $t1, $zero, 1         # value of the current node
+  add $t2, $zero, $zero      # address of the previous node
+build:
+  sw $t1, 0($t0)
+  beq $t2, $zero, first
+  sw $t0, 4($t2)
+first:
+  add $t2, $t0, $zero
+  addi $t0, $t0, 56          # 7 nodes further, wrapping around
+  slt $t3, $t0, $s1
+  beq $t3, $zero, wrap
+  beq $zero, $zero, built
+wrap:
+  addi $t0, $t0, -512
+built:
+  beq $t1, $s0, chase
+  addi $t1, $t1, 1
+  j build
+chase:
+  addi $s2, $zero, 50        # laps
+  add $v0, $zero, $zero
+lap:
+  addi $t0, $zero, 8
+next:
+  lw $t1, 0($t0)
+  add $v0, $v0, $t1
+  lw $t0, 4($t0)
+  beq $t0, $zero, lapdone
+  j next
+lapdone:
+  addi $s2, $s2, -1
+  beq $s2, $zero, done
+  j lap
+done:
+  sw $v0, 0($zero)
+  exit
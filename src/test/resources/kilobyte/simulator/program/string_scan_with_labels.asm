@@ -0,0 +1,89 @@
+  addi $s0, $zero, 400       # length
+  addi $s1, $zero, 26
+  addi $s2, $zero, 7
+  addi $s3, $zero, 32        # ' '
+  addi $s4, $zero, 4
+  add $t0, $zero, $zero      # i
+  add $t1, $zero, $zero      # i mod 26
+  add $t2, $zero, $zero      # i mod 7
+  add $t3, $zero, $zero      # word being packed
+  add $t4, $zero, $zero      # bytes in word
+  add $t5, $zero, $zero      # address
+gen:
+  addi $t6, $t1, 97
+  addi $t7, $t2, 1
+  beq $t7, $s2, space
+  beq $zero, $zero, pack
+space:
+  add $t6, $s3, $zero
+pack:
+  add $t3, $t3, $t3
+  add $t3, $t3, $t3
+  add $t3, $t3, $t3
+  add $t3, $t3, $t3
+  add $t3, $t3, $t3
+  add $t3, $t3, $t3
+  add $t3, $t3, $t3
+  add $t3, $t3, $t3
+  or $t3, $t3, $t6
+  addi $t4, $t4, 1
+  beq $t4, $s4, flush
+  beq $zero, $zero, advance
+flush:
+  sw $t3, 0($t5)
+  addi $t5, $t5, 4
+  add $t3, $zero, $zero
+  add $t4, $zero, $zero
+advance:
+  addi $t0, $t0, 1
+  addi $t1, $t1, 1
+  beq $t1, $s1, wrap26
+  beq $zero, $zero, mod7
+wrap26:
+  add $t1, $zero, $zero
+mod7:
+  addi $t2, $t2, 1
+  beq $t2, $s2, wrap7
+  beq $zero, $zero, check
+wrap7:
+  add $t2, $zero, $zero
+check:
+  beq $t0, $s0, scan
+  j gen
+scan:
+  addi $s5, $zero, 255
+  addi $s6, $zero, 33
+  add $t5, $zero, $zero
+  add $v0, $zero, $zero
+  add $v1, $zero, $zero
+word:
+  lw $t3, 0($t5)
+  srl $t6, $t3, 24
+  and $t6, $t6, $s5
+  beq $t6, $zero, end
+  addi $v0, $v0, 1
+  slt $t7, $t6, $s6
+  add $v1, $v1, $t7
+  srl $t6, $t3, 16
+  and $t6, $t6, $s5
+  beq $t6, $zero, end
+  addi $v0, $v0, 1
+  slt $t7, $t6, $s6
+  add $v1, $v1, $t7
+  srl $t6, $t3, 8
+  and $t6, $t6, $s5
+  beq $t6, $zero, end
+  addi $v0, $v0, 1
+  slt $t7, $t6, $s6
+  add $v1, $v1, $t7
+  and $t6, $t3, $s5
+  beq $t6, $zero, end
+  addi $v0, $v0, 1
+  slt $t7, $t6, $s6
+  add $v1, $v1, $t7
+  addi $t5, $t5, 4
+  j word
+end:
+  sw $v0, 800($zero)
+  sw $v1, 804($zero)
+  exit